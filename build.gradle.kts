@@ -6,6 +6,7 @@ plugins {
     signing
     idea
     alias(libs.plugins.versions)
+    alias(libs.plugins.jmh) apply false
 }
 
 val isJitpack = System.getenv("JITPACK") == "true"
@@ -1,3 +1,7 @@
+plugins {
+    id("me.champeau.jmh")
+}
+
 dependencies {
     api(project(":mtproto"))
 
@@ -8,5 +12,11 @@ dependencies {
     }
 }
 
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Reports allocated bytes per operation
+    profilers.add("gc")
+}
+
 description = "Java MTProto library for the Telegram API"
 extra["displayName"] = "Telegram4J Core"
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.core.event.DefaultEventDispatcher;
+import telegram4j.core.internal.EntityFactory;
+import telegram4j.core.internal.LazyEntityMap;
+import telegram4j.core.object.PeerEntity;
+import telegram4j.core.object.User;
+import telegram4j.core.object.chat.Chat;
+import telegram4j.core.util.Id;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.tl.BaseChat;
+import telegram4j.tl.BaseUser;
+import telegram4j.tl.ChatPhotoEmpty;
+import telegram4j.tl.Channel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares eager and lazy creation of entity maps for the {@code users}/{@code chats} vectors
+ * of the one difference, where handlers read only the entities referenced by a few messages.
+ * Allocation per processed difference is reported by the {@code gc} profiler as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DifferenceEntitiesBenchmark {
+    static final long SELF_ID = 1;
+
+    @Param({"100", "1000"})
+    int usersCount;
+
+    @Param({"16"})
+    int referencedCount;
+
+    MTProtoTelegramClient client;
+    List<telegram4j.tl.User> users;
+    List<telegram4j.tl.Chat> chats;
+    List<Id> referencedUsers;
+    List<Id> referencedChats;
+
+    @Setup
+    public void setup() {
+        var store = new StoreLayoutImpl(Function.identity());
+        var dispatcher = new DefaultEventDispatcher(Schedulers.immediate(), false,
+                Sinks.many().multicast().directBestEffort(), Sinks.EmitFailureHandler.FAIL_FAST);
+        client = new MTProtoTelegramClient(new AuthorizationResources(1, "hash", "token"), null,
+                new MTProtoResources(store, dispatcher, null), c -> null, Id.ofUser(SELF_ID),
+                null, c -> null, Mono.never());
+
+        var random = new SplittableRandom(42);
+        users = new ArrayList<>(usersCount);
+        for (int i = 0; i < usersCount; i++) {
+            long userId = 1000 + i;
+            users.add(BaseUser.builder()
+                    .id(userId)
+                    .accessHash(userId * 31)
+                    .firstName("User " + userId)
+                    .username("user" + userId)
+                    .build());
+        }
+
+        int chatsCount = Math.max(1, usersCount / 10);
+        chats = new ArrayList<>(chatsCount);
+        for (int i = 0; i < chatsCount; i++) {
+            long chatId = 5000 + i;
+            if (i % 2 == 0) {
+                chats.add(BaseChat.builder()
+                        .id(chatId)
+                        .title("Chat " + chatId)
+                        .photo(ChatPhotoEmpty.instance())
+                        .participantsCount(10)
+                        .date(1_700_000_000)
+                        .version(1)
+                        .build());
+            } else {
+                chats.add(Channel.builder()
+                        .id(chatId)
+                        .accessHash(chatId * 31)
+                        .title("Channel " + chatId)
+                        .photo(ChatPhotoEmpty.instance())
+                        .date(1_700_000_000)
+                        .build());
+            }
+        }
+
+        referencedUsers = new ArrayList<>(referencedCount);
+        referencedChats = new ArrayList<>(referencedCount);
+        for (int i = 0; i < referencedCount; i++) {
+            referencedUsers.add(Id.ofUser(1000 + random.nextInt(usersCount)));
+            int chatIdx = random.nextInt(chatsCount);
+            referencedChats.add(chatIdx % 2 == 0 ? Id.ofChat(5000 + chatIdx) : Id.ofChannel(5000 + chatIdx));
+        }
+    }
+
+    @Benchmark
+    public void eager(Blackhole bh) {
+        Map<Id, User> usersMap = users.stream()
+                .flatMap(u -> Stream.ofNullable(EntityFactory.createUser(client, u)))
+                .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+        Map<Id, Chat> chatsMap = chats.stream()
+                .flatMap(u -> Stream.ofNullable(EntityFactory.createChat(client, u, null)))
+                .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+
+        consume(bh, usersMap, chatsMap);
+    }
+
+    @Benchmark
+    public void lazy(Blackhole bh) {
+        Map<Id, User> usersMap = LazyEntityMap.ofUsers(client, users);
+        Map<Id, Chat> chatsMap = LazyEntityMap.ofChats(client, chats);
+
+        consume(bh, usersMap, chatsMap);
+    }
+
+    private void consume(Blackhole bh, Map<Id, User> usersMap, Map<Id, Chat> chatsMap) {
+        bh.consume(usersMap.get(client.getSelfId()));
+        for (int i = 0; i < referencedCount; i++) {
+            bh.consume(usersMap.get(referencedUsers.get(i)));
+            bh.consume(chatsMap.get(referencedChats.get(i)));
+        }
+    }
+}
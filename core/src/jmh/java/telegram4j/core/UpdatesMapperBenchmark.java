@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.core.event.DefaultEventDispatcher;
+import telegram4j.core.event.dispatcher.UpdateContext;
+import telegram4j.core.event.dispatcher.UpdatesMapper;
+import telegram4j.core.internal.EntityFactory;
+import telegram4j.core.object.User;
+import telegram4j.core.util.Id;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.tl.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of {@link UpdatesMapper} over a recorded-like stream of updates
+ * with a typical for bots distribution: new messages, edits, deletions, inline queries
+ * and updates without handlers. Store operations are in-memory and complete synchronously.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdatesMapperBenchmark {
+    static final int STREAM_SIZE = 4096;
+    static final long SELF_ID = 1;
+
+    List<UpdateContext<Update>> stream;
+
+    @Setup
+    public void setup() {
+        var store = new StoreLayoutImpl(Function.identity());
+        var dispatcher = new DefaultEventDispatcher(Schedulers.immediate(), false,
+                Sinks.many().multicast().directBestEffort(), Sinks.EmitFailureHandler.FAIL_FAST);
+        var client = new MTProtoTelegramClient(new AuthorizationResources(1, "hash", "token"), null,
+                new MTProtoResources(store, dispatcher, null), c -> null, Id.ofUser(SELF_ID),
+                null, c -> null, Mono.never());
+
+        var random = new SplittableRandom(42);
+        stream = new ArrayList<>(STREAM_SIZE);
+        int pts = 1;
+        for (int i = 0; i < STREAM_SIZE; i++) {
+            long userId = 1000 + random.nextInt(100);
+            var tlUser = BaseUser.builder()
+                    .id(userId)
+                    .accessHash(userId * 31)
+                    .firstName("User " + userId)
+                    .build();
+            User user = EntityFactory.createUser(client, tlUser);
+            var users = Map.of(user.getId(), user);
+
+            int p = random.nextInt(100);
+            Update update;
+            if (p < 60) {
+                update = UpdateNewMessage.builder()
+                        .message(message(i + 1, userId, "Message " + i))
+                        .pts(++pts)
+                        .ptsCount(1)
+                        .build();
+            } else if (p < 75) {
+                update = UpdateEditMessage.builder()
+                        .message(message(Math.max(1, i - 10), userId, "Edited message " + i))
+                        .pts(++pts)
+                        .ptsCount(1)
+                        .build();
+            } else if (p < 85) {
+                update = UpdateDeleteMessages.builder()
+                        .messages(List.of(Math.max(1, i - 20)))
+                        .pts(++pts)
+                        .ptsCount(1)
+                        .build();
+            } else if (p < 95) {
+                update = UpdateBotInlineQuery.builder()
+                        .queryId(i)
+                        .userId(userId)
+                        .query("query " + i)
+                        .offset("")
+                        .build();
+            } else {
+                update = UpdateConfig.instance();
+            }
+
+            stream.add(UpdateContext.create(client, Map.of(), users, update));
+        }
+    }
+
+    static BaseMessage message(int id, long userId, String text) {
+        return BaseMessage.builder()
+                .id(id)
+                .peerId(ImmutablePeerUser.of(userId))
+                .fromId(ImmutablePeerUser.of(userId))
+                .date(1_700_000_000 + id)
+                .message(text)
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_SIZE)
+    public void map(Blackhole bh) {
+        for (var ctx : stream) {
+            UpdatesMapper.instance.handle(ctx).subscribe(bh::consume);
+        }
+    }
+}
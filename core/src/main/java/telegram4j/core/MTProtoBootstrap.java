@@ -44,12 +44,14 @@ import telegram4j.mtproto.auth.DhPrimeCheckerCache;
 import telegram4j.mtproto.client.*;
 import telegram4j.mtproto.resource.TcpClientResources;
 import telegram4j.mtproto.service.ServiceHolder;
+import telegram4j.mtproto.store.EntityCacheOptions;
 import telegram4j.mtproto.store.FileStoreLayout;
 import telegram4j.mtproto.store.StoreLayout;
 import telegram4j.mtproto.store.StoreLayoutImpl;
 import telegram4j.mtproto.transport.IntermediateTransport;
 import telegram4j.mtproto.transport.Transport;
 import telegram4j.mtproto.transport.TransportFactory;
+import telegram4j.mtproto.util.IGECipher;
 import telegram4j.tl.*;
 import telegram4j.tl.auth.Authorization;
 import telegram4j.tl.auth.BaseAuthorization;
@@ -68,6 +70,7 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.Deflater;
 
 import static reactor.function.TupleUtils.function;
 import static telegram4j.mtproto.internal.Preconditions.requireArgument;
@@ -111,10 +114,14 @@ public final class MTProtoBootstrap {
     private EventDispatcher eventDispatcher;
     private DataCenter dataCenter;
     private int gzipCompressionSizeThreshold = 16 * 1024;
+    private int gzipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int gzipCompressionStrategy = Deflater.DEFAULT_STRATEGY;
     private TcpClientResources tcpClientResources;
     private UpdateDispatcher updateDispatcher;
     private Duration pingInterval = Duration.ofSeconds(10);
     private Duration authKeyLifetime = Duration.ofDays(1);
+    private IGECipher.Engine cipherEngine = IGECipher.Engine.BULK;
+    private MTProtoClient.WriteBatching writeBatching = MTProtoClient.WriteBatching.disabled();
     // Max backoff is 16 seconds
     private ReconnectionStrategy reconnectionStrategy = DefaultReconnectionStrategy.create(3, 5, Duration.ofSeconds(1));
 
@@ -145,10 +152,14 @@ public final class MTProtoBootstrap {
         this.eventDispatcher = p.eventDispatcher;
         this.dataCenter = p.dataCenter;
         this.gzipCompressionSizeThreshold = p.gzipCompressionSizeThreshold;
+        this.gzipCompressionLevel = p.gzipCompressionLevel;
+        this.gzipCompressionStrategy = p.gzipCompressionStrategy;
         this.tcpClientResources = p.tcpClientResources;
         this.updateDispatcher = p.updateDispatcher;
         this.pingInterval = p.pingInterval;
         this.authKeyLifetime = p.authKeyLifetime;
+        this.cipherEngine = p.cipherEngine;
+        this.writeBatching = p.writeBatching;
         this.reconnectionStrategy = p.reconnectionStrategy;
         this.resultPublisher = p.resultPublisher;
         this.disposeResultPublisher = p.disposeResultPublisher;
@@ -425,6 +436,62 @@ public final class MTProtoBootstrap {
         return this;
     }
 
+    /**
+     * Sets compression level for gzip packing mtproto queries,
+     * by default equals to {@link Deflater#DEFAULT_COMPRESSION}.
+     *
+     * @throws IllegalArgumentException if {@code gzipCompressionLevel} is not in the range {@code [-1, 9]}.
+     * @param gzipCompressionLevel The new compression level.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setGzipCompressionLevel(int gzipCompressionLevel) {
+        requireArgument(gzipCompressionLevel >= Deflater.DEFAULT_COMPRESSION &&
+                gzipCompressionLevel <= Deflater.BEST_COMPRESSION, "Invalid gzipCompressionLevel");
+        this.gzipCompressionLevel = gzipCompressionLevel;
+        return this;
+    }
+
+    /**
+     * Sets compression strategy for gzip packing mtproto queries,
+     * by default equals to {@link Deflater#DEFAULT_STRATEGY}.
+     *
+     * @throws IllegalArgumentException if {@code gzipCompressionStrategy} is not one of
+     * {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}.
+     * @param gzipCompressionStrategy The new compression strategy.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setGzipCompressionStrategy(int gzipCompressionStrategy) {
+        requireArgument(gzipCompressionStrategy == Deflater.DEFAULT_STRATEGY ||
+                gzipCompressionStrategy == Deflater.FILTERED ||
+                gzipCompressionStrategy == Deflater.HUFFMAN_ONLY, "Invalid gzipCompressionStrategy");
+        this.gzipCompressionStrategy = gzipCompressionStrategy;
+        return this;
+    }
+
+    /**
+     * Sets implementation of AES-256-IGE cipher for encrypting MTProto messages,
+     * by default {@link IGECipher.Engine#BULK} is used.
+     *
+     * @param cipherEngine The new type of cipher implementation.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setCipherEngine(IGECipher.Engine cipherEngine) {
+        this.cipherEngine = Objects.requireNonNull(cipherEngine);
+        return this;
+    }
+
+    /**
+     * Sets options of query coalescing for mtproto clients, by default batching is disabled
+     * and each query is flushed independently.
+     *
+     * @param writeBatching The new options of query coalescing.
+     * @return This builder.
+     */
+    public MTProtoBootstrap setWriteBatching(MTProtoClient.WriteBatching writeBatching) {
+        this.writeBatching = Objects.requireNonNull(writeBatching);
+        return this;
+    }
+
     /**
      * Sets client factory for creating mtproto clients, by default {@link DefaultClientFactory} is used.
      *
@@ -492,7 +559,9 @@ public final class MTProtoBootstrap {
                     var clientOptions = new MTProtoClient.Options(
                             copy.transportFactory, initConnectionRequest,
                             copy.pingInterval, copy.reconnectionStrategy,
-                            copy.gzipCompressionSizeThreshold, responseTransformers, copy.authKeyLifetime);
+                            copy.gzipCompressionSizeThreshold, copy.gzipCompressionLevel,
+                            copy.gzipCompressionStrategy, responseTransformers, copy.authKeyLifetime,
+                            copy.cipherEngine, copy.writeBatching);
                     var mtProtoOptions = new MTProtoOptions(
                             copy.initTcpClientResources(), copy.initPublicRsaKeyRegister(),
                             copy.initDhPrimeChecker(), storeLayout,
@@ -743,7 +812,8 @@ public final class MTProtoBootstrap {
         if (storeLayout != null) {
             return storeLayout;
         }
-        return new FileStoreLayout(new StoreLayoutImpl(c -> c.maximumSize(1000)));
+        return new FileStoreLayout(new StoreLayoutImpl(c -> c.maximumSize(1000),
+                EntityCacheOptions.bounded(32 * 1024 * 1024, 1000)));
     }
 
     private DataCenter initDataCenter(DcOptions opts) {
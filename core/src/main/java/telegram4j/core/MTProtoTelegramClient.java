@@ -19,10 +19,14 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.annotation.Nullable;
 import telegram4j.core.auth.AuthorizationHandler;
 import telegram4j.core.auxiliary.AuxiliaryMessages;
 import telegram4j.core.auxiliary.AuxiliaryStickerSet;
+import telegram4j.core.auxiliary.HistoryExportFormat;
+import telegram4j.core.auxiliary.HistoryMessage;
+import telegram4j.core.auxiliary.HistoryOptions;
 import telegram4j.core.event.EventAdapter;
 import telegram4j.core.event.UpdatesManager;
 import telegram4j.core.event.domain.Event;
@@ -30,6 +34,7 @@ import telegram4j.core.handle.MTProtoPeerHandle;
 import telegram4j.core.handle.PeerHandle;
 import telegram4j.core.internal.AuxiliaryEntityFactory;
 import telegram4j.core.internal.EntityFactory;
+import telegram4j.core.internal.HistoryFileSink;
 import telegram4j.core.internal.MappingUtil;
 import telegram4j.mtproto.internal.Preconditions;
 import telegram4j.core.object.BotInfo;
@@ -59,6 +64,7 @@ import telegram4j.tl.messages.AffectedMessages;
 import telegram4j.tl.request.bots.*;
 import telegram4j.tl.request.messages.ImmutableDeleteMessages;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.channels.FileChannel;
@@ -66,6 +72,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -253,7 +260,7 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                     int ps = UploadService.suggestPartSize(size, partSize);
                     return serviceHolder.getUploadService()
                             .saveFile(UploadOptions.builder()
-                                    .data(fromPath(path, ps, ByteBufAllocator.DEFAULT))
+                                    .data(fromPath(path, size, ps, 0, ByteBufAllocator.DEFAULT))
                                     .size(size)
                                     .partSize(ps)
                                     .name(filename)
@@ -261,6 +268,33 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                 });
     }
 
+    /**
+     * Request to resume interrupted upload of file to Telegram Media DC.
+     * Only parts starting from {@code firstPart} will be read and uploaded.
+     *
+     * @param path The path to local file.
+     * @param filename The name of remote file.
+     * @param partSize The part size of interrupted upload.
+     * @param fileId The random file id of interrupted upload.
+     * @param firstPart The index of the first part that wasn't uploaded.
+     * @return A {@link Mono} emitting on successful completion {@link InputFile} with file id.
+     */
+    public Mono<InputFile> uploadFile(Path path, String filename, int partSize, long fileId, int firstPart) {
+        return Mono.fromCallable(() -> Files.size(path))
+                .flatMap(size -> {
+                    int ps = UploadService.suggestPartSize(size, partSize);
+                    return serviceHolder.getUploadService()
+                            .saveFile(UploadOptions.builder()
+                                    .data(fromPath(path, size, ps, firstPart, ByteBufAllocator.DEFAULT))
+                                    .size(size)
+                                    .partSize(ps)
+                                    .name(filename)
+                                    .fileId(fileId)
+                                    .firstPart(firstPart)
+                                    .build());
+                });
+    }
+
     /**
      * Request to upload file to Telegram Media DC.
      *
@@ -342,6 +376,23 @@ public final class MTProtoTelegramClient implements EntityRetriever {
      * @return A {@link Flux} emitting full or parts of downloading file.
      */
     public Flux<FilePart> downloadFile(FileReferenceId fileRefId, long offset, int limit, boolean precise) {
+        return downloadFile(fileRefId, offset, limit, precise, -1);
+    }
+
+    /**
+     * Retrieve file parts from specified location with known file size.
+     * In comparison with {@link #downloadFile(FileReferenceId, long, int, boolean)} this method
+     * doesn't request parts past the end of file.
+     *
+     * @see #downloadFile(FileReferenceId, long, int, boolean)
+     * @param fileRefId The location of file.
+     * @param offset The number of bytes to be skipped.
+     * @param limit The number of bytes to be returned.
+     * @param precise Disable some checks on limit and offset values.
+     * @param fileSize The exact size of file or {@code -1} if it's unknown.
+     * @return A {@link Flux} emitting full or parts of downloading file.
+     */
+    public Flux<FilePart> downloadFile(FileReferenceId fileRefId, long offset, int limit, boolean precise, long fileSize) {
         return Flux.defer(() -> {
             if (fileRefId.getFileType() == FileReferenceId.Type.WEB_DOCUMENT) {
                 if (authResources.isBot()) {
@@ -355,11 +406,93 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                         .map(FilePart::ofWebFile);
             }
 
-            return serviceHolder.getUploadService().getFile(fileRefId, offset, limit, precise)
+            return serviceHolder.getUploadService().getFile(fileRefId, offset, limit, precise, fileSize)
                     .map(FilePart::ofFile);
         });
     }
 
+    /**
+     * Request to download file by their reference from Telegram Media DC directly to the specified path.
+     * If previous download to this path was interrupted, then only missing parts will be downloaded.
+     *
+     * @throws IllegalArgumentException If {@code fileRefId} points to webfile.
+     * @param fileRefId The location of file.
+     * @param path The path to target file.
+     * @param fileSize The exact size of file or {@code -1} if it's unknown.
+     * @param verifyHashes Whether to verify downloaded file by hashes from the server.
+     * @return A {@link Mono} completing after file is fully written.
+     */
+    public Mono<Void> downloadFile(FileReferenceId fileRefId, Path path, long fileSize, boolean verifyHashes) {
+        return serviceHolder.getUploadService().downloadFile(fileRefId, path, fileSize, verifyHashes);
+    }
+
+    /**
+     * Streams history of chat from the newest to the oldest messages with constant memory footprint.
+     * Pages are retrieved by {@code offset_id} with read-ahead of {@link HistoryOptions#readAhead()} pages,
+     * and messages are emitted as lightweight views without creating of entity objects.
+     * Users and chats are deduplicated across pages by the bounded set of recently emitted ids,
+     * see {@link HistoryMessage}.
+     *
+     * <p> Interrupted streaming can be resumed by specifying the id of last
+     * received message as {@link HistoryOptions#offsetId()}.
+     *
+     * @param chatId The id of chat.
+     * @param options The options of streaming.
+     * @return A {@link Flux} emitting history messages.
+     */
+    public Flux<HistoryMessage> streamHistory(Id chatId, HistoryOptions options) {
+        Objects.requireNonNull(options);
+        return asInputPeerExact(chatId)
+                .flatMapMany(peer -> {
+                    var seenUsers = AuxiliaryEntityFactory.createHistorySeenIds();
+                    var seenChats = AuxiliaryEntityFactory.createHistorySeenIds();
+                    return serviceHolder.getChatService().getHistoryPages(peer, options.offsetId(),
+                                    options.minId(), options.pageSize(), options.readAhead())
+                            .concatMapIterable(page -> AuxiliaryEntityFactory.createHistoryMessages(page, seenUsers, seenChats));
+                });
+    }
+
+    /**
+     * Exports history of chat to the specified file. Messages are written as soon as they are received,
+     * and id of last written message is persisted in the progress file near the target file,
+     * so the interrupted export is continued from this message by the next invocation with the same format.
+     *
+     * @see #streamHistory(Id, HistoryOptions)
+     * @param chatId The id of chat.
+     * @param path The path to target file.
+     * @param format The format of export.
+     * @param options The options of streaming, {@link HistoryOptions#offsetId()} is overridden on resuming.
+     * @return A {@link Mono} completing after history is fully written.
+     */
+    public Mono<Void> exportHistory(Id chatId, Path path, HistoryExportFormat format, HistoryOptions options) {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(options);
+
+        return Mono.usingWhen(
+                Mono.fromCallable(() -> HistoryFileSink.open(path, format))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                sink -> {
+                    int lastMessageId = sink.getLastMessageId();
+                    return streamHistory(chatId, lastMessageId != 0 ? options.withOffsetId(lastMessageId) : options)
+                            .publishOn(Schedulers.boundedElastic())
+                            .doOnNext(message -> {
+                                try {
+                                    sink.write(message);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            })
+                            .then(Mono.fromCallable(() -> {
+                                sink.finish();
+                                return null;
+                            }));
+                },
+                MTProtoTelegramClient::closeSink,
+                (sink, e) -> closeSink(sink),
+                MTProtoTelegramClient::closeSink);
+    }
+
     /**
      * Request to delete messages in DM or group chats.
      *
@@ -885,9 +1018,21 @@ public final class MTProtoTelegramClient implements EntityRetriever {
         return entityRetriever.getMessages(chatId, messageIds);
     }
 
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return entityRetriever.getMessageHistory(chatId, minId, maxId, limit);
+    }
+
     // Internal methods
     // ===========================
 
+    private static Mono<Void> closeSink(HistoryFileSink sink) {
+        return Mono.<Void>fromCallable(() -> {
+            sink.close();
+            return null;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
     private static Optional<FileReferenceId> findMessageAction(AuxiliaryMessages messages, int messageId) {
         return messages.getMessages().stream()
                 .filter(msg -> msg.getId() == messageId)
@@ -928,22 +1073,27 @@ public final class MTProtoTelegramClient implements EntityRetriever {
                 .map(Document::getFileReferenceId);
     }
 
-    private static Flux<ByteBuf> fromPath(Path path, int maxChunkSize, ByteBufAllocator allocator) {
-        return Flux.generate(() -> FileChannel.open(path), (fc, sink) -> {
-            ByteBuf buf = allocator.buffer();
-            try {
-                if (buf.writeBytes(fc, maxChunkSize) < 0) {
-                    buf.release();
-                    sink.complete();
-                } else {
-                    sink.next(buf);
-                }
-            } catch (IOException e) {
-                buf.release();
-                sink.error(e);
-            }
-            return fc;
-        }, MTProtoTelegramClient::closeFileChannel);
+    // Reads file by exact parts through positional reads into pooled direct buffers,
+    // so parts don't need to be re-chunked by the UploadMono
+    private static Flux<ByteBuf> fromPath(Path path, long size, int partSize, int firstPart, ByteBufAllocator allocator) {
+        int partsCount = Math.toIntExact((size + partSize - 1) / partSize);
+        return Flux.using(() -> FileChannel.open(path), fc -> Flux.range(firstPart, partsCount - firstPart)
+                .map(i -> {
+                    long position = (long) i * partSize;
+                    int length = (int) Math.min(partSize, size - position);
+                    ByteBuf buf = allocator.directBuffer(length, length);
+                    try {
+                        while (buf.isWritable()) {
+                            if (buf.writeBytes(fc, position + buf.writerIndex(), buf.writableBytes()) < 0) {
+                                throw new EOFException("File was truncated while uploading");
+                            }
+                        }
+                        return buf;
+                    } catch (IOException e) {
+                        buf.release();
+                        throw new UncheckedIOException(e);
+                    }
+                }), MTProtoTelegramClient::closeFileChannel);
     }
 
     private static void closeFileChannel(FileChannel fc) {
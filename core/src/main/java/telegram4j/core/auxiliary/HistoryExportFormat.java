@@ -0,0 +1,28 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.auxiliary;
+
+/** Formats of chat history export. */
+public enum HistoryExportFormat {
+    /**
+     * Newline-delimited JSON, where each line is an object with {@code _} field
+     * of entity type: {@code user}, {@code chat} or {@code message}.
+     */
+    NDJSON,
+
+    /** Sequence of TL-serialized users, chats and messages without separators. */
+    TL
+}
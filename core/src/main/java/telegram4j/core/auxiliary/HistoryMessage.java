@@ -0,0 +1,48 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.auxiliary;
+
+import telegram4j.tl.Chat;
+import telegram4j.tl.Message;
+import telegram4j.tl.User;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Lightweight view of the message from history stream with raw TL data.
+ * Users and chats are deduplicated within the stream, so each of them
+ * is attached only to the first message which is emitted after receiving it.
+ * Deduplication remembers only a limited number of recently emitted entities,
+ * so entity can be attached again in the long stream.
+ *
+ * @param message The raw message.
+ * @param users The users which weren't emitted with the previous messages.
+ * @param chats The chats which weren't emitted with the previous messages.
+ */
+public record HistoryMessage(Message message, List<User> users, List<Chat> chats) {
+
+    public HistoryMessage {
+        Objects.requireNonNull(message);
+        users = List.copyOf(users);
+        chats = List.copyOf(chats);
+    }
+
+    /** {@return The id of message} */
+    public int id() {
+        return message.id();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.auxiliary;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Options of chat history streaming.
+ *
+ * @param offsetId The id of message before which history is retrieved, or {@code 0} to start from the newest message.
+ * This can be used to resume streaming from the {@link HistoryMessage#id()} of last received message.
+ * @param minId The id of message after which history is retrieved, or {@code 0} to retrieve all history.
+ * @param pageSize The count of messages in the one page, must be in range {@code [1, 100]}.
+ * @param readAhead The count of pages which can be requested in advance.
+ */
+public record HistoryOptions(int offsetId, int minId, int pageSize, int readAhead) {
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    public HistoryOptions() {
+        this(0, 0, MAX_PAGE_SIZE, DEFAULT_READ_AHEAD);
+    }
+
+    public HistoryOptions {
+        requireArgument(offsetId >= 0, "offsetId must be non-negative");
+        requireArgument(minId >= 0, "minId must be non-negative");
+        requireArgument(pageSize >= 1 && pageSize <= MAX_PAGE_SIZE, "pageSize must be in range [1, 100]");
+        requireArgument(readAhead >= 1, "readAhead must be equal or greater than 1");
+    }
+
+    /**
+     * Creates new options with specified offset id.
+     *
+     * @param offsetId The new offset id.
+     * @return The new options with specified offset id.
+     */
+    public HistoryOptions withOffsetId(int offsetId) {
+        if (this.offsetId == offsetId) return this;
+        return new HistoryOptions(offsetId, minId, pageSize, readAhead);
+    }
+}
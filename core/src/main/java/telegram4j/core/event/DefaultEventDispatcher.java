@@ -23,7 +23,11 @@ import telegram4j.core.event.domain.Event;
 
 import java.util.Objects;
 
-/** Default event dispatcher implementation based on {@link Sinks.Many} processor. */
+/**
+ * Default event dispatcher implementation based on {@link Sinks.Many} processor.
+ * Subscribers of {@link #on(Class)} receive events from the routes indexed by event type,
+ * without filtering of all events.
+ */
 public class DefaultEventDispatcher implements EventDispatcher {
 
     protected final Scheduler scheduler;
@@ -31,6 +35,8 @@ public class DefaultEventDispatcher implements EventDispatcher {
     protected final Sinks.Many<Event> sink;
     protected final Sinks.EmitFailureHandler emissionHandler;
 
+    private final EventRouter router = new EventRouter();
+
     public DefaultEventDispatcher(Scheduler scheduler, boolean disposeScheduler,
                                   Sinks.Many<Event> sink, Sinks.EmitFailureHandler emissionHandler) {
         this.scheduler = Objects.requireNonNull(scheduler);
@@ -45,19 +51,30 @@ public class DefaultEventDispatcher implements EventDispatcher {
                 .publishOn(scheduler);
     }
 
+    @Override
+    public <E extends Event> Flux<E> on(Class<E> type) {
+        return router.on(type)
+                .publishOn(scheduler);
+    }
+
     @Override
     public void publish(Event event) {
         if (log.isTraceEnabled()) {
             log.trace(event.toString());
         }
 
-        sink.emitNext(event, emissionHandler);
+        router.route(event, emissionHandler);
+        // all subscribers may use typed routes
+        if (sink.currentSubscriberCount() != 0 || !router.hasRoutes()) {
+            sink.emitNext(event, emissionHandler);
+        }
     }
 
     @Override
     public Mono<Void> close() {
         return Mono.defer(() -> {
             sink.emitComplete(emissionHandler);
+            router.complete(emissionHandler);
 
             if (disposeScheduler) {
                 return scheduler.disposeGracefully();
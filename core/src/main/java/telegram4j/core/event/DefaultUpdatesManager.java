@@ -21,19 +21,16 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
-import reactor.function.TupleUtils;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 import reactor.util.annotation.Nullable;
-import reactor.util.function.Tuples;
 import telegram4j.core.MTProtoTelegramClient;
 import telegram4j.core.event.dispatcher.UpdateContext;
 import telegram4j.core.event.dispatcher.UpdatesMapper;
 import telegram4j.core.event.domain.Event;
 import telegram4j.core.event.domain.message.SendMessageEvent;
-import telegram4j.core.internal.EntityFactory;
+import telegram4j.core.internal.LazyEntityMap;
 import telegram4j.core.object.Message;
-import telegram4j.core.object.PeerEntity;
 import telegram4j.core.object.User;
 import telegram4j.core.object.chat.Chat;
 import telegram4j.core.object.chat.PrivateChat;
@@ -54,18 +51,33 @@ import java.lang.invoke.VarHandle;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
 
 import static telegram4j.core.internal.MappingUtil.getAuthor;
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
 import static telegram4j.mtproto.util.TlEntityUtil.getRawPeerId;
 
-/** Manager for correct and complete work with general and channel updates. */
+/**
+ * Manager for correct and complete work with general and channel updates.
+ *
+ * <p>Updates are processed in lanes: updates of common box (pts, qts and seq) are processed
+ * strictly in order in the one lane, and channel updates are dispatched to the one of
+ * {@link Options#channelLanes()} lanes by channel id. Each channel lane holds pts of its channels,
+ * so {@code getChannelDifference} requests of one channel do not delay updates of other channels.
+ * Events of channel lanes are published directly to the {@link telegram4j.core.event.EventDispatcher}.
+ *
+ * <p>Out-of-order pts updates are held for {@link Options#gapTimeout()} and applied
+ * once the gap is filled; difference is requested only if gap wasn't filled in time.
+ */
 public class DefaultUpdatesManager implements UpdatesManager {
     protected static final Logger log = Loggers.getLogger(DefaultUpdatesManager.class);
 
     protected static final VarHandle REQUESTING_DIFFERENCE;
+    private static final AtomicLongFieldUpdater<DefaultUpdatesManager> GAPS_HEALED =
+            AtomicLongFieldUpdater.newUpdater(DefaultUpdatesManager.class, "gapsHealed");
+    private static final AtomicLongFieldUpdater<DefaultUpdatesManager> GAPS_FETCHED =
+            AtomicLongFieldUpdater.newUpdater(DefaultUpdatesManager.class, "gapsFetched");
 
     static {
         var lookup = MethodHandles.lookup();
@@ -90,9 +102,25 @@ public class DefaultUpdatesManager implements UpdatesManager {
 
     protected volatile boolean requestingDifference;
 
+    private final UpdatesLane commonLane;
+    private final UpdatesLane[] channelLanes;
+    // accessed only from tasks of common lane
+    private final PtsGapBuffer commonGaps = new PtsGapBuffer();
+
+    private volatile long gapsHealed;
+    private volatile long gapsFetched;
+
     public DefaultUpdatesManager(MTProtoTelegramClient client, Options options) {
         this.client = Objects.requireNonNull(client);
         this.options = Objects.requireNonNull(options);
+
+        Consumer<Event> publisher = e -> client.getMtProtoResources()
+                .getEventDispatcher().publish(e);
+        this.commonLane = new UpdatesLane("common", null, publisher);
+        this.channelLanes = new UpdatesLane[options.channelLanes];
+        for (int i = 0; i < channelLanes.length; i++) {
+            channelLanes[i] = new UpdatesLane("channel-" + i, Schedulers.parallel(), publisher);
+        }
     }
 
     @Override
@@ -118,7 +146,7 @@ public class DefaultUpdatesManager implements UpdatesManager {
             }
             return Mono.empty();
         })
-        .thenMany(getDifference())
+        .thenMany(Flux.defer(() -> commonLane.submit(getDifference())))
         .doOnNext(client.getMtProtoResources()
                 .getEventDispatcher()::publish)
         .then();
@@ -128,6 +156,35 @@ public class DefaultUpdatesManager implements UpdatesManager {
     public Flux<Event> handle(Updates updates) {
         stateTimeout.restart(options.checkin);
 
+        return commonLane.submit(Flux.defer(() -> handle0(updates)));
+    }
+
+    /**
+     * {@return Statistics of the lane with common box updates}
+     */
+    public LaneStats getCommonLaneStats() {
+        return commonLane.stats();
+    }
+
+    /**
+     * {@return Statistics of the channel lanes, ordered by lane index}
+     */
+    public List<LaneStats> getChannelLanesStats() {
+        var list = new ArrayList<LaneStats>(channelLanes.length);
+        for (UpdatesLane lane : channelLanes) {
+            list.add(lane.stats());
+        }
+        return list;
+    }
+
+    /**
+     * {@return Statistics of pts gaps}
+     */
+    public GapStats getGapStats() {
+        return new GapStats(gapsHealed, gapsFetched);
+    }
+
+    protected Flux<Event> handle0(Updates updates) {
         return switch (updates.identifier()) {
             case UpdatesTooLong.ID -> getDifference();
             case UpdateShort.ID -> {
@@ -201,22 +258,6 @@ public class DefaultUpdatesManager implements UpdatesManager {
             case UpdateShortChatMessage.ID -> {
                 var data = (UpdateShortChatMessage) updates;
 
-                int pts = this.pts;
-                if (pts + data.ptsCount() < data.pts()) {
-                    log.debug("Updates gap found. Received pts: {}-{}, local pts: {}",
-                            data.pts() - data.ptsCount(), data.pts(), pts);
-                    yield getDifference(pts, qts, date);
-                } else if (pts + data.ptsCount() > data.pts()) {
-                    yield Flux.empty();
-                }
-
-                if (options.discardMinimalMessageUpdates) {
-                    yield getDifference(pts, qts, date);
-                }
-
-                log.debug("Updating state, pts: {}->{}", pts, data.pts());
-                this.pts = data.pts();
-
                 var mapUpdate = UpdatesMapper.instance.handle(UpdateContext.create(client, UpdateNewMessage.builder()
                         .message(BaseMessage.builder()
                                 .flags(data.flags())
@@ -235,17 +276,13 @@ public class DefaultUpdatesManager implements UpdatesManager {
                         .ptsCount(data.ptsCount())
                         .build()));
 
-                yield saveStateIf(true)
-                        .thenMany(mapUpdate);
-            }
-            case UpdateShortMessage.ID -> {
-                var data = (UpdateShortMessage) updates;
-
                 int pts = this.pts;
                 if (pts + data.ptsCount() < data.pts()) {
                     log.debug("Updates gap found. Received pts: {}-{}, local pts: {}",
                             data.pts() - data.ptsCount(), data.pts(), pts);
-                    yield getDifference(pts, qts, date);
+                    yield options.discardMinimalMessageUpdates
+                            ? getDifference(pts, qts, date)
+                            : parkCommonUpdate(data.pts(), data.ptsCount(), mapUpdate);
                 } else if (pts + data.ptsCount() > data.pts()) {
                     yield Flux.empty();
                 }
@@ -257,6 +294,12 @@ public class DefaultUpdatesManager implements UpdatesManager {
                 log.debug("Updating state, pts: {}->{}", pts, data.pts());
                 this.pts = data.pts();
 
+                yield saveStateIf(true)
+                        .thenMany(mapUpdate.concatWith(drainCommonGap()));
+            }
+            case UpdateShortMessage.ID -> {
+                var data = (UpdateShortMessage) updates;
+
                 var mapUpdate = UpdatesMapper.instance.handle(UpdateContext.create(client, UpdateNewMessage.builder()
                         .message(BaseMessage.builder()
                                 .flags(data.flags())
@@ -277,8 +320,26 @@ public class DefaultUpdatesManager implements UpdatesManager {
                         .ptsCount(data.ptsCount())
                         .build()));
 
+                int pts = this.pts;
+                if (pts + data.ptsCount() < data.pts()) {
+                    log.debug("Updates gap found. Received pts: {}-{}, local pts: {}",
+                            data.pts() - data.ptsCount(), data.pts(), pts);
+                    yield options.discardMinimalMessageUpdates
+                            ? getDifference(pts, qts, date)
+                            : parkCommonUpdate(data.pts(), data.ptsCount(), mapUpdate);
+                } else if (pts + data.ptsCount() > data.pts()) {
+                    yield Flux.empty();
+                }
+
+                if (options.discardMinimalMessageUpdates) {
+                    yield getDifference(pts, qts, date);
+                }
+
+                log.debug("Updating state, pts: {}->{}", pts, data.pts());
+                this.pts = data.pts();
+
                 yield saveStateIf(true)
-                        .thenMany(mapUpdate);
+                        .thenMany(mapUpdate.concatWith(drainCommonGap()));
             }
             default -> Flux.error(new IllegalArgumentException("Unknown Updates type: " + updates));
         };
@@ -286,7 +347,17 @@ public class DefaultUpdatesManager implements UpdatesManager {
 
     @Override
     public Mono<Void> close() {
-        return Mono.fromRunnable(stateTimeout::close);
+        return Mono.fromRunnable(() -> {
+            stateTimeout.close();
+            commonLane.dispose();
+            for (UpdatesLane lane : channelLanes) {
+                lane.dispose();
+            }
+        });
+    }
+
+    private UpdatesLane laneFor(long channelId) {
+        return channelLanes[(int) Math.floorMod(channelId, (long) channelLanes.length)];
     }
 
     protected Mono<Void> saveStateIf(boolean needSave) {
@@ -416,6 +487,8 @@ public class DefaultUpdatesManager implements UpdatesManager {
             }
             case BaseDifference.ID -> {
                 var diff = (BaseDifference) difference;
+                // parked updates are included in the difference
+                discardCommonGap();
 
                 yield applyState(diff.state(), false)
                         .thenMany(handleUpdates(diff.newMessages(), diff.otherUpdates(),
@@ -424,6 +497,7 @@ public class DefaultUpdatesManager implements UpdatesManager {
             case DifferenceSlice.ID -> {
                 var diff = (DifferenceSlice) difference;
                 State state = diff.intermediateState();
+                discardCommonGap();
 
                 yield applyState(state, true)
                         .thenMany(handleUpdates(diff.newMessages(), diff.otherUpdates(),
@@ -449,15 +523,11 @@ public class DefaultUpdatesManager implements UpdatesManager {
     protected Flux<Event> handleUpdates(List<telegram4j.tl.Message> newMessages, List<Update> otherUpdates,
                                         List<telegram4j.tl.Chat> chats, List<telegram4j.tl.User> users,
                                         boolean notFromDiff) {
-        var usersMap = users.stream()
-                .flatMap(u -> Stream.ofNullable(EntityFactory.createUser(client, u)))
-                .collect(Collectors.toMap(User::getId, Function.identity()));
+        var usersMap = LazyEntityMap.ofUsers(client, users);
 
         var selfUser = usersMap.get(client.getSelfId());
 
-        var chatsMap = chats.stream()
-                .flatMap(u -> Stream.ofNullable(EntityFactory.createChat(client, u, null)))
-                .collect(Collectors.toMap(Chat::getId, Function.identity()));
+        var chatsMap = LazyEntityMap.ofChats(client, chats);
 
         var messageCreateEvents = Flux.fromIterable(newMessages)
                 .mapNotNull(DefaultUpdatesManager::filterMessage)
@@ -478,20 +548,38 @@ public class DefaultUpdatesManager implements UpdatesManager {
                             .map(m -> new SendMessageEvent(client, m, chat, author));
                 });
 
+        // channel differences are requested in the lanes of channels
         var applyChannelDifference = Flux.fromIterable(otherUpdates)
                 .ofType(UpdateChannelTooLong.class)
-                // TODO use UpdateChannelTooLong#pts()
-                .flatMap(u -> client.getMtProtoResources().getStoreLayout()
-                        .getChannelFullById(u.channelId())
-                        .switchIfEmpty(client.getMtProtoResources().getStoreLayout()
-                                .resolveChannel(u.channelId())
-                                .flatMap(client.getServiceHolder().getChatService()::getFullChannel)
-                                .then(Mono.empty())) // no channel pts; can't request channel updates
-                        .onErrorResume(RpcException.isErrorMessage("CHANNEL_PRIVATE"), e -> Mono.empty())
-                        .map(chatFull -> (ChannelFull) chatFull.fullChat())
-                        .map(i -> Tuples.of(u, i.pts())))
-                .filter(TupleUtils.predicate((u, c) -> Optional.ofNullable(u.pts()).map(i -> i > c).orElse(true)))
-                .flatMap(TupleUtils.function((u, cpts) -> {
+                .doOnNext(u -> laneFor(u.channelId()).dispatch(Flux.defer(() -> applyChannelTooLong(u, chatsMap))))
+                .thenMany(Flux.<Event>empty());
+
+        var concatedUpdates = Flux.fromIterable(otherUpdates)
+                .map(u -> UpdateContext.create(client, chatsMap, usersMap, u))
+                .flatMap(u -> applyUpdate(u, notFromDiff))
+                .concatWith(messageCreateEvents)
+                .concatWith(applyChannelDifference);
+
+        return client.getMtProtoResources()
+                .getStoreLayout().onContacts(chats, users)
+                .thenMany(concatedUpdates);
+    }
+
+    protected Flux<Event> applyChannelTooLong(UpdateChannelTooLong u, Map<Id, Chat> chatsMap) {
+        var state = laneFor(u.channelId()).channel(u.channelId());
+        int localPts = state.pts;
+        Mono<Integer> channelPts = localPts != -1 ? Mono.just(localPts) : client.getMtProtoResources().getStoreLayout()
+                .getChannelFullById(u.channelId())
+                .switchIfEmpty(client.getMtProtoResources().getStoreLayout()
+                        .resolveChannel(u.channelId())
+                        .flatMap(client.getServiceHolder().getChatService()::getFullChannel)
+                        .then(Mono.empty())) // no channel pts; can't request channel updates
+                .onErrorResume(RpcException.isErrorMessage("CHANNEL_PRIVATE"), e -> Mono.empty())
+                .map(chatFull -> ((ChannelFull) chatFull.fullChat()).pts());
+
+        return channelPts
+                .filter(cpts -> Optional.ofNullable(u.pts()).map(i -> i > cpts).orElse(true))
+                .flatMapMany(cpts -> {
                     var id = Optional.ofNullable(chatsMap.get(Id.ofChannel(u.channelId())))
                             .map(c -> client.asResolvedInputChannel(c.getId())) // must be present
                             .orElseThrow();
@@ -515,17 +603,7 @@ public class DefaultUpdatesManager implements UpdatesManager {
                     return client.getMtProtoClientGroup()
                             .send(DcId.main(), request)
                             .flatMapMany(diff -> handleChannelDifference(request, diff));
-                }));
-
-        var concatedUpdates = Flux.fromIterable(otherUpdates)
-                .map(u -> UpdateContext.create(client, chatsMap, usersMap, u))
-                .flatMap(u -> applyUpdate(u, notFromDiff))
-                .concatWith(messageCreateEvents)
-                .concatWith(applyChannelDifference);
-
-        return client.getMtProtoResources()
-                .getStoreLayout().onContacts(chats, users)
-                .thenMany(concatedUpdates);
+                });
     }
 
     protected Flux<Event> handleChannelDifference(GetChannelDifference request, ChannelDifference diff) {
@@ -554,6 +632,12 @@ public class DefaultUpdatesManager implements UpdatesManager {
                 log.debug("Updating state for channel: {}, pts: {}->{}", channelId.asString(), request.pts(), newPts);
             }
 
+            var state = laneFor(channelId.asLong()).channel(channelId.asLong());
+            state.pts = newPts;
+            // parked updates are included in the difference
+            if (state.gaps.discard()) {
+                log.debug("Updates gap resolved by difference for channel {}", channelId.asString());
+            }
             return client.getMtProtoResources()
                     .getStoreLayout().updateChannelPts(channelId.asLong(), newPts);
         });
@@ -580,15 +664,11 @@ public class DefaultUpdatesManager implements UpdatesManager {
             case BaseChannelDifference.ID -> {
                 var diff0 = (BaseChannelDifference) diff;
 
-                var usersMap = diff0.users().stream()
-                        .flatMap(u -> Stream.ofNullable(EntityFactory.createUser(client, u)))
-                        .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+                var usersMap = LazyEntityMap.ofUsers(client, diff0.users());
 
                 var selfUser = usersMap.get(client.getSelfId());
 
-                var chatsMap = diff0.chats().stream()
-                        .flatMap(u -> Stream.ofNullable(EntityFactory.createChat(client, u, null)))
-                        .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+                var chatsMap = LazyEntityMap.ofChats(client, diff0.chats());
 
                 Flux<Event> messageCreateEvents = Flux.fromIterable(diff0.newMessages())
                         .mapNotNull(DefaultUpdatesManager::filterMessage)
@@ -621,15 +701,11 @@ public class DefaultUpdatesManager implements UpdatesManager {
             case ChannelDifferenceTooLong.ID -> {
                 var diff0 = (ChannelDifferenceTooLong) diff;
 
-                var usersMap = diff0.users().stream()
-                        .flatMap(u -> Stream.ofNullable(EntityFactory.createUser(client, u)))
-                        .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+                var usersMap = LazyEntityMap.ofUsers(client, diff0.users());
 
                 var selfUser = usersMap.get(client.getSelfId());
 
-                var chatsMap = diff0.chats().stream()
-                        .flatMap(u -> Stream.ofNullable(EntityFactory.createChat(client, u, null)))
-                        .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+                var chatsMap = LazyEntityMap.ofChats(client, diff0.chats());
 
                 Flux<Event> messageCreateEvents = Flux.fromIterable(diff0.messages())
                         .mapNotNull(DefaultUpdatesManager::filterMessage)
@@ -800,7 +876,7 @@ public class DefaultUpdatesManager implements UpdatesManager {
                 log.debug("Updates gap found. Received pts: {}-{}, local pts: {}",
                         pts - ptsCount, pts, localPts);
 
-                return getDifference(localPts, qts, date);
+                return parkCommonUpdate(pts, ptsCount, mapUpdate);
             } else if (localPts + ptsCount > pts) {
                 return Flux.empty();
             } else {
@@ -811,7 +887,7 @@ public class DefaultUpdatesManager implements UpdatesManager {
                 this.pts = pts;
 
                 return saveStateIf(true)
-                        .thenMany(mapUpdate);
+                        .thenMany(mapUpdate.concatWith(drainCommonGap()));
             }
         } else if (isChannelPtsUpdate(u)) {
             int pts;
@@ -851,46 +927,9 @@ public class DefaultUpdatesManager implements UpdatesManager {
                 return Flux.empty();
             }
 
-            return client.getMtProtoResources()
-                    .getStoreLayout().getChannelFullById(channelId)
-                    .switchIfEmpty(Mono.defer(() -> client.getMtProtoResources()
-                            .getStoreLayout().resolveChannel(channelId)
-                            .flatMap(client.getServiceHolder().getChatService()::getFullChannel)
-                            .onErrorResume(RpcException.isErrorMessage("CHANNEL_PRIVATE"), e -> Mono.empty())))
-                    .map(Optional::of)
-                    .defaultIfEmpty(Optional.empty())
-                    .flatMapMany(chatFullOpt -> {
-                        var chatFull = chatFullOpt.orElse(null);
-                        if (chatFull == null) {
-                            if (log.isDebugEnabled() && notFromDiff) {
-                                log.debug("Updating state for channel: {}, pts: unknown->{}", channelId, pts);
-                            }
-                            return mapUpdate;
-                        }
-
-                        if (!(chatFull.fullChat() instanceof ChannelFull f)) {
-                            return Mono.error(new IllegalStateException("Unexpected type of ChatFull from storage"));
-                        }
-
-                        var updatePts = client.getMtProtoResources()
-                                .getStoreLayout().updateChannelPts(channelId, pts);
-
-                        int localPts = f.pts();
-                        if (localPts + ptsCount < pts) {
-                            log.debug("Updates gap found for channel {}. Received pts: {}-{}, local pts: {}",
-                                    channelId, pts - ptsCount, pts, localPts);
-
-                            return client.getMtProtoResources().getStoreLayout().resolveChannel(channelId)
-                                    .flatMapMany(c -> getChannelDifference(c, localPts));
-                        } else if (localPts + ptsCount > pts) {
-                            return Flux.empty();
-                        }
-
-                        if (log.isDebugEnabled() && notFromDiff) {
-                            log.debug("Updating state for channel: {}, pts: {}->{}", channelId, localPts, pts);
-                        }
-                        return updatePts.thenMany(mapUpdate);
-                    });
+            laneFor(channelId).dispatch(Flux.defer(() ->
+                    applyChannelUpdate(channelId, pts, ptsCount, mapUpdate, notFromDiff)));
+            return Flux.empty();
         } else if (isQtsUpdate(u)) {
             int newQts;
             // region qts extraction
@@ -957,6 +996,161 @@ public class DefaultUpdatesManager implements UpdatesManager {
         }
     }
 
+    // executed in the lane of channel
+    private Flux<Event> applyChannelUpdate(long channelId, int pts, int ptsCount,
+                                           Flux<Event> mapUpdate, boolean notFromDiff) {
+        var state = laneFor(channelId).channel(channelId);
+        int knownPts = state.pts;
+        Mono<Integer> channelPts = knownPts != -1 ? Mono.just(knownPts) : client.getMtProtoResources()
+                .getStoreLayout().getChannelFullById(channelId)
+                .switchIfEmpty(Mono.defer(() -> client.getMtProtoResources()
+                        .getStoreLayout().resolveChannel(channelId)
+                        .flatMap(client.getServiceHolder().getChatService()::getFullChannel)
+                        .onErrorResume(RpcException.isErrorMessage("CHANNEL_PRIVATE"), e -> Mono.empty())))
+                .<Integer>handle((chatFull, sink) -> {
+                    if (!(chatFull.fullChat() instanceof ChannelFull f)) {
+                        sink.error(new IllegalStateException("Unexpected type of ChatFull from storage"));
+                        return;
+                    }
+                    sink.next(f.pts());
+                });
+
+        return channelPts
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(ptsOpt -> {
+                    if (ptsOpt.isEmpty()) {
+                        if (log.isDebugEnabled() && notFromDiff) {
+                            log.debug("Updating state for channel: {}, pts: unknown->{}", channelId, pts);
+                        }
+                        state.pts = pts;
+                        return mapUpdate;
+                    }
+
+                    int localPts = ptsOpt.get();
+                    state.pts = localPts;
+                    if (localPts + ptsCount < pts) {
+                        log.debug("Updates gap found for channel {}. Received pts: {}-{}, local pts: {}",
+                                channelId, pts - ptsCount, pts, localPts);
+
+                        if (options.gapTimeout.isZero()) {
+                            GAPS_FETCHED.incrementAndGet(this);
+                            return client.getMtProtoResources().getStoreLayout().resolveChannel(channelId)
+                                    .flatMapMany(c -> getChannelDifference(c, localPts));
+                        }
+
+                        if (state.gaps.park(pts, ptsCount, mapUpdate)) {
+                            var lane = laneFor(channelId);
+                            state.gaps.timeout = Mono.delay(options.gapTimeout)
+                                    .subscribe(t -> lane.dispatch(Flux.defer(() -> onChannelGapTimeout(channelId))));
+                        }
+                        return Flux.empty();
+                    } else if (localPts + ptsCount > pts) {
+                        return Flux.empty();
+                    }
+
+                    if (log.isDebugEnabled() && notFromDiff) {
+                        log.debug("Updating state for channel: {}, pts: {}->{}", channelId, localPts, pts);
+                    }
+                    state.pts = pts;
+                    var healed = drainChannelGap(channelId, state);
+                    return client.getMtProtoResources()
+                            .getStoreLayout().updateChannelPts(channelId, state.pts)
+                            .thenMany(mapUpdate.concatWith(healed));
+                });
+    }
+
+    private Flux<Event> drainChannelGap(long channelId, UpdatesLane.ChannelState state) {
+        List<Flux<Event>> healed = null;
+        PtsGapBuffer.Pending p;
+        while ((p = state.gaps.poll(state.pts)) != null) {
+            state.pts = p.pts();
+            if (healed == null) {
+                healed = new ArrayList<>();
+            }
+            healed.add(p.events());
+        }
+
+        if (state.gaps.closeIfHealed()) {
+            GAPS_HEALED.incrementAndGet(this);
+            log.debug("Updates gap healed locally for channel {}, pts: {}", channelId, state.pts);
+        }
+        return healed != null ? Flux.concat(healed) : Flux.empty();
+    }
+
+    private Flux<Event> onChannelGapTimeout(long channelId) {
+        var state = laneFor(channelId).channel(channelId);
+        var healed = drainChannelGap(channelId, state);
+        Mono<Void> updatePts = client.getMtProtoResources()
+                .getStoreLayout().updateChannelPts(channelId, state.pts);
+        if (state.gaps.timeout == null) {
+            return updatePts.thenMany(healed);
+        }
+
+        int localPts = state.pts;
+        log.debug("Updates gap for channel {} wasn't filled in {}, local pts: {}",
+                channelId, options.gapTimeout, localPts);
+
+        state.gaps.clear();
+        GAPS_FETCHED.incrementAndGet(this);
+        return updatePts.thenMany(healed)
+                .concatWith(client.getMtProtoResources().getStoreLayout().resolveChannel(channelId)
+                        .flatMapMany(c -> getChannelDifference(c, localPts)));
+    }
+
+    private Flux<Event> parkCommonUpdate(int pts, int ptsCount, Flux<Event> mapUpdate) {
+        if (options.gapTimeout.isZero()) {
+            GAPS_FETCHED.incrementAndGet(this);
+            return getDifference(this.pts, qts, date);
+        }
+
+        if (commonGaps.park(pts, ptsCount, mapUpdate)) {
+            commonGaps.timeout = Mono.delay(options.gapTimeout)
+                    .subscribe(t -> commonLane.dispatch(Flux.defer(this::onCommonGapTimeout)));
+        }
+        return Flux.empty();
+    }
+
+    // must be called after update of local pts
+    private Flux<Event> drainCommonGap() {
+        List<Flux<Event>> healed = null;
+        PtsGapBuffer.Pending p;
+        while ((p = commonGaps.poll(pts)) != null) {
+            pts = p.pts();
+            if (healed == null) {
+                healed = new ArrayList<>();
+            }
+            healed.add(p.events());
+        }
+
+        if (commonGaps.closeIfHealed()) {
+            GAPS_HEALED.incrementAndGet(this);
+            log.debug("Updates gap healed locally, pts: {}", pts);
+        }
+        return healed != null ? Flux.concat(healed) : Flux.empty();
+    }
+
+    private void discardCommonGap() {
+        if (commonGaps.discard()) {
+            log.debug("Updates gap resolved by difference, pts: {}", pts);
+        }
+    }
+
+    private Flux<Event> onCommonGapTimeout() {
+        var healed = drainCommonGap();
+        if (commonGaps.timeout == null) {
+            return saveStateIf(true).thenMany(healed);
+        }
+
+        log.debug("Updates gap wasn't filled in {}, local pts: {}", options.gapTimeout, pts);
+
+        commonGaps.clear();
+        GAPS_FETCHED.incrementAndGet(this);
+        return saveStateIf(true)
+                .thenMany(healed)
+                .concatWith(getDifference());
+    }
+
     protected Flux<Event> getChannelDifference(InputChannel id, int pts) {
         int limit = options.channelDifferenceLimit;
 
@@ -994,13 +1188,19 @@ public class DefaultUpdatesManager implements UpdatesManager {
      * @param channelDifferenceLimit Maximal amount of updates in {@link GetChannelDifference} requests.
      * @param discardMinimalMessageUpdates Whether received {@link UpdateShortChatMessage} and {@link UpdateShortMessage}
      * updates will be ignored and refetched as normal message events.
+     * @param channelLanes Count of lanes for processing channel updates.
+     * @param gapTimeout Time during which out-of-order pts updates are held in anticipation of filling the gap
+     * before requesting difference. {@link Duration#ZERO} means that difference will be requested immediately.
      */
     // TODO limit for common difference?
-    public record Options(Duration checkin, int channelDifferenceLimit, boolean discardMinimalMessageUpdates) {
+    public record Options(Duration checkin, int channelDifferenceLimit, boolean discardMinimalMessageUpdates,
+                          int channelLanes, Duration gapTimeout) {
         public static final int MAX_USER_CHANNEL_DIFFERENCE = 100;
         public static final int MAX_BOT_CHANNEL_DIFFERENCE  = 100000;
         public static final Duration DEFAULT_CHECKIN = Duration.ofMinutes(1);
         public static final boolean DEFAULT_DISCARD_MINIMAL_MESSAGE_UPDATES = false;
+        public static final int DEFAULT_CHANNEL_LANES = Schedulers.DEFAULT_POOL_SIZE;
+        public static final Duration DEFAULT_GAP_TIMEOUT = Duration.ofMillis(500);
 
         public Options(MTProtoTelegramClient client) {
             this(DEFAULT_CHECKIN, client.getAuthResources().isBot()
@@ -1009,9 +1209,35 @@ public class DefaultUpdatesManager implements UpdatesManager {
                     DEFAULT_DISCARD_MINIMAL_MESSAGE_UPDATES);
         }
 
+        public Options(Duration checkin, int channelDifferenceLimit, boolean discardMinimalMessageUpdates) {
+            this(checkin, channelDifferenceLimit, discardMinimalMessageUpdates,
+                    DEFAULT_CHANNEL_LANES, DEFAULT_GAP_TIMEOUT);
+        }
+
         public Options {
             Objects.requireNonNull(checkin);
+            Objects.requireNonNull(gapTimeout);
+            requireArgument(channelLanes >= 1, "channelLanes must be equal or greater than 1");
+            requireArgument(!gapTimeout.isNegative(), "gapTimeout must be non-negative");
             // TODO: other checks
         }
     }
+
+    /**
+     * Statistics of the updates processing lane.
+     *
+     * @param queueDepth The current count of enqueued and in-flight tasks.
+     * @param maxQueueDepth The maximal observed count of enqueued tasks.
+     * @param processedCount The total count of processed tasks.
+     * @param channelsCount The count of channels bound to the lane.
+     */
+    public record LaneStats(int queueDepth, int maxQueueDepth, long processedCount, int channelsCount) {}
+
+    /**
+     * Statistics of pts gaps in common box and channels.
+     *
+     * @param healedLocally The count of gaps which were filled by the out-of-order updates.
+     * @param resolvedByRpc The count of gaps which were resolved by {@code getDifference} requests.
+     */
+    public record GapStats(long healedLocally, long resolvedByRpc) {}
 }
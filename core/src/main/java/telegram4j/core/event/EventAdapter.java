@@ -17,6 +17,7 @@ package telegram4j.core.event;
 
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
 import telegram4j.core.event.domain.Event;
 import telegram4j.core.event.domain.chat.ChatEvent;
 import telegram4j.core.event.domain.chat.ChatParticipantUpdateEvent;
@@ -25,6 +26,7 @@ import telegram4j.core.event.domain.inline.*;
 import telegram4j.core.event.domain.message.*;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public abstract class EventAdapter {
     // region ChatEvent
@@ -98,22 +100,57 @@ public abstract class EventAdapter {
     // endregion
 
     public Publisher<?> hookOnEvent(Event event) {
-        var compatible = new ArrayList<Publisher<?>>();
-        if (event instanceof ChatEvent e) compatible.add(onChatEvent(e));
-        if (event instanceof ChatParticipantUpdateEvent e) compatible.add(onChatParticipantUpdate(e));
-        if (event instanceof ChatParticipantsUpdateEvent e) compatible.add(onChatParticipantsUpdate(e));
-        if (event instanceof BotEvent e) compatible.add(onBotEvent(e));
-        if (event instanceof CallbackEvent e) compatible.add(onCallbackEvent(e));
-        if (event instanceof CallbackQueryEvent e) compatible.add(onCallbackQuery(e));
-        if (event instanceof InlineCallbackQueryEvent e) compatible.add(onInlineCallbackQuery(e));
-        if (event instanceof InlineQueryEvent e) compatible.add(onInlineQuery(e));
-        if (event instanceof MessageEvent e) compatible.add(onMessageEvent(e));
-        if (event instanceof DeleteMessagesEvent e) compatible.add(onDeleteMessages(e));
-        if (event instanceof EditMessageEvent e) compatible.add(onEditMessage(e));
-        if (event instanceof MessagePollResultsEvent e) compatible.add(onMessagePollResults(e));
-        if (event instanceof MessagePollVoteEvent e) compatible.add(onMessagePollVote(e));
-        if (event instanceof SendMessageEvent e) compatible.add(onSendMessage(e));
-        if (event instanceof UpdatePinnedMessagesEvent e) compatible.add(onUpdatePinnedMessages(e));
+        var hooks = HOOKS.get(event.getClass());
+        if (hooks.size() == 1) {
+            return hooks.get(0).apply(this, event);
+        }
+
+        var compatible = new ArrayList<Publisher<?>>(hooks.size());
+        for (var hook : hooks) {
+            compatible.add(hook.apply(this, event));
+        }
         return Mono.whenDelayError(compatible);
     }
+
+    // Hooks of event class and its supertypes, resolved by the index of event router
+    private static final ClassValue<List<Hook>> HOOKS = new ClassValue<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected List<Hook> computeValue(Class<?> type) {
+            var hooks = new ArrayList<Hook>();
+            for (Class<?> t : EventRouter.typesOf((Class<? extends Event>) type)) {
+                Hook hook = hookOf(t);
+                if (hook != null) {
+                    hooks.add(hook);
+                }
+            }
+            return List.copyOf(hooks);
+        }
+    };
+
+    @FunctionalInterface
+    private interface Hook {
+
+        Publisher<?> apply(EventAdapter adapter, Event event);
+    }
+
+    @Nullable
+    private static Hook hookOf(Class<?> type) {
+        if (type == ChatEvent.class) return (a, e) -> a.onChatEvent((ChatEvent) e);
+        if (type == ChatParticipantUpdateEvent.class) return (a, e) -> a.onChatParticipantUpdate((ChatParticipantUpdateEvent) e);
+        if (type == ChatParticipantsUpdateEvent.class) return (a, e) -> a.onChatParticipantsUpdate((ChatParticipantsUpdateEvent) e);
+        if (type == BotEvent.class) return (a, e) -> a.onBotEvent((BotEvent) e);
+        if (type == CallbackEvent.class) return (a, e) -> a.onCallbackEvent((CallbackEvent) e);
+        if (type == CallbackQueryEvent.class) return (a, e) -> a.onCallbackQuery((CallbackQueryEvent) e);
+        if (type == InlineCallbackQueryEvent.class) return (a, e) -> a.onInlineCallbackQuery((InlineCallbackQueryEvent) e);
+        if (type == InlineQueryEvent.class) return (a, e) -> a.onInlineQuery((InlineQueryEvent) e);
+        if (type == MessageEvent.class) return (a, e) -> a.onMessageEvent((MessageEvent) e);
+        if (type == DeleteMessagesEvent.class) return (a, e) -> a.onDeleteMessages((DeleteMessagesEvent) e);
+        if (type == EditMessageEvent.class) return (a, e) -> a.onEditMessage((EditMessageEvent) e);
+        if (type == MessagePollResultsEvent.class) return (a, e) -> a.onMessagePollResults((MessagePollResultsEvent) e);
+        if (type == MessagePollVoteEvent.class) return (a, e) -> a.onMessagePollVote((MessagePollVoteEvent) e);
+        if (type == SendMessageEvent.class) return (a, e) -> a.onSendMessage((SendMessageEvent) e);
+        if (type == UpdatePinnedMessagesEvent.class) return (a, e) -> a.onUpdatePinnedMessages((UpdatePinnedMessagesEvent) e);
+        return null;
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import telegram4j.core.event.domain.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Router of events to the subscribers indexed by event type.
+ * Each event is emitted only to the routes of its class and supertypes,
+ * which are computed once per class.
+ */
+final class EventRouter {
+    // Event class and its supertypes up to the Event, ordered from the most general type
+    static final ClassValue<List<Class<?>>> TYPES = new ClassValue<>() {
+        @Override
+        protected List<Class<?>> computeValue(Class<?> type) {
+            var list = new ArrayList<Class<?>>();
+            for (Class<?> c = type; c != null && Event.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                list.add(c);
+            }
+            Collections.reverse(list);
+            return List.copyOf(list);
+        }
+    };
+
+    final ConcurrentMap<Class<?>, Sinks.Many<Event>> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Gets list of types of specified event class, from {@link Event} to the class itself.
+     *
+     * @param type The event class.
+     * @return The immutable list of event types.
+     */
+    static List<Class<?>> typesOf(Class<? extends Event> type) {
+        return TYPES.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    <E extends Event> Flux<E> on(Class<E> type) {
+        var route = routes.computeIfAbsent(type, k -> Sinks.many().multicast()
+                .onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false));
+        return (Flux<E>) route.asFlux();
+    }
+
+    boolean hasRoutes() {
+        return !routes.isEmpty();
+    }
+
+    /**
+     * Emits event to the routes of its types.
+     *
+     * @param event The event to route.
+     * @param emissionHandler The failure handler for routes with subscribers.
+     */
+    void route(Event event, Sinks.EmitFailureHandler emissionHandler) {
+        if (routes.isEmpty()) {
+            return;
+        }
+
+        for (Class<?> type : TYPES.get(event.getClass())) {
+            var route = routes.get(type);
+            if (route == null) {
+                continue;
+            }
+
+            if (route.currentSubscriberCount() == 0) {
+                // warm up route until buffer is full, like the main sink
+                route.tryEmitNext(event);
+            } else {
+                route.emitNext(event, emissionHandler);
+            }
+        }
+    }
+
+    void complete(Sinks.EmitFailureHandler emissionHandler) {
+        for (var route : routes.values()) {
+            route.emitComplete(emissionHandler);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import telegram4j.core.event.domain.Event;
+import telegram4j.core.event.domain.chat.ChatEvent;
+import telegram4j.core.event.domain.inline.CallbackEvent;
+import telegram4j.core.event.domain.inline.CallbackQueryEvent;
+import telegram4j.core.event.domain.inline.InlineQueryEvent;
+import telegram4j.core.event.domain.message.*;
+import telegram4j.core.util.Id;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Event dispatcher which distributes events by chat id into the ordered partitions.
+ * Each partition is drained on its own worker, therefore events of one chat
+ * are delivered in order, while events of different chats are processed in parallel.
+ *
+ * <p>Note, {@link #all()} merges partitions into one sequence and its subscribers
+ * receive events serially. To process partitions in parallel use {@link #on(EventAdapter)}
+ * or {@link #on(Class, Function)} methods.
+ */
+public class PartitionedEventDispatcher implements EventDispatcher {
+    public static final int DEFAULT_PARTITION_CAPACITY = 1024;
+
+    // delay of retry when subscribers of partition are overflowed
+    static final long RETRY_DELAY_MILLIS = 1;
+    static final long PARK_NANOS = Duration.ofMillis(1).toNanos();
+
+    protected final Scheduler scheduler;
+    protected final boolean disposeScheduler;
+    protected final int partitionCapacity;
+    protected final OverflowStrategy overflowStrategy;
+
+    private final Partition[] partitions;
+
+    /**
+     * Creates dispatcher with specified count of partitions on the new parallel scheduler,
+     * {@link #DEFAULT_PARTITION_CAPACITY} capacity and {@link OverflowStrategy#BUFFER} strategy.
+     *
+     * @param partitions The count of partitions.
+     */
+    public PartitionedEventDispatcher(int partitions) {
+        this(Schedulers.newParallel("t4j-events", partitions), true, partitions,
+                DEFAULT_PARTITION_CAPACITY, OverflowStrategy.BUFFER);
+    }
+
+    /**
+     * Creates dispatcher with specified parameters.
+     *
+     * @param scheduler The scheduler for partition workers. Preferably to have at least {@code partitions} threads.
+     * @param disposeScheduler Whether scheduler will be disposed on dispatcher close.
+     * @param partitions The count of partitions.
+     * @param partitionCapacity The maximal count of pending events in the one partition.
+     * Not used in the {@link OverflowStrategy#BUFFER} strategy.
+     * @param overflowStrategy The strategy applied on publication of event to overflowed partition.
+     */
+    public PartitionedEventDispatcher(Scheduler scheduler, boolean disposeScheduler, int partitions,
+                                      int partitionCapacity, OverflowStrategy overflowStrategy) {
+        requireArgument(partitions >= 1, "partitions must be equal or greater than 1");
+        requireArgument(partitionCapacity >= 1, "partitionCapacity must be equal or greater than 1");
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.disposeScheduler = disposeScheduler;
+        this.partitionCapacity = partitionCapacity;
+        this.overflowStrategy = Objects.requireNonNull(overflowStrategy);
+
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(scheduler.createWorker());
+        }
+    }
+
+    @Override
+    public Flux<Event> all() {
+        var sources = new ArrayList<Flux<Event>>(partitions.length);
+        for (Partition p : partitions) {
+            sources.add(p.sink.asFlux());
+        }
+        return Flux.merge(sources);
+    }
+
+    /**
+     * Subscribes adapter to the events. Events of one partition are handled sequentially on its worker.
+     *
+     * @param adapter The event adapter.
+     * @return A {@link Flux} of handled events.
+     */
+    @Override
+    public Flux<Event> on(EventAdapter adapter) {
+        return on(Event.class, adapter::hookOnEvent);
+    }
+
+    /**
+     * Subscribes handler to the events of specified type. Events of one partition
+     * are handled sequentially on its worker, and the next event is handled only after
+     * termination of handler's {@link Publisher}. Errors of handler are logged and dropped.
+     *
+     * @param type The event class of requested events.
+     * @param handler The handler of events.
+     * @param <E> The event type.
+     * @return A {@link Flux} of handled events.
+     */
+    public <E extends Event> Flux<E> on(Class<E> type, Function<? super E, ? extends Publisher<?>> handler) {
+        var sources = new ArrayList<Flux<E>>(partitions.length);
+        for (Partition p : partitions) {
+            sources.add(p.sink.asFlux()
+                    .ofType(type)
+                    .concatMap(event -> Flux.defer(() -> handler.apply(event))
+                            .onErrorResume(t -> {
+                                log.error("Error while handling {}", event.getClass().getSimpleName(), t);
+                                return Mono.empty();
+                            })
+                            .then(Mono.just(event))));
+        }
+        return Flux.merge(sources);
+    }
+
+    @Override
+    public void publish(Event event) {
+        if (log.isTraceEnabled()) {
+            log.trace(event.toString());
+        }
+
+        partitions[Math.floorMod(partitionOf(event), partitions.length)].publish(event);
+    }
+
+    /**
+     * {@return Statistics of the partitions, ordered by partition index}
+     */
+    public List<PartitionStats> getPartitionStats() {
+        var list = new ArrayList<PartitionStats>(partitions.length);
+        for (Partition p : partitions) {
+            list.add(new PartitionStats(p.pending, p.published, p.delivered, p.dropped, p.overflowed));
+        }
+        return list;
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return Mono.defer(() -> {
+            for (Partition p : partitions) {
+                p.close();
+            }
+
+            if (disposeScheduler) {
+                return scheduler.disposeGracefully();
+            }
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * Computes hash of event for partition selection.
+     * By default, events are partitioned by id of chat, or id of user for inline events.
+     *
+     * @param event The event to publish.
+     * @return The hash of event.
+     */
+    protected int partitionOf(Event event) {
+        return Objects.hashCode(chatIdOf(event));
+    }
+
+    @Nullable
+    static Id chatIdOf(Event event) {
+        if (event instanceof SendMessageEvent e) {
+            return e.getMessage().getChatId();
+        } else if (event instanceof EditMessageEvent e) {
+            return e.getCurrentMessage().getChatId();
+        } else if (event instanceof DeleteMessagesEvent e) {
+            return e.getChatId().orElse(null);
+        } else if (event instanceof UpdatePinnedMessagesEvent e) {
+            return e.getChatId();
+        } else if (event instanceof MessagePollVoteEvent e) {
+            return e.getPeer().getId();
+        } else if (event instanceof ChatEvent e) {
+            return e.getChat().getId();
+        } else if (event instanceof CallbackQueryEvent e) {
+            return e.getChat().getId();
+        } else if (event instanceof CallbackEvent e) {
+            return e.getUser().getId();
+        } else if (event instanceof InlineQueryEvent e) {
+            return e.getUser().getId();
+        }
+        return null;
+    }
+
+    // Threads of reactor's non-blocking schedulers and netty's event loops must not be parked,
+    // because they may be responsible for completing of handler which frees up the partition
+    static boolean canBlock() {
+        return !Schedulers.isInNonBlockingThread() && !(Thread.currentThread() instanceof FastThreadLocalThread);
+    }
+
+    /** Strategies of handling publication to the overflowed partition. */
+    public enum OverflowStrategy {
+        /** Buffer all events without limit of partition capacity. */
+        BUFFER,
+
+        /** Drop the oldest pending event of partition. */
+        DROP_OLDEST,
+
+        /**
+         * Block the publishing thread until partition has free space.
+         * The non-blocking threads, like threads of {@link Schedulers#parallel()} or netty's event loops,
+         * can't be parked, so their events are buffered over the capacity of partition
+         * and counted in the {@link PartitionStats#overflowed()}.
+         */
+        BLOCK
+    }
+
+    /**
+     * Statistics of the event partition.
+     *
+     * @param pending The current count of events awaiting delivery, i.e. the lag of partition.
+     * @param published The total count of published events.
+     * @param delivered The total count of events delivered to subscribers.
+     * @param dropped The total count of events dropped by {@link OverflowStrategy#DROP_OLDEST}
+     * strategy or in absence of subscribers.
+     * @param overflowed The total count of events buffered over the capacity by {@link OverflowStrategy#BLOCK}
+     * strategy, because publishing thread couldn't be blocked.
+     */
+    public record PartitionStats(int pending, long published, long delivered, long dropped, long overflowed) {}
+
+    final class Partition implements Runnable {
+        static final AtomicIntegerFieldUpdater<Partition> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(Partition.class, "wip");
+        static final AtomicIntegerFieldUpdater<Partition> PENDING =
+                AtomicIntegerFieldUpdater.newUpdater(Partition.class, "pending");
+        static final AtomicLongFieldUpdater<Partition> PUBLISHED =
+                AtomicLongFieldUpdater.newUpdater(Partition.class, "published");
+        static final AtomicLongFieldUpdater<Partition> DROPPED =
+                AtomicLongFieldUpdater.newUpdater(Partition.class, "dropped");
+        static final AtomicLongFieldUpdater<Partition> OVERFLOWED =
+                AtomicLongFieldUpdater.newUpdater(Partition.class, "overflowed");
+
+        final Queue<Event> queue = Queues.<Event>unboundedMultiproducer().get();
+        final Sinks.Many<Event> sink = Sinks.many().multicast()
+                .onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false);
+        final Scheduler.Worker worker;
+
+        volatile int wip;
+        volatile int pending;
+        volatile long published;
+        // written only by worker
+        volatile long delivered;
+        volatile long dropped;
+        volatile long overflowed;
+
+        Partition(Scheduler.Worker worker) {
+            this.worker = worker;
+        }
+
+        void publish(Event event) {
+            switch (overflowStrategy) {
+                case BUFFER -> PENDING.incrementAndGet(this);
+                case DROP_OLDEST -> {
+                    if (PENDING.incrementAndGet(this) > partitionCapacity) {
+                        // the queue is single-consumer, so overflow is resolved by worker
+                        DROPPED.incrementAndGet(this);
+                    }
+                }
+                case BLOCK -> {
+                    for (;;) {
+                        int p = pending;
+                        if (p < partitionCapacity) {
+                            if (PENDING.compareAndSet(this, p, p + 1)) {
+                                break;
+                            }
+                        } else {
+                            if (worker.isDisposed()) {
+                                return;
+                            }
+                            if (!canBlock()) {
+                                // failing here would lose the rest of events of the publishing task
+                                PENDING.incrementAndGet(this);
+                                OVERFLOWED.incrementAndGet(this);
+                                break;
+                            }
+                            LockSupport.parkNanos(PARK_NANOS);
+                        }
+                    }
+                }
+            }
+
+            queue.offer(event);
+            PUBLISHED.incrementAndGet(this);
+            if (WIP.getAndIncrement(this) == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (;;) {
+                Event e;
+                while ((e = queue.peek()) != null) {
+                    if (overflowStrategy == OverflowStrategy.DROP_OLDEST && pending > partitionCapacity) {
+                        queue.poll();
+                        PENDING.decrementAndGet(this);
+                        continue;
+                    }
+
+                    var res = sink.tryEmitNext(e);
+                    if (res == Sinks.EmitResult.FAIL_OVERFLOW) {
+                        if (sink.currentSubscriberCount() != 0) {
+                            // subscribers are slow; keep the event and retry later
+                            worker.schedule(this, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                            return;
+                        }
+                        DROPPED.incrementAndGet(this);
+                    } else if (res.isSuccess()) {
+                        delivered++;
+                    } else if (res == Sinks.EmitResult.FAIL_TERMINATED || res == Sinks.EmitResult.FAIL_CANCELLED) {
+                        queue.clear();
+                        PENDING.set(this, 0);
+                        return;
+                    }
+
+                    queue.poll();
+                    PENDING.decrementAndGet(this);
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void close() {
+            worker.schedule(() -> {
+                sink.tryEmitComplete();
+                worker.dispose();
+            });
+        }
+    }
+}
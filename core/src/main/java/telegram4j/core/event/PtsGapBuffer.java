@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.annotation.Nullable;
+import telegram4j.core.event.domain.Event;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Buffer of out-of-order pts updates which are parked until the gap is filled.
+ *
+ * @implNote This class is not thread-safe and must be used only from tasks of the one {@link UpdatesLane}.
+ */
+final class PtsGapBuffer {
+    final PriorityQueue<Pending> pending = new PriorityQueue<>(4,
+            Comparator.comparingInt(p -> p.pts - p.ptsCount));
+
+    // timer of current gap, or null if there is no gap
+    @Nullable
+    Disposable timeout;
+
+    /**
+     * Parks the update until the gap is filled.
+     *
+     * @param pts The pts of update.
+     * @param ptsCount The pts count of update.
+     * @param events The events which will be published on apply.
+     * @return {@code true} if this update opened new gap and timeout should be scheduled.
+     */
+    boolean park(int pts, int ptsCount, Flux<Event> events) {
+        pending.add(new Pending(pts, ptsCount, events));
+        return timeout == null;
+    }
+
+    /**
+     * Removes and returns the next parked update which can be applied after specified pts.
+     * Already applied updates are discarded.
+     *
+     * @param localPts The current pts.
+     * @return The next applicable update, or {@code null} if there is none or gap is still present.
+     */
+    @Nullable
+    Pending poll(int localPts) {
+        Pending p;
+        while ((p = pending.peek()) != null) {
+            int expected = localPts + p.ptsCount;
+            if (expected > p.pts) {
+                pending.poll();
+            } else if (expected == p.pts) {
+                return pending.poll();
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes current gap if all parked updates were applied.
+     *
+     * @return {@code true} if gap was open and is closed now.
+     */
+    boolean closeIfHealed() {
+        if (!pending.isEmpty() || timeout == null) {
+            return false;
+        }
+        timeout.dispose();
+        timeout = null;
+        return true;
+    }
+
+    /**
+     * Discards all parked updates and cancels the timeout, if gap is open.
+     * Used when gap is resolved by the difference and must not be counted as healed.
+     *
+     * @return {@code true} if gap was open.
+     */
+    boolean discard() {
+        boolean open = isOpen();
+        clear();
+        return open;
+    }
+
+    /**
+     * Gets whether there is an unfilled gap or parked updates.
+     *
+     * @return {@code true} if gap is open.
+     */
+    boolean isOpen() {
+        return timeout != null || !pending.isEmpty();
+    }
+
+    /** Discards all parked updates and cancels the timeout. */
+    void clear() {
+        pending.clear();
+        if (timeout != null) {
+            timeout.dispose();
+            timeout = null;
+        }
+    }
+
+    record Pending(int pts, int ptsCount, Flux<Event> events) {}
+}
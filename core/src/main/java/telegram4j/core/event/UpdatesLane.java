@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import telegram4j.core.event.domain.Event;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Serial executor of updates processing tasks. Tasks are executed strictly in order of submission,
+ * and next task is started only after termination of previous one.
+ * Lane also holds state of channels which are bound to it. States of channels without gaps
+ * are evicted after {@link #DEFAULT_CHANNEL_IDLE_TIMEOUT} of inactivity, their pts is reloaded from the store.
+ */
+final class UpdatesLane implements Disposable {
+    static final Logger log = Loggers.getLogger(UpdatesLane.class);
+
+    static final Duration DEFAULT_CHANNEL_IDLE_TIMEOUT = Duration.ofMinutes(15);
+
+    static final AtomicIntegerFieldUpdater<UpdatesLane> QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(UpdatesLane.class, "queued");
+    static final AtomicIntegerFieldUpdater<UpdatesLane> MAX_QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(UpdatesLane.class, "maxQueued");
+    static final AtomicLongFieldUpdater<UpdatesLane> PROCESSED =
+            AtomicLongFieldUpdater.newUpdater(UpdatesLane.class, "processed");
+
+    final String name;
+    final Consumer<? super Event> publisher;
+    final Map<Long, ChannelState> channels = new ConcurrentHashMap<>();
+    final Disposable subscription;
+    final long channelIdleTimeoutNanos;
+    final LongSupplier nanoTime;
+
+    // accessed only from tasks of lane
+    long lastSweep;
+
+    // Flux.create() sink is serialized and can be used from any thread
+    FluxSink<Task> tasks;
+
+    volatile int queued;
+    volatile int maxQueued;
+    volatile long processed;
+
+    /**
+     * Creates and starts new lane.
+     *
+     * @param name The name of lane for logging.
+     * @param scheduler The scheduler on which tasks are subscribed, or {@code null} to run them in the caller thread.
+     * @param publisher The consumer of events produced by {@link #dispatch(Publisher) dispatched} tasks.
+     */
+    UpdatesLane(String name, @Nullable Scheduler scheduler, Consumer<? super Event> publisher) {
+        this(name, scheduler, publisher, DEFAULT_CHANNEL_IDLE_TIMEOUT, System::nanoTime);
+    }
+
+    UpdatesLane(String name, @Nullable Scheduler scheduler, Consumer<? super Event> publisher,
+                Duration channelIdleTimeout, LongSupplier nanoTime) {
+        this.name = name;
+        this.publisher = publisher;
+        this.channelIdleTimeoutNanos = channelIdleTimeout.toNanos();
+        this.nanoTime = nanoTime;
+        this.lastSweep = nanoTime.getAsLong();
+        this.subscription = Flux.<Task>create(sink -> tasks = sink)
+                .concatMap(task -> scheduler != null ? run(task).subscribeOn(scheduler) : run(task))
+                .subscribe();
+    }
+
+    /**
+     * Enqueues task which results will be published by lane's publisher.
+     *
+     * @param work The task to execute.
+     */
+    void dispatch(Publisher<Event> work) {
+        submit0(new Task(work, null));
+    }
+
+    /**
+     * Enqueues task and returns {@code Flux} with its results. Task is executed
+     * regardless of subscription to the returned {@code Flux}.
+     *
+     * @param work The task to execute.
+     * @return A {@link Flux} replaying events of task.
+     */
+    Flux<Event> submit(Publisher<Event> work) {
+        Sinks.Many<Event> out = Sinks.many().unicast().onBackpressureBuffer();
+        submit0(new Task(work, out));
+        return out.asFlux();
+    }
+
+    /**
+     * Gets state of the channel, creating it if absent. Must be called only from tasks of lane.
+     *
+     * @param channelId The id of channel.
+     * @return The state of channel.
+     */
+    ChannelState channel(long channelId) {
+        long now = nanoTime.getAsLong();
+        if (now - lastSweep >= channelIdleTimeoutNanos) {
+            lastSweep = now;
+            evictIdleChannels(now);
+        }
+
+        var state = channels.computeIfAbsent(channelId, k -> new ChannelState());
+        state.lastAccess = now;
+        return state;
+    }
+
+    private void evictIdleChannels(long now) {
+        // parked updates and their timers refer to the state
+        channels.values().removeIf(s -> now - s.lastAccess >= channelIdleTimeoutNanos && !s.gaps.isOpen());
+    }
+
+    DefaultUpdatesManager.LaneStats stats() {
+        return new DefaultUpdatesManager.LaneStats(queued, maxQueued, processed, channels.size());
+    }
+
+    @Override
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+
+    private void submit0(Task task) {
+        int depth = QUEUED.incrementAndGet(this);
+        int max;
+        while (depth > (max = maxQueued) && !MAX_QUEUED.compareAndSet(this, max, depth));
+
+        tasks.next(task);
+    }
+
+    private Mono<Void> run(Task task) {
+        var out = task.out;
+        return Flux.from(task.work)
+                .doOnNext(out != null ? e -> out.tryEmitNext(e) : publisher)
+                .doOnComplete(() -> {
+                    if (out != null) {
+                        out.tryEmitComplete();
+                    }
+                })
+                .doOnError(t -> {
+                    if (out != null) {
+                        out.tryEmitError(t);
+                    } else {
+                        log.error("Exception while processing updates in the lane " + name, t);
+                    }
+                })
+                .onErrorResume(t -> Mono.empty())
+                .doFinally(s -> {
+                    QUEUED.decrementAndGet(this);
+                    PROCESSED.incrementAndGet(this);
+                })
+                .then();
+    }
+
+    record Task(Publisher<Event> work, @Nullable Sinks.Many<Event> out) {}
+
+    /** Updates state of the channel. Must be accessed only from tasks of lane. */
+    static final class ChannelState {
+        final PtsGapBuffer gaps = new PtsGapBuffer();
+        volatile int pts = -1;
+        long lastAccess;
+    }
+}
@@ -27,6 +27,18 @@ import static telegram4j.core.event.dispatcher.UpdatesMapper.StateUpdateHandler.
 
 public final class UpdatesMapper {
     private final List<Handler<?, ?>> handlers = new ArrayList<>();
+    // Handlers resolved by the concrete type of update; the handlers list is scanned once per type
+    private final ClassValue<Handler<?, ?>> handlersByType = new ClassValue<>() {
+        @Override
+        protected Handler<?, ?> computeValue(Class<?> type) {
+            for (Handler<?, ?> handler : handlers) {
+                if (handler.type.isAssignableFrom(type)) {
+                    return handler;
+                }
+            }
+            return null;
+        }
+    };
 
     private UpdatesMapper() {
         // message updates
@@ -76,14 +88,20 @@ public final class UpdatesMapper {
 
     @SuppressWarnings("unchecked")
     public <U extends Update> Flux<Event> handle(UpdateContext<U> context) {
-        return Mono.justOrEmpty(handlers.stream()
-                        .filter(t -> t.type.isAssignableFrom(context.getUpdate().getClass()))
-                        .findFirst())
-                .map(t -> (Handler<U, Object>) t)
-                .flatMapMany(t -> t.updateHandler.handle(context)
-                        .map(obj -> StatefulUpdateContext.from(context, obj))
-                        .defaultIfEmpty(StatefulUpdateContext.from(context, null))
-                        .flatMapMany(t.handler::handle));
+        var t = (Handler<U, Object>) handlersByType.get(context.getUpdate().getClass());
+        if (t == null) {
+            return Flux.empty();
+        }
+
+        // fast path for updates without persistence
+        if (t.updateHandler == StateUpdateHandler.NO_OP) {
+            return Flux.defer(() -> Flux.<Event>from(t.handler.handle(StatefulUpdateContext.from(context, null))));
+        }
+
+        return Flux.defer(() -> t.updateHandler.handle(context)
+                .map(obj -> StatefulUpdateContext.from(context, obj))
+                .defaultIfEmpty(StatefulUpdateContext.from(context, null))
+                .flatMapMany(t.handler::handle));
     }
 
     record Handler<U extends Update, O>(Class<? extends U> type,
@@ -99,8 +117,11 @@ public final class UpdatesMapper {
     @FunctionalInterface
     interface StateUpdateHandler<U extends Update, O> {
 
+        StateUpdateHandler<?, ?> NO_OP = ctx -> Mono.empty();
+
+        @SuppressWarnings("unchecked")
         static <U extends Update, O> StateUpdateHandler<U, O> noOp() {
-            return ctx -> Mono.empty();
+            return (StateUpdateHandler<U, O>) NO_OP;
         }
 
         Mono<O> handle(UpdateContext<U> context);
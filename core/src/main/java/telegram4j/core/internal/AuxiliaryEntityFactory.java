@@ -20,6 +20,7 @@ import telegram4j.core.auxiliary.AuxiliaryChannelMessages;
 import telegram4j.core.auxiliary.AuxiliaryMessages;
 import telegram4j.core.auxiliary.AuxiliaryMessagesSlice;
 import telegram4j.core.auxiliary.AuxiliaryStickerSet;
+import telegram4j.core.auxiliary.HistoryMessage;
 import telegram4j.core.object.Message;
 import telegram4j.core.object.StickerSet;
 import telegram4j.core.object.User;
@@ -30,12 +31,19 @@ import telegram4j.mtproto.file.Context;
 import telegram4j.tl.*;
 import telegram4j.tl.messages.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class AuxiliaryEntityFactory {
+    // Maximal count of remembered user or chat ids in the history stream
+    public static final int MAX_HISTORY_SEEN_IDS = 4096;
 
     private AuxiliaryEntityFactory() {}
 
@@ -106,6 +114,86 @@ public class AuxiliaryEntityFactory {
         }
     }
 
+    /**
+     * Creates a set of ids of emitted users or chats for the history stream.
+     * The set retains at most {@value #MAX_HISTORY_SEEN_IDS} recently seen ids, so the memory footprint
+     * doesn't depend on the length of history, but evicted entities can be emitted again.
+     *
+     * @return The new mutable set of ids.
+     */
+    public static Set<Long> createHistorySeenIds() {
+        return Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > MAX_HISTORY_SEEN_IDS;
+            }
+        });
+    }
+
+    /**
+     * Creates lightweight views of messages from history page. Users and chats
+     * which ids are already contained in the specified sets are skipped, and the remaining
+     * ones are attached to the first message of page.
+     *
+     * @param data The history page.
+     * @param seenUsers The mutable set of ids of already emitted users.
+     * @param seenChats The mutable set of ids of already emitted chats.
+     * @return The list of message views.
+     */
+    public static List<HistoryMessage> createHistoryMessages(Messages data, Set<Long> seenUsers, Set<Long> seenChats) {
+        List<telegram4j.tl.Message> messages;
+        List<telegram4j.tl.Chat> chats;
+        List<telegram4j.tl.User> users;
+        switch (data.identifier()) {
+            case ChannelMessages.ID -> {
+                var data0 = (ChannelMessages) data;
+                messages = data0.messages();
+                chats = data0.chats();
+                users = data0.users();
+            }
+            case MessagesSlice.ID -> {
+                var data0 = (MessagesSlice) data;
+                messages = data0.messages();
+                chats = data0.chats();
+                users = data0.users();
+            }
+            case BaseMessages.ID -> {
+                var data0 = (BaseMessages) data;
+                messages = data0.messages();
+                chats = data0.chats();
+                users = data0.users();
+            }
+            case MessagesNotModified.ID -> {
+                return List.of();
+            }
+            default -> throw new IllegalArgumentException("Unknown Messages type: " + data);
+        }
+
+        if (messages.isEmpty()) {
+            return List.of();
+        }
+
+        var newUsers = new ArrayList<telegram4j.tl.User>();
+        for (var user : users) {
+            if (seenUsers.add(user.id())) {
+                newUsers.add(user);
+            }
+        }
+        var newChats = new ArrayList<telegram4j.tl.Chat>();
+        for (var chat : chats) {
+            if (seenChats.add(chat.id())) {
+                newChats.add(chat);
+            }
+        }
+
+        var result = new ArrayList<HistoryMessage>(messages.size());
+        result.add(new HistoryMessage(messages.get(0), newUsers, newChats));
+        for (int i = 1; i < messages.size(); i++) {
+            result.add(new HistoryMessage(messages.get(i), List.of(), List.of()));
+        }
+        return result;
+    }
+
     private static Stream<Message> createMessage(MTProtoTelegramClient client, telegram4j.tl.Message data,
                                                  Map<Id, Chat> chatsMap, Map<Id, User> usersMap) {
         Peer peerId;
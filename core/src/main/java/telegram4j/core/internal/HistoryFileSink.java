@@ -0,0 +1,310 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.internal;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import reactor.util.annotation.Nullable;
+import telegram4j.core.auxiliary.HistoryExportFormat;
+import telegram4j.core.auxiliary.HistoryMessage;
+import telegram4j.mtproto.util.TlEntityUtil;
+import telegram4j.tl.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sink which appends history messages to the file in the specified format.
+ * The size of written data and id of last written message are persisted to the progress file near target file,
+ * that allows resuming of interrupted export.
+ *
+ * @implNote Methods of this class are blocking and must not be called concurrently.
+ */
+public final class HistoryFileSink implements AutoCloseable {
+    static final int MAGIC = 0x74346168; // t4ah
+    // Count of written messages after which progress is saved
+    static final int SAVE_INTERVAL = 512;
+    static final JsonFactory jsonFactory = new JsonFactory();
+
+    final Path path;
+    final Path progressPath;
+    final FileChannel channel;
+    final HistoryExportFormat format;
+    final OutputStream out;
+    @Nullable
+    final JsonGenerator json;
+    @Nullable
+    final ByteBuf buf;
+
+    int lastMessageId;
+    int unsavedMessages;
+
+    private HistoryFileSink(Path path, Path progressPath, FileChannel channel,
+                            HistoryExportFormat format, int lastMessageId) throws IOException {
+        this.path = path;
+        this.progressPath = progressPath;
+        this.channel = channel;
+        this.format = format;
+        this.lastMessageId = lastMessageId;
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel));
+        if (format == HistoryExportFormat.NDJSON) {
+            this.json = jsonFactory.createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+            this.buf = null;
+        } else {
+            this.json = null;
+            this.buf = ByteBufAllocator.DEFAULT.heapBuffer();
+        }
+    }
+
+    // Codes of formats in the progress file, which must not depend on the declaration order
+    static int formatCode(HistoryExportFormat format) {
+        return switch (format) {
+            case NDJSON -> 1;
+            case TL -> 2;
+        };
+    }
+
+    static Path progressPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".t4j-progress");
+    }
+
+    /**
+     * Opens target file and loads progress of previous export if it has same format.
+     * The data written after last saved progress is discarded.
+     *
+     * @param path The path to target file.
+     * @param format The format of export.
+     * @return The new sink.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static HistoryFileSink open(Path path, HistoryExportFormat format) throws IOException {
+        Path progressPath = progressPath(path);
+        long writtenSize = -1;
+        int lastMessageId = 0;
+        try (var in = new DataInputStream(Files.newInputStream(progressPath))) {
+            if (in.readInt() == MAGIC && in.readInt() == formatCode(format)) {
+                writtenSize = in.readLong();
+                lastMessageId = in.readInt();
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) { // truncated or corrupted progress file
+            writtenSize = -1;
+        }
+
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (writtenSize == -1 || channel.size() < writtenSize) {
+                writtenSize = 0;
+                lastMessageId = 0;
+            }
+            channel.truncate(writtenSize);
+            channel.position(writtenSize);
+            return new HistoryFileSink(path, progressPath, channel, format, lastMessageId);
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Gets id of last written message, from which export is resumed.
+     *
+     * @return The id of last written message, or {@code 0} if nothing was written.
+     */
+    public int getLastMessageId() {
+        return lastMessageId;
+    }
+
+    /**
+     * Writes message with attached users and chats.
+     *
+     * @param message The message to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(HistoryMessage message) throws IOException {
+        if (json != null) {
+            for (var user : message.users()) {
+                writeJson(user);
+            }
+            for (var chat : message.chats()) {
+                writeJson(chat);
+            }
+            writeJson(message.message());
+        } else {
+            for (var user : message.users()) {
+                writeTl(user);
+            }
+            for (var chat : message.chats()) {
+                writeTl(chat);
+            }
+            writeTl(message.message());
+        }
+
+        lastMessageId = message.id();
+        if (++unsavedMessages >= SAVE_INTERVAL) {
+            saveProgress();
+        }
+    }
+
+    /**
+     * Makes written data durable and saves id of the last written message.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    void saveProgress() throws IOException {
+        flush();
+        // Data must be written before progress which refers to it
+        channel.force(false);
+        unsavedMessages = 0;
+
+        Path tmp = progressPath.resolveSibling(progressPath.getFileName() + ".tmp");
+        try (var tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new DataOutputStream(Channels.newOutputStream(tmpChannel));
+            out.writeInt(MAGIC);
+            out.writeInt(formatCode(format));
+            out.writeLong(channel.position());
+            out.writeInt(lastMessageId);
+            out.flush();
+            // otherwise file can be empty after the move if OS crashes
+            tmpChannel.force(true);
+        }
+        Files.move(tmp, progressPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Flushes written data and removes progress file.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        flush();
+        channel.force(true);
+        unsavedMessages = 0;
+        Files.deleteIfExists(progressPath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (unsavedMessages != 0) {
+                saveProgress();
+            }
+        } finally {
+            if (buf != null) {
+                buf.release();
+            }
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (json != null) {
+            json.flush();
+        }
+        out.flush();
+    }
+
+    private void writeTl(TlObject object) throws IOException {
+        assert buf != null;
+        buf.clear();
+        TlSerializer.serialize(buf, object);
+        buf.readBytes(out, buf.readableBytes());
+    }
+
+    private void writeJson(telegram4j.tl.User user) throws IOException {
+        assert json != null;
+        json.writeStartObject();
+        json.writeStringField("_", "user");
+        json.writeNumberField("id", user.id());
+        if (user instanceof BaseUser b) {
+            json.writeBooleanField("bot", b.bot());
+            writeOptionalField("first_name", b.firstName());
+            writeOptionalField("last_name", b.lastName());
+            writeOptionalField("username", b.username());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeJson(telegram4j.tl.Chat chat) throws IOException {
+        assert json != null;
+        json.writeStartObject();
+        json.writeStringField("_", "chat");
+        json.writeNumberField("id", chat.id());
+        json.writeStringField("type", TlEntityUtil.schemaTypeName(chat));
+        if (chat instanceof BaseChat b) {
+            json.writeStringField("title", b.title());
+        } else if (chat instanceof Channel c) {
+            json.writeStringField("title", c.title());
+            writeOptionalField("username", c.username());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeJson(telegram4j.tl.Message message) throws IOException {
+        assert json != null;
+        json.writeStartObject();
+        json.writeStringField("_", "message");
+        json.writeNumberField("id", message.id());
+        if (message instanceof BaseMessage b) {
+            json.writeNumberField("date", b.date());
+            json.writeNumberField("peer_id", TlEntityUtil.getRawPeerId(b.peerId()));
+            if (b.fromId() != null) {
+                json.writeNumberField("from_id", TlEntityUtil.getRawPeerId(b.fromId()));
+            }
+            json.writeBooleanField("out", b.out());
+            json.writeStringField("message", b.message());
+            if (b.media() != null) {
+                json.writeStringField("media", TlEntityUtil.schemaTypeName(b.media()));
+            }
+            if (b.editDate() != null) {
+                json.writeNumberField("edit_date", b.editDate());
+            }
+        } else if (message instanceof MessageService s) {
+            json.writeNumberField("date", s.date());
+            json.writeNumberField("peer_id", TlEntityUtil.getRawPeerId(s.peerId()));
+            if (s.fromId() != null) {
+                json.writeNumberField("from_id", TlEntityUtil.getRawPeerId(s.fromId()));
+            }
+            json.writeStringField("action", TlEntityUtil.schemaTypeName(s.action()));
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeOptionalField(String name, @Nullable String value) throws IOException {
+        assert json != null;
+        if (value != null) {
+            json.writeStringField(name, value);
+        }
+    }
+}
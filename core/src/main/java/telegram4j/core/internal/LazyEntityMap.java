@@ -0,0 +1,160 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.internal;
+
+import reactor.util.annotation.Nullable;
+import telegram4j.core.MTProtoTelegramClient;
+import telegram4j.core.object.User;
+import telegram4j.core.object.chat.Chat;
+import telegram4j.core.util.Id;
+import telegram4j.tl.Channel;
+import telegram4j.tl.ChannelForbidden;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Unmodifiable map of entities which indexes raw TL objects by ids
+ * and creates entity objects only on the first access by key.
+ * Raw objects for which factory returns {@code null} are treated as absent.
+ *
+ * @implNote Concurrent first accesses to the same key may create
+ * several equal entity objects, only one of which is retained.
+ *
+ * @param <R> The type of raw objects.
+ * @param <V> The type of entity objects.
+ */
+public final class LazyEntityMap<R, V> extends AbstractMap<Id, V> {
+    private final Map<Id, Slot<R>> index;
+    private final Function<? super R, ? extends V> factory;
+    @Nullable
+    private Set<Entry<Id, V>> entrySet;
+
+    private LazyEntityMap(Map<Id, Slot<R>> index, Function<? super R, ? extends V> factory) {
+        this.index = index;
+        this.factory = factory;
+    }
+
+    /**
+     * Creates map of users from specified raw users.
+     *
+     * @param client The client to create users.
+     * @param users The list of raw users.
+     * @return The new lazy map of users.
+     */
+    public static LazyEntityMap<telegram4j.tl.User, User> ofUsers(MTProtoTelegramClient client,
+                                                                  List<telegram4j.tl.User> users) {
+        var index = new HashMap<Id, Slot<telegram4j.tl.User>>(capacity(users.size()));
+        for (var user : users) {
+            index.put(Id.ofUser(user.id()), new Slot<>(user));
+        }
+        return new LazyEntityMap<>(index, u -> EntityFactory.createUser(client, u));
+    }
+
+    /**
+     * Creates map of chats from specified raw chats.
+     *
+     * @param client The client to create chats.
+     * @param chats The list of raw chats.
+     * @return The new lazy map of chats.
+     */
+    public static LazyEntityMap<telegram4j.tl.Chat, Chat> ofChats(MTProtoTelegramClient client,
+                                                                  List<telegram4j.tl.Chat> chats) {
+        var index = new HashMap<Id, Slot<telegram4j.tl.Chat>>(capacity(chats.size()));
+        for (var chat : chats) {
+            Id id = chat instanceof Channel || chat instanceof ChannelForbidden
+                    ? Id.ofChannel(chat.id())
+                    : Id.ofChat(chat.id());
+            index.put(id, new Slot<>(chat));
+        }
+        return new LazyEntityMap<>(index, c -> EntityFactory.createChat(client, c, null));
+    }
+
+    /**
+     * Gets raw object by specified id without creating of entity.
+     *
+     * @param id The id of entity.
+     * @return The raw object, or {@code null} if it's absent.
+     */
+    @Nullable
+    public R getRaw(Id id) {
+        var slot = index.get(id);
+        return slot != null ? slot.raw : null;
+    }
+
+    @Nullable
+    @Override
+    public V get(Object key) {
+        var slot = index.get(key);
+        return slot != null ? materialize(slot) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty() || entrySet().isEmpty();
+    }
+
+    @Override
+    public Set<Entry<Id, V>> entrySet() {
+        var entrySet = this.entrySet;
+        if (entrySet == null) {
+            var entities = new HashMap<Id, V>(capacity(index.size()));
+            index.forEach((id, slot) -> {
+                V value = materialize(slot);
+                if (value != null) {
+                    entities.put(id, value);
+                }
+            });
+            this.entrySet = entrySet = Map.copyOf(entities).entrySet();
+        }
+        return entrySet;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private V materialize(Slot<R> slot) {
+        Object value = slot.value;
+        if (value == null) {
+            V entity = factory.apply(slot.raw);
+            slot.value = value = entity != null ? entity : Slot.ABSENT;
+        }
+        return value != Slot.ABSENT ? (V) value : null;
+    }
+
+    static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    static final class Slot<R> {
+        static final Object ABSENT = new Object();
+
+        final R raw;
+        volatile Object value;
+
+        Slot(R raw) {
+            this.raw = raw;
+        }
+    }
+}
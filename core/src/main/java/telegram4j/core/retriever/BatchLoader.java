@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.retriever;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Loader which coalesces requests of values collected within the time window
+ * or up to the maximal batch size into the one batch request.
+ * Concurrent requests of the same key are deduplicated while it's in flight.
+ *
+ * @param <K> The type of key.
+ * @param <R> The type of request element for key.
+ * @param <V> The type of value.
+ */
+final class BatchLoader<K, R, V> {
+    static final Logger log = Loggers.getLogger(BatchLoader.class);
+
+    final String name;
+    final Duration window;
+    final int maxBatchSize;
+    final Scheduler timer;
+    final Function<List<R>, Mono<Map<K, V>>> batchFunction;
+
+    // guarded by this
+    final Map<K, Sinks.One<V>> inflight = new HashMap<>();
+    List<K> keys = new ArrayList<>();
+    List<R> requests = new ArrayList<>();
+    @Nullable
+    Disposable scheduledFlush;
+
+    // guarded by this
+    long batchesCount;
+    long keysCount;
+    long deduplicatedCount;
+    long splitBatchesCount;
+    int maxObservedBatchSize;
+    long totalLatencyNanos;
+    long maxLatencyNanos;
+
+    BatchLoader(String name, Duration window, int maxBatchSize, Scheduler timer,
+                Function<List<R>, Mono<Map<K, V>>> batchFunction) {
+        this.name = name;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = timer;
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * Enqueues key to the next batch on subscription.
+     *
+     * @param key The key of value.
+     * @param request The request element of key for batch function.
+     * @return A {@link Mono} emitting value, or empty if batch doesn't contain value for key.
+     */
+    Mono<V> load(K key, R request) {
+        return Mono.defer(() -> {
+            Sinks.One<V> sink;
+            boolean flush = false;
+            synchronized (this) {
+                sink = inflight.get(key);
+                if (sink != null) {
+                    deduplicatedCount++;
+                    return sink.asMono();
+                }
+
+                sink = Sinks.one();
+                inflight.put(key, sink);
+                keys.add(key);
+                requests.add(request);
+
+                if (keys.size() >= maxBatchSize) {
+                    flush = true;
+                } else if (keys.size() == 1) {
+                    scheduledFlush = timer.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+
+            if (flush) {
+                flush();
+            }
+            return sink.asMono();
+        });
+    }
+
+    void flush() {
+        List<K> batchKeys;
+        List<R> batchRequests;
+        synchronized (this) {
+            if (keys.isEmpty()) {
+                return;
+            }
+            if (scheduledFlush != null) {
+                scheduledFlush.dispose();
+                scheduledFlush = null;
+            }
+
+            batchKeys = keys;
+            batchRequests = requests;
+            keys = new ArrayList<>();
+            requests = new ArrayList<>();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Requesting batch of {} keys", name, batchKeys.size());
+        }
+
+        request(batchKeys, batchRequests);
+    }
+
+    private void request(List<K> batchKeys, List<R> batchRequests) {
+        long start = System.nanoTime();
+        Mono.defer(() -> batchFunction.apply(batchRequests))
+                .defaultIfEmpty(Map.of())
+                .subscribe(values -> complete(batchKeys, values, null, start), e -> {
+                    if (batchKeys.size() == 1) {
+                        complete(batchKeys, Map.of(), e, start);
+                        return;
+                    }
+
+                    // one invalid key (e.g. CHANNEL_PRIVATE) fails the whole batch,
+                    // so keys are requested one by one to isolate the error
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] Splitting failed batch of {} keys: {}", name, batchKeys.size(), e.toString());
+                    }
+                    synchronized (this) {
+                        splitBatchesCount++;
+                    }
+                    for (int i = 0; i < batchKeys.size(); i++) {
+                        request(List.of(batchKeys.get(i)), List.of(batchRequests.get(i)));
+                    }
+                });
+    }
+
+    private void complete(List<K> batchKeys, Map<K, V> values, @Nullable Throwable error, long start) {
+        long latency = System.nanoTime() - start;
+        var sinks = new ArrayList<Sinks.One<V>>(batchKeys.size());
+        synchronized (this) {
+            for (K key : batchKeys) {
+                sinks.add(inflight.remove(key));
+            }
+
+            batchesCount++;
+            keysCount += batchKeys.size();
+            maxObservedBatchSize = Math.max(maxObservedBatchSize, batchKeys.size());
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        }
+
+        for (int i = 0; i < batchKeys.size(); i++) {
+            var sink = sinks.get(i);
+            if (error != null) {
+                sink.tryEmitError(error);
+                continue;
+            }
+
+            V value = values.get(batchKeys.get(i));
+            if (value != null) {
+                sink.tryEmitValue(value);
+            } else {
+                sink.tryEmitEmpty();
+            }
+        }
+    }
+
+    synchronized RpcEntityRetriever.BatchStats stats() {
+        return new RpcEntityRetriever.BatchStats(batchesCount, keysCount, deduplicatedCount,
+                splitBatchesCount, maxObservedBatchSize, Duration.ofNanos(batchesCount == 0 ? 0 : totalLatencyNanos / batchesCount),
+                Duration.ofNanos(maxLatencyNanos));
+    }
+}
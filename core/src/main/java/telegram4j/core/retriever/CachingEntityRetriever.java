@@ -0,0 +1,204 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.retriever;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+import telegram4j.core.auxiliary.AuxiliaryMessages;
+import telegram4j.core.object.PeerEntity;
+import telegram4j.core.object.User;
+import telegram4j.core.object.chat.Chat;
+import telegram4j.core.object.chat.ChatParticipant;
+import telegram4j.core.util.Id;
+import telegram4j.core.util.PeerId;
+import telegram4j.tl.InputMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Implementation of {@code EntityRetriever} which caches results of delegate retriever in the Caffeine cache.
+ * Resolved entities are cached for {@link Options#ttl()}, and ids which weren't resolved
+ * for the shorter {@link Options#negativeTtl()}. Concurrent requests of the same id
+ * share the single in-flight request to delegate. Errors are not cached.
+ *
+ * <p> Only methods which retrieve single entity by id are cached,
+ * participant lists and messages are always delegated.
+ */
+public class CachingEntityRetriever implements EntityRetriever {
+
+    private final EntityRetriever delegate;
+    private final AsyncCache<Key, Optional<Object>> cache;
+
+    CachingEntityRetriever(EntityRetriever delegate, Options options) {
+        this(delegate, options, Ticker.systemTicker());
+    }
+
+    CachingEntityRetriever(EntityRetriever delegate, Options options, Ticker ticker) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(options.maxSize)
+                .expireAfter(new ResultExpiry(options))
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Gets statistics of cache usage. Hits include requests joined to the in-flight request
+     * and requests served by cached absence of entity.
+     *
+     * @return The statistics of cache usage.
+     */
+    public CacheStats getStats() {
+        return cache.synchronous().stats();
+    }
+
+    /** {@return The approximate count of cached results} */
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    /** Removes all cached results. */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    @Override
+    public Mono<PeerEntity> resolvePeer(PeerId peerId) {
+        return cached(Kind.PEER, peerId, () -> delegate.resolvePeer(peerId));
+    }
+
+    @Override
+    public Mono<User> getUserMinById(Id userId) {
+        return cached(Kind.USER_MIN, userId, () -> delegate.getUserMinById(userId));
+    }
+
+    @Override
+    public Mono<User> getUserFullById(Id userId) {
+        return cached(Kind.USER_FULL, userId, () -> delegate.getUserFullById(userId));
+    }
+
+    @Override
+    public Mono<Chat> getChatMinById(Id chatId) {
+        return cached(Kind.CHAT_MIN, chatId, () -> delegate.getChatMinById(chatId));
+    }
+
+    @Override
+    public Mono<Chat> getChatFullById(Id chatId) {
+        return cached(Kind.CHAT_FULL, chatId, () -> delegate.getChatFullById(chatId));
+    }
+
+    @Override
+    public Mono<ChatParticipant> getParticipantById(Id chatId, Id peerId) {
+        return cached(Kind.PARTICIPANT, List.of(chatId, peerId), () -> delegate.getParticipantById(chatId, peerId));
+    }
+
+    @Override
+    public Flux<ChatParticipant> getParticipants(Id chatId) {
+        return delegate.getParticipants(chatId);
+    }
+
+    @Override
+    public Mono<AuxiliaryMessages> getMessages(@Nullable Id chatId, Iterable<? extends InputMessage> messageIds) {
+        return delegate.getMessages(chatId, messageIds);
+    }
+
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return delegate.getMessageHistory(chatId, minId, maxId, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> cached(Kind kind, Object id, Supplier<? extends Mono<T>> loader) {
+        return Mono.defer(() -> {
+            // request is detached from the first subscriber to not cancel it for the others;
+            // failed futures are removed from the cache
+            var future = cache.get(new Key(kind, id), (k, executor) -> loader.get()
+                    .map(Optional::<Object>of)
+                    .defaultIfEmpty(Optional.empty())
+                    .toFuture());
+            return Mono.fromFuture(future, true)
+                    .flatMap(o -> Mono.justOrEmpty((Optional<T>) o));
+        });
+    }
+
+    enum Kind {
+        PEER,
+        USER_MIN,
+        USER_FULL,
+        CHAT_MIN,
+        CHAT_FULL,
+        PARTICIPANT
+    }
+
+    record Key(Kind kind, Object id) {}
+
+    record ResultExpiry(Options options) implements Expiry<Key, Optional<Object>> {
+
+        @Override
+        public long expireAfterCreate(Key key, Optional<Object> value, long currentTime) {
+            return (value.isPresent() ? options.ttl : options.negativeTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, Optional<Object> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, Optional<Object> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * Options of caching.
+     *
+     * @param ttl The lifetime of resolved entities.
+     * @param negativeTtl The lifetime of not resolved ids. Zero duration disables negative caching.
+     * @param maxSize The maximal count of cached results, after which the least recently or frequently used
+     * results are evicted.
+     */
+    public record Options(Duration ttl, Duration negativeTtl, int maxSize) {
+        public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+        public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+        public static final int DEFAULT_MAX_SIZE = 10_000;
+
+        public Options() {
+            this(DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_SIZE);
+        }
+
+        public Options {
+            Objects.requireNonNull(ttl);
+            Objects.requireNonNull(negativeTtl);
+            requireArgument(!ttl.isNegative() && !ttl.isZero(), "ttl must be positive");
+            requireArgument(!negativeTtl.isNegative(), "negativeTtl must be non-negative");
+            requireArgument(maxSize >= 1, "maxSize must be equal or greater than 1");
+        }
+    }
+}
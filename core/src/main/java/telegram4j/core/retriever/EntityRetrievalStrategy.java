@@ -69,4 +69,38 @@ public interface EntityRetrievalStrategy extends Function<MTProtoTelegramClient,
         Objects.requireNonNull(userPreference);
         return client -> new PreferredEntityRetriever(delegateStrategy.apply(client), chatPreference, userPreference);
     }
+
+    /**
+     * Factory method to create RPC strategy which coalesces retrieving of minimal users and chats
+     * into the batch requests. To keep lookups in the store use it as second strategy
+     * of {@link #fallback(EntityRetrievalStrategy, EntityRetrievalStrategy)}:
+     * <pre>{@code
+     * EntityRetrievalStrategy.fallback(EntityRetrievalStrategy.STORE,
+     *         EntityRetrievalStrategy.batchingRpc(new RpcEntityRetriever.BatchOptions()))
+     * }</pre>
+     *
+     * @see RpcEntityRetriever
+     * @param options The options of batching.
+     * @return A new batching RPC strategy.
+     */
+    static EntityRetrievalStrategy batchingRpc(RpcEntityRetriever.BatchOptions options) {
+        Objects.requireNonNull(options);
+        return client -> new RpcEntityRetriever(client, true, options);
+    }
+
+    /**
+     * Factory method to create strategy which caches results of the specified strategy,
+     * including absent entities and in-flight requests.
+     *
+     * @see CachingEntityRetriever
+     * @param delegateStrategy The delegate strategy to use.
+     * @param options The options of caching.
+     * @return A new caching strategy.
+     */
+    static EntityRetrievalStrategy caching(EntityRetrievalStrategy delegateStrategy,
+                                           CachingEntityRetriever.Options options) {
+        Objects.requireNonNull(delegateStrategy);
+        Objects.requireNonNull(options);
+        return client -> new CachingEntityRetriever(delegateStrategy.apply(client), options);
+    }
 }
@@ -162,4 +162,25 @@ public interface EntityRetriever {
      * the {@link AuxiliaryMessages} with resolved messages and auxiliary data.
      */
     Mono<AuxiliaryMessages> getMessages(@Nullable Id chatId, Iterable<? extends InputMessage> messageIds);
+
+    /**
+     * Retrieve messages of chat with auxiliary data ordered from the newest to the oldest.
+     * Bounds have the same semantic as {@code min_id} and {@code max_id} parameters of
+     * {@code messages.getHistory} method, so {@code getMessageHistory(chatId, 0, 0, n)}
+     * retrieves last {@code n} messages of chat.
+     *
+     * @implSpec Implementation which uses storage may return only known messages.
+     * Possibly incomplete history must be returned as {@link telegram4j.core.auxiliary.AuxiliaryMessagesSlice}.
+     * Default implementation returns empty {@link Mono}.
+     *
+     * @param chatId The id of chat.
+     * @param minId The exclusive lower bound of message ids, or 0 to not bound.
+     * @param maxId The exclusive upper bound of message ids, or 0 to not bound.
+     * @param limit The max count of messages.
+     * @return A {@link Mono} emitting on successful completion
+     * the {@link AuxiliaryMessages} with resolved messages and auxiliary data.
+     */
+    default Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return Mono.empty();
+    }
 }
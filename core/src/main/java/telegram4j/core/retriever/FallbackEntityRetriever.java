@@ -18,7 +18,9 @@ package telegram4j.core.retriever;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.Nullable;
+import telegram4j.core.auxiliary.AuxiliaryChannelMessages;
 import telegram4j.core.auxiliary.AuxiliaryMessages;
+import telegram4j.core.auxiliary.AuxiliaryMessagesSlice;
 import telegram4j.core.object.PeerEntity;
 import telegram4j.core.object.User;
 import telegram4j.core.object.chat.Chat;
@@ -97,4 +99,13 @@ class FallbackEntityRetriever implements EntityRetriever {
         return first.getMessages(chatId, messageIds)
                 .switchIfEmpty(second.getMessages(chatId, messageIds));
     }
+
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        // slices from the first retriever may have gaps
+        return first.getMessageHistory(chatId, minId, maxId, limit)
+                .filter(m -> !(m instanceof AuxiliaryMessagesSlice) &&
+                        !(m instanceof AuxiliaryChannelMessages c && c.isInexact()))
+                .switchIfEmpty(second.getMessageHistory(chatId, minId, maxId, limit));
+    }
 }
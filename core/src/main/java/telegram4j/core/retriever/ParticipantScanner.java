@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.retriever;
+
+import reactor.core.publisher.Flux;
+import telegram4j.core.MTProtoTelegramClient;
+import telegram4j.core.internal.EntityFactory;
+import telegram4j.core.object.MentionablePeer;
+import telegram4j.core.object.PeerEntity;
+import telegram4j.core.object.chat.Channel;
+import telegram4j.core.object.chat.ChatParticipant;
+import telegram4j.core.util.Id;
+import telegram4j.core.util.PaginationSupport;
+import telegram4j.mtproto.util.TlEntityUtil;
+import telegram4j.tl.ChannelParticipantsFilter;
+import telegram4j.tl.ImmutableChannelParticipantsSearch;
+import telegram4j.tl.InputChannel;
+import telegram4j.tl.channels.BaseChannelParticipants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Scanner of channel participants which requests {@code channels.getParticipants} pages concurrently.
+ * After the first page reveals total count of participants, the remaining pages are requested
+ * within the bounded window and emitted in the order of offsets.
+ *
+ * <p> Server returns at most 10000 participants for one filter, so large channels
+ * can be scanned by several filters in parallel with {@link #scan(Id, Iterable)},
+ * for example by the {@link #searchAlphabet()} queries.
+ */
+public class ParticipantScanner {
+    /** The maximal count of participants in the one page. */
+    public static final int MAX_PAGE_SIZE = 200;
+    /** The maximal offset of participants for the one filter, server returns empty pages after it. */
+    public static final int MAX_OFFSET = 10000;
+
+    private final MTProtoTelegramClient client;
+    private final Options options;
+
+    public ParticipantScanner(MTProtoTelegramClient client) {
+        this(client, new Options());
+    }
+
+    public ParticipantScanner(MTProtoTelegramClient client, Options options) {
+        this.client = Objects.requireNonNull(client);
+        this.options = Objects.requireNonNull(options);
+    }
+
+    /**
+     * Creates list of search filters by the latin letters and digits.
+     *
+     * @return The list of search filters.
+     */
+    public static List<ChannelParticipantsFilter> searchAlphabet() {
+        var filters = new ArrayList<ChannelParticipantsFilter>(36);
+        for (char c = 'a'; c <= 'z'; c++) {
+            filters.add(ImmutableChannelParticipantsSearch.of(String.valueOf(c)));
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            filters.add(ImmutableChannelParticipantsSearch.of(String.valueOf(c)));
+        }
+        return filters;
+    }
+
+    /**
+     * Retrieves all participants of channel available by the empty search query.
+     *
+     * @param channelId The id of channel.
+     * @return A {@link Flux} emitting participants in the order of offsets.
+     */
+    public Flux<ChatParticipant> scan(Id channelId) {
+        return scan(channelId, ImmutableChannelParticipantsSearch.of(""));
+    }
+
+    /**
+     * Retrieves participants of channel by specified filter.
+     *
+     * @param channelId The id of channel.
+     * @param filter The participants filter.
+     * @return A {@link Flux} emitting participants in the order of offsets.
+     */
+    public Flux<ChatParticipant> scan(Id channelId, ChannelParticipantsFilter filter) {
+        return Flux.defer(() -> {
+            if (channelId.getType() != Id.Type.CHANNEL) {
+                return Flux.error(new IllegalArgumentException("Incorrect id type, expected: "
+                        + Id.Type.CHANNEL + ", but given: " + channelId.getType()));
+            }
+
+            return client.asInputChannelExact(channelId)
+                    .flatMapMany(channel -> scan0(channel, filter));
+        });
+    }
+
+    /**
+     * Retrieves participants of channel by specified filters which are requested in parallel.
+     * Participants found by several filters are emitted only once.
+     *
+     * @param channelId The id of channel.
+     * @param filters The participants filters.
+     * @return A {@link Flux} emitting distinct participants.
+     */
+    public Flux<ChatParticipant> scan(Id channelId, Iterable<? extends ChannelParticipantsFilter> filters) {
+        return Flux.defer(() -> {
+            if (channelId.getType() != Id.Type.CHANNEL) {
+                return Flux.error(new IllegalArgumentException("Incorrect id type, expected: "
+                        + Id.Type.CHANNEL + ", but given: " + channelId.getType()));
+            }
+
+            return client.asInputChannelExact(channelId)
+                    .flatMapMany(channel -> Flux.fromIterable(filters)
+                            .flatMap(filter -> scan0(channel, filter), options.filterConcurrency))
+                    .distinct(ChatParticipant::getId);
+        });
+    }
+
+    private Flux<ChatParticipant> scan0(InputChannel channel, ChannelParticipantsFilter filter) {
+        Id channelId = Id.of(channel, client.getSelfId());
+        return PaginationSupport.paginateConcurrently(o -> client.getServiceHolder().getChatService()
+                                .getParticipants(channel, filter, o, options.pageSize, 0),
+                        BaseChannelParticipants::count, d -> d.participants().size(),
+                        0, options.pageSize, MAX_OFFSET, options.concurrency)
+                .concatMapIterable(data -> mapPage(channelId, data));
+    }
+
+    private List<ChatParticipant> mapPage(Id channelId, BaseChannelParticipants data) {
+        var chats = data.chats().stream()
+                .map(c -> (Channel) EntityFactory.createChat(client, c, null))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+        var users = data.users().stream()
+                .map(u -> EntityFactory.createUser(client, u))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
+
+        var participants = new ArrayList<ChatParticipant>(data.participants().size());
+        for (var c : data.participants()) {
+            Id peerId = Id.of(TlEntityUtil.getUserId(c));
+            MentionablePeer peer = switch (peerId.getType()) {
+                case USER -> users.get(peerId);
+                case CHANNEL -> chats.get(peerId);
+                default -> throw new IllegalStateException();
+            };
+
+            participants.add(new ChatParticipant(client, peer, c, channelId));
+        }
+        return participants;
+    }
+
+    /**
+     * Options of scanning.
+     *
+     * @param pageSize The count of participants in the one page, must be in range {@code [1, 200]}.
+     * @param concurrency The maximal count of concurrently requested pages of the one filter.
+     * @param filterConcurrency The maximal count of concurrently scanned filters.
+     */
+    public record Options(int pageSize, int concurrency, int filterConcurrency) {
+        public static final int DEFAULT_CONCURRENCY = 4;
+        public static final int DEFAULT_FILTER_CONCURRENCY = 4;
+
+        public Options() {
+            this(MAX_PAGE_SIZE, DEFAULT_CONCURRENCY, DEFAULT_FILTER_CONCURRENCY);
+        }
+
+        public Options {
+            requireArgument(pageSize >= 1 && pageSize <= MAX_PAGE_SIZE, "pageSize must be in range [1, 200]");
+            requireArgument(concurrency >= 1, "concurrency must be equal or greater than 1");
+            requireArgument(filterConcurrency >= 1, "filterConcurrency must be equal or greater than 1");
+        }
+    }
+}
@@ -102,6 +102,11 @@ public class PreferredEntityRetriever implements EntityRetriever {
         return delegate.getMessages(chatId, messageIds);
     }
 
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return delegate.getMessageHistory(chatId, minId, maxId, limit);
+    }
+
     /** Types of volumes of returned information. */
     public enum Setting {
 
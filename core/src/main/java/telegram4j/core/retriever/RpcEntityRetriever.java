@@ -17,6 +17,7 @@ package telegram4j.core.retriever;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.function.TupleUtils;
 import reactor.util.annotation.Nullable;
 import telegram4j.core.MTProtoTelegramClient;
@@ -24,50 +25,105 @@ import telegram4j.core.auxiliary.AuxiliaryMessages;
 import telegram4j.core.internal.AuxiliaryEntityFactory;
 import telegram4j.core.internal.EntityFactory;
 import telegram4j.core.internal.MappingUtil;
-import telegram4j.core.object.MentionablePeer;
 import telegram4j.core.object.PeerEntity;
 import telegram4j.core.object.User;
-import telegram4j.core.object.chat.Channel;
 import telegram4j.core.object.chat.Chat;
 import telegram4j.core.object.chat.ChatParticipant;
 import telegram4j.core.util.Id;
-import telegram4j.core.util.PaginationSupport;
 import telegram4j.core.util.PeerId;
 import telegram4j.mtproto.service.ServiceHolder;
-import telegram4j.mtproto.util.TlEntityUtil;
 import telegram4j.tl.*;
-import telegram4j.tl.channels.BaseChannelParticipants;
 import telegram4j.tl.messages.MessagesNotModified;
+import telegram4j.tl.request.messages.GetHistory;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-/** Implementation of {@code EntityRetriever} which uses Telegram RPC API. */
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Implementation of {@code EntityRetriever} which uses Telegram RPC API.
+ *
+ * <p>If {@link BatchOptions} are specified, minimal users and chats requested within
+ * {@link BatchOptions#window()} or up to the {@link BatchOptions#maxBatchSize()} are coalesced
+ * into the {@code users.getUsers}, {@code messages.getChats} and {@code channels.getChannels}
+ * batches and concurrent requests of the same id are deduplicated. If batch request fails,
+ * ids are requested one by one, so an error of one id doesn't affect others.
+ */
 public class RpcEntityRetriever implements EntityRetriever {
 
     private final MTProtoTelegramClient client;
     private final ServiceHolder serviceHolder;
     private final boolean retrieveSelfUserForDMs;
+    private final ParticipantScanner participantScanner;
+    @Nullable
+    private final Batchers batchers;
 
     public RpcEntityRetriever(MTProtoTelegramClient client) {
         this(client, true);
     }
 
     public RpcEntityRetriever(MTProtoTelegramClient client, boolean retrieveSelfUserForDMs) {
-        this(client, client.getServiceHolder(), retrieveSelfUserForDMs);
+        this(client, retrieveSelfUserForDMs, null);
+    }
+
+    /**
+     * Constructs a {@code RpcEntityRetriever} with specified batching options.
+     *
+     * @param client The client to use.
+     * @param retrieveSelfUserForDMs Whether self user will be retrieved from store for private chats.
+     * @param batchOptions The options of batching minimal users and chats requests,
+     * if {@code null} batching will be disabled.
+     */
+    public RpcEntityRetriever(MTProtoTelegramClient client, boolean retrieveSelfUserForDMs,
+                              @Nullable BatchOptions batchOptions) {
+        this(client, client.getServiceHolder(), retrieveSelfUserForDMs,
+                batchOptions != null ? new Batchers(client.getServiceHolder(), batchOptions) : null,
+                new ParticipantScanner(client));
     }
 
-    private RpcEntityRetriever(MTProtoTelegramClient client, ServiceHolder serviceHolder, boolean retrieveSelfUserForDMs) {
+    private RpcEntityRetriever(MTProtoTelegramClient client, ServiceHolder serviceHolder,
+                               boolean retrieveSelfUserForDMs, @Nullable Batchers batchers,
+                               ParticipantScanner participantScanner) {
         this.client = client;
         this.serviceHolder = serviceHolder;
         this.retrieveSelfUserForDMs = retrieveSelfUserForDMs;
+        this.participantScanner = participantScanner;
+        this.batchers = batchers;
     }
 
     public RpcEntityRetriever withRetrieveSelfUserForDMs(boolean state) {
         if (retrieveSelfUserForDMs == state) return this;
-        return new RpcEntityRetriever(client, serviceHolder, state);
+        return new RpcEntityRetriever(client, serviceHolder, state, batchers, participantScanner);
+    }
+
+    /**
+     * Creates a new {@code RpcEntityRetriever} which scans participants of channels with specified options.
+     *
+     * @param options The options of {@link ParticipantScanner}.
+     * @return A new {@code RpcEntityRetriever} with specified scan options.
+     */
+    public RpcEntityRetriever withParticipantScanOptions(ParticipantScanner.Options options) {
+        return new RpcEntityRetriever(client, serviceHolder, retrieveSelfUserForDMs, batchers,
+                new ParticipantScanner(client, options));
+    }
+
+    /** {@return Statistics of {@code users.getUsers} batches, if batching is enabled} */
+    public Optional<BatchStats> getUsersBatchStats() {
+        return Optional.ofNullable(batchers).map(b -> b.users.stats());
+    }
+
+    /** {@return Statistics of {@code messages.getChats} batches, if batching is enabled} */
+    public Optional<BatchStats> getChatsBatchStats() {
+        return Optional.ofNullable(batchers).map(b -> b.chats.stats());
+    }
+
+    /** {@return Statistics of {@code channels.getChannels} batches, if batching is enabled} */
+    public Optional<BatchStats> getChannelsBatchStats() {
+        return Optional.ofNullable(batchers).map(b -> b.channels.stats());
     }
 
     @Override
@@ -96,7 +152,7 @@ public class RpcEntityRetriever implements EntityRetriever {
         }
 
         return client.asInputUser(userId)
-                .flatMap(serviceHolder.getUserService()::getUser)
+                .flatMap(u -> getUser(userId.asLong(), u))
                 .mapNotNull(u -> EntityFactory.createUser(client, u));
     }
 
@@ -115,13 +171,13 @@ public class RpcEntityRetriever implements EntityRetriever {
     @Override
     public Mono<Chat> getChatMinById(Id chatId) {
         return Mono.defer(() -> switch (chatId.getType()) {
-            case CHAT -> serviceHolder.getChatService().getChat(chatId.asLong())
+            case CHAT -> getChat(chatId.asLong())
                     .mapNotNull(c -> EntityFactory.createChat(client, c, null));
             case CHANNEL -> client.asInputChannel(chatId)
-                    .flatMap(serviceHolder.getChatService()::getChannel)
+                    .flatMap(c -> getChannel(chatId.asLong(), c))
                     .mapNotNull(c -> EntityFactory.createChat(client, c, null));
             case USER -> client.asInputUser(chatId)
-                    .flatMap(serviceHolder.getUserService()::getUser)
+                    .flatMap(u -> getUser(chatId.asLong(), u))
                     .flatMap(p -> {
                         var retrieveSelf = retrieveSelfUserForDMs
                                 ? client.withRetrievalStrategy(EntityRetrievalStrategy.STORE)
@@ -222,35 +278,7 @@ public class RpcEntityRetriever implements EntityRetriever {
                         return Flux.fromIterable(participants)
                                 .map(p -> new ChatParticipant(client, users.get(Id.ofUser(p.userId())), p, chatId));
                     });
-            case CHANNEL -> client.asInputChannelExact(chatId)
-                    .flatMapMany(channel -> {
-                        Id channelId = Id.of(channel, client.getSelfId());
-                        return PaginationSupport.paginate(o -> client.getServiceHolder().getChatService()
-                                                .getParticipants(channel, ImmutableChannelParticipantsSearch.of(""), o, 200, 0),
-                                        BaseChannelParticipants::count, 0, 200)
-                                .flatMap(data -> {
-                                    var chats = data.chats().stream()
-                                            .map(c -> (Channel) EntityFactory.createChat(client, c, null))
-                                            .filter(Objects::nonNull)
-                                            .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
-                                    var users = data.users().stream()
-                                            .map(u -> EntityFactory.createUser(client, u))
-                                            .filter(Objects::nonNull)
-                                            .collect(Collectors.toMap(PeerEntity::getId, Function.identity()));
-
-                                    return Flux.fromIterable(data.participants())
-                                            .map(c -> {
-                                                Id peerId = Id.of(TlEntityUtil.getUserId(c));
-                                                MentionablePeer peer = switch (peerId.getType()) {
-                                                    case USER -> users.get(peerId);
-                                                    case CHANNEL -> chats.get(peerId);
-                                                    default -> throw new IllegalStateException();
-                                                };
-
-                                                return new ChatParticipant(client, peer, c, channelId);
-                                            });
-                                });
-                    });
+            case CHANNEL -> participantScanner.scan(chatId);
             default -> Mono.error(new IllegalArgumentException("Incorrect id type, expected: CHANNEL or " +
                     "CHAT, but given: " + chatId.getType()));
         });
@@ -268,4 +296,104 @@ public class RpcEntityRetriever implements EntityRetriever {
                 .filter(m -> m.identifier() != MessagesNotModified.ID) // just ignore
                 .map(d -> AuxiliaryEntityFactory.createMessages(client, d));
     }
+
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return client.asInputPeerExact(chatId)
+                .flatMap(peer -> serviceHolder.getChatService().getHistory(GetHistory.builder()
+                        .peer(peer)
+                        .offsetId(0)
+                        .offsetDate(0)
+                        .addOffset(0)
+                        .limit(limit)
+                        .maxId(maxId)
+                        .minId(minId)
+                        .hash(0)
+                        .build()))
+                .filter(m -> m.identifier() != MessagesNotModified.ID)
+                .map(d -> AuxiliaryEntityFactory.createMessages(client, d));
+    }
+
+    // Internal methods
+    // ===================
+
+    private Mono<telegram4j.tl.User> getUser(long id, InputUser user) {
+        return batchers != null
+                ? batchers.users.load(id, user)
+                : serviceHolder.getUserService().getUser(user);
+    }
+
+    private Mono<telegram4j.tl.Chat> getChat(long id) {
+        return batchers != null
+                ? batchers.chats.load(id, id)
+                : serviceHolder.getChatService().getChat(id);
+    }
+
+    private Mono<telegram4j.tl.Chat> getChannel(long id, InputChannel channel) {
+        return batchers != null
+                ? batchers.channels.load(id, channel)
+                : serviceHolder.getChatService().getChannel(channel);
+    }
+
+    static final class Batchers {
+        final BatchLoader<Long, InputUser, telegram4j.tl.User> users;
+        final BatchLoader<Long, Long, telegram4j.tl.Chat> chats;
+        final BatchLoader<Long, InputChannel, telegram4j.tl.Chat> channels;
+
+        Batchers(ServiceHolder serviceHolder, BatchOptions options) {
+            this.users = new BatchLoader<>("users", options.window, options.maxBatchSize, Schedulers.parallel(),
+                    ids -> serviceHolder.getUserService().getUsers(ids)
+                            .map(list -> list.stream()
+                                    .collect(Collectors.toMap(telegram4j.tl.User::id, Function.identity(), (a, b) -> a))));
+            this.chats = new BatchLoader<>("chats", options.window, options.maxBatchSize, Schedulers.parallel(),
+                    ids -> serviceHolder.getChatService().getChats(ids)
+                            .map(c -> c.chats().stream()
+                                    .collect(Collectors.toMap(telegram4j.tl.Chat::id, Function.identity(), (a, b) -> a))));
+            this.channels = new BatchLoader<>("channels", options.window, options.maxBatchSize, Schedulers.parallel(),
+                    ids -> serviceHolder.getChatService().getChannels(ids)
+                            .map(c -> c.chats().stream()
+                                    .collect(Collectors.toMap(telegram4j.tl.Chat::id, Function.identity(), (a, b) -> a))));
+        }
+    }
+
+    /**
+     * Options of batching minimal users and chats requests.
+     *
+     * @param window The time during which ids are collected into the batch.
+     * @param maxBatchSize The maximal count of ids in the one batch request.
+     */
+    public record BatchOptions(Duration window, int maxBatchSize) {
+        public static final Duration DEFAULT_WINDOW = Duration.ofMillis(10);
+        public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+        public BatchOptions() {
+            this(DEFAULT_WINDOW, DEFAULT_MAX_BATCH_SIZE);
+        }
+
+        public BatchOptions {
+            Objects.requireNonNull(window);
+            requireArgument(!window.isNegative(), "window must be non-negative");
+            requireArgument(maxBatchSize >= 1, "maxBatchSize must be equal or greater than 1");
+        }
+    }
+
+    /**
+     * Statistics of batches of the one entity kind.
+     *
+     * @param batchesCount The count of sent batch requests, including requests of split batches.
+     * @param keysCount The total count of ids in the sent batches.
+     * @param deduplicatedCount The count of requests which were joined to the in-flight request of the same id.
+     * @param splitBatchesCount The count of failed batches which ids were requested one by one.
+     * @param maxBatchSize The maximal observed size of batch.
+     * @param averageLatency The average latency of batch request.
+     * @param maxLatency The maximal latency of batch request.
+     */
+    public record BatchStats(long batchesCount, long keysCount, long deduplicatedCount, long splitBatchesCount,
+                             int maxBatchSize, Duration averageLatency, Duration maxLatency) {
+
+        /** {@return The average count of ids in the one batch} */
+        public double averageBatchSize() {
+            return batchesCount == 0 ? 0 : keysCount / (double) batchesCount;
+        }
+    }
 }
@@ -215,4 +215,10 @@ public class StoreEntityRetriever implements EntityRetriever {
         .filter(m -> m.identifier() != MessagesNotModified.ID)
         .map(d -> AuxiliaryEntityFactory.createMessages(client, d));
     }
+
+    @Override
+    public Mono<AuxiliaryMessages> getMessageHistory(Id chatId, int minId, int maxId, int limit) {
+        return storeLayout.getMessageHistory(chatId.asPeer(), minId, maxId, limit)
+                .map(d -> AuxiliaryEntityFactory.createMessages(client, d));
+    }
 }
@@ -17,11 +17,14 @@ package telegram4j.core.util;
 
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
 import java.util.function.ToIntFunction;
 
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
 /**
  * Template methods for various types of pagination.
  *
@@ -52,4 +55,44 @@ public final class PaginationSupport {
                 })
                 .repeat(() -> count.get() > localOffset.get());
     }
+
+    /**
+     * Computes {@link Flux} for offset-based pagination which retrieves pages concurrently.
+     * The first page is retrieved alone to get the total count of entities, after which
+     * the remaining pages are requested with specified concurrency and emitted in the order of offsets.
+     * Total count may be inexact, so pagination stops at the first empty or incomplete page
+     * and remaining requests are cancelled.
+     *
+     * @param <T> The element type for retrieving.
+     * @param prod A function to exchange offset to container of entities.
+     * @param countExtractor A function to get total count of entities in the produced container.
+     * @param sizeExtractor A function to get count of entities in the produced container.
+     * @param offset The first offset for pagination.
+     * @param limit The constant limit for retrieving objects.
+     * @param maxOffset The exclusive upper bound of offsets, e.g. the maximal offset supported by server.
+     * @param concurrency The maximal count of concurrently retrieving pages.
+     * @throws IllegalArgumentException if {@code limit} or {@code concurrency} is not positive.
+     * @return A {@link Flux}, emitting retrieved containers with entities.
+     */
+    public static <T> Flux<T> paginateConcurrently(IntFunction<? extends Publisher<T>> prod, ToIntFunction<T> countExtractor,
+                                                   ToIntFunction<T> sizeExtractor, int offset, int limit,
+                                                   int maxOffset, int concurrency) {
+        requireArgument(limit > 0, "limit must be positive");
+        requireArgument(concurrency > 0, "concurrency must be positive");
+
+        return Mono.from(Flux.defer(() -> prod.apply(offset)))
+                .flatMapMany(first -> {
+                    int count = Math.min(countExtractor.applyAsInt(first), maxOffset);
+                    int nextOffset = offset + limit;
+                    if (count <= nextOffset || sizeExtractor.applyAsInt(first) < limit) {
+                        return Flux.just(first);
+                    }
+
+                    int pages = (count - nextOffset + limit - 1) / limit;
+                    return Flux.range(0, pages)
+                            .flatMapSequential(i -> prod.apply(nextOffset + i * limit), concurrency, 1)
+                            .takeUntil(page -> sizeExtractor.applyAsInt(page) < limit)
+                            .startWith(first);
+                });
+    }
 }
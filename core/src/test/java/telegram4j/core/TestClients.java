@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.core.event.DefaultEventDispatcher;
+import telegram4j.core.util.Id;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+
+import java.util.function.Function;
+
+/** Factory of offline clients for tests, which have only in-memory store and event dispatcher. */
+public final class TestClients {
+    public static final long SELF_ID = 1;
+
+    private TestClients() {}
+
+    public static MTProtoTelegramClient create() {
+        var store = new StoreLayoutImpl(Function.identity());
+        var dispatcher = new DefaultEventDispatcher(Schedulers.immediate(), false,
+                Sinks.many().multicast().directBestEffort(), Sinks.EmitFailureHandler.FAIL_FAST);
+        return new MTProtoTelegramClient(new AuthorizationResources(1, "hash", "token"), null,
+                new MTProtoResources(store, dispatcher, null), c -> null, Id.ofUser(SELF_ID),
+                null, c -> null, Mono.never());
+    }
+}
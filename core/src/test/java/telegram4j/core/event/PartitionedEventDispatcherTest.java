@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.scheduler.VirtualTimeScheduler;
+import telegram4j.core.MTProtoTelegramClient;
+import telegram4j.core.TestClients;
+import telegram4j.core.event.PartitionedEventDispatcher.OverflowStrategy;
+import telegram4j.core.event.domain.Event;
+import telegram4j.core.event.domain.message.DeleteMessagesEvent;
+import telegram4j.core.util.Id;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedEventDispatcherTest {
+
+    final MTProtoTelegramClient client = TestClients.create();
+
+    DeleteMessagesEvent event(long chatId, int seq) {
+        return new DeleteMessagesEvent(client, Id.ofChat(chatId), false, null, List.of(seq));
+    }
+
+    static int seqOf(Event event) {
+        return ((DeleteMessagesEvent) event).getDeleteMessagesIds().get(0);
+    }
+
+    @Test
+    void preservesOrderOfChat() throws InterruptedException {
+        int chats = 16;
+        int perChat = 500;
+        var dispatcher = new PartitionedEventDispatcher(4);
+        var received = new ConcurrentHashMap<Id, List<Integer>>();
+        var done = new CountDownLatch(chats * perChat);
+        var random = new SplittableRandom(7);
+
+        var subscription = dispatcher.on(DeleteMessagesEvent.class, e -> Mono.fromRunnable(() -> {
+                    received.computeIfAbsent(e.getChatId().orElseThrow(), k -> new CopyOnWriteArrayList<>())
+                            .add(seqOf(e));
+                    done.countDown();
+                }))
+                .subscribe();
+
+        var counters = new int[chats];
+        for (int i = 0; i < chats * perChat; i++) {
+            int chat;
+            do {
+                chat = random.nextInt(chats);
+            } while (counters[chat] == perChat);
+            dispatcher.publish(event(chat + 1, counters[chat]++));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(chats, received.size());
+        for (Map.Entry<Id, List<Integer>> e : received.entrySet()) {
+            var list = e.getValue();
+            assertEquals(perChat, list.size());
+            for (int i = 0; i < list.size(); i++) {
+                assertEquals(i, list.get(i), "Events of chat " + e.getKey() + " are reordered");
+            }
+        }
+
+        subscription.dispose();
+        dispatcher.close().block();
+    }
+
+    @Test
+    void bufferKeepsAllEvents() {
+        var scheduler = VirtualTimeScheduler.create();
+        var dispatcher = new PartitionedEventDispatcher(scheduler, false, 1, 2, OverflowStrategy.BUFFER);
+        var received = new ArrayList<Integer>();
+        var subscription = dispatcher.all().subscribe(e -> received.add(seqOf(e)));
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.publish(event(1, i));
+        }
+        assertEquals(5, dispatcher.getPartitionStats().get(0).pending());
+
+        scheduler.advanceTime();
+        assertEquals(List.of(0, 1, 2, 3, 4), received);
+        var stats = dispatcher.getPartitionStats().get(0);
+        assertEquals(new PartitionedEventDispatcher.PartitionStats(0, 5, 5, 0, 0), stats);
+
+        subscription.dispose();
+    }
+
+    @Test
+    void dropOldestKeepsNewestEvents() {
+        var scheduler = VirtualTimeScheduler.create();
+        var dispatcher = new PartitionedEventDispatcher(scheduler, false, 1, 2, OverflowStrategy.DROP_OLDEST);
+        var received = new ArrayList<Integer>();
+        var subscription = dispatcher.all().subscribe(e -> received.add(seqOf(e)));
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.publish(event(1, i));
+        }
+
+        scheduler.advanceTime();
+        assertEquals(List.of(3, 4), received);
+        var stats = dispatcher.getPartitionStats().get(0);
+        assertEquals(new PartitionedEventDispatcher.PartitionStats(0, 5, 2, 3, 0), stats);
+
+        subscription.dispose();
+    }
+
+    @Test
+    void blockWaitsForFreeSpace() throws InterruptedException {
+        var scheduler = VirtualTimeScheduler.create();
+        var dispatcher = new PartitionedEventDispatcher(scheduler, false, 1, 1, OverflowStrategy.BLOCK);
+        var received = new CopyOnWriteArrayList<Integer>();
+        var subscription = dispatcher.all().subscribe(e -> received.add(seqOf(e)));
+
+        dispatcher.publish(event(1, 0));
+        var publisher = new Thread(() -> dispatcher.publish(event(1, 1)));
+        publisher.start();
+
+        publisher.join(Duration.ofMillis(100).toMillis());
+        assertTrue(publisher.isAlive(), "Publisher must wait while partition is full");
+
+        scheduler.advanceTime();
+        publisher.join(Duration.ofSeconds(5).toMillis());
+        assertFalse(publisher.isAlive());
+
+        scheduler.advanceTime();
+        assertEquals(List.of(0, 1), received);
+
+        subscription.dispose();
+    }
+
+    @Test
+    void blockBuffersEventsOfUpdatesLane() {
+        var scheduler = VirtualTimeScheduler.create();
+        var dispatcher = new PartitionedEventDispatcher(scheduler, false, 1, 1, OverflowStrategy.BLOCK);
+        var received = new ArrayList<Integer>();
+        var subscription = dispatcher.all().subscribe(e -> received.add(seqOf(e)));
+        var lane = new UpdatesLane("test", Schedulers.parallel(), dispatcher::publish);
+
+        // partition isn't drained until advancing of virtual time, so it's full after first event
+        lane.dispatch(Flux.range(0, 5).map(i -> event(1, i)));
+        lane.submit(Flux.empty()).blockLast(Duration.ofSeconds(10));
+        assertEquals(5, dispatcher.getPartitionStats().get(0).pending());
+
+        scheduler.advanceTime();
+        assertEquals(List.of(0, 1, 2, 3, 4), received);
+        assertEquals(new PartitionedEventDispatcher.PartitionStats(0, 5, 5, 0, 4),
+                dispatcher.getPartitionStats().get(0));
+
+        lane.dispose();
+        subscription.dispose();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PtsGapBufferTest {
+
+    final PtsGapBuffer buffer = new PtsGapBuffer();
+
+    Disposable open(int pts, int ptsCount) {
+        assertTrue(buffer.park(pts, ptsCount, Flux.empty()));
+        var timer = Disposables.single();
+        buffer.timeout = timer;
+        return timer;
+    }
+
+    void assertPoll(int expectedPts, int localPts) {
+        var p = buffer.poll(localPts);
+        assertNotNull(p);
+        assertEquals(expectedPts, p.pts());
+    }
+
+    @Test
+    void appliesUpdatesInPtsOrder() {
+        open(5, 1);
+        assertFalse(buffer.park(3, 1, Flux.empty()));
+        assertFalse(buffer.park(9, 3, Flux.empty()));
+        assertFalse(buffer.park(4, 1, Flux.empty()));
+
+        // pts 2 is still missing
+        assertNull(buffer.poll(1));
+
+        assertPoll(3, 2);
+        assertPoll(4, 3);
+        assertPoll(5, 4);
+        // pts 6 is missing
+        assertNull(buffer.poll(5));
+        assertPoll(9, 6);
+        assertNull(buffer.poll(9));
+        assertTrue(buffer.pending.isEmpty());
+    }
+
+    @Test
+    void discardsDuplicatesAndAppliedUpdates() {
+        open(3, 1);
+        buffer.park(3, 1, Flux.empty());
+        buffer.park(2, 1, Flux.empty());
+        buffer.park(4, 1, Flux.empty());
+
+        // pts 2 was already applied
+        assertPoll(3, 2);
+        // the duplicate of pts 3 is discarded
+        assertPoll(4, 3);
+        assertNull(buffer.poll(4));
+        assertTrue(buffer.pending.isEmpty());
+    }
+
+    @Test
+    void closesHealedGap() {
+        var timer = open(3, 1);
+        assertFalse(buffer.closeIfHealed());
+
+        assertPoll(3, 2);
+        assertTrue(buffer.closeIfHealed());
+        assertTrue(timer.isDisposed());
+        assertNull(buffer.timeout);
+        // already closed
+        assertFalse(buffer.closeIfHealed());
+    }
+
+    @Test
+    void discardsGapResolvedByDifference() {
+        var timer = open(3, 1);
+        buffer.park(5, 1, Flux.empty());
+
+        assertTrue(buffer.discard());
+        assertTrue(timer.isDisposed());
+        assertTrue(buffer.pending.isEmpty());
+        // the gap isn't counted as healed after the difference
+        assertFalse(buffer.closeIfHealed());
+        assertFalse(buffer.discard());
+
+        // the next gap opens new timeout
+        assertTrue(buffer.park(10, 1, Flux.empty()));
+    }
+}
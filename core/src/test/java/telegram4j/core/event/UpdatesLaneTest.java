@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import telegram4j.core.MTProtoTelegramClient;
+import telegram4j.core.TestClients;
+import telegram4j.core.event.domain.Event;
+import telegram4j.core.event.domain.message.DeleteMessagesEvent;
+import telegram4j.core.util.Id;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdatesLaneTest {
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    final MTProtoTelegramClient client = TestClients.create();
+    final List<Event> published = new CopyOnWriteArrayList<>();
+    final AtomicLong time = new AtomicLong();
+    final UpdatesLane lane = new UpdatesLane("test", Schedulers.parallel(), published::add,
+            IDLE_TIMEOUT, time::get);
+
+    @AfterEach
+    void dispose() {
+        lane.dispose();
+    }
+
+    Event event(int seq) {
+        return new DeleteMessagesEvent(client, Id.ofChat(1), false, null, List.of(seq));
+    }
+
+    static int seqOf(Event event) {
+        return ((DeleteMessagesEvent) event).getDeleteMessagesIds().get(0);
+    }
+
+    // waits for completion of all previously enqueued tasks
+    void await() {
+        lane.submit(Flux.empty()).blockLast(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void executesTasksSeriallyInSubmissionOrder() {
+        int count = 20;
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            int seq = i;
+            // earlier tasks take more time
+            lane.dispatch(Mono.delay(Duration.ofMillis(count - i))
+                    .<Event>map(l -> event(seq))
+                    .doOnSubscribe(s -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                    .doFinally(s -> running.decrementAndGet()));
+        }
+        await();
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(IntStream.range(0, count).boxed().collect(Collectors.toList()),
+                published.stream().map(UpdatesLaneTest::seqOf).collect(Collectors.toList()));
+
+        // the awaiting task can be still in progress
+        assertTrue(lane.stats().processedCount() >= count);
+    }
+
+    @Test
+    void submitReturnsEventsToCaller() {
+        var executed = new AtomicInteger();
+        // the result isn't subscribed, but task is executed anyway
+        lane.submit(Flux.defer(() -> {
+            executed.incrementAndGet();
+            return Flux.just(event(0));
+        }));
+
+        var events = lane.submit(Flux.just(event(1), event(2))).collectList().block(Duration.ofSeconds(10));
+        assertNotNull(events);
+        assertEquals(List.of(1, 2), events.stream().map(UpdatesLaneTest::seqOf).collect(Collectors.toList()));
+        assertEquals(1, executed.get());
+
+        lane.dispatch(Flux.just(event(3)));
+        await();
+        // submitted events aren't published
+        assertEquals(List.of(3), published.stream().map(UpdatesLaneTest::seqOf).collect(Collectors.toList()));
+    }
+
+    @Test
+    void isolatesErrorsOfTasks() {
+        lane.dispatch(Flux.concat(Flux.just(event(0)), Flux.error(new IllegalStateException("dispatched"))));
+        var submitted = lane.submit(Flux.concat(Flux.just(event(1)), Flux.error(new IllegalStateException("submitted"))));
+        lane.dispatch(Flux.just(event(2)));
+
+        var e = assertThrows(IllegalStateException.class, () -> submitted.blockLast(Duration.ofSeconds(10)));
+        assertEquals("submitted", e.getMessage());
+        await();
+
+        // events emitted before the error are delivered, and next tasks are executed
+        assertEquals(List.of(0, 2), published.stream().map(UpdatesLaneTest::seqOf).collect(Collectors.toList()));
+        assertEquals(List.of(3), lane.submit(Flux.just(event(3))).map(UpdatesLaneTest::seqOf)
+                .collectList().block(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void evictsIdleChannelsWithoutGaps() {
+        var idle = lane.channel(1);
+        idle.pts = 10;
+        var gap = lane.channel(2);
+        gap.gaps.park(20, 1, Flux.empty());
+        time.addAndGet(IDLE_TIMEOUT.toNanos() / 2);
+        var active = lane.channel(3);
+        assertEquals(3, lane.stats().channelsCount());
+
+        time.addAndGet(IDLE_TIMEOUT.toNanos() / 2);
+        lane.channel(4);
+
+        // the active channel was accessed less than timeout ago
+        assertFalse(lane.channels.containsKey(1L));
+        assertSame(gap, lane.channels.get(2L));
+        assertSame(active, lane.channels.get(3L));
+        assertEquals(3, lane.stats().channelsCount());
+
+        // the state is created again with unknown pts
+        assertEquals(-1, lane.channel(1).pts);
+    }
+}
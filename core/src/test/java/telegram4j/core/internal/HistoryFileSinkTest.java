@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.internal;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.core.auxiliary.HistoryExportFormat;
+import telegram4j.core.auxiliary.HistoryMessage;
+import telegram4j.tl.BaseMessage;
+import telegram4j.tl.BaseUser;
+import telegram4j.tl.ImmutablePeerUser;
+import telegram4j.tl.TlDeserializer;
+import telegram4j.tl.api.TlObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryFileSinkTest {
+    static final BaseUser user = BaseUser.builder().id(1).build();
+
+    @TempDir
+    Path dir;
+
+    static HistoryMessage message(int id) {
+        var message = BaseMessage.builder()
+                .id(id)
+                .peerId(ImmutablePeerUser.of(user.id()))
+                .date(id)
+                .message("message " + id)
+                .build();
+        return new HistoryMessage(message, id == 10 ? List.of(user) : List.of(), List.of());
+    }
+
+    // emulates crash: data is written, but progress isn't saved
+    static void crash(HistoryFileSink sink) throws IOException {
+        sink.out.flush();
+        sink.channel.close();
+        if (sink.buf != null) {
+            sink.buf.release();
+        }
+    }
+
+    static List<TlObject> readTl(Path path) throws IOException {
+        var buf = Unpooled.wrappedBuffer(Files.readAllBytes(path));
+        var objects = new ArrayList<TlObject>();
+        while (buf.isReadable()) {
+            objects.add(TlDeserializer.deserialize(buf));
+        }
+        return objects;
+    }
+
+    @Test
+    void truncatesUnsavedDataAndResumes() throws IOException {
+        Path path = dir.resolve("history.bin");
+        Path progressPath = HistoryFileSink.progressPath(path);
+
+        var sink = HistoryFileSink.open(path, HistoryExportFormat.TL);
+        assertEquals(0, sink.getLastMessageId());
+        sink.write(message(10));
+        sink.write(message(9));
+        sink.saveProgress();
+        long savedSize = Files.size(path);
+        sink.write(message(8));
+        crash(sink);
+        assertTrue(Files.size(path) > savedSize);
+
+        try (var resumed = HistoryFileSink.open(path, HistoryExportFormat.TL)) {
+            // message 8 is discarded and must be written again
+            assertEquals(9, resumed.getLastMessageId());
+            assertEquals(savedSize, Files.size(path));
+
+            resumed.write(message(8));
+            resumed.write(message(7));
+            resumed.finish();
+        }
+
+        assertFalse(Files.exists(progressPath));
+        assertEquals(List.of(user, message(10).message(), message(9).message(),
+                message(8).message(), message(7).message()), readTl(path));
+    }
+
+    @Test
+    void savesProgressOnClose() throws IOException {
+        Path path = dir.resolve("history.ndjson");
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.NDJSON)) {
+            sink.write(message(10));
+            sink.write(message(9));
+        }
+        long size = Files.size(path);
+        // the user and two messages
+        assertEquals(3, Files.readAllLines(path).size());
+
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.NDJSON)) {
+            assertEquals(9, sink.getLastMessageId());
+            assertEquals(size, Files.size(path));
+        }
+    }
+
+    @Test
+    void restartsWithAnotherFormat() throws IOException {
+        Path path = dir.resolve("history");
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.NDJSON)) {
+            sink.write(message(10));
+        }
+
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.TL)) {
+            assertEquals(0, sink.getLastMessageId());
+            assertEquals(0, Files.size(path));
+        }
+    }
+
+    @Test
+    void restartsWithCorruptedProgress() throws IOException {
+        Path path = dir.resolve("history");
+        Path progressPath = HistoryFileSink.progressPath(path);
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.TL)) {
+            sink.write(message(10));
+        }
+        byte[] progress = Files.readAllBytes(progressPath);
+
+        // truncated progress file
+        Files.write(progressPath, new byte[]{progress[0], progress[1], progress[2], progress[3], 0});
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.TL)) {
+            assertEquals(0, sink.getLastMessageId());
+            assertEquals(0, Files.size(path));
+            sink.write(message(10));
+        }
+
+        // data file is shorter than saved progress
+        Files.write(path, new byte[1]);
+        try (var sink = HistoryFileSink.open(path, HistoryExportFormat.TL)) {
+            assertEquals(0, sink.getLastMessageId());
+            assertEquals(0, Files.size(path));
+        }
+    }
+
+    @Test
+    void formatCodesAreStable() {
+        assertEquals(1, HistoryFileSink.formatCode(HistoryExportFormat.NDJSON));
+        assertEquals(2, HistoryFileSink.formatCode(HistoryExportFormat.TL));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.internal;
+
+import org.junit.jupiter.api.Test;
+import telegram4j.core.TestClients;
+import telegram4j.core.object.chat.UnavailableChannel;
+import telegram4j.core.object.chat.UnavailableGroupChat;
+import telegram4j.core.util.Id;
+import telegram4j.tl.BaseUser;
+import telegram4j.tl.ChannelForbidden;
+import telegram4j.tl.ChatForbidden;
+import telegram4j.tl.UserEmpty;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyEntityMapTest {
+
+    @Test
+    void emptyUserIsAbsent() {
+        var client = TestClients.create();
+        var empty = UserEmpty.builder().id(2).build();
+        var users = LazyEntityMap.ofUsers(client, List.of(empty));
+
+        assertSame(empty, users.getRaw(Id.ofUser(2)));
+        assertNull(users.get(Id.ofUser(2)));
+        assertFalse(users.containsKey(Id.ofUser(2)));
+        assertTrue(users.isEmpty());
+        assertEquals(0, users.size());
+    }
+
+    @Test
+    void onlyCreatedUsersArePresent() {
+        var client = TestClients.create();
+        var users = LazyEntityMap.ofUsers(client, List.of(
+                BaseUser.builder().id(1).build(),
+                UserEmpty.builder().id(2).build()));
+
+        assertFalse(users.isEmpty());
+        assertEquals(1, users.size());
+        assertTrue(users.containsKey(Id.ofUser(1)));
+        assertFalse(users.containsKey(Id.ofUser(2)));
+        assertEquals(Id.ofUser(1), users.get(Id.ofUser(1)).getId());
+    }
+
+    @Test
+    void channelAndChatHaveDifferentKeys() {
+        var client = TestClients.create();
+        var chat = ChatForbidden.builder().id(10).title("chat").build();
+        var channel = ChannelForbidden.builder().id(10).accessHash(10).title("channel").build();
+        var chats = LazyEntityMap.ofChats(client, List.of(chat, channel));
+
+        assertEquals(2, chats.size());
+        assertSame(chat, chats.getRaw(Id.ofChat(10)));
+        assertSame(channel, chats.getRaw(Id.ofChannel(10)));
+        assertInstanceOf(UnavailableGroupChat.class, chats.get(Id.ofChat(10)));
+        assertInstanceOf(UnavailableChannel.class, chats.get(Id.ofChannel(10)));
+        assertNull(chats.get(Id.ofUser(10)));
+    }
+
+    @Test
+    void entityIsCreatedOncePerKey() {
+        var client = TestClients.create();
+        var users = LazyEntityMap.ofUsers(client, List.of(BaseUser.builder().id(1).build()));
+
+        var user = users.get(Id.ofUser(1));
+        assertNotNull(user);
+        assertSame(user, users.get(Id.ofUser(1)));
+        assertSame(user, users.values().iterator().next());
+        assertSame(user, users.get(Id.ofUser(1)));
+    }
+}
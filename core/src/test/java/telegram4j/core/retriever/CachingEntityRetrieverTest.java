@@ -0,0 +1,187 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.core.retriever;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.annotation.Nullable;
+import telegram4j.core.MTProtoTelegramClient;
+import telegram4j.core.TestClients;
+import telegram4j.core.auxiliary.AuxiliaryMessages;
+import telegram4j.core.object.PeerEntity;
+import telegram4j.core.object.User;
+import telegram4j.core.object.chat.Chat;
+import telegram4j.core.object.chat.ChatParticipant;
+import telegram4j.core.util.Id;
+import telegram4j.core.util.PeerId;
+import telegram4j.tl.BaseUser;
+import telegram4j.tl.InputMessage;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingEntityRetrieverTest {
+    static final Duration TTL = Duration.ofMinutes(5);
+    static final Duration NEGATIVE_TTL = Duration.ofSeconds(30);
+    static final Id KNOWN = Id.ofUser(10);
+    static final Id UNKNOWN = Id.ofUser(20);
+
+    final AtomicLong time = new AtomicLong();
+    final UserRetriever delegate = new UserRetriever(TestClients.create());
+    final CachingEntityRetriever retriever = new CachingEntityRetriever(delegate,
+            new CachingEntityRetriever.Options(TTL, NEGATIVE_TTL, 100), time::get);
+
+    void advance(Duration duration) {
+        time.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void cachesResolvedEntitiesForTtl() {
+        assertEquals(KNOWN, retriever.getUserMinById(KNOWN).map(User::getId).block());
+        advance(TTL.minusSeconds(1));
+        assertEquals(KNOWN, retriever.getUserMinById(KNOWN).map(User::getId).block());
+        assertEquals(1, delegate.requests(KNOWN));
+
+        advance(Duration.ofSeconds(2));
+        assertEquals(KNOWN, retriever.getUserMinById(KNOWN).map(User::getId).block());
+        assertEquals(2, delegate.requests(KNOWN));
+        assertEquals(1, retriever.getStats().hitCount());
+    }
+
+    @Test
+    void cachesAbsentEntitiesForNegativeTtl() {
+        assertNull(retriever.getUserMinById(UNKNOWN).block());
+        advance(NEGATIVE_TTL.minusSeconds(1));
+        assertNull(retriever.getUserMinById(UNKNOWN).block());
+        assertEquals(1, delegate.requests(UNKNOWN));
+
+        advance(Duration.ofSeconds(2));
+        assertNull(retriever.getUserMinById(UNKNOWN).block());
+        assertEquals(2, delegate.requests(UNKNOWN));
+    }
+
+    @Test
+    void disabledNegativeCaching() {
+        var retriever = new CachingEntityRetriever(delegate,
+                new CachingEntityRetriever.Options(TTL, Duration.ZERO, 100), time::get);
+
+        assertNull(retriever.getUserMinById(UNKNOWN).block());
+        assertNull(retriever.getUserMinById(UNKNOWN).block());
+        assertEquals(2, delegate.requests(UNKNOWN));
+    }
+
+    @Test
+    void deduplicatesInflightRequests() {
+        delegate.pending = Sinks.one();
+
+        var first = retriever.getUserMinById(KNOWN).map(User::getId).toFuture();
+        var second = retriever.getUserMinById(KNOWN).map(User::getId).toFuture();
+        assertFalse(first.isDone());
+        // cancellation of one subscriber doesn't affect the shared request
+        first.cancel(true);
+
+        delegate.pending.tryEmitEmpty();
+        assertEquals(KNOWN, second.join());
+        assertEquals(1, delegate.requests(KNOWN));
+    }
+
+    @Test
+    void doesNotCacheErrors() {
+        delegate.failure = new IllegalStateException("CHANNEL_PRIVATE");
+        assertThrows(IllegalStateException.class, () -> retriever.getUserMinById(KNOWN).block());
+
+        delegate.failure = null;
+        assertEquals(KNOWN, retriever.getUserMinById(KNOWN).map(User::getId).block());
+        assertEquals(2, delegate.requests(KNOWN));
+    }
+
+    // Knows only the KNOWN user
+    static class UserRetriever implements EntityRetriever {
+        final MTProtoTelegramClient client;
+        final ConcurrentHashMap<Id, AtomicInteger> requests = new ConcurrentHashMap<>();
+        // delays responses until completion if present
+        @Nullable
+        volatile Sinks.One<Void> pending;
+        @Nullable
+        volatile RuntimeException failure;
+
+        UserRetriever(MTProtoTelegramClient client) {
+            this.client = client;
+        }
+
+        int requests(Id id) {
+            var count = requests.get(id);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        public Mono<User> getUserMinById(Id userId) {
+            return Mono.defer(() -> {
+                requests.computeIfAbsent(userId, k -> new AtomicInteger()).incrementAndGet();
+                if (failure != null) {
+                    return Mono.error(failure);
+                }
+
+                Mono<User> user = userId.equals(KNOWN)
+                        ? Mono.just(new User(client, BaseUser.builder().id(userId.asLong()).build(), null))
+                        : Mono.empty();
+                var p = pending;
+                return p != null ? p.asMono().then(user) : user;
+            });
+        }
+
+        @Override
+        public Mono<PeerEntity> resolvePeer(PeerId peerId) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<User> getUserFullById(Id userId) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Chat> getChatMinById(Id chatId) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Chat> getChatFullById(Id chatId) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<ChatParticipant> getParticipantById(Id chatId, Id peerId) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Flux<ChatParticipant> getParticipants(Id chatId) {
+            return Flux.empty();
+        }
+
+        @Override
+        public Mono<AuxiliaryMessages> getMessages(@Nullable Id chatId, Iterable<? extends InputMessage> messageIds) {
+            return Mono.empty();
+        }
+    }
+}
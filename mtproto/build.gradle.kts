@@ -1,3 +1,7 @@
+plugins {
+    id("me.champeau.jmh")
+}
+
 dependencies {
     api(libs.tl.parser) { isChanging = true }
     api(libs.reactor.core)
@@ -17,5 +21,11 @@ dependencies {
     api(libs.caffeine)
 }
 
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Reports allocated bytes per operation
+    profilers.add("gc")
+}
+
 description = "TCP client written with Reactor Netty for the Telegram API"
 extra["displayName"] = "Telegram4J MTProto"
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import telegram4j.mtproto.util.IGECipher;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static telegram4j.mtproto.internal.Crypto.sha256Digest;
+
+/**
+ * Compares allocations of message key derivation and cipher re-keying per message.
+ * The {@code gc.alloc.rate.norm} metric of the GC profiler shows bytes allocated per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoContextBenchmark {
+
+    @Param({"256", "4096"})
+    int size;
+
+    ByteBuf authKey;
+    ByteBuf message;
+
+    IGECipher legacyCipher;
+    CryptoContext context;
+
+    @Setup
+    public void setup() {
+        var random = ThreadLocalRandom.current();
+        byte[] authKeyBytes = new byte[256];
+        random.nextBytes(authKeyBytes);
+        authKey = Unpooled.wrappedBuffer(authKeyBytes);
+
+        byte[] plain = new byte[size];
+        random.nextBytes(plain);
+        message = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(plain);
+
+        legacyCipher = IGECipher.create(IGECipher.Engine.BULK);
+        context = new CryptoContext(IGECipher.create(IGECipher.Engine.BULK));
+    }
+
+    @TearDown
+    public void tearDown() {
+        message.release();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
+        ByteBuf messageKey = messageKeyHash.slice(8, 16);
+
+        ByteBuf sha256a = sha256Digest(messageKey, authKey.slice(0, 36));
+        ByteBuf sha256b = sha256Digest(authKey.slice(40, 36), messageKey);
+
+        ByteBuf aesKey = Unpooled.wrappedBuffer(
+                sha256a.retainedSlice(0, 8),
+                sha256b.retainedSlice(8, 16),
+                sha256a.retainedSlice(24, 8));
+
+        ByteBuf aesIV = Unpooled.wrappedBuffer(
+                sha256b.retainedSlice(0, 8),
+                sha256a.retainedSlice(8, 16),
+                sha256b.retainedSlice(24, 8));
+        sha256a.release();
+        sha256b.release();
+
+        legacyCipher.init(true, aesKey, aesIV);
+        bh.consume(legacyCipher.encrypt(message));
+    }
+
+    @Benchmark
+    public void context(Blackhole bh) {
+        context.computeMessageKey(authKey, message, false);
+        context.initCipher(authKey, context.msgKeyHash, CryptoContext.MSG_KEY_OFFSET, false);
+        bh.consume(context.cipher.encrypt(message));
+    }
+}
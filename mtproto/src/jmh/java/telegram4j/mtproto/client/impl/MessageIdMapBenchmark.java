@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares in-flight request tables under the typical workload of the connection:
+ * registration of request with the new message id and removal of the answered one.
+ * The {@code gc.alloc.rate.norm} metric of the GC profiler shows bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageIdMapBenchmark {
+    static final Object REQUEST = new Object();
+
+    @Param({"16", "1024", "16384"})
+    int inflight;
+
+    HashMap<Long, Object> hashMap;
+    MessageIdMap<Object> messageIdMap;
+
+    // message ids of in-flight requests as ring buffer
+    long[] window;
+    int cursor;
+    long lastMessageId;
+    SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        hashMap = new HashMap<>();
+        messageIdMap = new MessageIdMap<>();
+        window = new long[inflight];
+        random = new SplittableRandom(0x1337);
+        lastMessageId = System.currentTimeMillis() / 1000 << 32;
+
+        for (int i = 0; i < inflight; i++) {
+            long messageId = nextMessageId();
+            window[i] = messageId;
+            hashMap.put(messageId, REQUEST);
+            messageIdMap.put(messageId, REQUEST);
+        }
+    }
+
+    long nextMessageId() {
+        return lastMessageId += 4;
+    }
+
+    // Responses are received not strictly in order of requests
+    int nextAnswered() {
+        return (cursor + random.nextInt(Math.min(inflight, 8))) % inflight;
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole bh) {
+        int idx = nextAnswered();
+        bh.consume(hashMap.remove(window[idx]));
+        long messageId = nextMessageId();
+        window[idx] = messageId;
+        hashMap.put(messageId, REQUEST);
+        bh.consume(hashMap.get(window[cursor]));
+        cursor = (cursor + 1) % inflight;
+    }
+
+    @Benchmark
+    public void messageIdMap(Blackhole bh) {
+        int idx = nextAnswered();
+        bh.consume(messageIdMap.remove(window[idx]));
+        long messageId = nextMessageId();
+        window[idx] = messageId;
+        messageIdMap.put(messageId, REQUEST);
+        bh.consume(messageIdMap.get(window[cursor]));
+        cursor = (cursor + 1) % inflight;
+    }
+
+    @Benchmark
+    public void hashMapIteration(Blackhole bh) {
+        for (var e : hashMap.entrySet()) {
+            bh.consume(e.getKey().longValue());
+            bh.consume(e.getValue());
+        }
+    }
+
+    @Benchmark
+    public void messageIdMapIteration(Blackhole bh) {
+        for (int s = messageIdMap.first(); s != -1; s = messageIdMap.next(s)) {
+            bh.consume(messageIdMap.keyAt(s));
+            bh.consume(messageIdMap.valueAt(s));
+        }
+    }
+}
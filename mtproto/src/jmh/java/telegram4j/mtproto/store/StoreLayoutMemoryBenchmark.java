@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import org.openjdk.jmh.annotations.*;
+import telegram4j.tl.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compares retained heap of {@link StoreLayoutImpl} with object and serialized
+ * representation of entities. Each invocation fills new store with users and messages,
+ * retained heap per entity is printed after each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StoreLayoutMemoryBenchmark {
+
+    @Param({"false", "true"})
+    boolean serialized;
+
+    @Param({"100000"})
+    int count;
+
+    List<User> users;
+    List<Message> messages;
+
+    StoreLayoutImpl store;
+    long baseline;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        users = new ArrayList<>(count);
+        messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = 1_000_000L + i;
+            users.add(BaseUser.builder()
+                    .id(id)
+                    .accessHash(id * 31)
+                    .firstName("User " + i)
+                    .lastName("Lastname")
+                    .username("user_" + i)
+                    .langCode("en")
+                    .build());
+
+            messages.add(BaseMessage.builder()
+                    .id(i + 1)
+                    .peerId(ImmutablePeerUser.of(id))
+                    .fromId(ImmutablePeerUser.of(id))
+                    .date(1_700_000_000 + i)
+                    .message("Message text number " + i)
+                    .build());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createStore() {
+        store = null;
+        baseline = usedHeap();
+
+        var options = EntityCacheOptions.unbounded();
+        store = new StoreLayoutImpl(Function.identity(), serialized ? options.asSerialized() : options);
+    }
+
+    @Benchmark
+    public StoreLayoutImpl fill() {
+        store.onContacts(List.of(), users).block();
+        for (Message message : messages) {
+            store.onNewMessage(message).block();
+        }
+        return store;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long retained = usedHeap() - baseline;
+        System.out.printf("%nretained: %d bytes, %.1f bytes per user and message%n",
+                retained, retained / (double) count);
+        store = null;
+    }
+
+    static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IGECipherBenchmark {
+
+    @Param({"DEFAULT", "BULK"})
+    IGECipher.Engine engine;
+
+    @Param({"64", "1024", "16384", "524288"})
+    int size;
+
+    byte[] key = new byte[32];
+    byte[] iv = new byte[32];
+    ByteBuf data;
+    IGECipher cipher;
+
+    @Setup
+    public void setup() {
+        var random = ThreadLocalRandom.current();
+        random.nextBytes(key);
+        random.nextBytes(iv);
+
+        byte[] plain = new byte[size];
+        random.nextBytes(plain);
+        data = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(plain);
+        cipher = IGECipher.create(engine);
+    }
+
+    @TearDown
+    public void tearDown() {
+        data.release();
+    }
+
+    @Benchmark
+    public void encrypt(Blackhole bh) {
+        cipher.init(true, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+        ByteBuf encrypted = cipher.encrypt(data.retain());
+        bh.consume(encrypted.getByte(0));
+        encrypted.release();
+    }
+
+    @Benchmark
+    public void decrypt(Blackhole bh) {
+        cipher.init(false, Unpooled.wrappedBuffer(key), Unpooled.wrappedBuffer(iv));
+        ByteBuf decrypted = cipher.decrypt(data.retain());
+        bh.consume(decrypted.getByte(0));
+        decrypted.release();
+    }
+}
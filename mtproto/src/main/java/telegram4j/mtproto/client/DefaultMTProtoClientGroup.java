@@ -21,6 +21,7 @@ import reactor.core.scheduler.Schedulers;
 import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.RpcException;
 import telegram4j.mtproto.util.ResettableInterval;
 import telegram4j.tl.api.TlMethod;
 
@@ -29,16 +30,26 @@ import java.lang.invoke.VarHandle;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.BiConsumer;
 
 import static telegram4j.mtproto.internal.Preconditions.requireArgument;
 
 /**
  * Default implementation of {@code MTProtoClientManager} with fixed
- * count of download/upload clients.
+ * count of download/upload clients and optional pool of main DC connections.
+ *
+ * <p> If {@link Options#mainClientsCount()} is greater than one, then on {@link #start()}
+ * the secondary connections to main DC are opened. They share an auth key with the {@link #main()}
+ * client, but have own sessions and don't receive updates. Queries sent with {@link DcId#main()}
+ * are distributed between healthy connections by the {@link Options#mainRouting()} strategy.
+ * Connection is considered unhealthy after {@link #MAX_MAIN_FAILURES} consecutive non-RPC failures,
+ * such connections are excluded from routing and reopened on next check-in.
  */
 public class DefaultMTProtoClientGroup implements MTProtoClientManager {
 
@@ -46,6 +57,9 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
     //  Client load should be determined by load on the socket,
     //  not on the RPC, since there are such requests as upload.getFile and upload.save*FilePart
     protected static final int FORK_REQUESTS_THRESHOLD = 20;
+    protected static final int MAX_MAIN_FAILURES = 3;
+    // The state of pool slot which connection isn't opened yet
+    protected static final int CONNECTING = -1;
 
     protected static final VarHandle MAIN;
 
@@ -62,12 +76,18 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
     protected final ResettableInterval activityMonitoring = new ResettableInterval(Schedulers.single(),
             Sinks.many().unicast().onBackpressureError());
     protected final ConcurrentMap<Integer, Dc> dcs = new ConcurrentHashMap<>();
+    // secondary connections to main DC
+    protected final ClientSet mainPool;
+    // count of consecutive failures or CONNECTING
+    protected final AtomicIntegerArray mainPoolStates;
     protected volatile MTProtoClient main;
 
     protected volatile boolean terminated;
 
     public DefaultMTProtoClientGroup(Options options) {
         this.options = options;
+        this.mainPool = new ClientSet(options.mainClientsCount - 1);
+        this.mainPoolStates = new AtomicIntegerArray(options.mainClientsCount - 1);
 
         MAIN.set(this, createClient(DcId.Type.MAIN, options.mainDc));
     }
@@ -77,16 +97,44 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
         return main;
     }
 
+    @Override
+    public List<MTProtoClient> mainClients() {
+        var clients = new ArrayList<MTProtoClient>(mainPool.size() + 1);
+        clients.add(main);
+        for (int i = 0; i < mainPool.size(); i++) {
+            var client = mainPool.get(i);
+            if (client != null) {
+                clients.add(client);
+            }
+        }
+        return clients;
+    }
+
     @Override
     public Mono<MTProtoClient> setMain(DataCenter dc) {
         var newClient = createClient(DcId.Type.MAIN, dc);
         var oldClient = (MTProtoClient) MAIN.getAndSet(this, newClient);
-        return Mono.when(oldClient.close(), newClient.connect())
+
+        // Secondary connections will be reopened to new DC on next check-in
+        var closeAll = new ArrayList<Mono<Void>>();
+        closeAll.add(oldClient.close());
+        for (int i = 0; i < mainPool.size(); i++) {
+            var client = mainPool.get(i);
+            if (client != null && mainPool.remove(i, client)) {
+                closeAll.add(client.close());
+            }
+        }
+        closeAll.add(newClient.connect());
+
+        return Mono.when(closeAll)
                 .thenReturn(newClient);
     }
 
     @Override
     public <R> Mono<R> send(DcId id, TlMethod<? extends R> method) {
+        if (id.getType() == DcId.Type.MAIN && mainPool.size() != 0) {
+            return sendMain(method);
+        }
         return getOrCreateClient(id)
                 .flatMap(client -> client.send(method));
     }
@@ -114,6 +162,12 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
                     }
                 });
             }
+            for (int i = 0; i < mainPool.size(); i++) {
+                var client = mainPool.get(i);
+                if (client != null) {
+                    closeAll.add(client.close());
+                }
+            }
             closeAll.add(main.close());
 
             closeAll.add(options.updateDispatcher.close());
@@ -160,11 +214,12 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
 
         activityMonitoring.start(options.checkinPeriod);
 
-        return activityMonitoring.ticks()
+        return Mono.when(checkMainPool(), activityMonitoring.ticks()
                 .flatMap(tick -> {
                     Instant now = Instant.now();
 
                     var toClose = new ArrayList<Mono<Void>>();
+                    toClose.add(checkMainPool());
                     for (Dc dc : dcs.values()) {
                         dc.all((kind, clientSet) -> {
                             Duration inactivePeriod = kind == DcId.Type.DOWNLOAD
@@ -182,8 +237,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
                         });
                     }
                     return Mono.whenDelayError(toClose);
-                })
-                .then();
+                }));
     }
 
     @Override
@@ -246,6 +300,86 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
         return options.clientFactory.create(this, type, dcOption);
     }
 
+    protected <R> Mono<R> sendMain(TlMethod<? extends R> method) {
+        return Mono.defer(() -> {
+            var main = this.main;
+
+            var clients = new ArrayList<MTProtoClient>(mainPool.size() + 1);
+            clients.add(main);
+            for (int i = 0; i < mainPool.size(); i++) {
+                var client = mainPool.get(i);
+                if (client != null && isHealthy(mainPoolStates.get(i))) {
+                    clients.add(client);
+                }
+            }
+
+            var selected = clients.size() == 1 ? main : options.mainRouting.select(method, clients);
+            int index = selected != main ? mainPool.indexOf(selected) : -1;
+            if (index == -1) {
+                return main.send(method);
+            }
+
+            return selected.<R>send(method)
+                    .doOnSuccess(ignored -> resetFailures(index))
+                    .doOnError(t -> {
+                        // RPC errors don't indicate problems with connection
+                        if (t instanceof RpcException) {
+                            resetFailures(index);
+                        } else {
+                            mainPoolStates.getAndUpdate(index, c -> c == CONNECTING ? c : c + 1);
+                        }
+                    });
+        });
+    }
+
+    protected void resetFailures(int index) {
+        mainPoolStates.getAndUpdate(index, c -> c == CONNECTING ? c : 0);
+    }
+
+    protected boolean isHealthy(int state) {
+        return state != CONNECTING && state < MAX_MAIN_FAILURES;
+    }
+
+    // Closes unhealthy secondary connections and opens missing ones
+    protected Mono<Void> checkMainPool() {
+        if (terminated || mainPool.size() == 0) {
+            return Mono.empty();
+        }
+
+        var tasks = new ArrayList<Mono<Void>>();
+        for (int i = 0; i < mainPool.size(); i++) {
+            var client = mainPool.get(i);
+            if (client == null) {
+                tasks.add(openMainClient(i));
+            } else if (mainPoolStates.get(i) >= MAX_MAIN_FAILURES && mainPool.remove(i, client)) {
+                tasks.add(client.close().then(openMainClient(i)));
+            }
+        }
+        return Mono.whenDelayError(tasks);
+    }
+
+    protected Mono<Void> openMainClient(int index) {
+        return Mono.defer(() -> {
+            var newClient = createClient(DcId.Type.MAIN, main.dc());
+            if (mainPool.trySet(index, newClient) != newClient) {
+                return Mono.empty();
+            }
+            mainPoolStates.set(index, CONNECTING);
+
+            newClient.onClose()
+                    .onErrorResume(t -> Mono.empty())
+                    .subscribe(null, null, () -> mainPool.remove(index, newClient));
+
+            return newClient.connect()
+                    .doOnSuccess(ignored -> mainPoolStates.set(index, 0))
+                    // failed connection will be reopened on next check-in
+                    .onErrorResume(t -> {
+                        mainPool.remove(index, newClient);
+                        return newClient.close();
+                    });
+        });
+    }
+
     protected boolean isInactive(MTProtoClient client, Duration inactivePeriod, Instant now) {
         return client.stats().lastQueryTimestamp()
                 .map(ts -> ts.plus(inactivePeriod).isBefore(now))
@@ -286,7 +420,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
                           UpdateDispatcher updateDispatcher, MTProtoOptions mtProtoOptions,
                           Duration checkinPeriod, Duration inactiveUploadPeriod,
                           Duration inactiveDownloadPeriod, int maxDownloadClientsCount,
-                          int maxUploadClientsCount)
+                          int maxUploadClientsCount, int mainClientsCount, MainRouting mainRouting)
             implements MTProtoClientGroup.Options {
 
         public static final Duration DEFAULT_CHECKIN = Duration.ofMinutes(1);
@@ -294,6 +428,7 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
         public static final Duration INACTIVE_DOWNLOAD_DURATION = Duration.ofMinutes(3);
         public static final int DEFAULT_MAX_DOWNLOAD_CLIENTS_COUNT = 4;
         public static final int DEFAULT_MAX_UPLOAD_CLIENTS_COUNT = 4;
+        public static final int DEFAULT_MAIN_CLIENTS_COUNT = 1;
 
         public Options(MTProtoClientGroup.Options options) {
             this(options.mainDc(), options.clientFactory(), options.updateDispatcher(), options.mtProtoOptions());
@@ -307,9 +442,22 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
                     DEFAULT_MAX_UPLOAD_CLIENTS_COUNT);
         }
 
+        public Options(DataCenter mainDc, ClientFactory clientFactory,
+                       UpdateDispatcher updateDispatcher, MTProtoOptions mtProtoOptions,
+                       Duration checkinPeriod, Duration inactiveUploadPeriod,
+                       Duration inactiveDownloadPeriod, int maxDownloadClientsCount,
+                       int maxUploadClientsCount) {
+            this(mainDc, clientFactory, updateDispatcher, mtProtoOptions,
+                    checkinPeriod, inactiveUploadPeriod, inactiveDownloadPeriod,
+                    maxDownloadClientsCount, maxUploadClientsCount,
+                    DEFAULT_MAIN_CLIENTS_COUNT, MainRouting.leastInflight());
+        }
+
         public Options {
             requireArgument(maxDownloadClientsCount >= 1, "maxDownloadClientsCount must be equal or greater than 1");
             requireArgument(maxUploadClientsCount >= 1, "maxUploadClientsCount must be equal or greater than 1");
+            requireArgument(mainClientsCount >= 1, "mainClientsCount must be equal or greater than 1");
+            Objects.requireNonNull(mainRouting);
         }
     }
 
@@ -357,6 +505,15 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
             return result;
         }
 
+        protected int indexOf(MTProtoClient client) {
+            for (int i = 0; i < array.length; i++) {
+                if (CA.getVolatile(array, i) == client) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
         protected MTProtoClient tryAdd(MTProtoClient client) {
             // trying to find first free positing and CAS client on it.
             // otherwise just return latest seen client.
@@ -375,6 +532,14 @@ public class DefaultMTProtoClientGroup implements MTProtoClientManager {
             CA.setVolatile(array, index, null);
             AC.getAndAdd(this, -1);
         }
+
+        protected boolean remove(int index, MTProtoClient client) {
+            if (CA.compareAndSet(array, index, client, null)) {
+                AC.getAndAdd(this, -1);
+                return true;
+            }
+            return false;
+        }
     }
 
     protected static class Dc {
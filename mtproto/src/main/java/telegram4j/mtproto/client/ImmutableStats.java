@@ -25,10 +25,21 @@ public class ImmutableStats implements MTProtoClient.Stats {
     @Nullable
     protected final Instant lastQueryTimestamp;
     protected final int queriesCount;
+    protected final long batchesCount;
+    protected final long batchedQueriesCount;
+    protected final int maxBatchSize;
 
     public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount) {
+        this(lastQueryTimestamp, queriesCount, 0, 0, 0);
+    }
+
+    public ImmutableStats(@Nullable Instant lastQueryTimestamp, int queriesCount,
+                          long batchesCount, long batchedQueriesCount, int maxBatchSize) {
         this.lastQueryTimestamp = lastQueryTimestamp;
         this.queriesCount = queriesCount;
+        this.batchesCount = batchesCount;
+        this.batchedQueriesCount = batchedQueriesCount;
+        this.maxBatchSize = maxBatchSize;
     }
 
     @Override
@@ -41,11 +52,29 @@ public class ImmutableStats implements MTProtoClient.Stats {
         return queriesCount;
     }
 
+    @Override
+    public long batchesCount() {
+        return batchesCount;
+    }
+
+    @Override
+    public long batchedQueriesCount() {
+        return batchedQueriesCount;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
     @Override
     public String toString() {
         return "ImmutableStats{" +
                 "lastQueryTimestamp=" + lastQueryTimestamp +
                 ", queriesCount=" + queriesCount +
+                ", batchesCount=" + batchesCount +
+                ", batchedQueriesCount=" + batchedQueriesCount +
+                ", maxBatchSize=" + maxBatchSize +
                 '}';
     }
 }
@@ -20,6 +20,7 @@ import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
 import telegram4j.mtproto.ResponseTransformer;
 import telegram4j.mtproto.transport.TransportFactory;
+import telegram4j.mtproto.util.IGECipher;
 import telegram4j.tl.Config;
 import telegram4j.tl.api.TlMethod;
 import telegram4j.tl.request.InitConnection;
@@ -30,6 +31,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.Deflater;
 
 import static java.util.Objects.requireNonNull;
 import static telegram4j.mtproto.internal.Preconditions.requireArgument;
@@ -110,21 +112,92 @@ public interface MTProtoClient {
          */
         int queriesCount();
 
+        /**
+         * Gets count of flushed batches of queries if write batching is enabled.
+         *
+         * @return The count of flushed batches.
+         */
+        default long batchesCount() {
+            return 0;
+        }
+
+        /**
+         * Gets total count of queries sent in the batches if write batching is enabled.
+         *
+         * @return The total count of batched queries.
+         */
+        default long batchedQueriesCount() {
+            return 0;
+        }
+
+        /**
+         * Gets the largest count of queries sent in single batch if write batching is enabled.
+         *
+         * @return The largest count of queries in single batch.
+         */
+        default int maxBatchSize() {
+            return 0;
+        }
+
         /**
          * Creates new immutable copy of this statistics.
          *
          * @return A new immutable copy of this statistics.
          */
         default Stats copy() {
-            return new ImmutableStats(lastQueryTimestamp().orElse(null), queriesCount());
+            return new ImmutableStats(lastQueryTimestamp().orElse(null), queriesCount(),
+                    batchesCount(), batchedQueriesCount(), maxBatchSize());
+        }
+    }
+
+    /**
+     * Options for coalescing of queries sent from {@link #send(TlMethod)}.
+     * If enabled, queries are collected until the end of current event loop
+     * iteration (or until {@code maxDelay} elapses) and written by the usual encoder path
+     * with single flush.
+     *
+     * @param enabled Whether write batching is enabled.
+     * @param maxDelay The max delay of batch flushing, {@link Duration#ZERO} means
+     * flushing at the next event loop iteration.
+     * @param maxBytes The size budget of batch in bytes. When it's exceeded batch is flushed immediately.
+     */
+    record WriteBatching(boolean enabled, Duration maxDelay, int maxBytes) {
+        static final WriteBatching DISABLED = new WriteBatching(false, Duration.ZERO, 0);
+
+        public WriteBatching {
+            requireNonNull(maxDelay);
+            requireArgument(!maxDelay.isNegative(), "maxDelay must be positive or zero");
+            requireArgument(!enabled || maxBytes > 0, "maxBytes must be positive");
+        }
+
+        /**
+         * Creates options for disabled write batching.
+         *
+         * @return The options for disabled write batching.
+         */
+        public static WriteBatching disabled() {
+            return DISABLED;
+        }
+
+        /**
+         * Creates options for enabled write batching.
+         *
+         * @param maxDelay The max delay of batch flushing.
+         * @param maxBytes The size budget of batch in bytes.
+         * @return The new options for enabled write batching.
+         */
+        public static WriteBatching of(Duration maxDelay, int maxBytes) {
+            return new WriteBatching(true, maxDelay, maxBytes);
         }
     }
 
     record Options(TransportFactory transportFactory,
                    InvokeWithLayer<Config, InitConnection<Config, GetConfig>> initConnection,
                    Duration pingInterval, ReconnectionStrategy reconnectionStrategy,
-                   int gzipCompressionSizeThreshold, List<ResponseTransformer> responseTransformers,
-                   Duration authKeyLifetime) {
+                   int gzipCompressionSizeThreshold, int gzipCompressionLevel, int gzipCompressionStrategy,
+                   List<ResponseTransformer> responseTransformers,
+                   Duration authKeyLifetime, IGECipher.Engine cipherEngine,
+                   WriteBatching writeBatching) {
 
         public Options {
             requireNonNull(transportFactory);
@@ -132,7 +205,24 @@ public interface MTProtoClient {
             requireNonNull(pingInterval);
             requireNonNull(reconnectionStrategy);
             requireNonNull(responseTransformers);
+            requireArgument(gzipCompressionLevel >= Deflater.DEFAULT_COMPRESSION &&
+                    gzipCompressionLevel <= Deflater.BEST_COMPRESSION, "Invalid gzipCompressionLevel");
+            requireArgument(gzipCompressionStrategy == Deflater.DEFAULT_STRATEGY ||
+                    gzipCompressionStrategy == Deflater.FILTERED ||
+                    gzipCompressionStrategy == Deflater.HUFFMAN_ONLY, "Invalid gzipCompressionStrategy");
             requireArgument(!authKeyLifetime.isNegative(), "authKeyLifetime must be positive or zero");
+            requireNonNull(cipherEngine);
+            requireNonNull(writeBatching);
+        }
+
+        public Options(TransportFactory transportFactory,
+                       InvokeWithLayer<Config, InitConnection<Config, GetConfig>> initConnection,
+                       Duration pingInterval, ReconnectionStrategy reconnectionStrategy,
+                       int gzipCompressionSizeThreshold, List<ResponseTransformer> responseTransformers,
+                       Duration authKeyLifetime) {
+            this(transportFactory, initConnection, pingInterval, reconnectionStrategy, gzipCompressionSizeThreshold,
+                    Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, responseTransformers,
+                    authKeyLifetime, IGECipher.Engine.BULK, WriteBatching.disabled());
         }
     }
 }
@@ -20,6 +20,7 @@ import telegram4j.mtproto.DataCenter;
 import telegram4j.mtproto.DcId;
 import telegram4j.tl.api.TlMethod;
 
+import java.util.List;
 import java.util.Objects;
 
 /** The group of MTProto clients which associated to one user.  */
@@ -33,6 +34,17 @@ public interface MTProtoClientGroup {
      */
     MTProtoClient main();
 
+    /**
+     * Gets all opened connections to the main DC. The first element is always the {@link #main()} client,
+     * the others are secondary connections which share auth key with it.
+     * Their load can be inspected through {@link MTProtoClient#stats()}.
+     *
+     * @return The list of main DC connections.
+     */
+    default List<MTProtoClient> mainClients() {
+        return List.of(main());
+    }
+
     /**
      * Sends TL method to specified datacenter.
      *
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client;
+
+import telegram4j.mtproto.util.TlEntityUtil;
+import telegram4j.tl.*;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.messages.DeleteHistory;
+import telegram4j.tl.request.messages.EditMessage;
+import telegram4j.tl.request.messages.ForwardMessages;
+import telegram4j.tl.request.messages.GetHistory;
+import telegram4j.tl.request.messages.ReadHistory;
+import telegram4j.tl.request.messages.SendMedia;
+import telegram4j.tl.request.messages.SendMessage;
+import telegram4j.tl.request.messages.SendMultiMedia;
+import telegram4j.tl.request.messages.SetTyping;
+import telegram4j.tl.request.messages.UpdatePinnedMessage;
+
+import java.util.List;
+
+/**
+ * Strategy for selecting connection of the main DC pool for queries.
+ *
+ * @see DefaultMTProtoClientGroup.Options#mainClientsCount()
+ */
+@FunctionalInterface
+public interface MainRouting {
+
+    /**
+     * Gets strategy which selects the connection with the least count of in-flight queries.
+     *
+     * @return The strategy which selects the least loaded connection.
+     */
+    static MainRouting leastInflight() {
+        return LeastInflightRouting.INSTANCE;
+    }
+
+    /**
+     * Gets strategy which selects the connection by hash of the peer to which query is addressed,
+     * so queries for one chat are sent in order through same connection while pool membership is stable.
+     * Queries without peer are routed to the least loaded connection.
+     *
+     * @return The strategy which selects connection by peer affinity.
+     */
+    static MainRouting peerAffinity() {
+        return PeerAffinityRouting.INSTANCE;
+    }
+
+    /**
+     * Selects connection for specified query.
+     *
+     * @param method The query to send.
+     * @param clients The non-empty list of healthy connections in the stable order.
+     * The first one is always the {@link MTProtoClientGroup#main()} connection.
+     * @return The selected connection from {@code clients} list.
+     */
+    MTProtoClient select(TlMethod<?> method, List<MTProtoClient> clients);
+}
+
+final class LeastInflightRouting implements MainRouting {
+    static final LeastInflightRouting INSTANCE = new LeastInflightRouting();
+
+    @Override
+    public MTProtoClient select(TlMethod<?> method, List<MTProtoClient> clients) {
+        MTProtoClient lessLoaded = clients.get(0);
+        int minQueries = lessLoaded.stats().queriesCount();
+        for (int i = 1; i < clients.size(); i++) {
+            var client = clients.get(i);
+            int queries = client.stats().queriesCount();
+            if (queries < minQueries) {
+                lessLoaded = client;
+                minQueries = queries;
+            }
+        }
+        return lessLoaded;
+    }
+}
+
+final class PeerAffinityRouting implements MainRouting {
+    static final PeerAffinityRouting INSTANCE = new PeerAffinityRouting();
+
+    // Marker for queries without peer
+    static final long NO_PEER = Long.MIN_VALUE;
+
+    @Override
+    public MTProtoClient select(TlMethod<?> method, List<MTProtoClient> clients) {
+        long peerId = peerId(method);
+        if (peerId == NO_PEER || clients.size() == 1) {
+            return LeastInflightRouting.INSTANCE.select(method, clients);
+        }
+
+        long h = peerId * 0x9E3779B97F4A7C15L;
+        int idx = (int) ((h >>> 32 ^ h) & 0x7fffffff) % clients.size();
+        return clients.get(idx);
+    }
+
+    static long peerId(TlMethod<?> method) {
+        return switch (method.identifier()) {
+            case SendMessage.ID -> peerId(((SendMessage) method).peer());
+            case SendMedia.ID -> peerId(((SendMedia) method).peer());
+            case SendMultiMedia.ID -> peerId(((SendMultiMedia) method).peer());
+            case ForwardMessages.ID -> peerId(((ForwardMessages) method).toPeer());
+            case EditMessage.ID -> peerId(((EditMessage) method).peer());
+            case SetTyping.ID -> peerId(((SetTyping) method).peer());
+            case GetHistory.ID -> peerId(((GetHistory) method).peer());
+            case ReadHistory.ID -> peerId(((ReadHistory) method).peer());
+            case DeleteHistory.ID -> peerId(((DeleteHistory) method).peer());
+            case UpdatePinnedMessage.ID -> peerId(((UpdatePinnedMessage) method).peer());
+            case telegram4j.tl.request.channels.ReadHistory.ID -> TlEntityUtil.getRawPeerId(
+                    ((telegram4j.tl.request.channels.ReadHistory) method).channel());
+            case telegram4j.tl.request.channels.DeleteMessages.ID -> TlEntityUtil.getRawPeerId(
+                    ((telegram4j.tl.request.channels.DeleteMessages) method).channel());
+            default -> NO_PEER;
+        };
+    }
+
+    // Returns the same value for InputPeer and InputChannel of one chat
+    static long peerId(InputPeer peer) {
+        return switch (peer.identifier()) {
+            case InputPeerChannel.ID -> ((InputPeerChannel) peer).channelId();
+            case InputPeerChannelFromMessage.ID -> ((InputPeerChannelFromMessage) peer).channelId();
+            case InputPeerChat.ID -> ((InputPeerChat) peer).chatId();
+            case InputPeerUser.ID -> ((InputPeerUser) peer).userId();
+            case InputPeerUserFromMessage.ID -> ((InputPeerUserFromMessage) peer).userId();
+            case InputPeerSelf.ID -> 0;
+            default -> NO_PEER;
+        };
+    }
+}
@@ -37,6 +37,19 @@ final class ConcurrentStats implements MTProtoClient.Stats {
 
     volatile Instant lastQueryTimestamp;
     volatile int queriesCount;
+    // written only from event loop
+    volatile long batchesCount;
+    volatile long batchedQueriesCount;
+    volatile int maxBatchSize;
+
+    // must be called on event loop
+    void recordBatch(int size) {
+        batchesCount++;
+        batchedQueriesCount += size;
+        if (size > maxBatchSize) {
+            maxBatchSize = size;
+        }
+    }
 
     void addQueriesCount(int amount) {
         QUERIES_COUNT.getAndAdd(this, amount);
@@ -60,9 +73,25 @@ final class ConcurrentStats implements MTProtoClient.Stats {
         return queriesCount;
     }
 
+    @Override
+    public long batchesCount() {
+        return batchesCount;
+    }
+
+    @Override
+    public long batchedQueriesCount() {
+        return batchedQueriesCount;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
     @Override
     public MTProtoClient.Stats copy() {
-        return new ImmutableStats(lastQueryTimestamp, queriesCount);
+        return new ImmutableStats(lastQueryTimestamp, queriesCount,
+                batchesCount, batchedQueriesCount, maxBatchSize);
     }
 
     @Override
@@ -70,6 +99,9 @@ final class ConcurrentStats implements MTProtoClient.Stats {
         return "Stats{" +
                 "lastQueryTimestamp=" + lastQueryTimestamp +
                 ", queriesCount=" + queriesCount +
+                ", batchesCount=" + batchesCount +
+                ", batchedQueriesCount=" + batchedQueriesCount +
+                ", maxBatchSize=" + maxBatchSize +
                 '}';
     }
 }
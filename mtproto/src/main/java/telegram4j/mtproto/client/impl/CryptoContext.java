@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.mtproto.util.IGECipher;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Per-connection state for MTProto 2.0 message encryption.
+ * All digests and key material are stored in the preallocated arrays and reused between messages.
+ *
+ * @implNote This class is not thread-safe and must be used only from channel's event loop.
+ */
+final class CryptoContext {
+    static final int MSG_KEY_OFFSET = 8;
+    static final int MSG_KEY_SIZE = 16;
+
+    final IGECipher cipher;
+    final MessageDigest sha256 = CryptoUtil.createDigest("SHA-256");
+
+    // for auth key parts if it's not array-backed
+    final byte[] authKeyScratch = new byte[36];
+    // msg_key of received message
+    final byte[] messageKey = new byte[MSG_KEY_SIZE];
+    final byte[] msgKeyHash = new byte[32];
+    final byte[] sha256a = new byte[32];
+    final byte[] sha256b = new byte[32];
+    final byte[] aesKey = new byte[32];
+    final byte[] aesIv = new byte[32];
+
+    CryptoContext(IGECipher cipher) {
+        this.cipher = cipher;
+    }
+
+    /**
+     * Computes {@code msg_key_large} of the specified message, the {@code msg_key}
+     * can be found in the {@link #msgKeyHash} by {@link #MSG_KEY_OFFSET}.
+     *
+     * @param authKey The auth key buffer.
+     * @param message The buffer with plain message.
+     * @param inbound Whether message was received from server.
+     */
+    void computeMessageKey(ByteBuf authKey, ByteBuf message, boolean inbound) {
+        int x = inbound ? 8 : 0;
+
+        sha256.reset();
+        update(authKey, 88 + x, 32);
+        sha256.update(message.nioBuffer());
+        digest(msgKeyHash);
+    }
+
+    /**
+     * Gets quick ack token of the message for which {@link #computeMessageKey(ByteBuf, ByteBuf, boolean)}
+     * was called last time.
+     *
+     * @return The quick ack token without {@link telegram4j.mtproto.transport.Transport#QUICK_ACK_MASK}.
+     */
+    int quickAckToken() {
+        return (msgKeyHash[0] & 0xff) |
+                (msgKeyHash[1] & 0xff) << 8 |
+                (msgKeyHash[2] & 0xff) << 16 |
+                (msgKeyHash[3] & 0xff) << 24;
+    }
+
+    /**
+     * Checks that computed message key equals to the received one from {@link #messageKey}.
+     *
+     * @return {@code true} if message keys are matching.
+     */
+    boolean isMessageKeyMatches() {
+        return Arrays.equals(msgKeyHash, MSG_KEY_OFFSET, MSG_KEY_OFFSET + MSG_KEY_SIZE,
+                messageKey, 0, MSG_KEY_SIZE);
+    }
+
+    /**
+     * Derives AES key and IV from the message key and re-keys cipher.
+     *
+     * @param authKey The auth key buffer.
+     * @param messageKey The array with message key.
+     * @param messageKeyOffset The offset of message key in array.
+     * @param inbound Whether message was received from server.
+     */
+    void initCipher(ByteBuf authKey, byte[] messageKey, int messageKeyOffset, boolean inbound) {
+        int x = inbound ? 8 : 0;
+
+        sha256.reset();
+        sha256.update(messageKey, messageKeyOffset, MSG_KEY_SIZE);
+        update(authKey, x, 36);
+        digest(sha256a);
+
+        sha256.reset();
+        update(authKey, x + 40, 36);
+        sha256.update(messageKey, messageKeyOffset, MSG_KEY_SIZE);
+        digest(sha256b);
+
+        System.arraycopy(sha256a, 0, aesKey, 0, 8);
+        System.arraycopy(sha256b, 8, aesKey, 8, 16);
+        System.arraycopy(sha256a, 24, aesKey, 24, 8);
+
+        System.arraycopy(sha256b, 0, aesIv, 0, 8);
+        System.arraycopy(sha256a, 8, aesIv, 8, 16);
+        System.arraycopy(sha256b, 24, aesIv, 24, 8);
+
+        cipher.init(!inbound, aesKey, aesIv);
+    }
+
+    private void update(ByteBuf buf, int index, int length) {
+        index += buf.readerIndex();
+        if (buf.hasArray()) {
+            sha256.update(buf.array(), buf.arrayOffset() + index, length);
+        } else {
+            buf.getBytes(index, authKeyScratch, 0, length);
+            sha256.update(authKeyScratch, 0, length);
+        }
+    }
+
+    private void digest(byte[] out) {
+        try {
+            sha256.digest(out, 0, out.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
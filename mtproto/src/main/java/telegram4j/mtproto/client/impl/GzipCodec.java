@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import reactor.util.annotation.Nullable;
+import telegram4j.tl.TlDeserializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-connection gzip codec for {@code gzip_packed} objects with reusable
+ * {@link Deflater} and {@link Inflater} instances.
+ *
+ * @implNote This class is not thread-safe and must be used only from channel's event loop.
+ */
+final class GzipCodec {
+    static final int HEADER_SIZE = 10;
+    static final int TRAILER_SIZE = 8;
+    // Upper bound for preallocation of decompressed data by the ISIZE field
+    static final int MAX_PREALLOCATION = 1 << 24;
+
+    static final int FHCRC = 1 << 1;
+    static final int FEXTRA = 1 << 2;
+    static final int FNAME = 1 << 3;
+    static final int FCOMMENT = 1 << 4;
+
+    final Deflater deflater;
+    final Inflater inflater = new Inflater(true);
+    final CRC32 crc32 = new CRC32();
+
+    GzipCodec(int level, int strategy) {
+        this.deflater = new Deflater(level, true);
+        deflater.setStrategy(strategy);
+    }
+
+    /**
+     * Compresses readable bytes of specified buffer in the gzip format.
+     * Compression is aborted if the result is not smaller than input.
+     *
+     * @param alloc The allocator for result buffer.
+     * @param data The buffer to compress. It's not released by this method.
+     * @return A buffer with gzipped data, or {@code null} if compression is useless.
+     */
+    @Nullable
+    ByteBuf compress(ByteBufAllocator alloc, ByteBuf data) {
+        int size = data.readableBytes();
+        if (size <= HEADER_SIZE + TRAILER_SIZE) {
+            return null;
+        }
+
+        ByteBuf out = alloc.ioBuffer(size);
+        out.writeShort(0x1f8b); // magic
+        out.writeByte(Deflater.DEFLATED);
+        out.writeByte(0);       // flags
+        out.writeInt(0);        // modification time
+        out.writeByte(0);       // extra flags
+        out.writeByte(0xff);    // unknown OS
+
+        deflater.reset();
+        deflater.setInput(data.nioBuffer());
+        deflater.finish();
+
+        int limit = size - TRAILER_SIZE;
+        while (!deflater.finished()) {
+            int writable = limit - out.writerIndex();
+            if (writable <= 0) {
+                out.release();
+                return null;
+            }
+
+            ByteBuffer dst = out.nioBuffer(out.writerIndex(), writable);
+            int n = deflater.deflate(dst);
+            out.writerIndex(out.writerIndex() + n);
+        }
+
+        crc32.reset();
+        crc32.update(data.nioBuffer());
+        out.writeIntLE((int) crc32.getValue());
+        out.writeIntLE(size);
+        return out;
+    }
+
+    /**
+     * Decompresses specified gzip data directly into pooled buffer and deserializes TL object from it.
+     *
+     * @param alloc The allocator for decompressed data.
+     * @param packed The buffer with gzip data. It's not released by this method.
+     * @return The deserialized TL object.
+     * @throws IOException If data has invalid gzip format.
+     */
+    <T> T decompress(ByteBufAllocator alloc, ByteBuf packed) throws IOException {
+        int start = packed.readerIndex();
+        int end = packed.writerIndex();
+        if (end - start < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Truncated gzip data");
+        }
+
+        if (packed.getUnsignedShort(start) != 0x1f8b || packed.getByte(start + 2) != Deflater.DEFLATED) {
+            throw new IOException("Not in gzip format");
+        }
+
+        int flags = packed.getUnsignedByte(start + 3);
+        int offset = start + HEADER_SIZE;
+        if ((flags & FEXTRA) != 0) {
+            offset += 2 + packed.getUnsignedShortLE(offset);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(packed, offset, end);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(packed, offset, end);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+
+        int deflatedEnd = end - TRAILER_SIZE;
+        if (offset > deflatedEnd) {
+            throw new IOException("Truncated gzip data");
+        }
+
+        long crc = packed.getUnsignedIntLE(end - TRAILER_SIZE);
+        // ISIZE is a size of uncompressed data modulo 2^32
+        long isize = packed.getUnsignedIntLE(end - 4);
+        int initialCapacity = (int) Math.min(Math.max(isize, 64), MAX_PREALLOCATION);
+
+        inflater.reset();
+        // The trailer is also passed as input, since inflater in the 'nowrap' mode may need extra byte
+        inflater.setInput(packed.nioBuffer(offset, end - offset));
+
+        ByteBuf out = alloc.buffer(initialCapacity);
+        try {
+            while (!inflater.finished()) {
+                if (!out.isWritable()) {
+                    out.ensureWritable(out.capacity());
+                }
+
+                ByteBuffer dst = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                int n = inflater.inflate(dst);
+                out.writerIndex(out.writerIndex() + n);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated gzip data");
+                }
+            }
+
+            if (inflater.getRemaining() < TRAILER_SIZE) {
+                throw new IOException("Truncated gzip trailer");
+            }
+            if (out.readableBytes() != (int) isize) {
+                throw new IOException("Size mismatch of decompressed data");
+            }
+            crc32.reset();
+            crc32.update(out.nioBuffer());
+            if (crc32.getValue() != crc) {
+                throw new IOException("CRC32 mismatch of decompressed data");
+            }
+
+            return TlDeserializer.deserialize(out);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            out.release();
+        }
+    }
+
+    /** Releases native resources of deflater and inflater. */
+    void release() {
+        deflater.end();
+        inflater.end();
+    }
+
+    static int skipZeroTerminated(ByteBuf buf, int offset, int end) throws IOException {
+        int idx = buf.indexOf(offset, end, (byte) 0);
+        if (idx == -1) {
+            throw new IOException("Truncated gzip header");
+        }
+        return idx + 1;
+    }
+}
@@ -46,8 +46,10 @@ import telegram4j.mtproto.client.MTProtoOptions;
 import telegram4j.mtproto.internal.Preconditions;
 import telegram4j.mtproto.resource.impl.BaseProxyResources;
 import telegram4j.mtproto.transport.Transport;
+import telegram4j.tl.TlSerializer;
 import telegram4j.tl.api.TlMethod;
 import telegram4j.tl.mtproto.MsgsAck;
+import telegram4j.tl.mtproto.MsgsStateReq;
 import telegram4j.tl.request.account.GetPassword;
 import telegram4j.tl.request.auth.CheckPassword;
 import telegram4j.tl.request.auth.ExportLoginToken;
@@ -62,7 +64,6 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -88,16 +89,26 @@ public final class MTProtoClientImpl implements MTProtoClient {
     static final AttributeKey<MonoSink<Void>> NOTIFY = AttributeKey.valueOf("$notify");
 
     static final VarHandle CHANNEL_STATE;
+    static final VarHandle FLUSH_SCHEDULED;
+    static final VarHandle FORCED_FLUSH;
+    static final VarHandle PENDING_BYTES;
     static {
         var lookup = MethodHandles.lookup();
         try {
             CHANNEL_STATE = lookup.findVarHandle(MTProtoClientImpl.class, "channelState", ChannelState.class);
+            FLUSH_SCHEDULED = lookup.findVarHandle(MTProtoClientImpl.class, "flushScheduled", boolean.class);
+            FORCED_FLUSH = lookup.findVarHandle(MTProtoClientImpl.class, "forcedFlush", boolean.class);
+            PENDING_BYTES = lookup.findVarHandle(MTProtoClientImpl.class, "pendingBytes", int.class);
         } catch (ReflectiveOperationException e) {
             throw new ExceptionInInitializerError(e);
         }
     }
 
     volatile ChannelState channelState = ChannelState.disconnected(null);
+    // write batching state
+    volatile boolean flushScheduled;
+    volatile boolean forcedFlush;
+    volatile int pendingBytes;
     int oldState = ChannelState.DISCONNECTED;
     boolean inflightPing;
     ScheduledFuture<?> pingTrigger;
@@ -106,7 +117,7 @@ public final class MTProtoClientImpl implements MTProtoClient {
     final DcId.Type type;
     final AuthData authData;
     final MpscArrayQueue<RpcQuery> pendingRequests = new MpscArrayQueue<>(Queues.SMALL_BUFFER_SIZE);
-    final HashMap<Long, Request> requests = new HashMap<>();
+    final MessageIdMap<Request> requests = new MessageIdMap<>();
     final ArrayDeque<RpcQuery> delayedUntilAuth = new ArrayDeque<>(16);
     final ArrayDeque<RpcRequest> resend = new ArrayDeque<>(32);
     final String id = Integer.toHexString(hashCode());
@@ -490,7 +501,12 @@ public final class MTProtoClientImpl implements MTProtoClient {
 
                 assert currentState.channel != null;
 
-                currentState.channel.writeAndFlush(new RpcQuery(method, sink), currentState.channel.voidPromise());
+                var query = new RpcQuery(method, sink);
+                if (options.writeBatching().enabled()) {
+                    enqueueBatched(currentState.channel, query);
+                } else {
+                    currentState.channel.writeAndFlush(query, currentState.channel.voidPromise());
+                }
                 return (Mono<R>) sink;
             }
         })
@@ -502,6 +518,50 @@ public final class MTProtoClientImpl implements MTProtoClient {
         });
     }
 
+    void enqueueBatched(Channel channel, RpcQuery query) {
+        if (!pendingRequests.offer(query)) {
+            // The queue is full; don't wait for the flush and write it directly
+            channel.writeAndFlush(query, channel.voidPromise());
+            return;
+        }
+
+        var batching = options.writeBatching();
+        int size = TlSerializer.sizeOf(query.method);
+        int pending = (int) PENDING_BYTES.getAndAdd(this, size) + size;
+        if (pending >= batching.maxBytes()) {
+            if (FORCED_FLUSH.compareAndSet(this, false, true)) {
+                channel.eventLoop().execute(() -> flushPendingRequests(channel));
+            }
+        } else if (FLUSH_SCHEDULED.compareAndSet(this, false, true)) {
+            long delay = batching.maxDelay().toNanos();
+            if (delay == 0) {
+                channel.eventLoop().execute(() -> flushPendingRequests(channel));
+            } else {
+                channel.eventLoop().schedule(() -> flushPendingRequests(channel), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // must be called on event loop
+    void flushPendingRequests(Channel channel) {
+        flushScheduled = false;
+        forcedFlush = false;
+        PENDING_BYTES.getAndSet(this, 0);
+
+        var currentState = channelState;
+        // Requests will be sent after reconnection or cancelled on close
+        if (currentState.state != ChannelState.CONNECTED || currentState.channel != channel) {
+            return;
+        }
+
+        // Queries are written by the same encoder path as unbatched ones and flushed once
+        int count = pendingRequests.drain(query -> channel.write(query, channel.voidPromise()));
+        if (count != 0) {
+            stats.recordBatch(count);
+            channel.flush();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     <R> Mono<R> send(ChannelHandlerContext ctx, TlMethod<R> method) {
         if (!isResultAwait(method)) {
@@ -559,8 +619,8 @@ public final class MTProtoClientImpl implements MTProtoClient {
     // must be called on event loop
     void cancelRequests(ChannelHandlerContext ctx) {
         RuntimeException exc = Exceptions.failWithCancel();
-        for (var req : requests.values()) {
-            if (req instanceof RpcQuery q) {
+        for (int s = requests.first(); s != -1; s = requests.next(s)) {
+            if (requests.valueAt(s) instanceof RpcQuery q) {
                 var resultPublisher = q.sink.isPublishOnEventLoop()
                         ? ctx.executor()
                         : mtProtoOptions.resultPublisher();
@@ -610,6 +670,14 @@ public final class MTProtoClientImpl implements MTProtoClient {
         };
     }
 
+    static boolean isServiceMethod(TlMethod<?> method) {
+        return switch (method.identifier()) {
+            case MsgsAck.ID, MsgsStateReq.ID, DestroySession.ID,
+                    PingDelayDisconnect.ID, Ping.ID -> true;
+            default -> false;
+        };
+    }
+
     static boolean isPingPacket(TlMethod<?> method) {
         return switch (method.identifier()) {
             case PingDelayDisconnect.ID, Ping.ID -> true;
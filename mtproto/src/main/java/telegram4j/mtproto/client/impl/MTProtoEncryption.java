@@ -21,12 +21,13 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.concurrent.ScheduledFuture;
+import telegram4j.mtproto.DcId;
 import telegram4j.mtproto.MTProtoException;
 import telegram4j.mtproto.RpcException;
 import telegram4j.mtproto.TransportException;
-import telegram4j.mtproto.util.AES256IGECipher;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.util.IGECipher;
 import telegram4j.tl.TlDeserializer;
-import telegram4j.tl.TlSerialUtil;
 import telegram4j.tl.TlSerializer;
 import telegram4j.tl.Updates;
 import telegram4j.tl.api.TlMethod;
@@ -35,20 +36,24 @@ import telegram4j.tl.auth.Authorization;
 import telegram4j.tl.auth.LoginTokenSuccess;
 import telegram4j.tl.auth.SentCodeSuccess;
 import telegram4j.tl.mtproto.*;
+import telegram4j.tl.request.ImmutableInvokeWithoutUpdates;
 import telegram4j.tl.request.InvokeWithLayer;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.StringJoiner;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static telegram4j.mtproto.client.impl.CryptoContext.MSG_KEY_OFFSET;
+import static telegram4j.mtproto.client.impl.CryptoContext.MSG_KEY_SIZE;
 import static telegram4j.mtproto.client.impl.MTProtoClientImpl.*;
 import static telegram4j.mtproto.transport.Transport.QUICK_ACK_MASK;
 import static telegram4j.mtproto.util.CryptoUtil.random;
-import static telegram4j.mtproto.internal.Crypto.sha256Digest;
 import static telegram4j.mtproto.util.TlEntityUtil.schemaTypeName;
 
 final class MTProtoEncryption extends ChannelDuplexHandler {
@@ -66,7 +71,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
     final MTProtoClientImpl client;
     final TransportCodec transportCodec;
     final ArrayList<Long> acknowledgments = new ArrayList<>(32);
-    final AES256IGECipher cipher = AES256IGECipher.create();
+    final CryptoContext crypto;
+    final GzipCodec gzip;
+    // Whether this is secondary connection of the main DC which must not receive updates
+    final boolean withoutUpdates;
 
     ScheduledFuture<?> resendFuture;
     boolean authTested;
@@ -76,6 +84,9 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
     MTProtoEncryption(MTProtoClientImpl client, TransportCodec transportCodec) {
         this.client = client;
         this.transportCodec = transportCodec;
+        this.crypto = new CryptoContext(IGECipher.create(client.options.cipherEngine()));
+        this.gzip = new GzipCodec(client.options.gzipCompressionLevel(), client.options.gzipCompressionStrategy());
+        this.withoutUpdates = client.type == DcId.Type.MAIN && client.group.main() != client;
     }
 
     @Override
@@ -83,6 +94,11 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         this.ctx = ctx;
     }
 
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        gzip.release();
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (!(msg instanceof ByteBuf payload)) {
@@ -114,9 +130,7 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
 
         if (log.isTraceEnabled() && !client.requests.isEmpty()) {
-            log.trace("[C:0x{}] {}", client.id, client.requests.entrySet().stream()
-                    .map(e -> "0x" + Long.toHexString(e.getKey()) + ": " + e.getValue())
-                    .collect(Collectors.joining(", ", "{", "}")));
+            log.trace("[C:0x{}] {}", client.id, client.requests);
         }
 
         if (client.authData.unauthorized()
@@ -136,16 +150,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
         long now = System.currentTimeMillis();
 
-        TlObject actualMethod = req.method;
-        int size = TlSerializer.sizeOf(req.method);
-        if (size >= client.options.gzipCompressionSizeThreshold()) {
-            ByteBuf serialized = ctx.alloc().ioBuffer(size);
-            TlSerializer.serialize(serialized, req.method);
-            ByteBuf gzipped = TlSerialUtil.compressGzip(ctx.alloc(), 9, serialized);
-
-            actualMethod = ImmutableGzipPacked.of(gzipped);
-            gzipped.release();
-
+        TlMethod<?> wireMethod = wireMethod(req.method);
+        int size = TlSerializer.sizeOf(wireMethod);
+        TlObject actualMethod = compressIfApplicable(ctx, wireMethod, size);
+        if (actualMethod != wireMethod) {
             size = TlSerializer.sizeOf(actualMethod);
         }
 
@@ -159,8 +167,8 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                                 // possibly gzipped request
                                 TlObject actualMethod) {
 
-            ContainerMessage(long messageId, int seqNo, TlMethod<?> method) {
-                this(messageId, seqNo, TlSerializer.sizeOf(method), method, method);
+            ContainerMessage(long messageId, int seqNo, TlMethod<?> method, TlObject actualMethod) {
+                this(messageId, seqNo, TlSerializer.sizeOf(actualMethod), method, actualMethod);
             }
         }
 
@@ -169,10 +177,9 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             messages = new ArrayList<>(2);
 
             var statesIds = new ArrayList<Long>();
-            for (var e : client.requests.entrySet()) {
-                long key = e.getKey();
-                var requestInfo = e.getValue();
-                if (!(requestInfo instanceof RpcRequest r)) {
+            for (int s = client.requests.first(); s != -1; s = client.requests.next(s)) {
+                long key = client.requests.keyAt(s);
+                if (!(client.requests.valueAt(s) instanceof RpcRequest r)) {
                     continue;
                 }
 
@@ -186,18 +193,19 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
                 }
             }
 
-            // TODO length checks and if applicable use gzip
             if (!statesIds.isEmpty()) {
+                var stateReq = ImmutableMsgsStateReq.of(statesIds);
                 messages.add(new ContainerMessage(client.authData.nextMessageId(),
-                        client.authData.nextSeqNo(false), ImmutableMsgsStateReq.of(statesIds)));
+                        client.authData.nextSeqNo(false), stateReq, compressIfApplicable(ctx, stateReq)));
             }
 
             if (!acknowledgments.isEmpty() &&
                     (acknowledgments.size() > ACKS_FORCE_SEND_THRESHOLD ||
                             // Ping is fine reason to send service messages
                             isPingPacket(req.method))) {
+                var acks = collectAcks();
                 messages.add(new ContainerMessage(client.authData.nextMessageId(),
-                        client.authData.nextSeqNo(false), collectAcks()));
+                        client.authData.nextSeqNo(false), acks, compressIfApplicable(ctx, acks)));
             }
 
             canContainerize = !messages.isEmpty();
@@ -267,25 +275,16 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         random.nextBytes(paddingb);
         message.writeBytes(paddingb);
 
-        ByteBuf authKey = currentAuthKey.value();
-        ByteBuf authKeyId = Unpooled.copyLong(Long.reverseBytes(currentAuthKey.id()));
-
-        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
+        ByteBuf packet = encrypt(ctx, currentAuthKey, message);
 
         boolean quickAck = false;
         int quickAckToken = -1;
         if (transportCodec.delegate().supportsQuickAck() && !canContainerize &&
                 AuthData.isContentRelated(req.method)) {
-            quickAckToken = messageKeyHash.getIntLE(0) | QUICK_ACK_MASK;
+            quickAckToken = crypto.quickAckToken() | QUICK_ACK_MASK;
             quickAck = true;
         }
 
-        ByteBuf messageKey = messageKeyHash.slice(8, 16);
-        initCipher(messageKey, authKey, false);
-
-        ByteBuf encrypted = cipher.encrypt(message);
-        ByteBuf packet = Unpooled.wrappedBuffer(authKeyId, messageKey, encrypted);
-
         if (rpcLog.isDebugEnabled()) {
             if (container != null) {
                 rpcLog.debug("[C:0x{}, M:0x{}] Sending container: {{}}", client.id,
@@ -325,21 +324,18 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             throw new MTProtoException("Incorrect auth key id");
         }
 
-        ByteBuf messageKey = data.readRetainedSlice(16);
+        data.readBytes(crypto.messageKey);
 
         ByteBuf authKey = currentAuthKey.value();
-        initCipher(messageKey, authKey, true);
-
-        ByteBuf decrypted = cipher.decrypt(data.slice());
+        crypto.initCipher(authKey, crypto.messageKey, 0, true);
 
-        ByteBuf messageKeyHash = sha256Digest(authKey.slice(96, 32), decrypted);
-        ByteBuf messageKeyHashSlice = messageKeyHash.slice(8, 16);
+        ByteBuf decrypted = crypto.cipher.decrypt(data.slice());
 
-        if (!messageKey.equals(messageKeyHashSlice)) {
-            messageKey.release();
+        crypto.computeMessageKey(authKey, decrypted, true);
+        if (!crypto.isMessageKeyMatches()) {
+            decrypted.release();
             throw new MTProtoException("Incorrect message key");
         }
-        messageKey.release();
 
         decrypted.readLongLE();  // server_salt
         long sessionId = decrypted.readLongLE();
@@ -379,12 +375,60 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         handleServiceMessage(obj, messageId);
     }
 
+    // Wraps api queries of secondary main DC connections to not subscribe their sessions to the updates
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TlMethod<?> wireMethod(TlMethod<?> method) {
+        if (!withoutUpdates || isServiceMethod(method)) {
+            return method;
+        }
+        return ImmutableInvokeWithoutUpdates.of((TlMethod) method);
+    }
+
     Object decompressIfApplicable(Object obj) throws IOException {
         return obj instanceof GzipPacked gzipPacked
-                ? TlSerialUtil.decompressGzip(gzipPacked.packedData())
+                ? gzip.decompress(ctx.alloc(), gzipPacked.packedData())
                 : obj;
     }
 
+    TlObject compressIfApplicable(ChannelHandlerContext ctx, TlObject obj) {
+        return compressIfApplicable(ctx, obj, TlSerializer.sizeOf(obj));
+    }
+
+    // Returns gzip_packed object only if it's smaller than original
+    TlObject compressIfApplicable(ChannelHandlerContext ctx, TlObject obj, int size) {
+        if (size < client.options.gzipCompressionSizeThreshold()) {
+            return obj;
+        }
+
+        ByteBuf serialized = ctx.alloc().ioBuffer(size);
+        ByteBuf gzipped;
+        try {
+            TlSerializer.serialize(serialized, obj);
+            gzipped = gzip.compress(ctx.alloc(), serialized);
+        } finally {
+            serialized.release();
+        }
+
+        if (gzipped == null) {
+            return obj;
+        }
+
+        try {
+            if (sizeOfGzipPacked(gzipped.readableBytes()) >= size) {
+                return obj;
+            }
+            return ImmutableGzipPacked.of(gzipped);
+        } finally {
+            gzipped.release();
+        }
+    }
+
+    static int sizeOfGzipPacked(int packedDataSize) {
+        // constructor id + packed_data:bytes with padding
+        int bytesHeader = packedDataSize < 0xfe ? 1 : 4;
+        return 4 + ((bytesHeader + packedDataSize + 3) & ~3);
+    }
+
     static RpcException createRpcException(RpcError error, RpcRequest request) {
         String format = String.format("%s returned code: %d, message: %s",
                 schemaTypeName(request.method), error.errorCode(),
@@ -717,25 +761,17 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         return ack;
     }
 
-    void initCipher(ByteBuf messageKey, ByteBuf authKey, boolean inbound) {
-        int x = inbound ? 8 : 0;
+    ByteBuf encrypt(ChannelHandlerContext ctx, AuthKey authKey, ByteBuf message) {
+        ByteBuf authKeyValue = authKey.value();
+        crypto.computeMessageKey(authKeyValue, message, false);
+        crypto.initCipher(authKeyValue, crypto.msgKeyHash, MSG_KEY_OFFSET, false);
 
-        ByteBuf sha256a = sha256Digest(messageKey, authKey.slice(x, 36));
-        ByteBuf sha256b = sha256Digest(authKey.slice(x + 40, 36), messageKey);
+        ByteBuf encrypted = crypto.cipher.encrypt(message);
+        ByteBuf header = ctx.alloc().ioBuffer(24)
+                .writeLongLE(authKey.id())
+                .writeBytes(crypto.msgKeyHash, MSG_KEY_OFFSET, MSG_KEY_SIZE);
 
-        ByteBuf aesKey = Unpooled.wrappedBuffer(
-                sha256a.retainedSlice(0, 8),
-                sha256b.retainedSlice(8, 16),
-                sha256a.retainedSlice(24, 8));
-
-        ByteBuf aesIV = Unpooled.wrappedBuffer(
-                sha256b.retainedSlice(0, 8),
-                sha256a.retainedSlice(8, 16),
-                sha256b.retainedSlice(24, 8));
-        sha256a.release();
-        sha256b.release();
-
-        cipher.init(!inbound, aesKey, aesIV);
+        return Unpooled.wrappedBuffer(header, encrypted);
     }
 
     void delayResend() throws Exception {
@@ -765,30 +801,32 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         }
 
         // Sending requests that cannot be sent in a container
-        boolean any = false;
         for (var it = client.resend.iterator(); it.hasNext(); ) {
             var rpcRequest = it.next();
             if (!canContainerize(rpcRequest)) {
                 it.remove();
 
-                any = true;
                 ctx.channel().write(rpcRequest, ctx.voidPromise());
             }
         }
 
-        if (any) {
-            ctx.channel().flush();
+        // Requests are compressed once and reused by the next containers
+        var prepared = new IdentityHashMap<RpcRequest, TlObject>();
+        while (!client.resend.isEmpty()) {
+            if (!writeContainer(prepared)) {
+                // Remaining requests are too large for container
+                RpcRequest rpcRequest;
+                while ((rpcRequest = client.resend.pollFirst()) != null) {
+                    ctx.channel().write(rpcRequest, ctx.voidPromise());
+                }
+            }
         }
 
-        writeContainer();
-
-        // Couldn't resend all requests
-        if (!client.resend.isEmpty()) {
-            delayResend();
-        }
+        ctx.channel().flush();
     }
 
-    void writeContainer() throws Exception {
+    // Returns false if there are no requests that can be placed in container
+    boolean writeContainer(Map<RpcRequest, TlObject> prepared) throws Exception {
 
         long now = System.currentTimeMillis();
 
@@ -799,18 +837,24 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         for (var it = client.resend.iterator(); it.hasNext(); ) {
             var rpcRequest = it.next();
 
-            TlObject actualMethod = rpcRequest.method;
-            int requestSize = TlSerializer.sizeOf(rpcRequest.method);
-            // TODO
-            if (requestSize >= client.options.gzipCompressionSizeThreshold()) {
-                ByteBuf serialized = ctx.alloc().ioBuffer(requestSize);
-                TlSerializer.serialize(serialized, rpcRequest.method);
-                ByteBuf gzipped = TlSerialUtil.compressGzip(ctx.alloc(), 9, serialized);
-
-                actualMethod = ImmutableGzipPacked.of(gzipped);
-                gzipped.release();
-
+            TlObject actualMethod = prepared.get(rpcRequest);
+            int requestSize;
+            if (actualMethod != null) {
                 requestSize = TlSerializer.sizeOf(actualMethod);
+            } else {
+                TlMethod<?> wireMethod = wireMethod(rpcRequest.method);
+                requestSize = TlSerializer.sizeOf(wireMethod);
+                // Compressed object is never larger than original, so request which fits by its raw size
+                // is compressed right away, and others are compressed only when container is empty
+                if (totalSize + requestSize >= MAX_CONTAINER_LENGTH && totalSize != 0) {
+                    continue;
+                }
+
+                actualMethod = compressIfApplicable(ctx, wireMethod, requestSize);
+                if (actualMethod != wireMethod) {
+                    requestSize = TlSerializer.sizeOf(actualMethod);
+                }
+                prepared.put(rpcRequest, actualMethod);
             }
 
             // overflow? Not sure about bound
@@ -832,6 +876,10 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
             }
         }
 
+        if (messages.isEmpty()) {
+            return false;
+        }
+
         var currentAuthKey = client.authData.authKey();
         if (currentAuthKey == null) {
             throw new MTProtoException("No auth key");
@@ -839,10 +887,9 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
         // TODO optionally gzip
 //        var statesIds = new ArrayList<Long>();
-//        for (var e : client.requests.entrySet()) {
-//            long key = e.getKey();
-//            var requestInfo = e.getValue();
-//            if (requestInfo instanceof ContainerRequest) {
+//        for (int s = client.requests.first(); s != -1; s = client.requests.next(s)) {
+//            long key = client.requests.keyAt(s);
+//            if (client.requests.valueAt(s) instanceof ContainerRequest) {
 //                continue;
 //            }
 //
@@ -902,16 +949,7 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
         random.nextBytes(paddingb);
         message.writeBytes(paddingb);
 
-        ByteBuf authKey = currentAuthKey.value();
-        ByteBuf authKeyId = Unpooled.copyLong(Long.reverseBytes(currentAuthKey.id()));
-
-        ByteBuf messageKeyHash = sha256Digest(authKey.slice(88, 32), message);
-
-        ByteBuf messageKey = messageKeyHash.slice(8, 16);
-        initCipher(messageKey, authKey, false);
-
-        ByteBuf encrypted = cipher.encrypt(message);
-        ByteBuf packet = Unpooled.wrappedBuffer(authKeyId, messageKey, encrypted);
+        ByteBuf packet = encrypt(ctx, currentAuthKey, message);
 
         if (rpcLog.isDebugEnabled()) {
             rpcLog.debug("[C:0x{}, M:0x{}] Sending container: {{}}", client.id,
@@ -922,7 +960,8 @@ final class MTProtoEncryption extends ChannelDuplexHandler {
 
         transportCodec.setQuickAck(false);
 
-        ctx.writeAndFlush(packet, ctx.voidPromise());
+        ctx.write(packet, ctx.voidPromise());
+        return true;
     }
 
     static boolean canContainerize(RpcRequest request) {
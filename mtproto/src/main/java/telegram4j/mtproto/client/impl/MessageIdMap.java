@@ -0,0 +1,335 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import reactor.util.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Map of message ids to in-flight requests without boxing of keys.
+ * Entries are stored in the open-addressing table with linear probing and
+ * removed by the backward shift, so the table doesn't contain tombstones.
+ * In addition, entries are linked in the ascending order of message ids,
+ * which is used for iteration.
+ *
+ * <p> Iteration is performed by slot cursors:
+ * <pre>{@code
+ * for (int s = map.first(); s != -1; s = map.next(s)) {
+ *     long messageId = map.keyAt(s);
+ *     var request = map.valueAt(s);
+ * }
+ * }</pre>
+ * Cursors are invalidated by any modification of the map.
+ *
+ * @implNote This class is not thread-safe and must be used only from channel's event loop.
+ * Message ids are allocated monotonically, so insertion in the ascending order takes constant time.
+ *
+ * @param <V> The type of requests.
+ */
+final class MessageIdMap<V> {
+    static final int DEFAULT_CAPACITY = 64;
+    static final int MIN_CAPACITY = 8;
+
+    long[] keys;
+    Object[] values;
+    // links of ordered list, -1 means absence of neighbour
+    int[] prev;
+    int[] next;
+    int head = -1;
+    int tail = -1;
+
+    int mask;
+    int shift;
+    int size;
+    int threshold;
+
+    MessageIdMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    MessageIdMap(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1);
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    V get(long key) {
+        int slot = find(key);
+        return slot != -1 ? valueAt(slot) : null;
+    }
+
+    boolean containsKey(long key) {
+        return find(key) != -1;
+    }
+
+    /**
+     * Associates request with specified message id.
+     *
+     * @param key The message id.
+     * @param value The request.
+     * @return The previous request with same message id, if present.
+     */
+    @Nullable
+    V put(long key, V value) {
+        Objects.requireNonNull(value);
+
+        int slot = slot(key);
+        for (;;) {
+            Object existing = values[slot];
+            if (existing == null) {
+                break;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                @SuppressWarnings("unchecked")
+                V old = (V) existing;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        link(slot);
+
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes request associated with specified message id.
+     *
+     * @param key The message id.
+     * @return The removed request, if present.
+     */
+    @Nullable
+    V remove(long key) {
+        int slot = find(key);
+        if (slot == -1) {
+            return null;
+        }
+
+        V value = valueAt(slot);
+        unlink(slot);
+        shiftBackward(slot);
+        size--;
+        return value;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        head = tail = -1;
+        size = 0;
+    }
+
+    /** @return The slot of the entry with the lowest message id or -1 if map is empty. */
+    int first() {
+        return head;
+    }
+
+    /** @return The slot of the entry with the next message id or -1 if it's last entry. */
+    int next(int slot) {
+        return next[slot];
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return "{}";
+        }
+
+        StringBuilder builder = new StringBuilder(size * 32).append('{');
+        for (int s = head; s != -1; s = next[s]) {
+            if (s != head) {
+                builder.append(", ");
+            }
+            builder.append("0x").append(Long.toHexString(keys[s]))
+                    .append(": ").append(values[s]);
+        }
+        return builder.append('}').toString();
+    }
+
+    // Internal methods
+
+    int slot(long key) {
+        // Fibonacci hashing; low bits of message ids are almost constant
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    int find(long key) {
+        int slot = slot(key);
+        for (;;) {
+            if (values[slot] == null) {
+                return -1;
+            }
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+        // Linear probing degrades quickly with high load factor
+        threshold = capacity >>> 1;
+    }
+
+    void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldNext = next;
+        int oldHead = head;
+
+        allocate(capacity);
+        head = tail = -1;
+
+        // The order is preserved, since entries are re-linked from the lowest message id
+        for (int s = oldHead; s != -1; s = oldNext[s]) {
+            long key = oldKeys[s];
+            int slot = slot(key);
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            values[slot] = oldValues[s];
+            prev[slot] = tail;
+            next[slot] = -1;
+            if (tail != -1) {
+                next[tail] = slot;
+            } else {
+                head = slot;
+            }
+            tail = slot;
+        }
+    }
+
+    void link(int slot) {
+        long key = keys[slot];
+        // Walk from the tail, which is usually the right place
+        int after = tail;
+        while (after != -1 && keys[after] > key) {
+            after = prev[after];
+        }
+
+        prev[slot] = after;
+        if (after == -1) {
+            next[slot] = head;
+            if (head != -1) {
+                prev[head] = slot;
+            } else {
+                tail = slot;
+            }
+            head = slot;
+        } else {
+            int n = next[after];
+            next[slot] = n;
+            next[after] = slot;
+            if (n != -1) {
+                prev[n] = slot;
+            } else {
+                tail = slot;
+            }
+        }
+    }
+
+    void unlink(int slot) {
+        int p = prev[slot];
+        int n = next[slot];
+        if (p != -1) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != -1) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+
+    // Moves entry to another slot and fixes links of its neighbours
+    void move(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+
+        int p = prev[from];
+        int n = next[from];
+        prev[to] = p;
+        next[to] = n;
+        if (p != -1) {
+            next[p] = to;
+        } else {
+            head = to;
+        }
+        if (n != -1) {
+            prev[n] = to;
+        } else {
+            tail = to;
+        }
+    }
+
+    void shiftBackward(int gap) {
+        int slot = gap;
+        for (;;) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+
+            int ideal = slot(keys[slot]);
+            // Entry can't be moved if its ideal slot is cyclically in the (gap, slot]
+            boolean inRange = gap <= slot
+                    ? gap < ideal && ideal <= slot
+                    : gap < ideal || ideal <= slot;
+            if (inRange) {
+                continue;
+            }
+
+            move(slot, gap);
+            gap = slot;
+        }
+
+        values[gap] = null;
+    }
+}
@@ -75,6 +75,58 @@ public class ChatService extends RpcService {
                 .mapNotNull(c -> c.chats().isEmpty() ? null : c.chats().get(0));
     }
 
+    /**
+     * Retrieves history of chat page by page from the newest to the oldest messages using {@code offset_id}.
+     * Each next page is requested after receiving the previous one, and up to {@code readAhead}
+     * pages are requested ahead of downstream demand.
+     *
+     * @param peer The peer of chat.
+     * @param offsetId The id of message before which history is retrieved, or {@code 0} to start from the newest message.
+     * @param minId The id of message after which history is retrieved, or {@code 0} to retrieve all history.
+     * @param limit The count of messages in the one page, must be in range {@code [1, 100]}.
+     * @param readAhead The count of pages which can be requested in advance.
+     * @return A {@link Flux} emitting history pages.
+     */
+    public Flux<Messages> getHistoryPages(InputPeer peer, int offsetId, int minId, int limit, int readAhead) {
+        Objects.requireNonNull(peer);
+        if (limit < 1 || limit > 100) return Flux.error(new IllegalArgumentException("limit must be in range [1, 100]"));
+        if (readAhead < 1) return Flux.error(new IllegalArgumentException("readAhead must be positive"));
+
+        return getHistoryPage(peer, offsetId, minId, limit)
+                .expand(m -> {
+                    int nextOffsetId = nextOffsetId(m);
+                    return nextOffsetId > minId + 1
+                            ? getHistoryPage(peer, nextOffsetId, minId, limit)
+                            : Mono.empty();
+                })
+                .limitRate(readAhead);
+    }
+
+    private Mono<Messages> getHistoryPage(InputPeer peer, int offsetId, int minId, int limit) {
+        return getHistory(GetHistory.builder()
+                        .peer(peer)
+                        .offsetId(offsetId)
+                        .offsetDate(0)
+                        .addOffset(0)
+                        .limit(limit)
+                        .maxId(0)
+                        .minId(minId)
+                        .hash(0)
+                        .build())
+                .filter(m -> m.identifier() != MessagesNotModified.ID);
+    }
+
+    // returns -1 if page is last
+    private static int nextOffsetId(Messages page) {
+        var messages = switch (page.identifier()) {
+            case MessagesSlice.ID -> ((MessagesSlice) page).messages();
+            case ChannelMessages.ID -> ((ChannelMessages) page).messages();
+            // full history is returned
+            default -> List.<Message>of();
+        };
+        return messages.isEmpty() ? -1 : messages.get(messages.size() - 1).id();
+    }
+
     // messages namespace
     // =========================
     // TODO list:
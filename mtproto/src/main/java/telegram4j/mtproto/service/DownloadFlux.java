@@ -0,0 +1,392 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.tl.request.upload.ImmutableGetFile;
+import telegram4j.tl.upload.BaseFile;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+import static telegram4j.mtproto.service.UploadService.log;
+
+/**
+ * Downloads file by {@code upload.getFile} requests striped across several download clients.
+ * In the ordered mode parts are emitted in the order of offsets regardless of the order of responses,
+ * otherwise they are emitted as soon as received. In the unordered mode already downloaded parts can be skipped.
+ *
+ * <p> The number of in-flight requests is adapted by AIMD scheme: it's increased
+ * by one per window of successful responses with stable RTT and decreased
+ * multiplicatively when RTT grows or when {@code FLOOD_WAIT} is received.
+ * In last case sending is paused for requested time and failed parts are retried.
+ */
+class DownloadFlux extends Flux<DownloadFlux.Part> {
+    static final int MAX_INFLIGHT_PER_CLIENT = 4;
+    // RTT more than minimal in this times is a sign of congestion
+    static final double RTT_CONGESTION_RATIO = 2.0;
+    static final double DECREASE_FACTOR = 0.75;
+
+    final List<MTProtoClient> clients;
+    final ImmutableGetFile request;
+    final long baseOffset;
+    final int limit;
+    // count of parts if file size is known, otherwise -1
+    final int partsCount;
+    final boolean ordered;
+    // indexes of parts which must not be downloaded
+    @Nullable
+    final BitSet completed;
+
+    DownloadFlux(List<MTProtoClient> clients, ImmutableGetFile request, int partsCount,
+                 boolean ordered, @Nullable BitSet completed) {
+        requireArgument(completed == null || !ordered, "Parts can be skipped only in unordered mode");
+        this.clients = clients;
+        this.request = request;
+        this.baseOffset = request.offset();
+        this.limit = request.limit();
+        this.partsCount = partsCount;
+        this.ordered = ordered;
+        this.completed = completed;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Part> actual) {
+        actual.onSubscribe(new DownloadSubscription(actual, this));
+    }
+
+    /**
+     * The downloaded part of file.
+     *
+     * @param index The zero-based index of part.
+     * @param offset The absolute offset of part in the file.
+     * @param file The part data.
+     */
+    record Part(int index, long offset, BaseFile file) {}
+
+    record Completion(int part, int client, long rttNanos, @Nullable BaseFile file, @Nullable Throwable error) {}
+
+    static class DownloadSubscription implements Subscription, Scannable {
+        static final AtomicIntegerFieldUpdater<DownloadSubscription> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(DownloadSubscription.class, "wip");
+        static final AtomicLongFieldUpdater<DownloadSubscription> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(DownloadSubscription.class, "requested");
+
+        final CoreSubscriber<? super Part> actual;
+        final DownloadFlux parent;
+        final Queue<Completion> completions = Queues.<Completion>unboundedMultiproducer().get();
+        final Sinks.Empty<Void> cancellation = Sinks.empty();
+        final Disposable.Swap resume = Disposables.swap();
+
+        volatile int wip;
+        volatile long requested;
+        volatile boolean cancelled;
+
+        // Fields below are accessed only in the drain loop
+
+        // reorder buffer, indexed by part % length
+        final BaseFile[] parts;
+        // received parts in the unordered mode
+        final ArrayDeque<Part> ready = new ArrayDeque<>();
+        final int[] clientInflight;
+        final ArrayDeque<Integer> retries = new ArrayDeque<>();
+        final int maxWindow;
+        double window;
+        int inflight;
+        int nextPart;
+        int nextEmit;
+        // exclusive index of last part
+        int lastPart;
+        long minRttNanos = Long.MAX_VALUE;
+        long floodWaitUntil;
+        boolean resumeScheduled;
+        boolean done;
+
+        DownloadSubscription(CoreSubscriber<? super Part> actual, DownloadFlux parent) {
+            this.actual = actual;
+            this.parent = parent;
+
+            this.maxWindow = parent.clients.size() * MAX_INFLIGHT_PER_CLIENT;
+            this.window = parent.clients.size();
+            this.parts = new BaseFile[maxWindow * 2];
+            this.clientInflight = new int[parent.clients.size()];
+            this.lastPart = parent.partsCount != -1 ? parent.partsCount : Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                dispose();
+                drain();
+            }
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+
+            int missed = 1;
+            for (;;) {
+                if (done) {
+                    completions.clear();
+                    return;
+                }
+
+                Completion c;
+                while (!done && (c = completions.poll()) != null) {
+                    handle(c);
+                }
+
+                if (cancelled) {
+                    done = true;
+                    completions.clear();
+                    return;
+                }
+
+                if (done) { // error
+                    dispose();
+                    completions.clear();
+                    return;
+                }
+
+                long r = requested;
+                long e = parent.ordered ? emitOrdered(r) : emitUnordered(r);
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    REQUESTED.addAndGet(this, -e);
+                }
+
+                if (isCompleted()) {
+                    done = true;
+                    // cancel probes past the end of file
+                    dispose();
+                    actual.onComplete();
+                    return;
+                }
+
+                sendParts();
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        long emitOrdered(long r) {
+            long e = 0;
+            while (e != r && nextEmit < lastPart) {
+                int idx = nextEmit % parts.length;
+                BaseFile file = parts[idx];
+                if (file == null) {
+                    break;
+                }
+
+                parts[idx] = null;
+                actual.onNext(new Part(nextEmit, offset(nextEmit), file));
+                nextEmit++;
+                e++;
+            }
+            return e;
+        }
+
+        long emitUnordered(long r) {
+            long e = 0;
+            Part part;
+            while (e != r && (part = ready.poll()) != null) {
+                // The end of file can be found after receiving of this part
+                if (part.index() < lastPart) {
+                    actual.onNext(part);
+                    e++;
+                }
+            }
+            return e;
+        }
+
+        boolean isCompleted() {
+            if (parent.ordered) {
+                return nextEmit >= lastPart;
+            }
+            return nextPart() >= lastPart && retries.isEmpty() && ready.isEmpty() && inflight == 0;
+        }
+
+        long offset(int part) {
+            return parent.baseOffset + (long) part * parent.limit;
+        }
+
+        // Gets index of the next part to request in the unordered mode
+        int nextPart() {
+            return parent.completed != null ? parent.completed.nextClearBit(nextPart) : nextPart;
+        }
+
+        void handle(Completion c) {
+            inflight--;
+            clientInflight[c.client]--;
+
+            if (c.error != null) {
+                if (c.error instanceof RpcException rpcExc && RpcException.isFloodWait().test(rpcExc)) {
+                    long delay = UploadService.floodWaitNanos(rpcExc);
+                    floodWaitUntil = Math.max(floodWaitUntil, System.nanoTime() + delay);
+                    window = Math.max(1, window / 2);
+                    retries.add(c.part);
+
+                    if (log.isDebugEnabled()) {
+                        log.debug("[F:{}] Pausing download for {}s by flood wait, window: {}",
+                                parent.request.location(), TimeUnit.NANOSECONDS.toSeconds(delay), (int) window);
+                    }
+                    return;
+                }
+
+                done = true;
+                actual.onError(c.error);
+                return;
+            }
+
+            if (c.part >= lastPart) {
+                return;
+            }
+
+            BaseFile file = c.file;
+            assert file != null;
+            int size = file.bytes().readableBytes();
+            if (size == 0) {
+                lastPart = Math.min(lastPart, c.part);
+                return;
+            }
+            if (size < parent.limit) {
+                lastPart = Math.min(lastPart, c.part + 1);
+            }
+
+            if (parent.ordered) {
+                parts[c.part % parts.length] = file;
+            } else {
+                ready.add(new Part(c.part, offset(c.part), file));
+            }
+
+            minRttNanos = Math.min(minRttNanos, c.rttNanos);
+            if (c.rttNanos > minRttNanos * RTT_CONGESTION_RATIO) {
+                window = Math.max(1, window * DECREASE_FACTOR);
+            } else {
+                window = Math.min(maxWindow, window + 1 / window);
+            }
+        }
+
+        void sendParts() {
+            long now = System.nanoTime();
+            if (now < floodWaitUntil) {
+                if (!resumeScheduled) {
+                    resumeScheduled = true;
+                    resume.update(Schedulers.parallel().schedule(() -> {
+                        resumeScheduled = false;
+                        drain();
+                    }, floodWaitUntil - now, TimeUnit.NANOSECONDS));
+                }
+                return;
+            }
+
+            while (inflight < (int) window) {
+                int part;
+                if (!retries.isEmpty()) {
+                    part = retries.poll();
+                    if (part >= lastPart) {
+                        continue;
+                    }
+                } else if (parent.ordered && nextPart < lastPart && nextPart - nextEmit < parts.length) {
+                    part = nextPart++;
+                } else if (!parent.ordered && (nextPart = nextPart()) < lastPart &&
+                        inflight + ready.size() < parts.length) {
+                    part = nextPart++;
+                } else {
+                    break;
+                }
+
+                send(part);
+            }
+        }
+
+        void send(int part) {
+            int client = 0;
+            for (int i = 1; i < clientInflight.length; i++) {
+                if (clientInflight[i] < clientInflight[client]) {
+                    client = i;
+                }
+            }
+
+            inflight++;
+            clientInflight[client]++;
+
+            int clientIdx = client;
+            long start = System.nanoTime();
+            var request = parent.request.withOffset(offset(part));
+            parent.clients.get(client).send(request)
+                    .takeUntilOther(cancellation.asMono())
+                    .subscribe(file -> {
+                        if (file instanceof BaseFile b) {
+                            completions.offer(new Completion(part, clientIdx, System.nanoTime() - start, b, null));
+                        } else {
+                            completions.offer(new Completion(part, clientIdx, 0, null,
+                                    new IllegalStateException("Unexpected type of file part: " + file)));
+                        }
+                        drain();
+                    }, t -> {
+                        completions.offer(new Completion(part, clientIdx, System.nanoTime() - start, null, t));
+                        drain();
+                    });
+        }
+
+        void dispose() {
+            resume.dispose();
+            cancellation.tryEmitEmpty();
+        }
+
+        @Nullable
+        @Override
+        public Object scanUnsafe(Attr key) {
+            if (key == Attr.CANCELLED) return cancelled;
+            if (key == Attr.REQUESTED_FROM_DOWNSTREAM) return requested;
+            if (key == Attr.RUN_STYLE) return Attr.RunStyle.ASYNC;
+            if (key == Attr.ACTUAL) return actual;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.FileHash;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.BitSet;
+
+/**
+ * Sink which writes parts of downloading file directly to the {@link FileChannel} by their offsets.
+ * Indexes of written parts are persisted to the progress file near target file,
+ * that allows resuming of interrupted download.
+ *
+ * @implNote Methods of this class are blocking and must not be called concurrently.
+ */
+final class FileDownloadSink implements AutoCloseable {
+    static final int MAGIC = 0x74346a64; // t4jd
+    // Count of written parts after which progress is saved
+    static final int SAVE_INTERVAL = 16;
+
+    final Path path;
+    final Path progressPath;
+    final FileChannel channel;
+    final int partSize;
+    final long fileSize;
+    final BitSet completed;
+
+    int unsavedParts;
+    long writtenSize;
+
+    private FileDownloadSink(Path path, Path progressPath, FileChannel channel,
+                             int partSize, long fileSize, BitSet completed, long writtenSize) {
+        this.path = path;
+        this.progressPath = progressPath;
+        this.channel = channel;
+        this.partSize = partSize;
+        this.fileSize = fileSize;
+        this.completed = completed;
+        this.writtenSize = writtenSize;
+    }
+
+    static Path progressPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".t4j-progress");
+    }
+
+    /**
+     * Opens target file and loads progress of previous download if it has same parameters
+     * and target file wasn't deleted or truncated.
+     *
+     * @param path The path to target file.
+     * @param partSize The size of parts.
+     * @param fileSize The exact size of file or {@code -1} if it's unknown.
+     * @return The new sink.
+     * @throws IOException If an I/O error occurs.
+     */
+    static FileDownloadSink open(Path path, int partSize, long fileSize) throws IOException {
+        Path progressPath = progressPath(path);
+        BitSet completed = null;
+        long writtenSize = 0;
+        try (var in = new DataInputStream(Files.newInputStream(progressPath))) {
+            if (in.readInt() == MAGIC && in.readInt() == partSize && in.readLong() == fileSize) {
+                writtenSize = in.readLong();
+                completed = BitSet.valueOf(in.readNBytes(in.readInt()));
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) { // truncated or corrupted progress file
+            completed = null;
+        }
+
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        try {
+            // progress refers to data which was lost
+            if (completed != null && channel.size() < writtenSize) {
+                completed = null;
+            }
+            if (completed == null) {
+                completed = new BitSet();
+                writtenSize = 0;
+                channel.truncate(0);
+            }
+            return new FileDownloadSink(path, progressPath, channel, partSize, fileSize, completed, writtenSize);
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Writes part to the file from its buffer without intermediate copying if it's possible.
+     *
+     * @param part The downloaded part.
+     * @throws IOException If an I/O error occurs.
+     */
+    void write(DownloadFlux.Part part) throws IOException {
+        ByteBuf bytes = part.file().bytes();
+        long position = part.offset();
+        for (ByteBuffer buf : bytes.nioBuffers()) {
+            while (buf.hasRemaining()) {
+                position += channel.write(buf, position);
+            }
+        }
+
+        writtenSize = Math.max(writtenSize, position);
+        completed.set(part.index());
+        if (++unsavedParts >= SAVE_INTERVAL) {
+            saveProgress();
+        }
+    }
+
+    /**
+     * Makes written data durable and saves indexes of written parts.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    void saveProgress() throws IOException {
+        // Data must be written before progress which refers to it
+        channel.force(false);
+        unsavedParts = 0;
+
+        byte[] bitmap = completed.toByteArray();
+        Path tmp = progressPath.resolveSibling(progressPath.getFileName() + ".tmp");
+        try (var tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new DataOutputStream(Channels.newOutputStream(tmpChannel));
+            out.writeInt(MAGIC);
+            out.writeInt(partSize);
+            out.writeLong(fileSize);
+            out.writeLong(writtenSize);
+            out.writeInt(bitmap.length);
+            out.write(bitmap);
+            out.flush();
+            // otherwise file can be empty after the move if OS crashes
+            tmpChannel.force(true);
+        }
+        Files.move(tmp, progressPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Verifies written data by specified hashes. Parts with mismatched hashes are marked as not downloaded.
+     *
+     * @param hashes The list of hashes for file ranges.
+     * @return The offset of first corrupted range or {@code -1} if data is matched.
+     * @throws IOException If an I/O error occurs.
+     */
+    long verify(Iterable<? extends FileHash> hashes) throws IOException {
+        MessageDigest sha256 = CryptoUtil.createDigest("SHA-256");
+        long corrupted = -1;
+        ByteBuffer buf = null;
+        for (FileHash hash : hashes) {
+            long from = hash.offset();
+            int length = (int) Math.min(hash.limit(), Math.max(0, writtenSize - from));
+            if (length == 0) {
+                continue;
+            }
+
+            if (buf == null || buf.capacity() < length) {
+                buf = ByteBuffer.allocate(length);
+            }
+            buf.clear().limit(length);
+            long position = from;
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, position);
+                if (n == -1) {
+                    break;
+                }
+                position += n;
+            }
+            buf.flip();
+
+            sha256.reset();
+            sha256.update(buf);
+            // hash buffer is owned by the FileHash and mustn't be released
+            if (!MessageDigest.isEqual(sha256.digest(), ByteBufUtil.getBytes(hash.hash()))) {
+                if (corrupted == -1) {
+                    corrupted = from;
+                }
+                completed.clear((int) (from / partSize), (int) ((from + length - 1) / partSize) + 1);
+            }
+        }
+
+        if (corrupted != -1) {
+            saveProgress();
+        }
+        return corrupted;
+    }
+
+    /**
+     * Truncates file to the downloaded size and removes progress file.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    void finish() throws IOException {
+        channel.truncate(fileSize != -1 ? fileSize : writtenSize);
+        channel.force(true);
+        unsavedParts = 0;
+        Files.deleteIfExists(progressPath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (unsavedParts != 0) {
+                saveProgress();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import java.io.Serial;
+
+/** Exception which signals that server returned {@code false} on the {@code upload.saveFilePart} request. */
+public final class FilePartNotSavedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = -3418816016213594734L;
+
+    private final long fileId;
+    private final int partId;
+
+    public FilePartNotSavedException(long fileId, int partId) {
+        super("File part " + partId + " of file " + fileId + " wasn't saved");
+        this.fileId = fileId;
+        this.partId = partId;
+    }
+
+    public long getFileId() {
+        return fileId;
+    }
+
+    public int getPartId() {
+        return partId;
+    }
+}
@@ -22,13 +22,21 @@ import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ReferenceCountUtil;
 import org.reactivestreams.Subscription;
 import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
 import reactor.core.Scannable;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
 import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
 import reactor.util.context.Context;
 import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DiscardedRpcRequestException;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.TransportException;
 import telegram4j.mtproto.client.MTProtoClientGroup;
 import telegram4j.tl.ImmutableBaseInputFile;
 import telegram4j.tl.ImmutableInputFileBig;
@@ -40,12 +48,30 @@ import telegram4j.tl.request.upload.ImmutableSaveFilePart;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static telegram4j.mtproto.service.UploadService.log;
 
+/**
+ * Uploads file by parts through the several upload clients.
+ *
+ * <p> Each upload client has own sliding window of in-flight parts, which size is adapted by AIMD scheme:
+ * it's increased by one per window of acknowledged parts and decreased multiplicatively
+ * on {@code FLOOD_WAIT}, in this case client is also paused for requested time.
+ * Connection resets drop window of client to the one part.
+ * Failed parts are retried independently up to {@link #MAX_PART_ATTEMPTS} times.
+ */
 class UploadMono extends Mono<InputFile> {
+    static final int MAX_WINDOW_PER_CLIENT = 8;
+    static final double DECREASE_FACTOR = 0.5;
+    static final int MAX_PART_ATTEMPTS = 5;
 
     private final MTProtoClientGroup clientGroup;
     private final UploadOptions options;
@@ -60,102 +86,395 @@ class UploadMono extends Mono<InputFile> {
         options.getData().subscribe(new UploadSubscriber(actual, clientGroup, options));
     }
 
-    static class UploadSubscriber implements CoreSubscriber<ByteBuf>, Scannable, Subscription {
-        // It's necessary to avoid connection reset by server
-        static final Duration UPLOAD_INTERVAL = Duration.ofMillis(300);
+    static final class PreparedPart {
+        final int id;
+        final int size;
+        final TlMethod<Boolean> method;
+        int attempts;
 
-        final AtomicInteger readParts = new AtomicInteger();
-        CompositeByteBuf buffer;
-        MessageDigest md5;
-        final AtomicInteger roundRobin = new AtomicInteger();
+        PreparedPart(int id, int size, TlMethod<Boolean> method) {
+            this.id = id;
+            this.size = size;
+            this.method = method;
+        }
+    }
+
+    record Ack(PreparedPart part, Lane lane, long rttNanos, @Nullable Throwable error) {}
+
+    // Signals from the data publisher
+    static final Object STARTED = new Object();
+    static final Object CONSUMED = new Object();
+    static final Object SOURCE_DONE = new Object();
+
+    /** State of the upload client. Accessed only in the drain loop. */
+    static final class Lane {
+        final DcId dcId;
+        double window = 1;
+        int inflight;
+        long floodWaitUntil;
+
+        // metrics
+        long uploadedBytes;
+        int uploadedParts;
+        int retries;
+        long rttSumNanos;
+
+        Lane(DcId dcId) {
+            this.dcId = dcId;
+        }
+
+        boolean isAvailable(long now) {
+            return inflight < (int) window && now >= floodWaitUntil;
+        }
+    }
+
+    static class UploadSubscriber implements CoreSubscriber<ByteBuf>, Scannable, Subscription {
+        static final AtomicIntegerFieldUpdater<UploadSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(UploadSubscriber.class, "wip");
+        static final AtomicIntegerFieldUpdater<UploadSubscriber> REQUESTED =
+                AtomicIntegerFieldUpdater.newUpdater(UploadSubscriber.class, "requested");
 
         final CoreSubscriber<? super InputFile> actual;
         final MTProtoClientGroup clientGroup;
         final UploadOptions options;
-        final AtomicInteger received = new AtomicInteger();
-        final AtomicInteger requested = new AtomicInteger();
-
         final AtomicReference<Subscription> subscription = new AtomicReference<>();
+        final Queue<Object> signals = Queues.unboundedMultiproducer().get();
+        final Sinks.Empty<Void> cancellation = Sinks.empty();
+        final Disposable.Swap resume = Disposables.swap();
+
+        volatile int wip;
+        volatile int requested;
+        volatile boolean cancelled;
+
+        // Fields below are accessed only by the data publisher
+
+        int readParts;
+        CompositeByteBuf buffer;
+        MessageDigest md5;
 
-        public UploadSubscriber(CoreSubscriber<? super InputFile> actual,
-                                MTProtoClientGroup clientGroup,
-                                UploadOptions options) {
+        // Fields below are accessed only in the drain loop
+
+        final Lane[] lanes;
+        // prepared parts which are waiting for the sending
+        final ArrayDeque<PreparedPart> queue = new ArrayDeque<>();
+        int received;
+        boolean started;
+        boolean sourceRequested;
+        boolean sourceDone;
+        boolean resumeScheduled;
+        boolean done;
+        long startNanos;
+
+        UploadSubscriber(CoreSubscriber<? super InputFile> actual,
+                         MTProtoClientGroup clientGroup,
+                         UploadOptions options) {
             this.actual = actual;
             this.clientGroup = clientGroup;
             this.options = options;
 
-            this.requested.setRelease(options.getParallelism());
+            this.readParts = options.getFirstPart();
+            this.received = options.getFirstPart();
+            this.lanes = new Lane[options.getParallelism()];
+            int mainDcId = clientGroup.main().dc().getId();
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane(DcId.upload(mainDcId, i));
+            }
         }
 
-        void send(ByteBuf buf) {
+        void prepare(ByteBuf buf) {
             if (md5 != null)
                 md5.update(buf.nioBuffer());
 
-            int partId = readParts.getAndIncrement();
-            TlMethod<Boolean> part;
+            int partId = readParts++;
+            int size = buf.readableBytes();
+            TlMethod<Boolean> method;
             try {
                 if (options.isBigFile()) {
-                    part = ImmutableSaveBigFilePart.of(options.getFileId(), partId, options.getPartsCount(), buf);
+                    method = ImmutableSaveBigFilePart.of(options.getFileId(), partId, options.getPartsCount(), buf);
                 } else {
-                    part = ImmutableSaveFilePart.of(options.getFileId(), partId, buf);
+                    method = ImmutableSaveFilePart.of(options.getFileId(), partId, buf);
                 }
             } finally {
                 ReferenceCountUtil.safeRelease(buf);
             }
 
-            int idx = Math.abs(roundRobin.getAndIncrement() % options.getParallelism());
+            signals.offer(new PreparedPart(partId, size, method));
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+
+            int missed = 1;
+            for (;;) {
+                Object s;
+                while (!done && (s = signals.poll()) != null) {
+                    handle(s);
+                }
+
+                if (done) {
+                    signals.clear();
+                    return;
+                }
+
+                if (cancelled) {
+                    done = true;
+                    dispose();
+                    signals.clear();
+                    return;
+                }
+
+                if (received == options.getPartsCount()) {
+                    done = true;
+                    dispose();
+                    completeInner();
+                    return;
+                }
+
+                if (started) {
+                    sendParts();
+                    requestSource();
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void handle(Object s) {
+            if (s instanceof PreparedPart p) {
+                queue.add(p);
+            } else if (s instanceof Ack a) {
+                handleAck(a);
+            } else if (s == CONSUMED) {
+                sourceRequested = false;
+            } else if (s == SOURCE_DONE) {
+                sourceDone = true;
+            } else if (s == STARTED) {
+                started = true;
+                startNanos = System.nanoTime();
+            } else if (s instanceof Throwable t) {
+                fail(t);
+            }
+        }
+
+        void handleAck(Ack a) {
+            Lane lane = a.lane;
+            PreparedPart part = a.part;
+            lane.inflight--;
+
+            Throwable t = a.error;
+            if (t == null) {
+                lane.window = Math.min(MAX_WINDOW_PER_CLIENT, lane.window + 1 / lane.window);
+                lane.uploadedBytes += part.size;
+                lane.uploadedParts++;
+                lane.rttSumNanos += a.rttNanos;
+                received++;
+
+                if (log.isTraceEnabled()) {
+                    log.trace("[DC:{}, F:{}] Uploaded part {}, {}/{}, window: {}", lane.dcId, options.getFileId(),
+                            part.id + 1, received, options.getPartsCount(), (int) lane.window);
+                }
+                return;
+            }
+
+            if (t instanceof RpcException rpcExc && RpcException.isFloodWait().test(rpcExc)) {
+                long delay = UploadService.floodWaitNanos(rpcExc);
+                lane.floodWaitUntil = Math.max(lane.floodWaitUntil, System.nanoTime() + delay);
+                lane.window = Math.max(1, lane.window * DECREASE_FACTOR);
+                lane.retries++;
+                queue.addFirst(part);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("[DC:{}, F:{}] Pausing upload for {}s by flood wait, window: {}", lane.dcId,
+                            options.getFileId(), TimeUnit.NANOSECONDS.toSeconds(delay), (int) lane.window);
+                }
+                return;
+            }
+
+            if (isRetryable(t) && ++part.attempts < MAX_PART_ATTEMPTS) {
+                if (isConnectionReset(t)) {
+                    lane.window = 1;
+                } else {
+                    lane.window = Math.max(1, lane.window * DECREASE_FACTOR);
+                }
+                lane.retries++;
+                queue.addFirst(part);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("[DC:{}, F:{}] Retrying upload of part {} after failure, attempt: {}, window: {}",
+                            lane.dcId, options.getFileId(), part.id + 1, part.attempts, (int) lane.window, t);
+                }
+                return;
+            }
 
-            DcId dcId = DcId.upload(clientGroup.main().dc().getId(), idx);
             if (log.isDebugEnabled()) {
-                log.debug("[DC:{}, F:{}] Preparing to send {}/{}", dcId, options.getFileId(),
-                        partId + 1, options.getPartsCount());
+                log.debug("[DC:{}, F:{}] Failed to upload file part: {}", lane.dcId, options.getFileId(), part.id);
             }
+            fail(t);
+        }
 
-            Mono.delay(UPLOAD_INTERVAL, Schedulers.single())
-                    .then(clientGroup.send(dcId, part))
-                    .subscribe(res -> {
-                        if (!res) throw new IllegalStateException("Unexpected result state");
+        static boolean isConnectionReset(Throwable t) {
+            return Exceptions.isCancel(t) || t instanceof TransportException ||
+                    t instanceof DiscardedRpcRequestException;
+        }
 
-                        int cnt = received.incrementAndGet();
-                        if (log.isDebugEnabled()) {
-                            log.debug("[DC:{}, F:{}] Uploaded part {}, {}/{}", dcId, options.getFileId(),
-                                    partId + 1, cnt, options.getPartsCount());
-                        }
+        static boolean isRetryable(Throwable t) {
+            return isConnectionReset(t) || RpcException.isErrorCode(500).test(t) ||
+                    t instanceof FilePartNotSavedException;
+        }
 
-                        int d = requested.decrementAndGet();
-                        if (cnt == options.getPartsCount()) {
-                            completeInner();
-                        } else if (d == 0) {
-                            int remain = options.getPartsCount() - readParts.get();
-                            int r = Math.min(options.getParallelism(), remain);
-                            if (requested.compareAndSet(0, r)) {
-                                subscription.get().request(r);
-                            }
+        void sendParts() {
+            long now = System.nanoTime();
+            long nearestResume = Long.MAX_VALUE;
+            while (!queue.isEmpty()) {
+                Lane lane = null;
+                for (Lane l : lanes) {
+                    if (l.isAvailable(now)) {
+                        if (lane == null || l.inflight / l.window < lane.inflight / lane.window) {
+                            lane = l;
                         }
+                    } else if (now < l.floodWaitUntil) {
+                        nearestResume = Math.min(nearestResume, l.floodWaitUntil);
+                    }
+                }
+
+                if (lane == null) {
+                    break;
+                }
+
+                send(lane, queue.poll());
+            }
+
+            if (!queue.isEmpty() && nearestResume != Long.MAX_VALUE && !resumeScheduled) {
+                resumeScheduled = true;
+                resume.update(Schedulers.parallel().schedule(() -> {
+                    resumeScheduled = false;
+                    drain();
+                }, nearestResume - now, TimeUnit.NANOSECONDS));
+            }
+        }
+
+        void send(Lane lane, PreparedPart part) {
+            lane.inflight++;
+
+            long start = System.nanoTime();
+            clientGroup.send(lane.dcId, part.method)
+                    .takeUntilOther(cancellation.asMono())
+                    .subscribe(res -> {
+                        Throwable t = res ? null : new FilePartNotSavedException(options.getFileId(), part.id);
+                        signals.offer(new Ack(part, lane, System.nanoTime() - start, t));
+                        drain();
                     }, t -> {
-                        if (log.isDebugEnabled()) {
-                            log.debug("[DC:{}, F:{}] Failed to upload file part: {}",
-                                    dcId, options.getFileId(), partId);
-                        }
-                        onError(t);
+                        signals.offer(new Ack(part, lane, System.nanoTime() - start, t));
+                        drain();
                     });
         }
 
+        // Requests next chunk of data while there are free slots in the windows
+        void requestSource() {
+            if (sourceRequested || sourceDone || preparedParts() >= options.getPartsCount()) {
+                return;
+            }
+
+            int capacity = 0;
+            for (Lane l : lanes) {
+                capacity += (int) l.window - l.inflight;
+            }
+            if (queue.size() < capacity) {
+                sourceRequested = true;
+                subscription.get().request(1);
+            }
+        }
+
+        // Gets count of parts which are already prepared by the data publisher
+        int preparedParts() {
+            int inflight = 0;
+            for (Lane l : lanes) {
+                inflight += l.inflight;
+            }
+            return received + inflight + queue.size();
+        }
+
+        void fail(Throwable t) {
+            done = true;
+            dispose();
+            var sub = subscription.getAndSet(Operators.cancelledSubscription());
+            if (sub != Operators.cancelledSubscription()) {
+                sub.cancel();
+            }
+            actual.onError(t);
+        }
+
         void completeInner() {
+            // source may still be unfinished if it has more bytes than the specified size
             var sub = subscription.getAndSet(Operators.cancelledSubscription());
             if (sub == Operators.cancelledSubscription()) {
                 return;
             }
+            sub.cancel();
+
+            var stats = stats();
+            if (log.isDebugEnabled()) {
+                logStats(stats);
+            }
+            var listener = options.getStatsListener().orElse(null);
+            if (listener != null) {
+                try {
+                    listener.accept(stats);
+                } catch (Throwable t) {
+                    log.warn("[F:" + options.getFileId() + "] Stats listener failed", t);
+                }
+            }
 
             if (options.isBigFile()) {
                 actual.onNext(ImmutableInputFileBig.of(options.getFileId(), options.getPartsCount(), options.getName()));
             } else {
+                // md5_checksum is optional and can't be computed for resumed uploads
+                String md5Checksum = md5 != null ? ByteBufUtil.hexDump(md5.digest()) : "";
                 actual.onNext(ImmutableBaseInputFile.of(options.getFileId(), options.getPartsCount(),
-                        options.getName(), ByteBufUtil.hexDump(md5.digest())));
+                        options.getName(), md5Checksum));
             }
             actual.onComplete();
         }
 
+        UploadService.UploadStats stats() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            long totalBytes = 0;
+            var clients = new ArrayList<UploadService.ClientUploadStats>(lanes.length);
+            for (Lane l : lanes) {
+                totalBytes += l.uploadedBytes;
+                long rtt = l.uploadedParts != 0 ? l.rttSumNanos / l.uploadedParts : 0;
+                clients.add(new UploadService.ClientUploadStats(l.dcId, l.uploadedBytes, l.uploadedParts,
+                        l.retries, Duration.ofNanos(rtt), throughput(l.uploadedBytes, elapsedNanos)));
+            }
+            return new UploadService.UploadStats(options.getFileId(), totalBytes, Duration.ofNanos(elapsedNanos),
+                    throughput(totalBytes, elapsedNanos), List.copyOf(clients));
+        }
+
+        void logStats(UploadService.UploadStats stats) {
+            for (var c : stats.clients()) {
+                log.debug("[DC:{}, F:{}] Uploaded {} parts, {} bytes, {} KB/s, avg RTT: {}ms, retries: {}",
+                        c.dcId(), stats.fileId(), c.uploadedParts(), c.uploadedBytes(),
+                        c.throughput() / 1024, c.averageRtt().toMillis(), c.retries());
+            }
+            log.debug("[F:{}] Uploaded {} bytes in {}ms, {} KB/s", stats.fileId(), stats.uploadedBytes(),
+                    stats.elapsed().toMillis(), stats.throughput() / 1024);
+        }
+
+        // in bytes per second
+        static long throughput(long bytes, long elapsedNanos) {
+            return bytes * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        void dispose() {
+            resume.dispose();
+            cancellation.tryEmitEmpty();
+        }
+
         @Override
         public void onSubscribe(Subscription s) {
             if (subscription.compareAndSet(null, s)) {
@@ -171,13 +490,19 @@ class UploadMono extends Mono<InputFile> {
                 return;
             }
 
-            // aligned buffer
-            if (buf.readableBytes() % options.getPartSize() == 0) {
-                while (buf.isReadable()) {
-                    send(buf.readRetainedSlice(options.getPartSize()));
+            // aligned buffer or the exact tail of file, it's can be sent without copying to the composite
+            if (buffer == null || !buffer.isReadable()) {
+                int size = buf.readableBytes();
+                int remaining = remainingSize();
+                if (size == remaining || size % options.getPartSize() == 0 && size < remaining) {
+                    while (buf.isReadable()) {
+                        prepare(buf.readRetainedSlice(Math.min(options.getPartSize(), buf.readableBytes())));
+                    }
+                    ReferenceCountUtil.release(buf);
+                    signals.offer(CONSUMED);
+                    drain();
+                    return;
                 }
-                ReferenceCountUtil.release(buf);
-                return;
             }
 
             if (buffer == null) {
@@ -186,34 +511,55 @@ class UploadMono extends Mono<InputFile> {
 
             buffer.addFlattenedComponents(true, buf);
             while (buffer.isReadable(options.getPartSize())) {
-                send(buffer.readRetainedSlice(options.getPartSize()));
+                prepare(buffer.readRetainedSlice(options.getPartSize()));
             }
 
-            if (readParts.get() == options.getPartsCount() - 1 && buffer.isReadable()) {
-                send(buffer);
+            if (readParts == options.getPartsCount() - 1 && buffer.isReadable()) {
+                prepare(buffer);
+                buffer = null;
             }
+
+            signals.offer(CONSUMED);
+            drain();
+        }
+
+        int remainingSize() {
+            long offset = (long) readParts * options.getPartSize();
+            return (int) Math.min(options.getSize() - offset, Integer.MAX_VALUE);
         }
 
         @Override
         public void onError(Throwable t) {
-            var current = subscription.getAndSet(Operators.cancelledSubscription());
-            if (current == Operators.cancelledSubscription()) {
+            if (subscription.get() == Operators.cancelledSubscription()) {
                 Operators.onErrorDropped(t, currentContext());
                 return;
             }
 
-            actual.onError(t);
+            signals.offer(t);
+            drain();
         }
 
         @Override
         public void onComplete() {
-            subscription.set(Operators.cancelledSubscription());
+            if (buffer != null) {
+                buffer.release();
+                buffer = null;
+            }
+
+            if (readParts < options.getPartsCount()) {
+                signals.offer(new IllegalStateException("Data publisher emitted less than "
+                        + options.getSize() + " bytes"));
+            } else {
+                signals.offer(SOURCE_DONE);
+            }
+            drain();
         }
 
         @Override
         public void request(long n) {
-            if (Operators.validate(n)) {
-                if (options.isBigFile()) {
+            // upload is started by the first request, as the result is a single InputFile
+            if (Operators.validate(n) && REQUESTED.compareAndSet(this, 0, 1)) {
+                if (options.isBigFile() || options.getFirstPart() != 0) {
                     md5 = null;
                 } else {
                     try {
@@ -224,14 +570,13 @@ class UploadMono extends Mono<InputFile> {
                     }
                 }
 
-                AtomicInteger pending = new AtomicInteger(options.getParallelism());
-                for (int i = 0; i < options.getParallelism(); i++) {
-                    DcId dcId = DcId.upload(clientGroup.main().dc().getId(), i);
-
-                    clientGroup.getOrCreateClient(dcId)
+                AtomicInteger pending = new AtomicInteger(lanes.length);
+                for (Lane lane : lanes) {
+                    clientGroup.getOrCreateClient(lane.dcId)
                             .subscribe(client -> {
                                 if (pending.decrementAndGet() == 0) {
-                                    subscription.get().request(Math.min(options.getParallelism(), options.getPartsCount()));
+                                    signals.offer(STARTED);
+                                    drain();
                                 }
                             }, this::onError);
                 }
@@ -246,12 +591,15 @@ class UploadMono extends Mono<InputFile> {
             }
 
             current.cancel();
+            cancelled = true;
+            drain();
         }
 
         @Nullable
         @Override
         public Object scanUnsafe(Scannable.Attr key) {
             if (key == Attr.TERMINATED) return subscription.get() == Operators.cancelledSubscription();
+            if (key == Attr.CANCELLED) return cancelled;
             if (key == Attr.PARENT) return subscription.get();
             if (key == Attr.RUN_STYLE) return Attr.RunStyle.ASYNC;
             if (key == Attr.REQUESTED_FROM_DOWNSTREAM) return options.getPartsCount();
@@ -17,12 +17,15 @@ package telegram4j.mtproto.service;
 
 import io.netty.buffer.ByteBuf;
 import org.reactivestreams.Publisher;
+import reactor.util.annotation.Nullable;
 import telegram4j.mtproto.util.CryptoUtil;
 import telegram4j.tl.InputFileBig;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static telegram4j.mtproto.service.UploadService.*;
 
@@ -34,6 +37,9 @@ public class UploadOptions {
     private final String name;
     private final int parallelism;
     private final long fileId;
+    private final int firstPart;
+    @Nullable
+    private final Consumer<? super UploadService.UploadStats> statsListener;
 
     UploadOptions(Builder builder) {
         this.data = builder.data;
@@ -43,6 +49,8 @@ public class UploadOptions {
         this.parallelism = builder.parallelism;
         this.partsCount = builder.partsCount;
         this.fileId = builder.fileId;
+        this.firstPart = builder.firstPart;
+        this.statsListener = builder.statsListener;
     }
 
     UploadOptions(Publisher<? extends ByteBuf> data, long size, String name) {
@@ -53,6 +61,8 @@ public class UploadOptions {
         this.partSize = UploadService.suggestPartSize(size, -1);
         this.partsCount = (int) Math.ceil((double) size / partSize);
         this.fileId = CryptoUtil.random.nextLong();
+        this.firstPart = 0;
+        this.statsListener = null;
     }
 
     /**
@@ -128,6 +138,25 @@ public class UploadOptions {
         return fileId;
     }
 
+    /**
+     * Gets index of the first part to upload. Parts before it are considered as already uploaded
+     * with the same {@link #getFileId()} and {@link #getData()} must not emit them.
+     *
+     * @return The index of the first part to upload, {@code 0} by default.
+     */
+    public int getFirstPart() {
+        return firstPart;
+    }
+
+    /**
+     * Gets listener which receives statistics of upload after its completion.
+     *
+     * @return The listener of upload statistics, if present.
+     */
+    public Optional<Consumer<? super UploadService.UploadStats>> getStatsListener() {
+        return Optional.ofNullable(statsListener);
+    }
+
     /**
      * Creates new {@code UploadOptions} with specified mandatory parameters.
      * All other attributes will initialize depends on specified values.
@@ -163,6 +192,8 @@ public class UploadOptions {
         private int partSize = -1;
         private int parallelism = -1;
         private long fileId;
+        private int firstPart;
+        private Consumer<? super UploadService.UploadStats> statsListener;
 
         private Builder() {}
 
@@ -206,6 +237,31 @@ public class UploadOptions {
             return this;
         }
 
+        /**
+         * Sets index of part from which upload will be resumed.
+         * Should be used with the {@link #fileId(long)} of interrupted upload.
+         *
+         * @param firstPart The index of the first part to upload.
+         * @return This builder.
+         */
+        public Builder firstPart(int firstPart) {
+            if (firstPart < 0)
+                throw new IllegalArgumentException("Invalid first part: " + firstPart);
+            this.firstPart = firstPart;
+            return this;
+        }
+
+        /**
+         * Sets listener which receives per-file and per-client throughput statistics after upload completion.
+         *
+         * @param statsListener The listener of upload statistics.
+         * @return This builder.
+         */
+        public Builder statsListener(Consumer<? super UploadService.UploadStats> statsListener) {
+            this.statsListener = Objects.requireNonNull(statsListener);
+            return this;
+        }
+
         public UploadOptions build() {
             if (initBits != 0) {
                 List<String> attributes = new ArrayList<>(Integer.bitCount(initBits));
@@ -221,6 +277,9 @@ public class UploadOptions {
                 throw new IllegalArgumentException("Invalid size and part size parameters, parts count is too big." +
                         "size: " + size + ", part size: " + partSize);
             }
+            if (firstPart >= partsCount) {
+                throw new IllegalArgumentException("First part is out of bounds: " + firstPart + " >= " + partsCount);
+            }
             if (parallelism == -1) {
                 parallelism = UploadService.suggestParallelism(size);
             }
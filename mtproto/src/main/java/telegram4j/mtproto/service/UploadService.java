@@ -22,6 +22,8 @@ import reactor.function.TupleUtils;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.RpcException;
+import telegram4j.mtproto.client.DefaultMTProtoClientGroup;
 import telegram4j.mtproto.client.MTProtoClient;
 import telegram4j.mtproto.client.MTProtoClientGroup;
 import telegram4j.mtproto.file.FileReferenceId;
@@ -41,12 +43,16 @@ import telegram4j.tl.storage.FileType;
 import telegram4j.tl.upload.BaseFile;
 import telegram4j.tl.upload.WebFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class UploadService extends RpcService {
     static final Logger log = Loggers.getLogger(UploadService.class);
@@ -58,16 +64,60 @@ public class UploadService extends RpcService {
 
     static final int MAX_PARTS_COUNT = 4000; // it's for users with tg premium; for other users limit is 3000
     static final long MAX_FILE_SIZE = 4L * 1000 * 1024 * 1024; // 4gb for premium users; for other = 2gb
-    static final int MAX_INFLIGHT_REQUESTS = 3; // optimal count of pending upload.getFile requests
+    static final int MAX_INFLIGHT_REQUESTS = 3; // optimal count of pending upload.getWebFile requests
+    static final int MAX_DOWNLOAD_PART_SIZE = 1024 * 1024;
+    static final int MAX_DOWNLOAD_PARALLELISM = DefaultMTProtoClientGroup.Options.DEFAULT_MAX_DOWNLOAD_CLIENTS_COUNT;
 
     public UploadService(MTProtoClientGroup groupManager, StoreLayout storeLayout) {
         super(groupManager, storeLayout);
     }
 
+    // Extracts delay from the FLOOD_WAIT_X error
+    static long floodWaitNanos(RpcException e) {
+        String msg = e.getError().errorMessage();
+        return TimeUnit.SECONDS.toNanos(Integer.parseInt(msg.substring(msg.lastIndexOf('_') + 1)));
+    }
+
+    /**
+     * Statistics of the completed file upload.
+     *
+     * @param fileId The id of uploaded file.
+     * @param uploadedBytes The count of bytes uploaded by this upload, parts before the first part aren't counted.
+     * @param elapsed The duration of upload.
+     * @param throughput The average throughput of upload in bytes per second.
+     * @param clients The statistics of each upload client.
+     */
+    public record UploadStats(long fileId, long uploadedBytes, Duration elapsed,
+                              long throughput, List<ClientUploadStats> clients) {}
+
+    /**
+     * Statistics of the one upload client for the file upload.
+     *
+     * @param dcId The id of upload client.
+     * @param uploadedBytes The count of bytes uploaded by client.
+     * @param uploadedParts The count of parts uploaded by client.
+     * @param retries The count of retried parts, including retries after {@code FLOOD_WAIT}.
+     * @param averageRtt The average round-trip time of part upload.
+     * @param throughput The average throughput of client in bytes per second.
+     */
+    public record ClientUploadStats(DcId dcId, long uploadedBytes, int uploadedParts, int retries,
+                                    Duration averageRtt, long throughput) {}
+
     public static int suggestParallelism(long size) {
         return size > BIG_FILE_THRESHOLD ? 3 : 1;
     }
 
+    /**
+     * Suggests count of download clients for downloading file of specified size.
+     * Files of unknown size, usually avatars and thumbnails, and small files are downloaded by the one client.
+     *
+     * @param size The exact size of file or {@code -1} if it's unknown.
+     * @return The count of download clients.
+     */
+    public static int suggestDownloadParallelism(long size) {
+        return size > BIG_FILE_THRESHOLD ? MAX_DOWNLOAD_PARALLELISM : 1;
+    }
+
     public static int suggestPartSize(long size, int partSize) {
         if (partSize == -1) {
             return MAX_PART_SIZE; // TODO: adaptive part size
@@ -97,33 +147,61 @@ public class UploadService extends RpcService {
     // upload namespace
     // =========================
 
-    private Flux<BaseFile> getFile0(MTProtoClient client, FileReferenceId fileRefId,
-                                    long baseOffset, int limit, boolean precise) {
-        AtomicLong offset = new AtomicLong(baseOffset);
-        AtomicBoolean complete = new AtomicBoolean();
+    private Flux<BaseFile> getFile0(List<MTProtoClient> clients, FileReferenceId fileRefId,
+                                    long baseOffset, int limit, boolean precise, long fileSize) {
         ImmutableGetFile request = ImmutableGetFile.of(precise ? ImmutableGetFile.PRECISE_MASK : 0,
                 fileRefId.asLocation().orElseThrow(), baseOffset, limit);
 
-        return Flux.range(0, MAX_INFLIGHT_REQUESTS)
-                .flatMapSequential(i -> {
-                    var requiredDelay = Mono.delay(Duration.ofMillis(20), Schedulers.single());
-                    return client.send(request.withOffset(offset.getAndAdd(limit)))
-                            .flatMap(requiredDelay::thenReturn);
-                })
-                .repeat(() -> !complete.get())
-                .cast(BaseFile.class)
-                .mapNotNull(part -> {
-                    if (part.type() == FileType.UNKNOWN || !part.bytes().isReadable()) { // download completed
-                        complete.set(true);
-                        return null;
+        int partsCount = fileSize != -1
+                ? Math.toIntExact(Math.max(0, (fileSize - baseOffset + limit - 1) / limit))
+                : -1;
+        return new DownloadFlux(clients, request, partsCount, true, null)
+                .map(DownloadFlux.Part::file);
+    }
+
+    // Collects download clients with shifts in the range [0, parallelism),
+    // shifts which are out of bounds of client group are skipped.
+    // Authorization is exported once and imported by each client
+    private Mono<List<MTProtoClient>> getDownloadClients(int dcId, int parallelism, boolean importAuthorization) {
+        var exportedAuth = importAuthorization
+                ? sendMain(ImmutableExportAuthorization.of(dcId)).cache()
+                : null;
+        return Flux.range(0, parallelism)
+                .flatMapSequential(i -> clientGroup.getOrCreateClient(DcId.download(dcId, i))
+                        .onErrorResume(e -> i != 0 && e instanceof IllegalArgumentException, e -> Mono.empty()))
+                .flatMapSequential(client -> {
+                    if (exportedAuth == null) {
+                        return Mono.just(client);
                     }
-                    return part;
-                });
+                    return exportedAuth
+                            .flatMap(auth -> client.send(ImmutableImportAuthorization.of(auth.id(), auth.bytes())))
+                            .thenReturn(client);
+                })
+                .collectList();
     }
 
     @Compatible(Type.BOTH)
     public Flux<BaseFile> getFile(FileReferenceId location,
                                   long offset, int limit, boolean precise) {
+        return getFile(location, offset, limit, precise, -1);
+    }
+
+    /**
+     * Downloads file by parts through the several download clients. Parts are emitted in the order of offsets.
+     * If file size is known then exactly needed count of parts is requested, otherwise downloading
+     * stops after the first incomplete part.
+     *
+     * @param location The location of file.
+     * @param offset The number of bytes to be skipped.
+     * @param limit The number of bytes to be returned in each part.
+     * @param precise Disable some checks on limit and offset values.
+     * @param fileSize The exact size of file or {@code -1} if it's unknown.
+     * @return A {@link Flux} emitting parts of file.
+     */
+    @Compatible(Type.BOTH)
+    public Flux<BaseFile> getFile(FileReferenceId location,
+                                  long offset, int limit, boolean precise, long fileSize) {
+        if (fileSize < -1) return Flux.error(new IllegalArgumentException("fileSize is negative"));
         if (offset < 0) return Flux.error(new IllegalArgumentException("offset is negative"));
         if (limit <= 0) return Flux.error(new IllegalArgumentException("limit is not positive"));
 
@@ -146,17 +224,96 @@ public class UploadService extends RpcService {
         if (location.getFileType() == FileReferenceId.Type.WEB_DOCUMENT)
             return Flux.error(new IllegalArgumentException("Web documents can not be downloaded as normal files"));
 
-        DcId dcId = DcId.download(location.getDcId());
-        if (location.getDcId() != clientGroup.main().dc().getId()) {
-            return sendMain(ImmutableExportAuthorization.of(location.getDcId()))
-                    .zipWith(clientGroup.getOrCreateClient(dcId))
-                    .flatMap(TupleUtils.function((auth, client) -> client.send(
-                                    ImmutableImportAuthorization.of(auth.id(), auth.bytes()))
-                            .thenReturn(client)))
-                    .flatMapMany(client -> getFile0(client, location, offset, limit, precise));
-        }
-        return clientGroup.getOrCreateClient(dcId)
-                .flatMapMany(client -> getFile0(client, location, offset, limit, precise));
+        int dcId = location.getDcId();
+        boolean importAuthorization = dcId != clientGroup.main().dc().getId();
+        return getDownloadClients(dcId, suggestDownloadParallelism(fileSize), importAuthorization)
+                .flatMapMany(clients -> getFile0(clients, location, offset, limit, precise, fileSize));
+    }
+
+    /**
+     * Downloads file directly to the specified path. Parts are written by their offsets as soon as they are received,
+     * and indexes of written parts are persisted in the progress file near the target file,
+     * so the interrupted download is continued from the remaining parts by the next invocation.
+     *
+     * @param location The location of file.
+     * @param path The path to target file.
+     * @param fileSize The exact size of file or {@code -1} if it's unknown.
+     * @param verifyHashes Whether to verify downloaded file by hashes from the server.
+     * If server doesn't provide hashes for this file then verification is skipped.
+     * @return A {@link Mono} completing after file is fully written.
+     */
+    @Compatible(Type.BOTH)
+    public Mono<Void> downloadFile(FileReferenceId location, Path path, long fileSize, boolean verifyHashes) {
+        Objects.requireNonNull(path);
+        if (fileSize < -1) return Mono.error(new IllegalArgumentException("fileSize is negative"));
+        if (location.getFileType() == FileReferenceId.Type.WEB_DOCUMENT)
+            return Mono.error(new IllegalArgumentException("Web documents can not be downloaded as normal files"));
+
+        int dcId = location.getDcId();
+        boolean importAuthorization = dcId != clientGroup.main().dc().getId();
+        InputFileLocation fileLocation = location.asLocation().orElseThrow();
+        ImmutableGetFile request = ImmutableGetFile.of(0, fileLocation, 0, MAX_DOWNLOAD_PART_SIZE);
+        int partsCount = fileSize != -1
+                ? Math.toIntExact((fileSize + MAX_DOWNLOAD_PART_SIZE - 1) / MAX_DOWNLOAD_PART_SIZE)
+                : -1;
+
+        return Mono.usingWhen(
+                Mono.fromCallable(() -> FileDownloadSink.open(path, MAX_DOWNLOAD_PART_SIZE, fileSize))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                sink -> getDownloadClients(dcId, suggestDownloadParallelism(fileSize), importAuthorization)
+                        .flatMap(clients -> new DownloadFlux(clients, request, partsCount, false, (BitSet) sink.completed.clone())
+                                .publishOn(Schedulers.boundedElastic())
+                                .doOnNext(part -> {
+                                    try {
+                                        sink.write(part);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                })
+                                .then(verifyHashes ? verifyFile(clients.get(0), fileLocation, sink) : Mono.empty()))
+                        .then(Mono.fromCallable(() -> {
+                            sink.finish();
+                            return null;
+                        })),
+                sink -> closeSink(sink),
+                (sink, e) -> closeSink(sink),
+                sink -> closeSink(sink));
+    }
+
+    private Mono<Void> verifyFile(MTProtoClient client, InputFileLocation location, FileDownloadSink sink) {
+        return client.send(ImmutableGetFileHashes.of(location, 0))
+                .expand(hashes -> {
+                    if (hashes.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    FileHash last = hashes.get(hashes.size() - 1);
+                    long next = last.offset() + last.limit();
+                    return next < sink.writtenSize
+                            ? client.send(ImmutableGetFileHashes.of(location, next))
+                            : Mono.empty();
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .concatMap(hashes -> Mono.fromCallable(() -> {
+                    long corrupted = sink.verify(hashes);
+                    if (corrupted != -1) {
+                        throw new IllegalStateException("Hash mismatch of downloaded file at offset " + corrupted);
+                    }
+                    return hashes;
+                }))
+                .onErrorResume(RpcException.class, e -> {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Skipping verification of downloaded file: {}", e.getMessage());
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static Mono<Void> closeSink(FileDownloadSink sink) {
+        return Mono.<Void>fromCallable(() -> {
+            sink.close();
+            return null;
+        }).subscribeOn(Schedulers.boundedElastic());
     }
 
     private Flux<WebFile> getWebFile0(MTProtoClient client, InputWebFileLocation location,
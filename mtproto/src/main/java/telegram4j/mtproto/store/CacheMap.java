@@ -0,0 +1,237 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import reactor.util.annotation.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Map view of {@link Cache} which records statistics on lookups and
+ * can keep values in the different, e.g. serialized, form.
+ *
+ * @param <K> The type of keys.
+ * @param <V> The type of values.
+ * @param <S> The type of stored values.
+ */
+final class CacheMap<K, V, S> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    /**
+     * Converter between values and their stored form.
+     *
+     * @param <V> The type of values.
+     * @param <S> The type of stored values.
+     */
+    interface Codec<V, S> {
+
+        S encode(V value);
+
+        V decode(S stored);
+    }
+
+    final Cache<K, S> cache;
+    final ConcurrentMap<K, S> map;
+    final Codec<V, S> codec;
+
+    CacheMap(Cache<K, S> cache, Codec<V, S> codec) {
+        this.cache = cache;
+        this.map = cache.asMap();
+        this.codec = codec;
+    }
+
+    static <K, V> CacheMap<K, V, V> create(Cache<K, V> cache) {
+        return new CacheMap<>(cache, new Codec<>() {
+            @Override
+            public V encode(V value) {
+                return value;
+            }
+
+            @Override
+            public V decode(V stored) {
+                return stored;
+            }
+        });
+    }
+
+    /**
+     * Creates codec which keeps values as the byte arrays.
+     *
+     * @param writer The function to serialize value into buffer.
+     * @param reader The function to deserialize value from buffer.
+     * @return The new codec for serialized form.
+     */
+    static <V> Codec<V, byte[]> serialized(BiConsumer<ByteBuf, V> writer, Function<ByteBuf, V> reader) {
+        return new Codec<>() {
+            @Override
+            public byte[] encode(V value) {
+                ByteBuf buf = ByteBufAllocator.DEFAULT.heapBuffer();
+                try {
+                    writer.accept(buf, value);
+                    return ByteBufUtil.getBytes(buf);
+                } finally {
+                    buf.release();
+                }
+            }
+
+            @Override
+            public V decode(byte[] stored) {
+                return reader.apply(Unpooled.wrappedBuffer(stored));
+            }
+        };
+    }
+
+    @Nullable
+    V decode(@Nullable S stored) {
+        return stored != null ? codec.decode(stored) : null;
+    }
+
+    @Nullable
+    S encode(@Nullable V value) {
+        return value != null ? codec.encode(value) : null;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        // unlike the map view of cache, this method records hit and miss
+        return decode(cache.getIfPresent((K) key));
+    }
+
+    // unlike put(), doesn't decode the previous value
+    void set(K key, V value) {
+        cache.put(key, codec.encode(value));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return decode(map.put(key, codec.encode(value)));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return decode(map.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return decode(map.putIfAbsent(key, codec.encode(value)));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        S curr = map.get(key);
+        return curr != null && Objects.equals(codec.decode(curr), value) && map.remove(key, curr);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        S curr = map.get(key);
+        return curr != null && Objects.equals(codec.decode(curr), oldValue) &&
+                map.replace(key, curr, codec.encode(newValue));
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return decode(map.replace(key, codec.encode(value)));
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return decode(map.computeIfAbsent(key, k -> encode(mappingFunction.apply(k))));
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return decode(map.computeIfPresent(key, (k, s) -> encode(remappingFunction.apply(k, codec.decode(s)))));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return decode(map.compute(key, (k, s) -> encode(remappingFunction.apply(k, decode(s)))));
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return decode(map.merge(key, codec.encode(value),
+                (s, v) -> encode(remappingFunction.apply(codec.decode(s), codec.decode(v)))));
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                var it = map.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        var e = it.next();
+                        return new SimpleImmutableEntry<>(e.getKey(), codec.decode(e.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+}
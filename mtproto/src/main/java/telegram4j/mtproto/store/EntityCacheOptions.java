@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Bounds of entity caches of {@link StoreLayoutImpl}.
+ *
+ * <p> Users, chats and channels are weighted by the serialized size of their
+ * minimal and full objects, so bounds are approximately measured in bytes.
+ * The {@link #UNBOUNDED} value disables eviction for the family.
+ *
+ * <p> In the serialized mode messages, users, chats and channels are kept as TL-serialized byte arrays
+ * and deserialized on every read. This mode reduces retained heap in several times at cost of CPU time,
+ * and weights become equal to the exact size of serialized data.
+ *
+ * @param maxUsersWeight The maximum total weight of users.
+ * @param maxChatsWeight The maximum total weight of group chats.
+ * @param maxChannelsWeight The maximum total weight of channels.
+ * @param maxPolls The maximum count of polls.
+ * @param recordStats Whether to record hit, miss and eviction statistics.
+ * @param serialized Whether to keep entities in the serialized form.
+ */
+public record EntityCacheOptions(long maxUsersWeight, long maxChatsWeight,
+                                 long maxChannelsWeight, long maxPolls, boolean recordStats,
+                                 boolean serialized) {
+
+    public static final long UNBOUNDED = -1;
+
+    public EntityCacheOptions {
+        requireArgument(maxUsersWeight == UNBOUNDED || maxUsersWeight >= 0, "Invalid maxUsersWeight");
+        requireArgument(maxChatsWeight == UNBOUNDED || maxChatsWeight >= 0, "Invalid maxChatsWeight");
+        requireArgument(maxChannelsWeight == UNBOUNDED || maxChannelsWeight >= 0, "Invalid maxChannelsWeight");
+        requireArgument(maxPolls == UNBOUNDED || maxPolls >= 0, "Invalid maxPolls");
+    }
+
+    /**
+     * Creates options without any bounds and statistics.
+     *
+     * @return The new options without bounds.
+     */
+    public static EntityCacheOptions unbounded() {
+        return new EntityCacheOptions(UNBOUNDED, UNBOUNDED, UNBOUNDED, UNBOUNDED, false, false);
+    }
+
+    /**
+     * Creates options with the specified bound for each of user, chat and channel caches
+     * and with statistics recording.
+     *
+     * @param maxWeight The maximum weight of user, chat and channel caches, in bytes.
+     * @param maxPolls The maximum count of polls.
+     * @return The new bounded options.
+     */
+    public static EntityCacheOptions bounded(long maxWeight, long maxPolls) {
+        return new EntityCacheOptions(maxWeight, maxWeight, maxWeight, maxPolls, true, false);
+    }
+
+    /**
+     * Creates copy of options with enabled serialized mode.
+     *
+     * @return The new options with enabled serialized mode.
+     */
+    public EntityCacheOptions asSerialized() {
+        return new EntityCacheOptions(maxUsersWeight, maxChatsWeight, maxChannelsWeight, maxPolls, recordStats, true);
+    }
+}
@@ -18,8 +18,10 @@ package telegram4j.mtproto.store;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.NetUtil;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 import reactor.util.annotation.Nullable;
@@ -40,28 +42,63 @@ import telegram4j.tl.users.UserFull;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
 import static telegram4j.mtproto.util.CryptoUtil.toByteBuf;
 
+/**
+ * Store implementation which persists session information to the file
+ * and delegates handling of entities to another store.
+ *
+ * <p> Changes are saved in the write-behind manner: saves are performed at most once
+ * per {@code saveInterval} and each save writes the latest snapshot of information,
+ * so changes made during the interval are coalesced. Data is written to the temporary file
+ * which is forced to disk and atomically moved to the target path.
+ * Pending changes are saved on {@link #close()}, which fails if this save fails.
+ * Failures of scheduled saves are available from {@link #getSaveStats()}.
+ */
 public class FileStoreLayout implements StoreLayout {
 
     protected static final Logger log = Loggers.getLogger(FileStoreLayout.class);
 
     protected static final Path DEFAULT_DATA_FILE = Path.of("./t4j.bin");
+    public static final Duration DEFAULT_SAVE_INTERVAL = Duration.ofSeconds(1);
 
     protected final StoreLayout entityDelegate;
     protected final Path dataFile;
     protected final ConcurrentHashMap<Integer, AuthKey> authKeys = new ConcurrentHashMap<>();
+    // whether save is scheduled, but not yet started
     protected final AtomicBoolean saving = new AtomicBoolean();
     protected final ExecutorService persistExecutor;
+    protected final long saveIntervalNanos;
+    // guards writing to the file
+    protected final Object saveLock = new Object();
+
+    protected final AtomicLong saveRequests = new AtomicLong();
+    protected final AtomicLong savesCount = new AtomicLong();
+    protected final AtomicLong failedSaves = new AtomicLong();
+    protected volatile long lastSaveStart;
+    protected volatile long lastSaveLatency;
+    protected volatile long maxSaveLatency;
+    @Nullable
+    protected volatile IOException lastSaveError;
+    @Nullable
+    protected volatile Disposable scheduledSave;
 
     protected volatile int mainDcId;
     protected volatile long selfId;
@@ -79,15 +116,58 @@ public class FileStoreLayout implements StoreLayout {
     }
 
     public FileStoreLayout(StoreLayout entityDelegate, Path dataFile, ExecutorService persistExecutor) {
+        this(entityDelegate, dataFile, persistExecutor, DEFAULT_SAVE_INTERVAL);
+    }
+
+    public FileStoreLayout(StoreLayout entityDelegate, Path dataFile,
+                           ExecutorService persistExecutor, Duration saveInterval) {
         this.dataFile = Objects.requireNonNull(dataFile);
         this.entityDelegate = Objects.requireNonNull(entityDelegate);
         this.persistExecutor = Objects.requireNonNull(persistExecutor);
+        requireArgument(!saveInterval.isNegative() && !saveInterval.isZero(), "saveInterval must be positive");
+        this.saveIntervalNanos = saveInterval.toNanos();
+        // so the first save isn't delayed
+        this.lastSaveStart = System.nanoTime() - saveIntervalNanos;
     }
 
     public Path getDataFile() {
         return dataFile;
     }
 
+    /**
+     * Gets statistics of saving information to the file.
+     *
+     * @return The snapshot of statistics.
+     */
+    public SaveStats getSaveStats() {
+        return new SaveStats(saveRequests.get(), savesCount.get(), failedSaves.get(),
+                Duration.ofNanos(lastSaveLatency), Duration.ofNanos(maxSaveLatency), lastSaveError);
+    }
+
+    /**
+     * Statistics of saving information to the file.
+     *
+     * @param requestsCount The count of changes which requested save.
+     * @param savesCount The count of completed saves.
+     * @param failuresCount The count of failed saves.
+     * @param lastSaveLatency The duration of the last save.
+     * @param maxSaveLatency The maximal duration of save.
+     * @param lastError The error of the last save, or {@code null} if it has succeeded.
+     */
+    public record SaveStats(long requestsCount, long savesCount, long failuresCount,
+                            Duration lastSaveLatency, Duration maxSaveLatency,
+                            @Nullable IOException lastError) {
+
+        /**
+         * Computes average count of changes written by one save.
+         *
+         * @return The average count of coalesced changes per save.
+         */
+        public double coalescingRatio() {
+            return savesCount == 0 ? 0 : requestsCount / (double) savesCount;
+        }
+    }
+
     // region serialization
 
     protected static void serializeDc(ByteBuf buf, DataCenter dc) {
@@ -318,37 +398,91 @@ public class FileStoreLayout implements StoreLayout {
     }
 
     protected Mono<Void> trySave() {
-        return Mono.create(sink -> {
-            if (!isAssociatedToUser()) {
-                sink.success();
-                return;
+        return Mono.fromRunnable(this::requestSave);
+    }
+
+    /** Schedules save of the latest information if it's not yet scheduled. */
+    protected void requestSave() {
+        if (!isAssociatedToUser()) {
+            return;
+        }
+
+        saveRequests.incrementAndGet();
+        if (!saving.get() && saving.compareAndSet(false, true)) {
+            long delay = lastSaveStart + saveIntervalNanos - System.nanoTime();
+            if (delay <= 0) {
+                executeSave();
+            } else {
+                scheduledSave = Schedulers.parallel().schedule(this::executeSave, delay, TimeUnit.NANOSECONDS);
             }
+        }
+    }
 
-            if (!saving.get() && saving.compareAndSet(false, true)) {
-                Settings settings = copySettings();
+    protected void executeSave() {
+        try {
+            persistExecutor.execute(() -> {
+                // changes made after this point would schedule the next save
+                lastSaveStart = System.nanoTime();
+                saving.set(false);
+                try {
+                    save();
+                } catch (IOException e) {
+                    log.error("Failed to save information to " + dataFile, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // store is closed and information is saved
+            saving.set(false);
+        }
+    }
 
-                persistExecutor.execute(() -> {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Saving information for main DC {} to {}", settings.mainDcId, dataFile);
-                    }
+    protected void save() throws IOException {
+        synchronized (saveLock) {
+            long start = System.nanoTime();
+            Settings settings = copySettings();
+            if (log.isDebugEnabled()) {
+                log.debug("Saving information for main DC {} to {}", settings.mainDcId, dataFile);
+            }
 
-                    try {
-                        ByteBuf data = Unpooled.buffer();
-                        settings.serialize(data);
-                        Files.write(dataFile, CryptoUtil.toByteArray(data), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
-                    } catch (IOException e) {
-                        sink.error(e);
-                        saving.set(false);
-                        return;
-                    }
+            ByteBuf data = Unpooled.buffer();
+            try {
+                settings.serialize(data);
+                writeAtomically(data.nioBuffer());
+            } catch (IOException e) {
+                failedSaves.incrementAndGet();
+                lastSaveError = e;
+                throw e;
+            } finally {
+                data.release();
+            }
 
-                    saving.set(false);
-                    sink.success();
-                });
-            } else {
-                sink.success();
+            long latency = System.nanoTime() - start;
+            lastSaveLatency = latency;
+            if (latency > maxSaveLatency) {
+                maxSaveLatency = latency;
             }
-        });
+            lastSaveError = null;
+            savesCount.incrementAndGet();
+        }
+    }
+
+    protected void writeAtomically(ByteBuffer data) throws IOException {
+        Path file = dataFile.toAbsolutePath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // persist the rename; directories can't be opened on some platforms
+        try (FileChannel dir = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+        }
     }
 
     @Override
@@ -383,8 +517,18 @@ public class FileStoreLayout implements StoreLayout {
     @Override
     public Mono<Void> close() {
         return entityDelegate.close()
-                .and(trySave()
-                        .then(Mono.fromRunnable(persistExecutor::shutdown)));
+                .and(Mono.fromCallable(() -> {
+                            Disposable d = scheduledSave;
+                            if (d != null) {
+                                d.dispose();
+                            }
+                            persistExecutor.shutdown();
+                            if (isAssociatedToUser()) {
+                                save();
+                            }
+                            return null;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()));
     }
 
     @Override
@@ -550,6 +694,11 @@ public class FileStoreLayout implements StoreLayout {
         return entityDelegate.getMessages(channelId, messageIds);
     }
 
+    @Override
+    public Mono<Messages> getMessageHistory(Peer peerId, int minId, int maxId, int limit) {
+        return entityDelegate.getMessageHistory(peerId, minId, maxId, limit);
+    }
+
     @Override
     public Mono<Chat> getChatMinById(long chatId) {
         return entityDelegate.getChatMinById(chatId);
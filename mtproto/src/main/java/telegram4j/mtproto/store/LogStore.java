@@ -0,0 +1,574 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+
+/**
+ * Durable key-value storage on the append-only log of segment files with {@link MappedIndex}.
+ * Keys are composite and consist of the record kind and two numeric parts.
+ *
+ * <p> Each modification is appended to the active segment and reflected in the index.
+ * Removals are written as tombstone records. When the active segment reaches the maximal size,
+ * new segment is created, and the old one becomes sealed; sealed segments with
+ * large amount of overwritten records are rewritten by {@link #compact(double)}.
+ *
+ * <p> Writes are not forced to disk immediately; {@link #flush()} makes them durable
+ * and records the checkpoint in the index. On opening, records after the checkpoint are replayed,
+ * torn records at the end of log are truncated, and if index can't be trusted it's rebuilt from the log.
+ *
+ * <p> Replay recovers writes made after the last flush only after the crash of process, when
+ * dirty pages of the log and index are still written back by OS. The index is memory-mapped and modified
+ * in place, so after the crash of OS or power loss its pages may be persisted partially and refer to
+ * records which were lost from the log; such index isn't detected by checkpoint and must be removed
+ * to rebuild it from the log.
+ *
+ * @implNote All methods are synchronized on the instance.
+ */
+final class LogStore implements Closeable {
+    static final Logger log = Loggers.getLogger(LogStore.class);
+
+    static final int SEGMENT_MAGIC = 0x74346a73; // t4js
+    static final int SEGMENT_HEADER_SIZE = 8;
+    // int length + int crc32c
+    static final int RECORD_HEADER_SIZE = 8;
+    // byte kind + long key1 + int key2
+    static final int RECORD_KEY_SIZE = 13;
+    static final int TOMBSTONE = 0x80;
+    static final int MAX_KIND = 0x7f;
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_FILE = "index.bin";
+
+    final Path directory;
+    final long segmentSize;
+    // segments by their ids
+    final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    final CRC32C crc32 = new CRC32C();
+    final long[] previous = new long[2];
+
+    MappedIndex index;
+    Segment active;
+    boolean closed;
+
+    static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        // size of records which are referenced by index
+        long liveBytes;
+
+        Segment(int id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    /** Record read from the segment. */
+    record Record(int kind, long key1, int key2, byte[] value, long location, int size) {
+
+        boolean isTombstone() {
+            return (kind & TOMBSTONE) != 0;
+        }
+    }
+
+    private LogStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    static long location(int segmentId, long offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static long offset(long location) {
+        return location & 0xffffffffL;
+    }
+
+    /**
+     * Opens storage in the specified directory, recovering it after unclean shutdown if needed.
+     *
+     * @param directory The directory with storage files. It's created if absent.
+     * @param segmentSize The maximal size of segment file.
+     * @return The opened storage.
+     * @throws IOException If an I/O error occurs.
+     */
+    static LogStore open(Path directory, long segmentSize) throws IOException {
+        requireArgument(segmentSize > SEGMENT_HEADER_SIZE && segmentSize <= Integer.MAX_VALUE,
+                "Invalid segment size: " + segmentSize);
+
+        Files.createDirectories(directory);
+        var store = new LogStore(directory, segmentSize);
+        try {
+            store.recover();
+        } catch (Throwable t) {
+            store.closeFiles();
+            throw t;
+        }
+        return store;
+    }
+
+    private void recover() throws IOException {
+        try (var files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                segments.put(id, new Segment(id, file, channel, channel.size()));
+            }
+        }
+
+        // Segment is created, but header isn't written
+        for (var it = segments.values().iterator(); it.hasNext(); ) {
+            Segment s = it.next();
+            if (s.size < SEGMENT_HEADER_SIZE || readInt(s, 0) != SEGMENT_MAGIC) {
+                if (s != segments.lastEntry().getValue()) {
+                    throw new IOException("Corrupted segment file: " + s.path);
+                }
+                s.channel.close();
+                Files.delete(s.path);
+                it.remove();
+            }
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+
+        Path indexPath = directory.resolve(INDEX_FILE);
+        index = MappedIndex.open(indexPath);
+        boolean rebuild = index == null;
+        if (!rebuild) {
+            long checkpoint = index.checkpoint();
+            // The log must not be shorter than checkpoint or records which were applied to index
+            rebuild = !isReachable(checkpoint) || !isReachable(index.highWater()) ||
+                    !replay(checkpoint == 0 ? location(segments.firstKey(), SEGMENT_HEADER_SIZE) : checkpoint);
+        }
+
+        if (rebuild) {
+            if (index != null) {
+                log.warn("Rebuilding index of store {}", directory);
+                index.close();
+            }
+
+            index = MappedIndex.create(indexPath, MappedIndex.MIN_CAPACITY);
+            // truncation of torn records is allowed here
+            replay(location(segments.firstKey(), SEGMENT_HEADER_SIZE));
+        }
+
+        computeLiveBytes();
+        flush();
+    }
+
+    // Checks that location is inside the log or points to its end
+    private boolean isReachable(long location) {
+        if (location == 0) {
+            return true;
+        }
+        Segment s = segments.get(segmentId(location));
+        return s != null ? offset(location) <= s.size : segmentId(location) < segments.firstKey();
+    }
+
+    /**
+     * Applies records starting from specified location to the index.
+     *
+     * @return {@code false} if torn record was found and log was truncated.
+     */
+    private boolean replay(long from) throws IOException {
+        boolean clean = true;
+        for (Segment s : segments.tailMap(segmentId(from), true).values()) {
+            long pos = s.id == segmentId(from) ? offset(from) : SEGMENT_HEADER_SIZE;
+            Record r;
+            while ((r = readRecord(s, pos)) != null) {
+                apply(r);
+                pos += r.size;
+            }
+
+            if (pos < s.size) {
+                log.warn("Truncating torn record at offset {} of segment {}", pos, s.path);
+                s.channel.truncate(pos);
+                s.size = pos;
+                clean = false;
+            }
+        }
+        index.highWater(location(active.id, active.size));
+        return clean;
+    }
+
+    private void apply(Record r) throws IOException {
+        int kind = r.kind & MAX_KIND;
+        if (r.isTombstone()) {
+            index.remove(kind, r.key1, r.key2, previous);
+        } else {
+            index.put(kind, r.key1, r.key2, r.location, r.size, previous);
+        }
+    }
+
+    private void computeLiveBytes() {
+        for (Segment s : segments.values()) {
+            s.liveBytes = 0;
+        }
+        for (int slot = 0; slot < index.capacity; slot++) {
+            if (index.kind(slot) != 0) {
+                Segment s = segments.get(segmentId(index.location(slot)));
+                if (s != null) {
+                    s.liveBytes += index.recordSize(slot);
+                }
+            }
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("%010d%s", id, SEGMENT_SUFFIX));
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(0).flip();
+        writeFully(channel, header, 0);
+        var s = new Segment(id, path, channel, SEGMENT_HEADER_SIZE);
+        segments.put(id, s);
+        return s;
+    }
+
+    /**
+     * Writes value by the specified key.
+     *
+     * @param kind The kind of record, in range {@code [1, 127]}.
+     * @param key1 The first part of key.
+     * @param key2 The second part of key.
+     * @param value The value to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized void put(int kind, long key1, int key2, byte[] value) throws IOException {
+        checkKind(kind);
+        long location = append(kind, key1, key2, value);
+        int size = RECORD_HEADER_SIZE + RECORD_KEY_SIZE + value.length;
+        if (index.put(kind, key1, key2, location, size, previous) != -1) {
+            release(previous[0], (int) previous[1]);
+        }
+        active.liveBytes += size;
+        index.highWater(location(active.id, active.size));
+    }
+
+    /**
+     * Removes value by the specified key.
+     *
+     * @return {@code true} if value was present.
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized boolean remove(int kind, long key1, int key2) throws IOException {
+        checkKind(kind);
+        if (index.get(kind, key1, key2) == -1) {
+            return false;
+        }
+
+        append(kind | TOMBSTONE, key1, key2, new byte[0]);
+        index.remove(kind, key1, key2, previous);
+        release(previous[0], (int) previous[1]);
+        index.highWater(location(active.id, active.size));
+        return true;
+    }
+
+    /**
+     * Reads value by the specified key.
+     *
+     * @return The value or {@code null} if key is absent.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Nullable
+    synchronized byte[] get(int kind, long key1, int key2) throws IOException {
+        checkKind(kind);
+        long location = index.get(kind, key1, key2);
+        if (location == -1) {
+            return null;
+        }
+
+        Segment s = segments.get(segmentId(location));
+        Record r = s != null ? readRecord(s, offset(location)) : null;
+        if (r == null || r.kind != kind || r.key1 != key1 || r.key2 != key2) {
+            throw new IOException("Index of store " + directory + " points to invalid record");
+        }
+        return r.value;
+    }
+
+    synchronized boolean contains(int kind, long key1, int key2) {
+        checkKind(kind);
+        return index.get(kind, key1, key2) != -1;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    private void release(long location, int size) {
+        Segment s = segments.get(segmentId(location));
+        if (s != null) {
+            s.liveBytes -= size;
+        }
+    }
+
+    private static void checkKind(int kind) {
+        requireArgument(kind > 0 && kind <= MAX_KIND, () -> "Invalid record kind: " + kind);
+    }
+
+    private long append(int kind, long key1, int key2, byte[] value) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Store has been closed");
+        }
+
+        int bodyLength = RECORD_KEY_SIZE + value.length;
+        int size = RECORD_HEADER_SIZE + bodyLength;
+        if (active.size + size > segmentSize && active.size > SEGMENT_HEADER_SIZE) {
+            // sealed segment must be durable before it's referenced only by checkpoint
+            active.channel.force(false);
+            active = createSegment(active.id + 1);
+        }
+
+        var buf = ByteBuffer.allocate(size);
+        buf.position(RECORD_HEADER_SIZE);
+        buf.put((byte) kind).putLong(key1).putInt(key2).put(value);
+
+        crc32.reset();
+        crc32.update(buf.array(), RECORD_HEADER_SIZE, bodyLength);
+        buf.putInt(0, bodyLength).putInt(4, (int) crc32.getValue());
+        buf.clear();
+
+        long offset = active.size;
+        writeFully(active.channel, buf, offset);
+        active.size += size;
+        return location(active.id, offset);
+    }
+
+    /**
+     * Reads and validates record at the specified offset.
+     *
+     * @return The record or {@code null} if there is no complete record at this offset.
+     */
+    @Nullable
+    Record readRecord(Segment s, long offset) throws IOException {
+        if (offset + RECORD_HEADER_SIZE > s.size) {
+            return null;
+        }
+
+        var header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(s.channel, header, offset);
+        int bodyLength = header.getInt(0);
+        int crc = header.getInt(4);
+        if (bodyLength < RECORD_KEY_SIZE || offset + RECORD_HEADER_SIZE + bodyLength > s.size) {
+            return null;
+        }
+
+        var body = ByteBuffer.allocate(bodyLength);
+        readFully(s.channel, body, offset + RECORD_HEADER_SIZE);
+        crc32.reset();
+        crc32.update(body.array(), 0, bodyLength);
+        if ((int) crc32.getValue() != crc) {
+            return null;
+        }
+
+        int kind = body.get(0) & 0xff;
+        long key1 = body.getLong(1);
+        int key2 = body.getInt(9);
+        byte[] value = new byte[bodyLength - RECORD_KEY_SIZE];
+        body.get(RECORD_KEY_SIZE, value);
+        return new Record(kind, key1, key2, value, location(s.id, offset), RECORD_HEADER_SIZE + bodyLength);
+    }
+
+    /**
+     * Makes all written records durable and records checkpoint in the index.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        active.channel.force(false);
+        index.checkpoint(location(active.id, active.size));
+    }
+
+    /**
+     * Rewrites sealed segments in which ratio of the overwritten and removed records exceeds specified threshold.
+     * Live records are appended to the active segment and old segments are deleted.
+     *
+     * @param threshold The minimal ratio of garbage in the segment, in range {@code [0, 1]}.
+     * @return The count of deleted segments.
+     * @throws IOException If an I/O error occurs.
+     */
+    int compact(double threshold) throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Segment s : segments.values()) {
+                if (s == active) {
+                    continue;
+                }
+
+                long payload = s.size - SEGMENT_HEADER_SIZE;
+                if (payload <= 0 || (double) (payload - s.liveBytes) / payload >= threshold) {
+                    candidates.add(s);
+                }
+            }
+        }
+
+        int compacted = 0;
+        for (Segment s : candidates) {
+            if (compact(s)) {
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    private boolean compact(Segment s) throws IOException {
+        long pos = SEGMENT_HEADER_SIZE;
+        for (;;) {
+            // lock is held per record, so readers and writers are not blocked by the whole compaction
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+
+                Record r = readRecord(s, pos);
+                if (r == null) {
+                    break;
+                }
+                pos += r.size;
+
+                int kind = r.kind & MAX_KIND;
+                if (r.isTombstone()) {
+                    // tombstone is needed only while older segments can contain removed record
+                    // and the key wasn't written again, otherwise copy would hide newer record
+                    if (segments.firstKey() != s.id && index.find(kind, r.key1, r.key2) == -1) {
+                        append(r.kind, r.key1, r.key2, r.value);
+                    }
+                    continue;
+                }
+
+                int slot = index.find(kind, r.key1, r.key2);
+                if (slot == -1 || index.location(slot) != r.location) {
+                    continue;
+                }
+
+                long location = append(r.kind, r.key1, r.key2, r.value);
+                // append may not modify index, so slot is still valid
+                index.updateLocation(slot, location);
+                s.liveBytes -= r.size;
+                active.liveBytes += r.size;
+                index.highWater(location(active.id, active.size));
+            }
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+
+            // copies must be durable before removal of originals
+            flush();
+            segments.remove(s.id);
+            s.channel.close();
+            Files.delete(s.path);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Compacted segment {} of store {}", s.id, directory);
+            }
+        }
+        return true;
+    }
+
+    Map<Integer, Segment> segments() {
+        return segments;
+    }
+
+    private int readInt(Segment s, long offset) throws IOException {
+        var buf = ByteBuffer.allocate(4);
+        readFully(s.channel, buf, offset);
+        return buf.getInt(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n == -1) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf, position + buf.position());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            flush();
+        } finally {
+            closed = true;
+            closeFiles();
+        }
+    }
+
+    void closeFiles() throws IOException {
+        IOException err = null;
+        for (Segment s : segments.values()) {
+            try {
+                s.channel.close();
+            } catch (IOException e) {
+                err = e;
+            }
+        }
+        if (index != null) {
+            index.close();
+        }
+        if (err != null) {
+            throw err;
+        }
+    }
+}
@@ -0,0 +1,811 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.PublicRsaKeyRegister;
+import telegram4j.mtproto.auth.AuthKey;
+import telegram4j.mtproto.store.object.*;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.*;
+import telegram4j.tl.api.TlObject;
+import telegram4j.tl.auth.BaseAuthorization;
+import telegram4j.tl.channels.BaseChannelParticipants;
+import telegram4j.tl.channels.ChannelParticipant;
+import telegram4j.tl.contacts.ResolvedPeer;
+import telegram4j.tl.messages.BaseMessages;
+import telegram4j.tl.messages.ChannelMessages;
+import telegram4j.tl.messages.ChatFull;
+import telegram4j.tl.messages.Messages;
+import telegram4j.tl.messages.MessagesSlice;
+import telegram4j.tl.updates.State;
+import telegram4j.tl.users.UserFull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+import static telegram4j.mtproto.util.TlEntityUtil.stripUsername;
+
+/**
+ * Store implementation which persists users, chats, channels, usernames and messages
+ * to the append-only log in the specified directory and uses another store, usually {@link StoreLayoutImpl},
+ * as in-memory cache and for handling of session information.
+ *
+ * <p> Queries are answered by the delegate store; if it doesn't know requested entity,
+ * then entity is looked up in the log by the memory-mapped index, loaded into the delegate, and query is repeated.
+ * So access hashes of peers survive restarts without re-resolving them over RPC.
+ * Only minimal objects are persisted: full information and participants are left in the delegate.
+ *
+ * <p> All file I/O, including reads of entities missed by the delegate, is performed on the {@code persistExecutor},
+ * by default single-threaded, so callers on the event loop or updates threads are never blocked by disk and
+ * modifications are written in the order of calls.
+ * Written records are forced to disk every {@code flushInterval}; on the same interval
+ * segments with large amount of outdated records are compacted in background.
+ * To persist session information this store can be wrapped by {@link FileStoreLayout}.
+ *
+ * <p> Recovery guarantees are described in the {@link LogStore}: records written after the last flush
+ * are recovered after the crash of process, but not after the crash of OS or power loss.
+ *
+ * @see LogStore
+ */
+public class LogStoreLayout implements StoreLayout {
+
+    protected static final Logger log = Loggers.getLogger(LogStoreLayout.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    // kinds of records
+    protected static final int USER = 1;
+    protected static final int CHAT = 2;
+    protected static final int CHANNEL = 3;
+    protected static final int USERNAME = 4;
+    protected static final int MESSAGE = 5;
+    protected static final int SELF = 6;
+
+    protected final StoreLayout entityDelegate;
+    protected final Path directory;
+    protected final long segmentSize;
+    protected final Duration flushInterval;
+    protected final double compactionThreshold;
+    protected final ExecutorService persistExecutor;
+    protected final Scheduler persistScheduler;
+
+    protected volatile LogStore store;
+    protected volatile Disposable maintenance;
+
+    public LogStoreLayout(StoreLayout entityDelegate, Path directory) {
+        this(entityDelegate, directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public LogStoreLayout(StoreLayout entityDelegate, Path directory, long segmentSize,
+                          Duration flushInterval, double compactionThreshold) {
+        this(entityDelegate, directory, segmentSize, flushInterval, compactionThreshold,
+                Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Constructs a {@code LogStoreLayout} with specified executor for file I/O.
+     * The executor should be single-threaded to preserve order of writes; it's shut down on {@link #close()}.
+     *
+     * @param entityDelegate The store to use as in-memory cache and for session information.
+     * @param directory The directory of log.
+     * @param segmentSize The maximal size of log segment.
+     * @param flushInterval The interval of forcing records to disk and compaction.
+     * @param compactionThreshold The ratio of garbage in segment to compact it, in range {@code (0, 1]}.
+     * @param persistExecutor The executor to perform file I/O.
+     */
+    public LogStoreLayout(StoreLayout entityDelegate, Path directory, long segmentSize,
+                          Duration flushInterval, double compactionThreshold, ExecutorService persistExecutor) {
+        requireArgument(compactionThreshold > 0 && compactionThreshold <= 1, "Invalid compaction threshold");
+        this.entityDelegate = Objects.requireNonNull(entityDelegate);
+        this.directory = Objects.requireNonNull(directory);
+        this.segmentSize = segmentSize;
+        this.flushInterval = Objects.requireNonNull(flushInterval);
+        this.compactionThreshold = compactionThreshold;
+        this.persistExecutor = Objects.requireNonNull(persistExecutor);
+        this.persistScheduler = Schedulers.fromExecutorService(persistExecutor);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // region serialization
+
+    @FunctionalInterface
+    protected interface IoAction {
+
+        void run(LogStore store) throws IOException;
+    }
+
+    protected Mono<Void> write(IoAction action) {
+        return Mono.fromCallable(() -> {
+                    action.run(store());
+                    return null;
+                })
+                .subscribeOn(persistScheduler)
+                .then();
+    }
+
+    protected LogStore store() {
+        LogStore s = store;
+        if (s == null) {
+            throw new IllegalStateException("Store is not initialized");
+        }
+        return s;
+    }
+
+    protected static byte[] serialize(TlObject object) {
+        ByteBuf buf = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            TlSerializer.serialize(buf, object);
+            return CryptoUtil.toByteArray(buf.retain());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Nullable
+    protected <T extends TlObject> T read(int kind, long key1, int key2) throws IOException {
+        byte[] value = store().get(kind, key1, key2);
+        return value != null ? TlDeserializer.deserialize(Unpooled.wrappedBuffer(value)) : null;
+    }
+
+    // FNV-1a hash of the username for index key
+    protected static long usernameHash(String username) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    protected static long messageChatId(Peer peerId) {
+        return peerId instanceof PeerChannel c ? c.channelId() : -1;
+    }
+
+    // endregion
+    // region persisting
+
+    protected void persistContacts(LogStore store, Iterable<? extends Chat> chats,
+                                   Iterable<? extends User> users) throws IOException {
+        for (Chat chat : chats) {
+            persistChat(store, chat);
+        }
+        for (User user : users) {
+            persistUser(store, user);
+        }
+    }
+
+    protected void persistUser(LogStore store, User anyUser) throws IOException {
+        if (!(anyUser instanceof BaseUser user)) {
+            return;
+        }
+
+        // access hash of min user can't be used for requests; don't overwrite full one by it
+        if (user.min() && store.contains(USER, user.id(), 0)) {
+            return;
+        }
+
+        store.put(USER, user.id(), 0, serialize(user));
+        if (user.self()) {
+            store.put(SELF, 0, 0, serialize(ImmutablePeerUser.of(user.id())));
+        }
+
+        String username = user.username();
+        if (username != null) {
+            persistUsername(store, username, ImmutablePeerUser.of(user.id()));
+        }
+    }
+
+    protected void persistChat(LogStore store, Chat anyChat) throws IOException {
+        switch (anyChat.identifier()) {
+            case BaseChat.ID, ChatForbidden.ID -> store.put(CHAT, anyChat.id(), 0, serialize(anyChat));
+            case ChannelForbidden.ID -> store.put(CHANNEL, anyChat.id(), 0, serialize(anyChat));
+            case Channel.ID -> {
+                var channel = (Channel) anyChat;
+                if (channel.min() && store.contains(CHANNEL, channel.id(), 0)) {
+                    return;
+                }
+
+                store.put(CHANNEL, channel.id(), 0, serialize(channel));
+                String username = channel.username();
+                if (username != null) {
+                    persistUsername(store, username, ImmutablePeerChannel.of(channel.id()));
+                }
+            }
+        }
+    }
+
+    protected void persistUsername(LogStore store, String username, Peer peer) throws IOException {
+        String stripped = stripUsername(username);
+        byte[] name = stripped.getBytes(StandardCharsets.UTF_8);
+        byte[] peerBytes = serialize(peer);
+
+        // the peer followed by username to check collisions of hashes
+        byte[] value = new byte[peerBytes.length + name.length];
+        System.arraycopy(peerBytes, 0, value, 0, peerBytes.length);
+        System.arraycopy(name, 0, value, peerBytes.length, name.length);
+        store.put(USERNAME, usernameHash(stripped), 0, value);
+    }
+
+    protected void persistMessage(LogStore store, Message message) throws IOException {
+        Peer peerId;
+        if (message instanceof BaseMessage b) {
+            peerId = b.peerId();
+        } else if (message instanceof MessageService s) {
+            peerId = s.peerId();
+        } else {
+            return;
+        }
+
+        store.put(MESSAGE, messageChatId(peerId), message.id(), serialize(message));
+    }
+
+    protected void persistMessages(LogStore store, Messages payload) throws IOException {
+        switch (payload.identifier()) {
+            case BaseMessages.ID -> {
+                var base = (BaseMessages) payload;
+                persistContacts(store, base.chats(), base.users());
+                for (var msg : base.messages()) {
+                    persistMessage(store, msg);
+                }
+            }
+            case ChannelMessages.ID -> {
+                var channel = (ChannelMessages) payload;
+                persistContacts(store, channel.chats(), channel.users());
+                for (var msg : channel.messages()) {
+                    persistMessage(store, msg);
+                }
+            }
+            case MessagesSlice.ID -> {
+                var slice = (MessagesSlice) payload;
+                persistContacts(store, slice.chats(), slice.users());
+                for (var msg : slice.messages()) {
+                    persistMessage(store, msg);
+                }
+            }
+        }
+    }
+
+    protected void removeMessages(LogStore store, long chatId, List<Integer> ids) throws IOException {
+        for (int id : ids) {
+            store.remove(MESSAGE, chatId, id);
+        }
+    }
+
+    // endregion
+    // region loading
+
+    @Nullable
+    protected TlObject readPeer(Peer peer) throws IOException {
+        return switch (peer.identifier()) {
+            case PeerUser.ID -> read(USER, ((PeerUser) peer).userId(), 0);
+            case PeerChat.ID -> read(CHAT, ((PeerChat) peer).chatId(), 0);
+            case PeerChannel.ID -> read(CHANNEL, ((PeerChannel) peer).channelId(), 0);
+            default -> throw new IllegalArgumentException("Unknown Peer type: " + peer);
+        };
+    }
+
+    /**
+     * Loads peer entity from the log into delegate store.
+     *
+     * @param peer The id of peer.
+     * @return A {@link Mono} completing after peer is loaded if it's present.
+     */
+    protected Mono<Void> loadPeer(Peer peer) {
+        return Mono.fromCallable(() -> readPeer(peer))
+                .subscribeOn(persistScheduler)
+                .flatMap(entity -> entity instanceof User u
+                        ? entityDelegate.onContacts(List.of(), List.of(u))
+                        : entityDelegate.onContacts(List.of((Chat) entity), List.of()));
+    }
+
+    protected Mono<Void> loadUsername(String username) {
+        return Mono.fromCallable(() -> {
+                    String stripped = stripUsername(username);
+                    byte[] value = store().get(USERNAME, usernameHash(stripped), 0);
+                    if (value == null) {
+                        return null;
+                    }
+
+                    ByteBuf buf = Unpooled.wrappedBuffer(value);
+                    Peer peer = TlDeserializer.deserialize(buf);
+                    String stored = buf.toString(StandardCharsets.UTF_8);
+                    return stored.equals(stripped) ? peer : null;
+                })
+                .subscribeOn(persistScheduler)
+                .flatMap(this::loadPeer);
+    }
+
+    protected Mono<Messages> getMessages0(long chatId, Iterable<? extends InputMessage> messageIds) {
+        Mono<Messages> delegate = chatId == -1
+                ? entityDelegate.getMessages(messageIds)
+                : entityDelegate.getMessages(chatId, messageIds);
+
+        List<Integer> ids = new ArrayList<>();
+        for (InputMessage id : messageIds) {
+            if (id instanceof InputMessageID m) {
+                ids.add(m.id());
+            }
+        }
+
+        Mono<Messages> load = Mono.fromCallable(() -> {
+                    List<Message> messages = new ArrayList<>(ids.size());
+                    for (int id : ids) {
+                        Message message = read(MESSAGE, chatId, id);
+                        if (message != null) {
+                            messages.add(message);
+                        }
+                    }
+                    return messages;
+                })
+                .subscribeOn(persistScheduler)
+                .filter(list -> !list.isEmpty())
+                .flatMap(messages -> Flux.fromIterable(messages)
+                        .concatMap(this::loadMessage)
+                        .then(delegate))
+                // the log has none of the messages, but delegate may have some
+                .switchIfEmpty(delegate);
+
+        return delegate
+                .filter(messages -> count(messages) >= ids.size())
+                .switchIfEmpty(load);
+    }
+
+    protected Mono<Void> loadMessage(Message message) {
+        Peer peerId;
+        Peer fromId;
+        if (message instanceof BaseMessage b) {
+            peerId = b.peerId();
+            fromId = b.fromId();
+        } else if (message instanceof MessageService s) {
+            peerId = s.peerId();
+            fromId = s.fromId();
+        } else {
+            return Mono.empty();
+        }
+
+        Mono<Void> loadFrom = fromId != null ? loadPeer(fromId) : Mono.empty();
+        return loadPeer(peerId)
+                .then(loadFrom)
+                .then(entityDelegate.onNewMessage(message));
+    }
+
+    protected static int count(Messages messages) {
+        return switch (messages.identifier()) {
+            case BaseMessages.ID -> ((BaseMessages) messages).messages().size();
+            case ChannelMessages.ID -> ((ChannelMessages) messages).messages().size();
+            case MessagesSlice.ID -> ((MessagesSlice) messages).messages().size();
+            default -> 0;
+        };
+    }
+
+    // endregion
+
+    @Override
+    public Mono<Void> initialize() {
+        // self user is loaded eagerly as the delegate uses it to handle updates
+        return entityDelegate.initialize()
+                .then(Mono.fromCallable(() -> {
+                    store = LogStore.open(directory, segmentSize);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Opened store in {} with {} records", directory, store.size());
+                    }
+                    Peer self = read(SELF, 0, 0);
+                    return self;
+                }))
+                .subscribeOn(persistScheduler)
+                .flatMap(this::loadPeer)
+                .then(Mono.fromRunnable(() -> maintenance = Flux.interval(flushInterval, persistScheduler)
+                        .subscribe(tick -> maintain())));
+    }
+
+    protected void maintain() {
+        LogStore s = store;
+        if (s == null) {
+            return;
+        }
+
+        try {
+            s.flush();
+            s.compact(compactionThreshold);
+        } catch (IOException e) {
+            log.error("Failed to flush store in " + directory, e);
+        }
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return Mono.fromCallable(() -> {
+                    Disposable d = maintenance;
+                    if (d != null) {
+                        d.dispose();
+                    }
+                    LogStore s = store;
+                    if (s != null) {
+                        s.close();
+                    }
+                    return null;
+                })
+                // pending writes are completed before closing of store
+                .subscribeOn(persistScheduler)
+                .doFinally(sig -> persistExecutor.shutdown())
+                .then(entityDelegate.close());
+    }
+
+    // region retrieve methods
+
+    @Override
+    public Mono<ResolvedPeer> resolvePeer(String username) {
+        return entityDelegate.resolvePeer(username)
+                .switchIfEmpty(loadUsername(username)
+                        .then(Mono.defer(() -> entityDelegate.resolvePeer(username))));
+    }
+
+    @Override
+    public Mono<InputPeer> resolvePeer(Peer peerId) {
+        return entityDelegate.resolvePeer(peerId)
+                .switchIfEmpty(loadPeer(peerId)
+                        .then(Mono.defer(() -> entityDelegate.resolvePeer(peerId))));
+    }
+
+    @Override
+    public Mono<InputUser> resolveUser(long userId) {
+        return entityDelegate.resolveUser(userId)
+                .switchIfEmpty(loadPeer(ImmutablePeerUser.of(userId))
+                        .then(Mono.defer(() -> entityDelegate.resolveUser(userId))));
+    }
+
+    @Override
+    public Mono<InputChannel> resolveChannel(long channelId) {
+        return entityDelegate.resolveChannel(channelId)
+                .switchIfEmpty(loadPeer(ImmutablePeerChannel.of(channelId))
+                        .then(Mono.defer(() -> entityDelegate.resolveChannel(channelId))));
+    }
+
+    @Override
+    public Mono<Boolean> existMessage(Peer peerId, int messageId) {
+        return entityDelegate.existMessage(peerId, messageId)
+                .filter(exists -> exists)
+                .switchIfEmpty(Mono.fromSupplier(() -> store().contains(MESSAGE, messageChatId(peerId), messageId))
+                        .subscribeOn(persistScheduler));
+    }
+
+    @Override
+    public Mono<Messages> getMessages(Iterable<? extends InputMessage> messageIds) {
+        return getMessages0(-1, messageIds);
+    }
+
+    @Override
+    public Mono<Messages> getMessages(long channelId, Iterable<? extends InputMessage> messageIds) {
+        return getMessages0(channelId, messageIds);
+    }
+
+    @Override
+    public Mono<Messages> getMessageHistory(Peer peerId, int minId, int maxId, int limit) {
+        return entityDelegate.getMessageHistory(peerId, minId, maxId, limit);
+    }
+
+    @Override
+    public Mono<Chat> getChatMinById(long chatId) {
+        return entityDelegate.getChatMinById(chatId)
+                .switchIfEmpty(loadPeer(ImmutablePeerChat.of(chatId))
+                        .then(Mono.defer(() -> entityDelegate.getChatMinById(chatId))));
+    }
+
+    @Override
+    public Mono<ChatFull> getChatFullById(long chatId) {
+        return entityDelegate.getChatFullById(chatId);
+    }
+
+    @Override
+    public Mono<ChatData<Chat, BaseChatFull>> getChatById(long chatId) {
+        return entityDelegate.getChatById(chatId)
+                .switchIfEmpty(loadPeer(ImmutablePeerChat.of(chatId))
+                        .then(Mono.defer(() -> entityDelegate.getChatById(chatId))));
+    }
+
+    @Override
+    public Mono<Chat> getChannelMinById(long channelId) {
+        return entityDelegate.getChannelMinById(channelId)
+                .switchIfEmpty(loadPeer(ImmutablePeerChannel.of(channelId))
+                        .then(Mono.defer(() -> entityDelegate.getChannelMinById(channelId))));
+    }
+
+    @Override
+    public Mono<ChatFull> getChannelFullById(long channelId) {
+        return entityDelegate.getChannelFullById(channelId);
+    }
+
+    @Override
+    public Mono<ChatData<Chat, ChannelFull>> getChannelById(long channelId) {
+        return entityDelegate.getChannelById(channelId)
+                .switchIfEmpty(loadPeer(ImmutablePeerChannel.of(channelId))
+                        .then(Mono.defer(() -> entityDelegate.getChannelById(channelId))));
+    }
+
+    @Override
+    public Mono<BaseUser> getUserMinById(long userId) {
+        return entityDelegate.getUserMinById(userId)
+                .switchIfEmpty(loadPeer(ImmutablePeerUser.of(userId))
+                        .then(Mono.defer(() -> entityDelegate.getUserMinById(userId))));
+    }
+
+    @Override
+    public Mono<UserFull> getUserFullById(long userId) {
+        return entityDelegate.getUserFullById(userId);
+    }
+
+    @Override
+    public Mono<PeerData<BaseUser, telegram4j.tl.UserFull>> getUserById(long userId) {
+        return entityDelegate.getUserById(userId)
+                .switchIfEmpty(loadPeer(ImmutablePeerUser.of(userId))
+                        .then(Mono.defer(() -> entityDelegate.getUserById(userId))));
+    }
+
+    @Override
+    public Mono<ChannelParticipant> getChannelParticipantById(long channelId, Peer peerId) {
+        return entityDelegate.getChannelParticipantById(channelId, peerId);
+    }
+
+    @Override
+    public Flux<ChannelParticipant> getChannelParticipants(long channelId) {
+        return entityDelegate.getChannelParticipants(channelId);
+    }
+
+    @Override
+    public Mono<ResolvedChatParticipant> getChatParticipantById(long chatId, long userId) {
+        return entityDelegate.getChatParticipantById(chatId, userId);
+    }
+
+    @Override
+    public Flux<ResolvedChatParticipant> getChatParticipants(long chatId) {
+        return entityDelegate.getChatParticipants(chatId);
+    }
+
+    @Override
+    public Mono<MessagePoll> getPollById(long pollId) {
+        return entityDelegate.getPollById(pollId);
+    }
+
+    // endregion
+    // region session information
+
+    @Override
+    public Mono<DataCenter> getDataCenter() {
+        return entityDelegate.getDataCenter();
+    }
+
+    @Override
+    public Mono<State> getCurrentState() {
+        return entityDelegate.getCurrentState();
+    }
+
+    @Override
+    public Mono<DcOptions> getDcOptions() {
+        return entityDelegate.getDcOptions();
+    }
+
+    @Override
+    public Mono<Config> getConfig() {
+        return entityDelegate.getConfig();
+    }
+
+    @Override
+    public Mono<PublicRsaKeyRegister> getPublicRsaKeyRegister() {
+        return entityDelegate.getPublicRsaKeyRegister();
+    }
+
+    @Override
+    public Mono<AuthKey> getAuthKey(DataCenter dc) {
+        return entityDelegate.getAuthKey(dc);
+    }
+
+    @Override
+    public Mono<Long> getSelfId() {
+        return entityDelegate.getSelfId();
+    }
+
+    @Override
+    public Mono<Void> updateDataCenter(DataCenter dc) {
+        return entityDelegate.updateDataCenter(dc);
+    }
+
+    @Override
+    public Mono<Void> updateState(State state) {
+        return entityDelegate.updateState(state);
+    }
+
+    @Override
+    public Mono<Void> updateDcOptions(DcOptions dcOptions) {
+        return entityDelegate.updateDcOptions(dcOptions);
+    }
+
+    @Override
+    public Mono<Void> updatePublicRsaKeyRegister(PublicRsaKeyRegister publicRsaKeyRegister) {
+        return entityDelegate.updatePublicRsaKeyRegister(publicRsaKeyRegister);
+    }
+
+    @Override
+    public Mono<Void> updateAuthKey(DataCenter dc, AuthKey authKey) {
+        return entityDelegate.updateAuthKey(dc, authKey);
+    }
+
+    @Override
+    public Mono<Void> updateChannelPts(long channelId, int pts) {
+        return entityDelegate.updateChannelPts(channelId, pts);
+    }
+
+    @Override
+    public Mono<Void> registerPoll(Peer peerId, int messageId, InputMediaPoll poll) {
+        return entityDelegate.registerPoll(peerId, messageId, poll);
+    }
+
+    @Override
+    public Mono<Void> onUpdateConfig(Config config) {
+        return entityDelegate.onUpdateConfig(config);
+    }
+
+    // endregion
+    // region updates
+
+    @Override
+    public Mono<Void> onNewMessage(Message update) {
+        return entityDelegate.onNewMessage(update)
+                .then(write(s -> persistMessage(s, update)));
+    }
+
+    @Override
+    public Mono<Message> onEditMessage(Message update) {
+        return entityDelegate.onEditMessage(update)
+                .flatMap(old -> write(s -> persistMessage(s, update)).thenReturn(old))
+                .switchIfEmpty(write(s -> persistMessage(s, update)).then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<ResolvedDeletedMessages> onDeleteMessages(UpdateDeleteMessages update) {
+        return entityDelegate.onDeleteMessages(update)
+                .flatMap(res -> write(s -> removeMessages(s, -1, update.messages())).thenReturn(res))
+                .switchIfEmpty(write(s -> removeMessages(s, -1, update.messages())).then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<ResolvedDeletedMessages> onDeleteMessages(UpdateDeleteScheduledMessages update) {
+        long chatId = messageChatId(update.peer());
+        return entityDelegate.onDeleteMessages(update)
+                .flatMap(res -> write(s -> removeMessages(s, chatId, update.messages())).thenReturn(res))
+                .switchIfEmpty(write(s -> removeMessages(s, chatId, update.messages())).then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<ResolvedDeletedMessages> onDeleteMessages(UpdateDeleteChannelMessages update) {
+        long chatId = update.channelId();
+        return entityDelegate.onDeleteMessages(update)
+                .flatMap(res -> write(s -> removeMessages(s, chatId, update.messages())).thenReturn(res))
+                .switchIfEmpty(write(s -> removeMessages(s, chatId, update.messages())).then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<Void> onUpdatePinnedMessages(UpdatePinnedMessages payload) {
+        return entityDelegate.onUpdatePinnedMessages(payload)
+                .then(persistFromDelegate(-1, payload.messages()));
+    }
+
+    @Override
+    public Mono<Void> onUpdatePinnedMessages(UpdatePinnedChannelMessages payload) {
+        return entityDelegate.onUpdatePinnedMessages(payload)
+                .then(persistFromDelegate(payload.channelId(), payload.messages()));
+    }
+
+    // Persists messages modified by the delegate
+    protected Mono<Void> persistFromDelegate(long chatId, List<Integer> ids) {
+        List<InputMessage> inputIds = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            inputIds.add(ImmutableInputMessageID.of(id));
+        }
+
+        Mono<Messages> messages = chatId == -1
+                ? entityDelegate.getMessages(inputIds)
+                : entityDelegate.getMessages(chatId, inputIds);
+        return messages.flatMap(m -> write(s -> persistMessages(s, m)));
+    }
+
+    @Override
+    public Mono<Void> onChatParticipant(UpdateChatParticipant payload) {
+        return entityDelegate.onChatParticipant(payload);
+    }
+
+    @Override
+    public Mono<Void> onChannelParticipant(UpdateChannelParticipant payload) {
+        return entityDelegate.onChannelParticipant(payload);
+    }
+
+    @Override
+    public Mono<Void> onChatParticipants(ChatParticipants payload) {
+        return entityDelegate.onChatParticipants(payload);
+    }
+
+    // endregion
+    // region results
+
+    @Override
+    public Mono<Void> onContacts(Iterable<? extends Chat> chats, Iterable<? extends User> users) {
+        return entityDelegate.onContacts(chats, users)
+                .then(write(s -> persistContacts(s, chats, users)));
+    }
+
+    @Override
+    public Mono<Void> onUserUpdate(UserFull payload) {
+        return entityDelegate.onUserUpdate(payload)
+                .then(write(s -> persistContacts(s, payload.chats(), payload.users())));
+    }
+
+    @Override
+    public Mono<Void> onChatUpdate(ChatFull payload) {
+        return entityDelegate.onChatUpdate(payload)
+                .then(write(s -> persistContacts(s, payload.chats(), payload.users())));
+    }
+
+    @Override
+    public Mono<Void> onChannelParticipants(long channelId, BaseChannelParticipants payload) {
+        return entityDelegate.onChannelParticipants(channelId, payload)
+                .then(write(s -> persistContacts(s, payload.chats(), payload.users())));
+    }
+
+    @Override
+    public Mono<Void> onChannelParticipant(long channelId, ChannelParticipant payload) {
+        return entityDelegate.onChannelParticipant(channelId, payload)
+                .then(write(s -> persistContacts(s, payload.chats(), payload.users())));
+    }
+
+    @Override
+    public Mono<Void> onMessages(Messages payload) {
+        return entityDelegate.onMessages(payload)
+                .then(write(s -> persistMessages(s, payload)));
+    }
+
+    @Override
+    public Mono<Void> onAuthorization(BaseAuthorization auth) {
+        return entityDelegate.onAuthorization(auth)
+                .then(write(s -> persistUser(s, auth.user())));
+    }
+
+    // endregion
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hash index over the memory-mapped file which maps composite keys to the locations of records in the {@link LogStore}.
+ * Keys are stored in the open-addressing table with linear probing and backward-shift deletion.
+ *
+ * <p> Header of index contains the <i>checkpoint</i>, the location in the log up to which
+ * all records are reflected in the durable state of index, and the <i>high water mark</i>,
+ * the end location of the last record that was applied to the index.
+ *
+ * <p> Slots are modified in place after the checkpoint and the OS may write back any subset of dirty pages,
+ * so the checkpoint guarantees consistency of slots only if process crashed, but OS flushed the mapping.
+ *
+ * @implNote This class is not thread-safe.
+ */
+final class MappedIndex implements Closeable {
+    static final int MAGIC = 0x74346a69; // t4ji
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 32;
+    static final int MIN_CAPACITY = 1 << 10;
+    // Limited by the maximal size of MappedByteBuffer
+    static final int MAX_CAPACITY = 1 << 25;
+
+    // header offsets
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int CAPACITY_OFFSET = 8;
+    static final int SIZE_OFFSET = 12;
+    static final int CHECKPOINT_OFFSET = 16;
+    static final int HIGH_WATER_OFFSET = 24;
+
+    // slot offsets
+    static final int KEY1_OFFSET = 0;
+    static final int KEY2_OFFSET = 8;
+    static final int KIND_OFFSET = 12; // 0 for empty slots
+    static final int LOCATION_OFFSET = 16;
+    static final int RECORD_SIZE_OFFSET = 24;
+
+    final Path path;
+
+    FileChannel channel;
+    MappedByteBuffer buffer;
+    int capacity;
+    int mask;
+    int size;
+
+    private MappedIndex(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity, int size) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * Opens existing index file.
+     *
+     * @param path The path to index file.
+     * @return The opened index or {@code null} if file is absent or has invalid format.
+     * @throws IOException If an I/O error occurs.
+     */
+    static MappedIndex open(Path path) throws IOException {
+        if (Files.notExists(path)) {
+            return null;
+        }
+
+        var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                channel.close();
+                return null;
+            }
+
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION ||
+                    Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY ||
+                    fileSize != HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                channel.close();
+                return null;
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            return new MappedIndex(path, channel, buffer, capacity, buffer.getInt(SIZE_OFFSET));
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Creates new empty index file, replacing existing one.
+     *
+     * @param path The path to index file.
+     * @param capacity The initial capacity, must be a power of two.
+     * @return The new index.
+     * @throws IOException If an I/O error occurs.
+     */
+    static MappedIndex create(Path path, int capacity) throws IOException {
+        Files.deleteIfExists(path);
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            var buffer = map(channel, capacity);
+            return new MappedIndex(path, channel, buffer, capacity, 0);
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+    }
+
+    static MappedByteBuffer map(FileChannel channel, int capacity) throws IOException {
+        var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SIZE_OFFSET, 0);
+        buffer.putLong(CHECKPOINT_OFFSET, 0);
+        buffer.putLong(HIGH_WATER_OFFSET, 0);
+        return buffer;
+    }
+
+    static int hash(int kind, long key1, int key2) {
+        long h = key1 * 0x9E3779B97F4A7C15L;
+        h ^= (key2 + ((long) kind << 32)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int home(int kind, long key1, int key2) {
+        return hash(kind, key1, key2) & mask;
+    }
+
+    static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    int find(int kind, long key1, int key2) {
+        for (int s = home(kind, key1, key2); ; s = (s + 1) & mask) {
+            int off = offset(s);
+            int k = buffer.getInt(off + KIND_OFFSET);
+            if (k == 0) {
+                return -1;
+            }
+            if (k == kind && buffer.getLong(off + KEY1_OFFSET) == key1 && buffer.getInt(off + KEY2_OFFSET) == key2) {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Gets location of the record by its key.
+     *
+     * @return The location of record or {@code -1} if key is absent.
+     */
+    long get(int kind, long key1, int key2) {
+        int s = find(kind, key1, key2);
+        return s != -1 ? location(s) : -1;
+    }
+
+    long location(int slot) {
+        return buffer.getLong(offset(slot) + LOCATION_OFFSET);
+    }
+
+    int recordSize(int slot) {
+        return buffer.getInt(offset(slot) + RECORD_SIZE_OFFSET);
+    }
+
+    int kind(int slot) {
+        return buffer.getInt(offset(slot) + KIND_OFFSET);
+    }
+
+    /**
+     * Associates key with the location of record.
+     *
+     * @return The slot of previous mapping or {@code -1} if key was absent,
+     * it's valid only until next modification of index.
+     */
+    int put(int kind, long key1, int key2, long location, int recordSize, long[] previous) throws IOException {
+        int s = find(kind, key1, key2);
+        if (s != -1) {
+            int off = offset(s);
+            previous[0] = buffer.getLong(off + LOCATION_OFFSET);
+            previous[1] = buffer.getInt(off + RECORD_SIZE_OFFSET);
+            buffer.putLong(off + LOCATION_OFFSET, location);
+            buffer.putInt(off + RECORD_SIZE_OFFSET, recordSize);
+            return s;
+        }
+
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+
+        insert(kind, key1, key2, location, recordSize);
+        size++;
+        buffer.putInt(SIZE_OFFSET, size);
+        return -1;
+    }
+
+    private void insert(int kind, long key1, int key2, long location, int recordSize) {
+        int s = home(kind, key1, key2);
+        while (buffer.getInt(offset(s) + KIND_OFFSET) != 0) {
+            s = (s + 1) & mask;
+        }
+
+        int off = offset(s);
+        buffer.putLong(off + KEY1_OFFSET, key1);
+        buffer.putInt(off + KEY2_OFFSET, key2);
+        buffer.putLong(off + LOCATION_OFFSET, location);
+        buffer.putInt(off + RECORD_SIZE_OFFSET, recordSize);
+        // kind is written last, because it marks slot as occupied
+        buffer.putInt(off + KIND_OFFSET, kind);
+    }
+
+    /**
+     * Removes mapping of the key.
+     *
+     * @return {@code true} if key was present.
+     */
+    boolean remove(int kind, long key1, int key2, long[] previous) {
+        int s = find(kind, key1, key2);
+        if (s == -1) {
+            return false;
+        }
+
+        previous[0] = location(s);
+        previous[1] = recordSize(s);
+        removeSlot(s);
+        return true;
+    }
+
+    void removeSlot(int s) {
+        // shift back entries which are displaced from their home slots
+        int i = s;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int off = offset(j);
+            int k = buffer.getInt(off + KIND_OFFSET);
+            if (k == 0) {
+                break;
+            }
+
+            int h = home(k, buffer.getLong(off + KEY1_OFFSET), buffer.getInt(off + KEY2_OFFSET));
+            if (i <= j ? i < h && h <= j : i < h || h <= j) {
+                continue;
+            }
+
+            copySlot(j, i);
+            i = j;
+        }
+
+        buffer.putInt(offset(i) + KIND_OFFSET, 0);
+        size--;
+        buffer.putInt(SIZE_OFFSET, size);
+    }
+
+    private void copySlot(int from, int to) {
+        int src = offset(from);
+        int dst = offset(to);
+        buffer.putLong(dst + KEY1_OFFSET, buffer.getLong(src + KEY1_OFFSET));
+        buffer.putInt(dst + KEY2_OFFSET, buffer.getInt(src + KEY2_OFFSET));
+        buffer.putLong(dst + LOCATION_OFFSET, buffer.getLong(src + LOCATION_OFFSET));
+        buffer.putInt(dst + RECORD_SIZE_OFFSET, buffer.getInt(src + RECORD_SIZE_OFFSET));
+        buffer.putInt(dst + KIND_OFFSET, buffer.getInt(src + KIND_OFFSET));
+    }
+
+    void updateLocation(int slot, long location) {
+        buffer.putLong(offset(slot) + LOCATION_OFFSET, location);
+    }
+
+    private void grow() throws IOException {
+        int newCapacity = capacity << 1;
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Index is overflowed");
+        }
+
+        // The grown table is built in the separate file and atomically replaces old one,
+        // so index is never seen in the half-rehashed state
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        var newChannel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer newBuffer;
+        try {
+            newBuffer = map(newChannel, newCapacity);
+            newBuffer.putLong(CHECKPOINT_OFFSET, checkpoint());
+            newBuffer.putLong(HIGH_WATER_OFFSET, highWater());
+            newBuffer.putInt(SIZE_OFFSET, size);
+        } catch (Throwable t) {
+            newChannel.close();
+            throw t;
+        }
+
+        var oldBuffer = buffer;
+        var oldChannel = channel;
+        int oldCapacity = capacity;
+
+        buffer = newBuffer;
+        channel = newChannel;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+
+        for (int s = 0; s < oldCapacity; s++) {
+            int off = offset(s);
+            int kind = oldBuffer.getInt(off + KIND_OFFSET);
+            if (kind != 0) {
+                insert(kind, oldBuffer.getLong(off + KEY1_OFFSET), oldBuffer.getInt(off + KEY2_OFFSET),
+                        oldBuffer.getLong(off + LOCATION_OFFSET), oldBuffer.getInt(off + RECORD_SIZE_OFFSET));
+            }
+        }
+
+        buffer.force();
+        oldChannel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    long checkpoint() {
+        return buffer.getLong(CHECKPOINT_OFFSET);
+    }
+
+    long highWater() {
+        return buffer.getLong(HIGH_WATER_OFFSET);
+    }
+
+    void highWater(long location) {
+        buffer.putLong(HIGH_WATER_OFFSET, location);
+    }
+
+    /**
+     * Makes current state of index durable and marks it as consistent up to specified location.
+     *
+     * @param checkpoint The location in log up to which all records are applied.
+     */
+    void checkpoint(long checkpoint) {
+        buffer.force();
+        buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        buffer.force(0, HEADER_SIZE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import telegram4j.tl.Peer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-chat index of message ids ordered in ascending order.
+ * Ids are kept in the sorted primitive arrays which are mostly appended at the end,
+ * because new messages have the greatest ids.
+ */
+final class MessageIndex {
+    static final int INITIAL_CAPACITY = 8;
+
+    final ConcurrentMap<Peer, Ids> chats = new ConcurrentHashMap<>();
+
+    static final class Ids {
+        int[] ids = new int[INITIAL_CAPACITY];
+        int size;
+
+        synchronized void add(int id) {
+            int idx;
+            if (size == 0 || ids[size - 1] < id) { // fast path for new messages
+                idx = size;
+            } else {
+                idx = Arrays.binarySearch(ids, 0, size, id);
+                if (idx >= 0) {
+                    return;
+                }
+                idx = -idx - 1;
+            }
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            System.arraycopy(ids, idx, ids, idx + 1, size - idx);
+            ids[idx] = id;
+            size++;
+        }
+
+        synchronized boolean remove(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            if (idx < 0) {
+                return false;
+            }
+            System.arraycopy(ids, idx + 1, ids, idx, size - idx - 1);
+            size--;
+            // shrink arrays of chats with removed history
+            if (ids.length > INITIAL_CAPACITY && size < ids.length >>> 2) {
+                ids = Arrays.copyOf(ids, Math.max(INITIAL_CAPACITY, ids.length >>> 1));
+            }
+            return true;
+        }
+
+        /**
+         * Collects ids in the {@code (minId, maxId)} range in descending order.
+         *
+         * @param minId The exclusive lower bound of ids, or 0 if unbounded.
+         * @param maxId The exclusive upper bound of ids, or 0 if unbounded.
+         * @param limit The max count of ids.
+         * @return The array of ids in descending order.
+         */
+        synchronized int[] range(int minId, int maxId, int limit) {
+            int to = maxId == 0 ? size : lowerBound(maxId); // exclusive
+            int from = minId == 0 ? 0 : upperBound(minId);
+            int count = Math.min(Math.max(to - from, 0), limit);
+
+            int[] res = new int[count];
+            for (int i = 0; i < count; i++) {
+                res[i] = ids[to - 1 - i];
+            }
+            return res;
+        }
+
+        // index of first id that >= the specified one
+        int lowerBound(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            return idx >= 0 ? idx : -idx - 1;
+        }
+
+        // index of first id that > the specified one
+        int upperBound(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            return idx >= 0 ? idx + 1 : -idx - 1;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * Checks that result of {@link #range(Peer, int, int, int)} has no gaps.
+     * Index doesn't know which messages exist on the server, so history is proven complete only when
+     * it consists of the sequential ids which starts right before {@code maxId} and ends
+     * with the {@code limit}-th id or right after {@code minId}. Newest messages can't be proven, thus
+     * the range with unbounded {@code maxId} is never complete.
+     *
+     * @param ids The ids in descending order.
+     * @param minId The exclusive lower bound of ids, or 0 if unbounded.
+     * @param maxId The exclusive upper bound of ids, or 0 if unbounded.
+     * @param limit The max count of ids.
+     * @return {@code true} if there are no other ids in range.
+     */
+    static boolean isComplete(int[] ids, int minId, int maxId, int limit) {
+        if (maxId == 0 || ids.length == 0 || ids[0] != maxId - 1) {
+            return false;
+        }
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] != ids[i - 1] - 1) {
+                return false;
+            }
+        }
+        // message ids start from 1
+        int last = ids[ids.length - 1];
+        return ids.length == limit || last == minId + 1 || minId == 0 && last == 1;
+    }
+
+    void add(Peer chat, int id) {
+        // under lock of map bin to not add id into concurrently removed array
+        chats.compute(chat, (k, v) -> {
+            if (v == null) {
+                v = new Ids();
+            }
+            v.add(id);
+            return v;
+        });
+    }
+
+    void remove(Peer chat, int id) {
+        var ids = chats.get(chat);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            // re-check under lock of map bin, since message can be added concurrently
+            chats.computeIfPresent(chat, (k, v) -> v.isEmpty() ? null : v);
+        }
+    }
+
+    int[] range(Peer chat, int minId, int maxId, int limit) {
+        var ids = chats.get(chat);
+        return ids != null ? ids.range(minId, maxId, limit) : new int[0];
+    }
+
+    void clear() {
+        chats.clear();
+    }
+}
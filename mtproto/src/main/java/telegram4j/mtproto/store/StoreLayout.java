@@ -167,6 +167,27 @@ public interface StoreLayout extends UpdatesStore, ResultsStore {
      */
     Mono<Messages> getMessages(long channelId, Iterable<? extends InputMessage> messageIds);
 
+    /**
+     * Retrieve messages of chat with ids in the specified range ordered from the newest to the oldest.
+     * Bounds have the same semantic as {@code min_id} and {@code max_id} parameters of
+     * {@code messages.getHistory} method, so {@code getMessageHistory(peerId, 0, 0, n)}
+     * retrieves last {@code n} messages of chat.
+     *
+     * @implSpec Implementation may return only known messages. If it can't prove that there are no
+     * other messages in the range, the result must be {@link telegram4j.tl.messages.MessagesSlice}.
+     * Default implementation returns empty {@link Mono}.
+     *
+     * @param peerId The id of chat.
+     * @param minId The exclusive lower bound of message ids, or 0 to not bound.
+     * @param maxId The exclusive upper bound of message ids, or 0 to not bound.
+     * @param limit The max count of messages.
+     * @return A {@link Mono} emitting on successful completion
+     * the container with found messages and auxiliary data.
+     */
+    default Mono<Messages> getMessageHistory(Peer peerId, int minId, int maxId, int limit) {
+        return Mono.empty();
+    }
+
     /**
      * Retrieve minimal chat information by specified id.
      *
@@ -17,6 +17,11 @@ package telegram4j.mtproto.store;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.netty.buffer.ByteBuf;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.Nullable;
@@ -50,18 +55,40 @@ import java.util.stream.Stream;
 import static telegram4j.mtproto.util.TlEntityUtil.getUserId;
 import static telegram4j.mtproto.util.TlEntityUtil.stripUsername;
 
-/** Default in-memory store implementation. */
+/**
+ * Default in-memory store implementation.
+ *
+ * <p> Users, chats, channels and polls are kept in the Caffeine caches bounded by {@link EntityCacheOptions}.
+ * Usernames and input peers aren't bounded by themselves, instead they are removed
+ * on eviction of the entity they point to. Current user is never evicted.
+ *
+ * <p> If {@link EntityCacheOptions#serialized()} is set, messages, users, chats and channels
+ * are kept as TL-serialized byte arrays, and the message cache configured by {@code cacheFactory}
+ * receives byte arrays as values.
+ */
 public class StoreLayoutImpl implements StoreLayout {
 
-    protected final Cache<MessageId, Message> messages;
-    protected final ConcurrentMap<Long, ChatInfo> chats = new ConcurrentHashMap<>();
-    protected final ConcurrentMap<Long, ChannelInfo> channels = new ConcurrentHashMap<>();
-    protected final ConcurrentMap<Long, PartialFields<ImmutableBaseUser, ImmutableUserFull>> users = new ConcurrentHashMap<>();
-    protected final ConcurrentMap<Long, MessagePoll> polls = new ConcurrentHashMap<>();
-    // TODO: make weak or limit by size?
+    // the approximate weight of participant, which isn't serialized on every update
+    protected static final int PARTICIPANT_WEIGHT = 64;
+
+    protected final Cache<MessageId, ?> messagesCache;
+    protected final Cache<Long, ?> chatsCache;
+    protected final Cache<Long, ?> channelsCache;
+    protected final Cache<Long, ?> usersCache;
+    protected final Cache<Long, MessagePoll> pollsCache;
+    // views of caches
+    protected final ConcurrentMap<MessageId, Message> messages;
+    protected final ConcurrentMap<Long, ChatInfo> chats;
+    protected final ConcurrentMap<Long, ChannelInfo> channels;
+    protected final ConcurrentMap<Long, PartialFields<ImmutableBaseUser, ImmutableUserFull>> users;
+    protected final ConcurrentMap<Long, MessagePoll> polls;
     protected final ConcurrentMap<String, Peer> usernames = new ConcurrentHashMap<>();
     protected final ConcurrentMap<Peer, InputPeer> peers = new ConcurrentHashMap<>();
     protected final ConcurrentMap<DcKey, AuthKey> authKeys = new ConcurrentHashMap<>();
+    // ordered ids of cached messages per chat
+    final MessageIndex messageIndex = new MessageIndex();
+    // whether evicted messages aren't removed from index by listener of message cache
+    final boolean pruneMessageIndex;
 
     protected volatile DataCenter dataCenter;
     protected volatile long selfId;
@@ -71,7 +98,115 @@ public class StoreLayoutImpl implements StoreLayout {
     protected volatile Config config;
 
     public StoreLayoutImpl(Function<Caffeine<Object, Object>, Caffeine<Object, Object>> cacheFactory) {
-        this.messages = cacheFactory.apply(Caffeine.newBuilder()).build();
+        this(cacheFactory, EntityCacheOptions.unbounded());
+    }
+
+    /**
+     * Constructs store with specified configuration of message cache and bounds of entity caches.
+     * Evicted messages are removed from the history index by eviction listener of message cache
+     * or, if {@code cacheFactory} has set its own one, by removal listener. When both listeners are set
+     * by {@code cacheFactory}, stale index entries are removed on history queries.
+     *
+     * @param cacheFactory The function to configure message cache.
+     * @param options The bounds of entity caches.
+     */
+    public StoreLayoutImpl(Function<Caffeine<Object, Object>, Caffeine<Object, Object>> cacheFactory,
+                           EntityCacheOptions options) {
+        CacheMap<MessageId, Message, ?> messages;
+        CacheMap<Long, PartialFields<ImmutableBaseUser, ImmutableUserFull>, ?> users;
+        CacheMap<Long, ChatInfo, ?> chats;
+        CacheMap<Long, ChannelInfo, ?> channels;
+        Caffeine<Object, Object> messagesBuilder = cacheFactory.apply(Caffeine.newBuilder());
+        this.pruneMessageIndex = !listenMessageEviction(messagesBuilder);
+        if (options.serialized()) {
+            CacheMap.Codec<Message, byte[]> messageCodec = CacheMap.serialized(
+                    (buf, m) -> TlSerializer.serialize(buf, m), StoreLayoutImpl::readMessage);
+            CacheMap.Codec<PartialFields<ImmutableBaseUser, ImmutableUserFull>, byte[]> userCodec =
+                    CacheMap.serialized(StoreLayoutImpl::writeUser, StoreLayoutImpl::readUser);
+            CacheMap.Codec<ChatInfo, byte[]> chatCodec = CacheMap.serialized(
+                    StoreLayoutImpl::writeChat, StoreLayoutImpl::readChat);
+            CacheMap.Codec<ChannelInfo, byte[]> channelCodec = CacheMap.serialized(
+                    StoreLayoutImpl::writeChannel, StoreLayoutImpl::readChannel);
+
+            Cache<MessageId, byte[]> messagesCache = messagesBuilder.build();
+            messages = new CacheMap<>(messagesCache, messageCodec);
+
+            // current user is set before saving and its zero weight excludes it from eviction
+            Cache<Long, byte[]> usersCache = buildCache(options.maxUsersWeight(), options.recordStats(),
+                    (k, v) -> k == selfId ? 0 : v.length,
+                    (k, v, c) -> onUserEviction(k, v != null ? userCodec.decode(v) : null, c));
+            Cache<Long, byte[]> chatsCache = buildCache(options.maxChatsWeight(), options.recordStats(),
+                    (k, v) -> v.length,
+                    (k, v, c) -> onChatEviction(k, v != null ? chatCodec.decode(v) : null, c));
+            Cache<Long, byte[]> channelsCache = buildCache(options.maxChannelsWeight(), options.recordStats(),
+                    (k, v) -> v.length,
+                    (k, v, c) -> onChannelEviction(k, v != null ? channelCodec.decode(v) : null, c));
+
+            users = new CacheMap<>(usersCache, userCodec);
+            chats = new CacheMap<>(chatsCache, chatCodec);
+            channels = new CacheMap<>(channelsCache, channelCodec);
+        } else {
+            Cache<MessageId, Message> messagesCache = messagesBuilder.build();
+            messages = CacheMap.create(messagesCache);
+
+            // zero weight of current user excludes it from eviction
+            Cache<Long, PartialFields<ImmutableBaseUser, ImmutableUserFull>> usersCache = buildCache(
+                    options.maxUsersWeight(), options.recordStats(),
+                    (k, v) -> v.min.self() ? 0 : weigh(v.min, v.full, null), this::onUserEviction);
+            Cache<Long, ChatInfo> chatsCache = buildCache(options.maxChatsWeight(), options.recordStats(),
+                    (k, v) -> weigh(v.min, v.full, v.participants), this::onChatEviction);
+            Cache<Long, ChannelInfo> channelsCache = buildCache(options.maxChannelsWeight(), options.recordStats(),
+                    (k, v) -> weigh(v.min, v.full, v.participants), this::onChannelEviction);
+
+            users = CacheMap.create(usersCache);
+            chats = CacheMap.create(chatsCache);
+            channels = CacheMap.create(channelsCache);
+        }
+
+        Caffeine<Object, Object> pollsBuilder = Caffeine.newBuilder();
+        if (options.maxPolls() != EntityCacheOptions.UNBOUNDED) {
+            pollsBuilder.maximumSize(options.maxPolls());
+        }
+        if (options.recordStats()) {
+            pollsBuilder.recordStats();
+        }
+        this.pollsCache = pollsBuilder.build();
+
+        this.messagesCache = messages.cache;
+        this.usersCache = users.cache;
+        this.chatsCache = chats.cache;
+        this.channelsCache = channels.cache;
+        this.messages = messages;
+        this.users = users;
+        this.chats = chats;
+        this.channels = channels;
+        this.polls = CacheMap.create(pollsCache);
+    }
+
+    /** Families of cached entities. */
+    public enum CacheFamily {
+        MESSAGES,
+        USERS,
+        CHATS,
+        CHANNELS,
+        POLLS
+    }
+
+    /**
+     * Gets snapshot of statistics of the specified cache. Statistics is recorded only
+     * if it was enabled in {@link EntityCacheOptions} or in message cache configuration.
+     *
+     * @param family The family of cached entities.
+     * @return The snapshot of cache statistics.
+     */
+    public CacheStats getCacheStats(CacheFamily family) {
+        return switch (family) {
+            case MESSAGES -> messagesCache.stats();
+            case USERS -> usersCache.stats();
+            case CHATS -> chatsCache.stats();
+            case CHANNELS -> channelsCache.stats();
+            case POLLS -> pollsCache.stats();
+        };
     }
 
     @Override
@@ -101,11 +236,17 @@ public class StoreLayoutImpl implements StoreLayout {
 
     @Override
     public Mono<ResolvedPeer> resolvePeer(String username) {
-        return Mono.fromSupplier(() -> usernames.get(stripUsername(username)))
+        String stripped = stripUsername(username);
+        return Mono.fromSupplier(() -> usernames.get(stripped))
                 .mapNotNull(p -> {
                     List<User> user = new ArrayList<>(1);
                     List<Chat> chat = new ArrayList<>(1);
                     addContact(p, chat, user);
+                    // peer was evicted concurrently
+                    if (user.isEmpty() && chat.isEmpty()) {
+                        usernames.remove(stripped, p);
+                        return null;
+                    }
 
                     return ImmutableResolvedPeer.of(p, chat, user);
                 });
@@ -130,7 +271,7 @@ public class StoreLayoutImpl implements StoreLayout {
 
     @Override
     public Mono<Boolean> existMessage(Peer peerId, int messageId) {
-        return Mono.fromSupplier(() -> messages.getIfPresent(MessageId.create(peerId, messageId)) != null);
+        return Mono.fromSupplier(() -> messages.get(MessageId.create(peerId, messageId)) != null);
     }
 
     @Nullable
@@ -156,12 +297,22 @@ public class StoreLayoutImpl implements StoreLayout {
             ids.add(new MessageId(rawPeerId, msgId));
         }
 
-        var messagesMap = this.messages.getAllPresent(ids);
-        if (messagesMap.isEmpty()) {
-            return null;
+        List<Message> messages = new ArrayList<>(ids.size());
+        for (MessageId id : ids) {
+            var message = this.messages.get(id);
+            if (message != null) {
+                messages.add(message);
+            }
         }
 
-        var messages = messagesMap.values();
+        return toMessages(messages);
+    }
+
+    @Nullable
+    protected Messages toMessages(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return null;
+        }
 
         Set<User> users = new HashSet<>();
         Set<Chat> chats = new HashSet<>();
@@ -197,6 +348,39 @@ public class StoreLayoutImpl implements StoreLayout {
         return Mono.fromSupplier(() -> getMessages0(channelId, messageIds));
     }
 
+    @Override
+    public Mono<Messages> getMessageHistory(Peer peerId, int minId, int maxId, int limit) {
+        return Mono.fromSupplier(() -> {
+            Peer chat = copyPeer(peerId);
+            int[] ids = messageIndex.range(chat, minId, maxId, limit);
+
+            List<Message> messages = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                var message = this.messages.get(MessageId.create(chat, id));
+                if (message != null) {
+                    messages.add(message);
+                } else if (pruneMessageIndex) {
+                    // message was evicted without notifying the index
+                    messageIndex.remove(chat, id);
+                }
+            }
+
+            var result = (BaseMessages) toMessages(messages);
+            if (result == null || messages.size() == ids.length &&
+                    MessageIndex.isComplete(ids, minId, maxId, limit)) {
+                return result;
+            }
+            // history may have gaps, this is marked by slice
+            return MessagesSlice.builder()
+                    .inexact(true)
+                    .count(messages.size())
+                    .messages(result.messages())
+                    .chats(result.chats())
+                    .users(result.users())
+                    .build();
+        });
+    }
+
     @Override
     public Mono<Chat> getChatMinById(long chatId) {
         return Mono.fromSupplier(() -> chats.get(chatId)).map(c -> c.min);
@@ -410,7 +594,7 @@ public class StoreLayoutImpl implements StoreLayout {
 
     @Override
     public Mono<Void> onNewMessage(Message update) {
-        return Mono.fromRunnable(() -> saveMessage(update));
+        return Mono.fromRunnable(() -> saveMessage(update, false));
     }
 
     @Override
@@ -444,7 +628,7 @@ public class StoreLayoutImpl implements StoreLayout {
         InputPeer inputPeer;
         if (peer == null) {
             inputPeer = ids.stream()
-                    .flatMap(i -> Stream.ofNullable(messages.getIfPresent(new MessageId(i))))
+                    .flatMap(i -> Stream.ofNullable(messages.get(new MessageId(i))))
                     .map(m -> {
                         Peer p;
                         if (m instanceof BaseMessage b) {
@@ -481,8 +665,11 @@ public class StoreLayoutImpl implements StoreLayout {
         }
 
         var messages = ids.stream()
-                .flatMap(id -> Stream.ofNullable(this.messages.asMap().remove(new MessageId(rawPeerId, id))))
+                .flatMap(id -> Stream.ofNullable(this.messages.remove(new MessageId(rawPeerId, id))))
                 .collect(Collectors.toList());
+        for (Message message : messages) {
+            removeFromIndex(message);
+        }
 
         return new ResolvedDeletedMessages(inputPeer, messages);
     }
@@ -502,7 +689,7 @@ public class StoreLayoutImpl implements StoreLayout {
         long peerId = peer instanceof PeerChannel p ? p.channelId() : -1;
         for (int id : ids) {
             MessageId k = new MessageId(peerId, id);
-            messages.asMap().computeIfPresent(k, (k1, v) -> {
+            messages.computeIfPresent(k, (k1, v) -> {
                 if (v instanceof BaseMessage b) {
                     return ImmutableBaseMessage.copyOf(b)
                             .withPinned(pinned);
@@ -519,6 +706,7 @@ public class StoreLayoutImpl implements StoreLayout {
             var map = v.participants;
             if (curr == null) {
                 if (map != null) {
+                    map = v.participants();
                     map.remove(payload.userId());
                 }
             } else {
@@ -581,7 +769,9 @@ public class StoreLayoutImpl implements StoreLayout {
             if (curr == null) {
                 if (map != null) {
                     Objects.requireNonNull(prev); // TODO: test it
+                    map = v.participants();
                     map.remove(getUserId(prev));
+                    return v.withParticipants(map);
                 }
             } else {
                 map = new ConcurrentHashMap<>();
@@ -689,21 +879,21 @@ public class StoreLayoutImpl implements StoreLayout {
                     var base = (BaseMessages) payload;
                     saveContacts(base.chats(), base.users());
                     for (var msg : base.messages()) {
-                        saveMessage(msg);
+                        saveMessage(msg, false);
                     }
                 }
                 case ChannelMessages.ID -> {
                     var channel = (ChannelMessages) payload;
                     saveContacts(channel.chats(), channel.users());
                     for (var msg : channel.messages()) {
-                        saveMessage(msg);
+                        saveMessage(msg, false);
                     }
                 }
                 case MessagesSlice.ID -> {
                     var slice = (MessagesSlice) payload;
                     saveContacts(slice.chats(), slice.users());
                     for (var msg : slice.messages()) {
-                        saveMessage(msg);
+                        saveMessage(msg, false);
                     }
                 }
             }
@@ -758,17 +948,12 @@ public class StoreLayoutImpl implements StoreLayout {
         }
 
         var userCopy = ImmutableBaseUser.copyOf(user);
-        users.compute(userCopy.id(), (k, v) -> {
-            var userFull = Optional.ofNullable(anyUserFull)
-                    .map(ImmutableUserFull::copyOf)
-                    .or(() -> Optional.ofNullable(v).map(u -> u.full))
-                    .orElse(null);
-            return new PartialFields<>(userCopy, userFull);
-        });
+        if (userCopy.self()) { // must be set before weighing
+            selfId = userCopy.id();
+        }
+        // input peer is saved before the entity, so concurrent eviction of the entity removes it
         Long acch = userCopy.accessHash();
         if (userCopy.self()) {
-            selfId = userCopy.id();
-
             var self = ImmutablePeerUser.of(userCopy.id());
 
             // add special tags for indexing
@@ -784,6 +969,13 @@ public class StoreLayoutImpl implements StoreLayout {
         } else if (acch != null && !userCopy.min()) {
             peers.put(ImmutablePeerUser.of(userCopy.id()), ImmutableInputPeerUser.of(userCopy.id(), acch));
         }
+        users.compute(userCopy.id(), (k, v) -> {
+            var userFull = Optional.ofNullable(anyUserFull)
+                    .map(ImmutableUserFull::copyOf)
+                    .or(() -> Optional.ofNullable(v).map(u -> u.full))
+                    .orElse(null);
+            return new PartialFields<>(userCopy, userFull);
+        });
         // if user is min and received from message update,
         // then the *FromMessage peer would be saved in savePeer()
     }
@@ -899,6 +1091,10 @@ public class StoreLayoutImpl implements StoreLayout {
                     return;
                 }
                 var channelCopy = ImmutableChannel.copyOf(receivedChannel);
+                Long acch = channelCopy.accessHash();
+                if (acch != null && !channelCopy.min()) { // see saveUser()
+                    peers.put(ImmutablePeerChannel.of(channelCopy.id()), ImmutableInputPeerChannel.of(channelCopy.id(), acch));
+                }
                 channels.compute(channelCopy.id(), (k, v) -> {
                     var channelFull = Optional.ofNullable(anyChatFull)
                             .map(c -> ImmutableChannelFull.copyOf((ChannelFull) c))
@@ -909,10 +1105,6 @@ public class StoreLayoutImpl implements StoreLayout {
                             ? new ChannelInfo(channelCopy, channelFull)
                             : v.withData(channelCopy, channelFull);
                 });
-                Long acch = channelCopy.accessHash();
-                if (acch != null && !channelCopy.min()) { // see saveUser()
-                    peers.put(ImmutablePeerChannel.of(channelCopy.id()), ImmutableInputPeerChannel.of(channelCopy.id(), acch));
-                }
             }
             // if channel is min and received from message update,
             // then the *FromMessage peer would be saved in savePeer()
@@ -980,22 +1172,220 @@ public class StoreLayoutImpl implements StoreLayout {
         switch (object.identifier()) {
             case BaseUser.ID -> {
                 var user = (BaseUser) object;
-                String username = user.username();
-                if (username != null) {
-                    usernames.put(stripUsername(username), ImmutablePeerUser.of(user.id()));
-                }
+                var peer = ImmutablePeerUser.of(user.id());
+                var old = users.get(user.id());
+                updateUsername(old != null ? old.min.username() : null, user.username(), peer);
             }
             case Channel.ID -> {
                 var channel = (Channel) object;
-                String username = channel.username();
-                if (username != null) {
-                    usernames.put(stripUsername(username), ImmutablePeerChannel.of(channel.id()));
-                }
+                var peer = ImmutablePeerChannel.of(channel.id());
+                var old = channels.get(channel.id());
+                String oldUsername = old != null && old.min instanceof Channel c ? c.username() : null;
+                updateUsername(oldUsername, channel.username(), peer);
             }
             default -> throw new IllegalStateException("Unexpected peer type: " + object);
         }
     }
 
+    protected void updateUsername(@Nullable String oldUsername, @Nullable String username, Peer peer) {
+        String stripped = username != null ? stripUsername(username) : null;
+        // received object may be min and have no username
+        if (oldUsername != null && stripped != null) {
+            String oldStripped = stripUsername(oldUsername);
+            if (!oldStripped.equals(stripped)) {
+                usernames.remove(oldStripped, peer);
+            }
+        }
+        if (stripped != null) {
+            usernames.put(stripped, peer);
+        }
+    }
+
+    // Eviction listeners are invoked atomically with the eviction
+
+    protected void onUserEviction(@Nullable Long userId,
+                                  @Nullable PartialFields<ImmutableBaseUser, ImmutableUserFull> info,
+                                  RemovalCause cause) {
+        if (userId == null || info == null) {
+            return;
+        }
+
+        var peer = ImmutablePeerUser.of(userId);
+        peers.remove(peer);
+        String username = info.min.username();
+        if (username != null) {
+            usernames.remove(stripUsername(username), peer);
+        }
+    }
+
+    private boolean listenMessageEviction(Caffeine<Object, Object> builder) {
+        // Caffeine allows only one listener of each kind, so the ones set by cacheFactory are kept
+        try {
+            builder.evictionListener((k, v, c) -> onMessageEviction((MessageId) k));
+            return true;
+        } catch (IllegalStateException e) {
+            try {
+                builder.removalListener((k, v, c) -> {
+                    if (c.wasEvicted()) {
+                        onMessageEviction((MessageId) k);
+                    }
+                });
+                return true;
+            } catch (IllegalStateException ignored) {
+                // stale ids are removed from index by getMessageHistory()
+                return false;
+            }
+        }
+    }
+
+    protected void onMessageEviction(@Nullable MessageId key) {
+        // key is created from the message and holds its peer,
+        // so the value isn't needed; it's costly to decode in the serialized mode
+        if (key != null && key.peerId != null) {
+            messageIndex.remove(copyPeer(key.peerId), key.messageId);
+        }
+    }
+
+    protected void removeFromIndex(Message message) {
+        if (message instanceof BaseMessage b) {
+            messageIndex.remove(copyPeer(b.peerId()), b.id());
+        } else if (message instanceof MessageService s) {
+            messageIndex.remove(copyPeer(s.peerId()), s.id());
+        }
+    }
+
+    protected void onChatEviction(@Nullable Long chatId, @Nullable ChatInfo info, RemovalCause cause) {
+        if (chatId != null) {
+            peers.remove(ImmutablePeerChat.of(chatId));
+        }
+    }
+
+    protected void onChannelEviction(@Nullable Long channelId, @Nullable ChannelInfo info, RemovalCause cause) {
+        if (channelId == null || info == null) {
+            return;
+        }
+
+        var peer = ImmutablePeerChannel.of(channelId);
+        peers.remove(peer);
+        if (info.min instanceof Channel c && c.username() != null) {
+            usernames.remove(stripUsername(c.username()), peer);
+        }
+    }
+
+    protected static <K, V> Cache<K, V> buildCache(long maxWeight, boolean recordStats,
+                                                   Weigher<? super K, ? super V> weigher,
+                                                   RemovalListener<? super K, ? super V> evictionListener) {
+        Caffeine<K, V> builder = Caffeine.newBuilder().evictionListener(evictionListener);
+        if (recordStats) {
+            builder.recordStats();
+        }
+        if (maxWeight != EntityCacheOptions.UNBOUNDED) {
+            builder.maximumWeight(maxWeight).weigher(weigher);
+        }
+        return builder.build();
+    }
+
+    protected static int weigh(TlObject min, @Nullable TlObject full, @Nullable Map<?, ?> participants) {
+        long weight = TlSerializer.sizeOf(min);
+        if (full != null) {
+            weight += TlSerializer.sizeOf(full);
+        }
+        if (participants != null) {
+            weight += (long) participants.size() * PARTICIPANT_WEIGHT;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    // Serialized form of entities; optional objects are prefixed by the presence flag
+    // and participants by their count, or by -1 if they aren't initialized
+
+    protected static void writeOptional(ByteBuf buf, @Nullable TlObject object) {
+        buf.writeBoolean(object != null);
+        if (object != null) {
+            TlSerializer.serialize(buf, object);
+        }
+    }
+
+    @Nullable
+    protected static <T extends TlObject> T readOptional(ByteBuf buf) {
+        return buf.readBoolean() ? TlDeserializer.deserialize(buf) : null;
+    }
+
+    protected static void writeParticipants(ByteBuf buf, @Nullable Map<?, ? extends TlObject> participants) {
+        if (participants == null) {
+            buf.writeIntLE(-1);
+            return;
+        }
+
+        // participants may be modified concurrently
+        List<TlObject> values = new ArrayList<>(participants.values());
+        buf.writeIntLE(values.size());
+        for (TlObject p : values) {
+            TlSerializer.serialize(buf, p);
+        }
+    }
+
+    protected static Message readMessage(ByteBuf buf) {
+        return copyMessage(TlDeserializer.deserialize(buf));
+    }
+
+    protected static void writeUser(ByteBuf buf, PartialFields<ImmutableBaseUser, ImmutableUserFull> info) {
+        TlSerializer.serialize(buf, info.min);
+        writeOptional(buf, info.full);
+    }
+
+    protected static PartialFields<ImmutableBaseUser, ImmutableUserFull> readUser(ByteBuf buf) {
+        BaseUser min = TlDeserializer.deserialize(buf);
+        UserFull full = readOptional(buf);
+        return new PartialFields<>(ImmutableBaseUser.copyOf(min), full != null ? ImmutableUserFull.copyOf(full) : null);
+    }
+
+    protected static void writeChat(ByteBuf buf, ChatInfo info) {
+        TlSerializer.serialize(buf, info.min);
+        writeOptional(buf, info.full);
+        writeParticipants(buf, info.participants);
+    }
+
+    protected static ChatInfo readChat(ByteBuf buf) {
+        Chat min = TlDeserializer.deserialize(buf);
+        BaseChatFull full = readOptional(buf);
+
+        ConcurrentMap<Long, ChatParticipant> participants = null;
+        int count = buf.readIntLE();
+        if (count != -1) {
+            participants = new ConcurrentHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                var p = copyChatParticipant(TlDeserializer.deserialize(buf));
+                participants.put(p.userId(), p);
+            }
+        }
+
+        return new ChatInfo(min, full != null ? ImmutableBaseChatFull.copyOf(full) : null, participants);
+    }
+
+    protected static void writeChannel(ByteBuf buf, ChannelInfo info) {
+        TlSerializer.serialize(buf, info.min);
+        writeOptional(buf, info.full);
+        writeParticipants(buf, info.participants);
+    }
+
+    protected static ChannelInfo readChannel(ByteBuf buf) {
+        Chat min = TlDeserializer.deserialize(buf);
+        ChannelFull full = readOptional(buf);
+
+        ConcurrentMap<Peer, telegram4j.tl.ChannelParticipant> participants = null;
+        int count = buf.readIntLE();
+        if (count != -1) {
+            participants = new ConcurrentHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                var p = copyChannelParticipant(TlDeserializer.deserialize(buf));
+                participants.put(TlEntityUtil.getUserId(p), p);
+            }
+        }
+
+        return new ChannelInfo(min, full != null ? ImmutableChannelFull.copyOf(full) : null, participants);
+    }
+
     protected void savePeer0(Peer p, Peer peerId, int msgId) {
         switch (p.identifier()) {
             case PeerChat.ID -> {
@@ -1077,11 +1467,18 @@ public class StoreLayoutImpl implements StoreLayout {
 
     @Nullable
     protected Message saveMessage(Message message) {
+        return saveMessage(message, true);
+    }
+
+    @Nullable
+    protected Message saveMessage(Message message, boolean returnOld) {
         Message old;
         if (message instanceof BaseMessage b) {
             MessageId key = MessageId.create(b);
             var copy = ImmutableBaseMessage.copyOf(b);
-            old = messages.asMap().put(key, copy);
+            // indexed before put, so eviction of just saved message cleans up index
+            messageIndex.add(copyPeer(copy.peerId()), copy.id());
+            old = putMessage(key, copy, returnOld);
 
             // TODO: extract all possible peers from message?
             savePeer(copy.peerId(), copy);
@@ -1102,7 +1499,9 @@ public class StoreLayoutImpl implements StoreLayout {
         } else if (message instanceof MessageService m) {
             MessageId key = MessageId.create(m);
             var copy = ImmutableMessageService.copyOf(m);
-            old = messages.asMap().put(key, copy);
+            // indexed before put, so eviction of just saved message cleans up index
+            messageIndex.add(copyPeer(copy.peerId()), copy.id());
+            old = putMessage(key, copy, returnOld);
 
             savePeer(copy.peerId(), copy);
             Peer p = copy.fromId();
@@ -1116,6 +1515,20 @@ public class StoreLayoutImpl implements StoreLayout {
         return old;
     }
 
+    @Nullable
+    private Message putMessage(MessageId key, Message message, boolean returnOld) {
+        if (returnOld) {
+            return messages.put(key, message);
+        }
+        // the previous message isn't decoded in the serialized mode
+        if (messages instanceof CacheMap<MessageId, Message, ?> c) {
+            c.set(key, message);
+        } else {
+            messages.put(key, message);
+        }
+        return null;
+    }
+
     protected static class ChannelInfo {
         protected final Chat min; // ImmutableChannel or ImmutableChannelForbidden
         @Nullable
@@ -1139,8 +1552,10 @@ public class StoreLayoutImpl implements StoreLayout {
             return new ChannelInfo(min, full, participants);
         }
 
+        // participants are replaced with modified copy, since the weight of cache entry
+        // is computed only when it's put
         protected ConcurrentMap<Peer, telegram4j.tl.ChannelParticipant> participants() {
-            return participants != null ? participants : new ConcurrentHashMap<>();
+            return participants != null ? new ConcurrentHashMap<>(participants) : new ConcurrentHashMap<>();
         }
 
         protected ChannelInfo withFull(UnaryOperator<ImmutableChannelFull> mapper) {
@@ -1195,8 +1610,10 @@ public class StoreLayoutImpl implements StoreLayout {
             return new ChatInfo(min, full, participants);
         }
 
+        // participants are replaced with modified copy, since the weight of cache entry
+        // is computed only when it's put
         protected ConcurrentMap<Long, ChatParticipant> participants() {
-            return participants != null ? participants : new ConcurrentHashMap<>();
+            return participants != null ? new ConcurrentHashMap<>(participants) : new ConcurrentHashMap<>();
         }
 
         public ChatInfo withData(Chat min, @Nullable ImmutableBaseChatFull full) {
@@ -1208,10 +1625,13 @@ public class StoreLayoutImpl implements StoreLayout {
     protected static class MessageId implements Comparable<MessageId> {
         protected final long chatId; // -1 for DM/Group Chats
         protected final int messageId;
+        // not a part of identity; used to find message in the index
+        @Nullable
+        protected final Peer peerId;
 
         protected static MessageId create(Peer peerId, int messageId) {
             long chatId = peerId instanceof PeerChannel c ? c.channelId() : -1;
-            return new MessageId(chatId, messageId);
+            return new MessageId(chatId, messageId, peerId);
         }
 
         protected static MessageId create(BaseMessage message) {
@@ -1227,8 +1647,13 @@ public class StoreLayoutImpl implements StoreLayout {
         }
 
         MessageId(long chatId, int messageId) {
+            this(chatId, messageId, null);
+        }
+
+        MessageId(long chatId, int messageId, @Nullable Peer peerId) {
             this.chatId = chatId;
             this.messageId = messageId;
+            this.peerId = peerId;
         }
 
         @Override
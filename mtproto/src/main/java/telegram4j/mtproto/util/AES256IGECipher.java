@@ -16,6 +16,7 @@
 package telegram4j.mtproto.util;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -28,7 +29,8 @@ import java.security.GeneralSecurityException;
 import static telegram4j.mtproto.util.CryptoUtil.random;
 import static telegram4j.mtproto.util.CryptoUtil.toByteArray;
 
-public final class AES256IGECipher {
+/** Default implementation of {@link IGECipher} which encrypts data block by block into new buffer. */
+public final class AES256IGECipher implements IGECipher {
     private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
 
     private static final String AES_ECB_ALGORITHM = "AES/ECB/NoPadding";
@@ -56,12 +58,21 @@ public final class AES256IGECipher {
         }
     }
 
+    @Override
     public void init(boolean encrypt, ByteBuf aesKey, ByteBuf aesIv) {
         iv = aesIv;
         SecretKey secretKey = new SecretKeySpec(toByteArray(aesKey), "AES");
         initCipher(baseCipher, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey);
     }
 
+    @Override
+    public void init(boolean encrypt, byte[] aesKey, byte[] aesIv) {
+        iv = Unpooled.copiedBuffer(aesIv);
+        SecretKey secretKey = new SecretKeySpec(aesKey, "AES");
+        initCipher(baseCipher, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey);
+    }
+
+    @Override
     public ByteBuf encrypt(ByteBuf data) {
         int size = data.readableBytes();
         int blockSize = baseCipher.getBlockSize();
@@ -100,6 +111,7 @@ public final class AES256IGECipher {
         return encrypted;
     }
 
+    @Override
     public ByteBuf decrypt(ByteBuf data) {
         int size = data.readableBytes();
         int blockSize = baseCipher.getBlockSize();
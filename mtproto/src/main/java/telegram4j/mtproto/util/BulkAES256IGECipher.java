@@ -0,0 +1,181 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import static telegram4j.mtproto.internal.Preconditions.requireArgument;
+import static telegram4j.mtproto.util.AES256IGECipher.initCipher;
+import static telegram4j.mtproto.util.AES256IGECipher.newCipher;
+import static telegram4j.mtproto.util.CryptoUtil.toByteArray;
+
+/**
+ * Implementation of {@link IGECipher} which transforms data in-place.
+ * Heap buffers are processed directly in their backing array;
+ * direct and composite buffers are processed by chunks through reusable scratch array.
+ *
+ * @implNote IGE chaining makes input of each block dependent on the result of the previous one,
+ * so the underlying ECB cipher is still invoked per block, but without any intermediate
+ * allocations and with the chaining values kept in the registers.
+ */
+public final class BulkAES256IGECipher implements IGECipher {
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final String AES_ECB_ALGORITHM = "AES/ECB/NoPadding";
+
+    static final int BLOCK_SIZE = 16;
+    // Must be divisible by BLOCK_SIZE
+    static final int CHUNK_SIZE = 4096;
+
+    final Cipher baseCipher;
+    final byte[] chunk = new byte[CHUNK_SIZE];
+
+    boolean encrypt;
+    // The previous block of ciphertext, initially is a first half of IV
+    long prevCipher0, prevCipher1;
+    // The previous block of plaintext, initially is a second half of IV
+    long prevPlain0, prevPlain1;
+
+    private BulkAES256IGECipher(Cipher baseCipher) {
+        this.baseCipher = baseCipher;
+    }
+
+    public static BulkAES256IGECipher create() {
+        return new BulkAES256IGECipher(newCipher(AES_ECB_ALGORITHM));
+    }
+
+    @Override
+    public void init(boolean encrypt, ByteBuf aesKey, ByteBuf aesIv) {
+        int ivIdx = aesIv.readerIndex();
+        prevCipher0 = aesIv.getLong(ivIdx);
+        prevCipher1 = aesIv.getLong(ivIdx + 8);
+        prevPlain0 = aesIv.getLong(ivIdx + 16);
+        prevPlain1 = aesIv.getLong(ivIdx + 24);
+        aesIv.release();
+
+        this.encrypt = encrypt;
+        SecretKey secretKey = new SecretKeySpec(toByteArray(aesKey), "AES");
+        initCipher(baseCipher, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey);
+    }
+
+    @Override
+    public void init(boolean encrypt, byte[] aesKey, byte[] aesIv) {
+        prevCipher0 = (long) LONG_VIEW.get(aesIv, 0);
+        prevCipher1 = (long) LONG_VIEW.get(aesIv, 8);
+        prevPlain0 = (long) LONG_VIEW.get(aesIv, 16);
+        prevPlain1 = (long) LONG_VIEW.get(aesIv, 24);
+
+        this.encrypt = encrypt;
+        // SecretKeySpec copies the key, so array can be safely reused
+        SecretKey secretKey = new SecretKeySpec(aesKey, "AES");
+        initCipher(baseCipher, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey);
+    }
+
+    @Override
+    public ByteBuf encrypt(ByteBuf data) {
+        requireArgument(encrypt, "Cipher is initialized for decryption");
+        transform(data);
+        return data;
+    }
+
+    @Override
+    public ByteBuf decrypt(ByteBuf data) {
+        requireArgument(!encrypt, "Cipher is initialized for encryption");
+        transform(data);
+        return data;
+    }
+
+    void transform(ByteBuf data) {
+        int size = data.readableBytes();
+        requireArgument(size % BLOCK_SIZE == 0, "Data size must be divisible by 16");
+
+        int readerIndex = data.readerIndex();
+        if (data.hasArray()) {
+            int offset = data.arrayOffset() + readerIndex;
+            transformBlocks(data.array(), offset, offset + size);
+            return;
+        }
+
+        for (int i = 0; i < size; i += CHUNK_SIZE) {
+            int len = Math.min(CHUNK_SIZE, size - i);
+            data.getBytes(readerIndex + i, chunk, 0, len);
+            transformBlocks(chunk, 0, len);
+            data.setBytes(readerIndex + i, chunk, 0, len);
+        }
+    }
+
+    void transformBlocks(byte[] buffer, int from, int to) {
+        long prevCipher0 = this.prevCipher0, prevCipher1 = this.prevCipher1;
+        long prevPlain0 = this.prevPlain0, prevPlain1 = this.prevPlain1;
+
+        if (encrypt) {
+            for (int off = from; off < to; off += BLOCK_SIZE) {
+                long plain0 = (long) LONG_VIEW.get(buffer, off);
+                long plain1 = (long) LONG_VIEW.get(buffer, off + 8);
+                LONG_VIEW.set(buffer, off, plain0 ^ prevCipher0);
+                LONG_VIEW.set(buffer, off + 8, plain1 ^ prevCipher1);
+
+                update(buffer, off);
+
+                prevCipher0 = (long) LONG_VIEW.get(buffer, off) ^ prevPlain0;
+                prevCipher1 = (long) LONG_VIEW.get(buffer, off + 8) ^ prevPlain1;
+                LONG_VIEW.set(buffer, off, prevCipher0);
+                LONG_VIEW.set(buffer, off + 8, prevCipher1);
+
+                prevPlain0 = plain0;
+                prevPlain1 = plain1;
+            }
+        } else {
+            for (int off = from; off < to; off += BLOCK_SIZE) {
+                long cipher0 = (long) LONG_VIEW.get(buffer, off);
+                long cipher1 = (long) LONG_VIEW.get(buffer, off + 8);
+                LONG_VIEW.set(buffer, off, cipher0 ^ prevPlain0);
+                LONG_VIEW.set(buffer, off + 8, cipher1 ^ prevPlain1);
+
+                update(buffer, off);
+
+                prevPlain0 = (long) LONG_VIEW.get(buffer, off) ^ prevCipher0;
+                prevPlain1 = (long) LONG_VIEW.get(buffer, off + 8) ^ prevCipher1;
+                LONG_VIEW.set(buffer, off, prevPlain0);
+                LONG_VIEW.set(buffer, off + 8, prevPlain1);
+
+                prevCipher0 = cipher0;
+                prevCipher1 = cipher1;
+            }
+        }
+
+        this.prevCipher0 = prevCipher0;
+        this.prevCipher1 = prevCipher1;
+        this.prevPlain0 = prevPlain0;
+        this.prevPlain1 = prevPlain1;
+    }
+
+    void update(byte[] buffer, int offset) {
+        try {
+            baseCipher.update(buffer, offset, BLOCK_SIZE, buffer, offset);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
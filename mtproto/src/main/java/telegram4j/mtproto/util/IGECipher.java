@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Interface for AES-256 ciphers in the IGE mode which are used for encrypting MTProto messages.
+ *
+ * @implSpec The implementations are not thread-safe and must be used from single thread.
+ */
+public sealed interface IGECipher permits AES256IGECipher, BulkAES256IGECipher {
+
+    /**
+     * Creates new uninitialized cipher of specified engine.
+     *
+     * @param engine The type of cipher implementation.
+     * @return A new uninitialized {@code IGECipher}.
+     */
+    static IGECipher create(Engine engine) {
+        return switch (engine) {
+            case DEFAULT -> AES256IGECipher.create();
+            case BULK -> BulkAES256IGECipher.create();
+        };
+    }
+
+    /**
+     * Initializes cipher with specified key and initialization vector.
+     * Both buffers will be released after this method or after encryption/decryption.
+     *
+     * @param encrypt {@code true} if cipher will be used for encryption.
+     * @param aesKey The 32-bytes AES key.
+     * @param aesIv The 32-bytes initialization vector.
+     */
+    void init(boolean encrypt, ByteBuf aesKey, ByteBuf aesIv);
+
+    /**
+     * Initializes cipher with specified key and initialization vector.
+     * Arrays are not retained by cipher and can be reused after this method.
+     *
+     * @param encrypt {@code true} if cipher will be used for encryption.
+     * @param aesKey The 32-bytes AES key.
+     * @param aesIv The 32-bytes initialization vector.
+     */
+    void init(boolean encrypt, byte[] aesKey, byte[] aesIv);
+
+    /**
+     * Encrypts specified buffer. Size of data must be divisible by 16.
+     * The ownership of data buffer is transferred to the cipher.
+     *
+     * @param data The buffer with plain data.
+     * @return A buffer with encrypted data, which may be the same as {@code data}.
+     */
+    ByteBuf encrypt(ByteBuf data);
+
+    /**
+     * Decrypts specified buffer. Size of data must be divisible by 16.
+     * The ownership of data buffer is transferred to the cipher.
+     *
+     * @param data The buffer with encrypted data.
+     * @return A buffer with plain data, which may be the same as {@code data}.
+     */
+    ByteBuf decrypt(ByteBuf data);
+
+    /** Types of {@link IGECipher} implementation. */
+    enum Engine {
+        /**
+         * Implementation which encrypts data block by block
+         * into newly allocated buffer.
+         *
+         * @see AES256IGECipher
+         */
+        DEFAULT,
+
+        /**
+         * Implementation which encrypts whole data in-place without
+         * intermediate allocations.
+         *
+         * @see BulkAES256IGECipher
+         */
+        BULK
+    }
+}
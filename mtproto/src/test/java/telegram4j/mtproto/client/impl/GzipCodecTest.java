@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import telegram4j.tl.DataJSON;
+import telegram4j.tl.ImmutableDataJSON;
+import telegram4j.tl.TlDeserializer;
+import telegram4j.tl.TlSerializer;
+import telegram4j.tl.api.TlObject;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipCodecTest {
+    static final ByteBufAllocator alloc = ByteBufAllocator.DEFAULT;
+    static final DataJSON json = ImmutableDataJSON.of("{\"key\":\"value\",\"values\":[1,2,3]},".repeat(200));
+
+    GzipCodec codec = new GzipCodec(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+    @AfterEach
+    void release() {
+        codec.release();
+    }
+
+    static ByteBuf serialize(TlObject obj) {
+        ByteBuf buf = Unpooled.buffer();
+        TlSerializer.serialize(buf, obj);
+        return buf;
+    }
+
+    static byte[] compressed(GzipCodec codec, TlObject obj) {
+        ByteBuf data = serialize(obj);
+        ByteBuf packed = codec.compress(alloc, data);
+        assertNotNull(packed);
+        assertTrue(packed.readableBytes() < data.readableBytes());
+        try {
+            return ByteBufUtil.getBytes(packed);
+        } finally {
+            packed.release();
+        }
+    }
+
+    <T> T decompress(byte[] packed) throws IOException {
+        return codec.decompress(alloc, Unpooled.wrappedBuffer(packed));
+    }
+
+    @Test
+    void roundTripsWithAllLevelsAndStrategies() throws IOException {
+        int[] levels = {Deflater.DEFAULT_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION};
+        int[] strategies = {Deflater.DEFAULT_STRATEGY, Deflater.FILTERED, Deflater.HUFFMAN_ONLY};
+        for (int level : levels) {
+            for (int strategy : strategies) {
+                var codec = new GzipCodec(level, strategy);
+                try {
+                    DataJSON result = decompress(compressed(codec, json));
+                    assertEquals(json, result, () -> "level: " + level + ", strategy: " + strategy);
+                } finally {
+                    codec.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    void appliesLevelAndStrategy() {
+        var fast = new GzipCodec(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+        var best = new GzipCodec(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+        var huffman = new GzipCodec(Deflater.BEST_COMPRESSION, Deflater.HUFFMAN_ONLY);
+        try {
+            int fastSize = compressed(fast, json).length;
+            int bestSize = compressed(best, json).length;
+            int huffmanSize = compressed(huffman, json).length;
+
+            assertTrue(bestSize <= fastSize);
+            // Huffman-only coding can't use repetitions of the data
+            assertTrue(huffmanSize > bestSize);
+        } finally {
+            fast.release();
+            best.release();
+            huffman.release();
+        }
+    }
+
+    @Test
+    void skipsIncompressibleData() {
+        byte[] bytes = new byte[4096];
+        new Random(0x1337).nextBytes(bytes);
+        ByteBuf random = serialize(ImmutableBaseFile.of(FileType.PARTIAL, 0, Unpooled.wrappedBuffer(bytes)));
+        assertNull(codec.compress(alloc, random));
+        // data is not consumed
+        assertEquals(0, random.readerIndex());
+
+        assertNull(codec.compress(alloc, Unpooled.wrappedBuffer(new byte[GzipCodec.HEADER_SIZE + GzipCodec.TRAILER_SIZE])));
+    }
+
+    @Test
+    void interoperatesWithJdkGzip() throws IOException {
+        byte[] packed = compressed(codec, json);
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(packed))) {
+            assertEquals(json, TlDeserializer.deserialize(Unpooled.wrappedBuffer(in.readAllBytes())));
+        }
+
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(ByteBufUtil.getBytes(serialize(json)));
+        }
+        assertEquals(json, decompress(out.toByteArray()));
+    }
+
+    @Test
+    void rejectsTruncatedData() {
+        byte[] packed = compressed(codec, json);
+
+        assertThrows(IOException.class, () -> decompress(new byte[GzipCodec.HEADER_SIZE]));
+        // without trailer
+        assertThrows(IOException.class, () -> decompress(Arrays.copyOf(packed, packed.length - GzipCodec.TRAILER_SIZE)));
+        // without end of deflate stream, but with trailer
+        byte[] cut = new byte[packed.length - 16];
+        System.arraycopy(packed, 0, cut, 0, packed.length - 24);
+        System.arraycopy(packed, packed.length - 8, cut, cut.length - 8, 8);
+        assertThrows(IOException.class, () -> decompress(cut));
+    }
+
+    @Test
+    void rejectsMalformedData() throws IOException {
+        byte[] packed = compressed(codec, json);
+
+        byte[] magic = packed.clone();
+        magic[0] = 0;
+        assertThrows(IOException.class, () -> decompress(magic));
+
+        byte[] crc = packed.clone();
+        crc[packed.length - GzipCodec.TRAILER_SIZE] ^= 1;
+        assertThrows(IOException.class, () -> decompress(crc));
+
+        byte[] isize = packed.clone();
+        isize[packed.length - 4] ^= 1;
+        assertThrows(IOException.class, () -> decompress(isize));
+
+        byte[] deflated = packed.clone();
+        deflated[GzipCodec.HEADER_SIZE] = (byte) 0xff; // reserved block type
+        assertThrows(IOException.class, () -> decompress(deflated));
+
+        // codec is still usable after errors
+        assertEquals(json, decompress(packed));
+    }
+}
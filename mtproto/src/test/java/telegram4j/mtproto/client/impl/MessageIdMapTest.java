@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdMapTest {
+
+    final Random random = new Random(0x1337);
+
+    @Test
+    void matchesReferenceMap() {
+        var map = new MessageIdMap<String>(4);
+        var reference = new TreeMap<Long, String>();
+
+        long base = System.currentTimeMillis() / 1000 << 32;
+        for (int i = 0; i < 100_000; i++) {
+            // mostly message-id-like keys with collisions, sometimes arbitrary ones
+            long key = random.nextInt(4) == 0 ? random.nextLong() : base + random.nextInt(4096) * 4L;
+            String value = "v" + i;
+
+            int op = random.nextInt(10);
+            if (op < 5) {
+                assertEquals(reference.put(key, value), map.put(key, value));
+            } else if (op < 8) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                assertEquals(reference.get(key), map.get(key));
+            }
+            assertEquals(reference.size(), map.size());
+
+            if (i % 1000 == 0) {
+                assertOrder(reference, map);
+            }
+        }
+
+        assertOrder(reference, map);
+        for (long key : new ArrayList<>(reference.keySet())) {
+            assertEquals(reference.get(key), map.remove(key));
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.first());
+    }
+
+    @Test
+    void outOfOrderInsertion() {
+        var map = new MessageIdMap<String>();
+        map.put(8, "b");
+        map.put(4, "a");
+        map.put(16, "d");
+        map.put(12, "c");
+
+        assertEquals("{0x4: a, 0x8: b, 0xc: c, 0x10: d}", map.toString());
+    }
+
+    static void assertOrder(TreeMap<Long, String> expected, MessageIdMap<String> actual) {
+        var it = expected.entrySet().iterator();
+        for (int s = actual.first(); s != -1; s = actual.next(s)) {
+            assertTrue(it.hasNext());
+            Map.Entry<Long, String> e = it.next();
+            assertEquals(e.getKey(), actual.keyAt(s));
+            assertEquals(e.getValue(), actual.valueAt(s));
+        }
+        assertFalse(it.hasNext());
+    }
+}
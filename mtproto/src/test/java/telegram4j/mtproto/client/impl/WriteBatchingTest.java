@@ -0,0 +1,160 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.client.impl;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.util.concurrent.Queues;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.DcOptions;
+import telegram4j.mtproto.PublicRsaKeyRegister;
+import telegram4j.mtproto.auth.DhPrimeCheckerCache;
+import telegram4j.mtproto.client.DefaultReconnectionStrategy;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.mtproto.client.MTProtoOptions;
+import telegram4j.mtproto.resource.TcpClientResources;
+import telegram4j.mtproto.store.StoreLayoutImpl;
+import telegram4j.mtproto.transport.IntermediateTransport;
+import telegram4j.mtproto.util.IGECipher;
+import telegram4j.tl.TlInfo;
+import telegram4j.tl.request.ImmutableInitConnection;
+import telegram4j.tl.request.ImmutableInvokeWithLayer;
+import telegram4j.tl.request.help.GetConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBatchingTest {
+    // size of serialized GetConfig
+    static final int QUERY_SIZE = 4;
+
+    final EmbeddedChannel channel = new EmbeddedChannel();
+
+    @AfterEach
+    void close() {
+        channel.finishAndReleaseAll();
+    }
+
+    MTProtoClientImpl connectedClient(MTProtoClient.WriteBatching writeBatching) {
+        var dc = DcOptions.createDefault(false)
+                .find(DcId.Type.MAIN, 2)
+                .orElseThrow();
+
+        var mtprotoOptions = new MTProtoOptions(
+                TcpClientResources.create(true),
+                PublicRsaKeyRegister.createDefault(),
+                DhPrimeCheckerCache.instance(),
+                new StoreLayoutImpl(Function.identity()),
+                ForkJoinPool.commonPool(), false
+        );
+
+        var clientOptions = new MTProtoClient.Options(
+                d -> new IntermediateTransport(true),
+                ImmutableInvokeWithLayer.of(TlInfo.LAYER, ImmutableInitConnection.of(1337,
+                        "N/A", "N/A", "N/A", "N/A", "N/A", "N/A", GetConfig.instance())),
+                Duration.ofSeconds(10), DefaultReconnectionStrategy.create(3, 5, Duration.ofSeconds(1)),
+                16 * 1024, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, List.of(),
+                Duration.ofDays(1), IGECipher.Engine.BULK, writeBatching
+        );
+
+        var client = new MTProtoClientImpl(null, DcId.Type.MAIN, dc, mtprotoOptions, clientOptions);
+        client.channelState = new MTProtoClientImpl.ChannelState(channel, MTProtoClientImpl.ChannelState.CONNECTED);
+        return client;
+    }
+
+    static void send(MTProtoClientImpl client, int count) {
+        for (int i = 0; i < count; i++) {
+            client.send(GetConfig.instance()).subscribe();
+        }
+    }
+
+    @Test
+    void flushesOnSizeBudget() {
+        var client = connectedClient(MTProtoClient.WriteBatching.of(Duration.ofHours(1), 3 * QUERY_SIZE));
+
+        send(client, 2);
+        channel.runPendingTasks();
+        assertEquals(0, channel.outboundMessages().size());
+
+        send(client, 1);
+        channel.runPendingTasks();
+        assertEquals(3, channel.outboundMessages().size());
+        assertTrue(channel.outboundMessages().stream().allMatch(o -> o instanceof MTProtoClientImpl.RpcQuery));
+        assertEquals(1, client.stats.batchesCount());
+        assertEquals(3, client.stats.batchedQueriesCount());
+        assertEquals(3, client.stats.maxBatchSize());
+    }
+
+    @Test
+    void flushesAfterDelay() throws InterruptedException {
+        var client = connectedClient(MTProtoClient.WriteBatching.of(Duration.ofMillis(50), 1024));
+
+        send(client, 2);
+        channel.runPendingTasks();
+        assertEquals(0, channel.outboundMessages().size());
+
+        Thread.sleep(100);
+        channel.runScheduledPendingTasks();
+        assertEquals(2, channel.outboundMessages().size());
+        assertEquals(1, client.stats.batchesCount());
+        assertTrue(client.pendingRequests.isEmpty());
+    }
+
+    @Test
+    void flushesAtNextIterationWithZeroDelay() {
+        var client = connectedClient(MTProtoClient.WriteBatching.of(Duration.ZERO, 1024));
+
+        send(client, 3);
+        assertEquals(0, channel.outboundMessages().size());
+        channel.runPendingTasks();
+        assertEquals(3, channel.outboundMessages().size());
+        assertEquals(1, client.stats.batchesCount());
+    }
+
+    @Test
+    void writesDirectlyWhenQueueIsFull() {
+        var client = connectedClient(MTProtoClient.WriteBatching.of(Duration.ofHours(1), Integer.MAX_VALUE));
+
+        send(client, Queues.SMALL_BUFFER_SIZE + 1);
+        // the last query doesn't fit in the queue
+        assertEquals(1, channel.outboundMessages().size());
+        assertEquals(Queues.SMALL_BUFFER_SIZE, client.pendingRequests.size());
+
+        client.flushPendingRequests(channel);
+        assertEquals(Queues.SMALL_BUFFER_SIZE + 1, channel.outboundMessages().size());
+        assertEquals(1, client.stats.batchesCount());
+        assertEquals(Queues.SMALL_BUFFER_SIZE, client.stats.maxBatchSize());
+    }
+
+    @Test
+    void keepsQueriesOfDisconnectedClient() {
+        var client = connectedClient(MTProtoClient.WriteBatching.of(Duration.ofHours(1), 1024));
+        client.channelState = MTProtoClientImpl.ChannelState.disconnected(null);
+
+        send(client, 2);
+        assertEquals(2, client.pendingRequests.size());
+        // queries are sent after reconnection and aren't counted as batch
+        client.flushPendingRequests(channel);
+        assertEquals(0, channel.outboundMessages().size());
+        assertEquals(0, client.stats.batchesCount());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import telegram4j.mtproto.DataCenter;
+import telegram4j.mtproto.DcId;
+import telegram4j.mtproto.client.MTProtoClient;
+import telegram4j.tl.InputDocumentFileLocation;
+import telegram4j.tl.api.TlMethod;
+import telegram4j.tl.request.upload.GetFile;
+import telegram4j.tl.request.upload.ImmutableGetFile;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadFluxTest {
+    static final int LIMIT = 1024;
+
+    static ImmutableGetFile request() {
+        return ImmutableGetFile.of(0, InputDocumentFileLocation.builder()
+                .id(1)
+                .accessHash(1)
+                .fileReference(Unpooled.EMPTY_BUFFER)
+                .thumbSize("")
+                .build(), 0, LIMIT);
+    }
+
+    @Test
+    void unorderedSkipsCompletedParts() {
+        var client = new FileClient(10 * LIMIT);
+        var completed = new BitSet();
+        completed.set(1);
+        completed.set(4, 7);
+
+        var parts = new DownloadFlux(List.of(client, client), request(), 10, false, completed)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(parts);
+        var indexes = parts.stream().map(DownloadFlux.Part::index).collect(Collectors.toSet());
+        assertEquals(Set.of(0, 2, 3, 7, 8, 9), indexes);
+        assertEquals(indexes, client.requestedParts());
+        for (var part : parts) {
+            assertEquals((long) part.index() * LIMIT, part.offset());
+            assertEquals(part.index(), part.file().bytes().getByte(0));
+        }
+    }
+
+    @Test
+    void unorderedStopsAtShortPart() {
+        var client = new FileClient(3 * LIMIT + 10);
+
+        var parts = new DownloadFlux(List.of(client), request(), -1, false, null)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(parts);
+        var indexes = parts.stream().map(DownloadFlux.Part::index).sorted().collect(Collectors.toList());
+        assertEquals(List.of(0, 1, 2, 3), indexes);
+        assertEquals(10, parts.stream()
+                .filter(p -> p.index() == 3)
+                .findFirst()
+                .orElseThrow()
+                .file().bytes().readableBytes());
+    }
+
+    @Test
+    void orderedEmitsPartsByOffsets() {
+        var client = new FileClient(5 * LIMIT);
+
+        var parts = new DownloadFlux(List.of(client, client), request(), 5, true, null)
+                .map(DownloadFlux.Part::index)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(0, 1, 2, 3, 4), parts);
+    }
+
+    // Responds with parts of file in the reversed order of requests
+    static class FileClient implements MTProtoClient {
+        final long fileSize;
+        final Set<Integer> requested = ConcurrentHashMap.newKeySet();
+
+        FileClient(long fileSize) {
+            this.fileSize = fileSize;
+        }
+
+        Set<Integer> requestedParts() {
+            return requested;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> Mono<R> send(TlMethod<? extends R> method) {
+            var request = (GetFile) method;
+            int part = Math.toIntExact(request.offset() / request.limit());
+            requested.add(part);
+
+            int size = (int) Math.max(0, Math.min(request.limit(), fileSize - request.offset()));
+            byte[] bytes = new byte[size];
+            if (size != 0) {
+                bytes[0] = (byte) part;
+            }
+            var file = ImmutableBaseFile.of(FileType.PARTIAL, 0, Unpooled.wrappedBuffer(bytes));
+            // later parts are received earlier
+            return (Mono<R>) Mono.just(file).delayElement(Duration.ofMillis(Math.max(1, 20 - part * 2L)));
+        }
+
+        @Override
+        public Mono<Void> connect() {
+            return Mono.empty();
+        }
+
+        @Override
+        public DataCenter dc() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DcId.Type type() {
+            return DcId.Type.DOWNLOAD;
+        }
+
+        @Override
+        public Stats stats() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> onClose() {
+            return Mono.never();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.service;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.mtproto.util.CryptoUtil;
+import telegram4j.tl.ImmutableFileHash;
+import telegram4j.tl.storage.FileType;
+import telegram4j.tl.upload.ImmutableBaseFile;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDownloadSinkTest {
+    static final int PART_SIZE = 4;
+    static final byte[] DATA = "0123456789ab".getBytes();
+
+    @TempDir
+    Path dir;
+
+    static DownloadFlux.Part part(int index) {
+        int from = index * PART_SIZE;
+        byte[] bytes = Arrays.copyOfRange(DATA, from, Math.min(DATA.length, from + PART_SIZE));
+        return new DownloadFlux.Part(index, from, ImmutableBaseFile.of(FileType.PARTIAL, 0, Unpooled.wrappedBuffer(bytes)));
+    }
+
+    static byte[] sha256(int from, int to) {
+        var digest = CryptoUtil.createDigest("SHA-256");
+        digest.update(DATA, from, to - from);
+        return digest.digest();
+    }
+
+    @Test
+    void resumeFromSavedParts() throws IOException {
+        Path file = dir.resolve("file");
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            sink.write(part(0));
+            sink.write(part(2));
+        }
+        assertTrue(Files.exists(FileDownloadSink.progressPath(file)));
+
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            assertTrue(sink.completed.get(0));
+            assertFalse(sink.completed.get(1));
+            assertTrue(sink.completed.get(2));
+            assertEquals(DATA.length, sink.writtenSize);
+
+            sink.write(part(1));
+            sink.finish();
+        }
+
+        assertArrayEquals(DATA, Files.readAllBytes(file));
+        assertFalse(Files.exists(FileDownloadSink.progressPath(file)));
+    }
+
+    @Test
+    void ignoreProgressOfOtherFile() throws IOException {
+        Path file = dir.resolve("file");
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            sink.write(part(0));
+        }
+
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length + 1)) {
+            assertTrue(sink.completed.isEmpty());
+            assertEquals(0, Files.size(file));
+        }
+    }
+
+    @Test
+    void ignoreProgressOfTruncatedFile() throws IOException {
+        Path file = dir.resolve("file");
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            sink.write(part(0));
+            sink.write(part(1));
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(PART_SIZE);
+        }
+
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            assertTrue(sink.completed.isEmpty());
+            assertEquals(0, sink.writtenSize);
+        }
+    }
+
+    @Test
+    void ignoreProgressOfDeletedFile() throws IOException {
+        Path file = dir.resolve("file");
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            sink.write(part(0));
+        }
+        Files.delete(file);
+
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            assertTrue(sink.completed.isEmpty());
+        }
+    }
+
+    @Test
+    void verifyMarksCorruptedParts() throws IOException {
+        Path file = dir.resolve("file");
+        try (var sink = FileDownloadSink.open(file, PART_SIZE, DATA.length)) {
+            for (int i = 0; i < 3; i++) {
+                sink.write(part(i));
+            }
+
+            var valid = ImmutableFileHash.of(0, 8, Unpooled.wrappedBuffer(sha256(0, 8)));
+            var hashes = List.of(valid, ImmutableFileHash.of(8, 8, Unpooled.wrappedBuffer(sha256(8, 12))));
+            assertEquals(-1, sink.verify(hashes));
+            // hashes are owned by caller
+            assertEquals(1, valid.hash().refCnt());
+
+            var corrupted = List.of(valid, ImmutableFileHash.of(8, 8, Unpooled.wrappedBuffer(sha256(0, 4))));
+            assertEquals(8, sink.verify(corrupted));
+            assertTrue(sink.completed.get(0));
+            assertTrue(sink.completed.get(1));
+            assertFalse(sink.completed.get(2));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileStoreLayoutTest {
+
+    @TempDir
+    Path dir;
+
+    static FileStoreLayout create(Path dataFile, Duration saveInterval) {
+        return new FileStoreLayout(new StoreLayoutImpl(Function.identity()), dataFile,
+                Executors.newSingleThreadExecutor(), saveInterval);
+    }
+
+    @Test
+    void rejectNonPositiveSaveInterval() {
+        Path file = dir.resolve("t4j.bin");
+        assertThrows(IllegalArgumentException.class, () -> create(file, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> create(file, Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void exposeLastSaveError() throws IOException {
+        // parent directory doesn't exist, so the temporary file can't be created
+        var failing = create(dir.resolve("missing").resolve("t4j.bin"), Duration.ofSeconds(1));
+        try {
+            var e = assertThrows(IOException.class, failing::save);
+            var stats = failing.getSaveStats();
+            assertEquals(1, stats.failuresCount());
+            assertSame(e, stats.lastError());
+        } finally {
+            failing.persistExecutor.shutdown();
+        }
+
+        var layout = create(dir.resolve("t4j.bin"), Duration.ofSeconds(1));
+        try {
+            layout.save();
+            var stats = layout.getSaveStats();
+            assertEquals(1, stats.savesCount());
+            assertNull(stats.lastError());
+        } finally {
+            layout.persistExecutor.shutdown();
+        }
+    }
+}
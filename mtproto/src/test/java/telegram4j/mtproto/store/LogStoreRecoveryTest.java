@@ -0,0 +1,312 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telegram4j.tl.BaseMessage;
+import telegram4j.tl.ImmutableInputMessageID;
+import telegram4j.tl.ImmutablePeerUser;
+import telegram4j.tl.messages.BaseMessages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStoreRecoveryTest {
+    static final int USER = 1;
+    static final int MESSAGE = 2;
+    static final long SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    static byte[] value(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Path indexFile(Path dir) {
+        return dir.resolve(LogStore.INDEX_FILE);
+    }
+
+    static Path lastSegment(LogStore store) {
+        return store.segments().get(store.active.id).path;
+    }
+
+    @Test
+    void reopenAfterClose() throws IOException {
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            store.put(USER, 1, 0, value("a"));
+            store.put(MESSAGE, -1, 10, value("m10"));
+            store.put(USER, 1, 0, value("b"));
+            assertTrue(store.remove(MESSAGE, -1, 10));
+            assertFalse(store.remove(MESSAGE, -1, 11));
+        }
+
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("b"), store.get(USER, 1, 0));
+            assertNull(store.get(MESSAGE, -1, 10));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void recoverUnflushedWrites() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        store.put(USER, 1, 0, value("flushed"));
+        store.flush();
+        // written to the log, but checkpoint isn't moved
+        store.put(USER, 2, 0, value("unflushed"));
+        store.remove(USER, 1, 0);
+        // simulate crash: files are left as is
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertNull(reopened.get(USER, 1, 0));
+            assertArrayEquals(value("unflushed"), reopened.get(USER, 2, 0));
+        } finally {
+            store.closeFiles();
+        }
+    }
+
+    @Test
+    void truncateTornRecord() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        store.put(USER, 1, 0, value("complete"));
+        store.put(USER, 2, 0, value("torn"));
+        Path segment = lastSegment(store);
+        long end = store.active.size;
+        store.closeFiles();
+
+        // cut the last record in the middle
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(end - 3);
+        }
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("complete"), reopened.get(USER, 1, 0));
+            assertNull(reopened.get(USER, 2, 0));
+            assertEquals(1, reopened.size());
+
+            // log is writable after truncation
+            reopened.put(USER, 3, 0, value("after"));
+        }
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("after"), reopened.get(USER, 3, 0));
+        }
+    }
+
+    @Test
+    void ignoreCorruptedTail() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        store.put(USER, 1, 0, value("a"));
+        store.flush();
+        store.put(USER, 1, 0, value("b"));
+        Path segment = lastSegment(store);
+        long end = store.active.size;
+        store.closeFiles();
+
+        // flip byte of the last record's value, so its checksum doesn't match
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buf = ByteBuffer.allocate(1);
+            channel.read(buf, end - 1);
+            buf.put(0, (byte) (buf.get(0) ^ 0xff));
+            channel.write(buf.clear(), end - 1);
+        }
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("a"), reopened.get(USER, 1, 0));
+        }
+    }
+
+    @Test
+    void rebuildMissingIndex() throws IOException {
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 500; i++) {
+                store.put(MESSAGE, 42, i, value("message " + i));
+            }
+            for (int i = 0; i < 500; i += 2) {
+                store.remove(MESSAGE, 42, i);
+            }
+        }
+
+        Files.delete(indexFile(dir));
+
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertEquals(250, store.size());
+            for (int i = 0; i < 500; i++) {
+                byte[] expected = i % 2 == 0 ? null : value("message " + i);
+                assertArrayEquals(expected, store.get(MESSAGE, 42, i));
+            }
+        }
+    }
+
+    @Test
+    void rebuildCorruptedIndex() throws IOException {
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            store.put(USER, 7, 0, value("seven"));
+        }
+
+        Files.write(indexFile(dir), new byte[]{1, 2, 3, 4});
+
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("seven"), store.get(USER, 7, 0));
+        }
+    }
+
+    @Test
+    void rebuildIndexAheadOfLog() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        store.put(USER, 1, 0, value("durable"));
+        store.flush();
+        store.put(USER, 1, 0, value("lost"));
+        Path segment = lastSegment(store);
+        long checkpoint = store.index.checkpoint();
+        store.closeFiles();
+
+        // index was written back by OS, but the tail of log was lost
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(LogStore.offset(checkpoint));
+        }
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("durable"), reopened.get(USER, 1, 0));
+        }
+    }
+
+    @Test
+    void removeEmptySegmentWithoutHeader() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        store.put(USER, 1, 0, value("a"));
+        int nextId = store.active.id + 1;
+        store.close();
+
+        // crash right after creation of the new segment
+        Files.createFile(dir.resolve(String.format("%010d%s", nextId, LogStore.SEGMENT_SUFFIX)));
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(value("a"), reopened.get(USER, 1, 0));
+            reopened.put(USER, 2, 0, value("b"));
+            assertArrayEquals(value("b"), reopened.get(USER, 2, 0));
+        }
+    }
+
+    @Test
+    void compactionKeepsLatestValues() throws IOException {
+        var random = new Random(0x1337);
+        var expected = new HashMap<Long, String>();
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 5000; i++) {
+                long key = random.nextInt(100);
+                if (random.nextInt(4) == 0) {
+                    expected.remove(key);
+                    store.remove(USER, key, 0);
+                } else {
+                    String v = "value " + i;
+                    expected.put(key, v);
+                    store.put(USER, key, 0, value(v));
+                }
+            }
+
+            int segmentsBefore = store.segments().size();
+            assertTrue(store.compact(0.5) > 0);
+            assertTrue(store.segments().size() < segmentsBefore);
+            assertContent(expected, store);
+        }
+
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertContent(expected, store);
+        }
+
+        // full replay must observe the same state, including tombstones in compacted segments
+        Files.delete(indexFile(dir));
+        try (var store = LogStore.open(dir, SEGMENT_SIZE)) {
+            assertContent(expected, store);
+        }
+    }
+
+    @Test
+    void crashDuringCompaction() throws IOException {
+        var store = LogStore.open(dir, SEGMENT_SIZE);
+        for (int i = 0; i < 200; i++) {
+            store.put(USER, i % 10, 0, value("value " + i));
+        }
+        store.flush();
+
+        // copies of live records are appended, but old segments are still present
+        LogStore.Segment oldest = store.segments().values().iterator().next();
+        long pos = LogStore.SEGMENT_HEADER_SIZE;
+        LogStore.Record r;
+        while ((r = store.readRecord(oldest, pos)) != null) {
+            pos += r.size();
+            int slot = store.index.find(r.kind(), r.key1(), r.key2());
+            if (slot != -1 && store.index.location(slot) == r.location()) {
+                store.put(r.kind(), r.key1(), r.key2(), r.value());
+            }
+        }
+        store.closeFiles();
+
+        try (var reopened = LogStore.open(dir, SEGMENT_SIZE)) {
+            for (int i = 190; i < 200; i++) {
+                assertArrayEquals(value("value " + i), reopened.get(USER, i % 10, 0));
+            }
+        }
+    }
+
+    @Test
+    void partialMessagesOfDelegateAreKeptWhenLogHasNone() {
+        var delegate = new StoreLayoutImpl(Function.identity());
+        var layout = new LogStoreLayout(delegate, dir);
+        layout.initialize().block();
+        try {
+            // saved only to the delegate, so the log has none of the requested messages
+            delegate.onNewMessage(BaseMessage.builder()
+                    .id(1)
+                    .peerId(ImmutablePeerUser.of(2))
+                    .date(1)
+                    .message("message")
+                    .build()).block();
+
+            var messages = layout.getMessages(List.of(ImmutableInputMessageID.of(1),
+                    ImmutableInputMessageID.of(2))).block();
+            assertInstanceOf(BaseMessages.class, messages);
+            var list = ((BaseMessages) messages).messages();
+            assertEquals(1, list.size());
+            assertEquals(1, ((BaseMessage) list.get(0)).id());
+        } finally {
+            layout.close().block();
+        }
+    }
+
+    static void assertContent(Map<Long, String> expected, LogStore store) throws IOException {
+        assertEquals(expected.size(), store.size());
+        for (long key = 0; key < 100; key++) {
+            String v = expected.get(key);
+            assertArrayEquals(v != null ? value(v) : null, store.get(USER, key, 0));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import org.junit.jupiter.api.Test;
+import telegram4j.tl.ImmutablePeerChannel;
+import telegram4j.tl.ImmutablePeerUser;
+import telegram4j.tl.Peer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIndexTest {
+    static final Peer CHAT = ImmutablePeerChannel.of(1);
+
+    @Test
+    void keepsIdsSortedAndUnique() {
+        var ids = new MessageIndex.Ids();
+        for (int id : new int[]{5, 1, 9, 3, 7, 3, 10, 2}) {
+            ids.add(id);
+        }
+
+        assertEquals(7, ids.size);
+        assertArrayEquals(new int[]{10, 9, 7, 5, 3, 2, 1}, ids.range(0, 0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void rangeBoundsAreExclusive() {
+        var ids = new MessageIndex.Ids();
+        for (int id = 1; id <= 10; id++) {
+            ids.add(id * 2);
+        }
+
+        assertEquals(2, ids.lowerBound(6));
+        assertEquals(2, ids.lowerBound(5));
+        assertEquals(3, ids.upperBound(6));
+        assertEquals(3, ids.upperBound(7));
+        assertEquals(0, ids.lowerBound(1));
+        assertEquals(10, ids.upperBound(21));
+
+        assertArrayEquals(new int[]{10, 8}, ids.range(6, 12, 10));
+        assertArrayEquals(new int[]{10, 8, 6}, ids.range(5, 11, 10));
+        assertArrayEquals(new int[]{20, 18}, ids.range(0, 0, 2));
+        assertArrayEquals(new int[]{4, 2}, ids.range(0, 6, 10));
+        assertArrayEquals(new int[0], ids.range(6, 8, 10));
+        assertArrayEquals(new int[0], ids.range(30, 40, 10));
+    }
+
+    @Test
+    void shrinksAfterRemovals() {
+        var ids = new MessageIndex.Ids();
+        for (int id = 1; id <= 64; id++) {
+            ids.add(id);
+        }
+        assertEquals(64, ids.ids.length);
+
+        for (int id = 64; id > 4; id--) {
+            assertTrue(ids.remove(id));
+        }
+        assertFalse(ids.remove(64));
+
+        assertEquals(4, ids.size);
+        assertEquals(16, ids.ids.length);
+        assertArrayEquals(new int[]{4, 3, 2, 1}, ids.range(0, 0, 10));
+    }
+
+    @Test
+    void removesEmptyChats() {
+        var index = new MessageIndex();
+        var user = ImmutablePeerUser.of(2);
+        index.add(CHAT, 1);
+        index.add(user, 2);
+
+        index.remove(CHAT, 1);
+        assertFalse(index.chats.containsKey(CHAT));
+        assertArrayEquals(new int[0], index.range(CHAT, 0, 0, 10));
+        assertArrayEquals(new int[]{2}, index.range(user, 0, 0, 10));
+    }
+
+    @Test
+    void completenessRequiresSequentialIds() {
+        // newest messages are unknown
+        assertFalse(MessageIndex.isComplete(new int[]{10, 9}, 0, 0, 2));
+        // 10 may exist
+        assertFalse(MessageIndex.isComplete(new int[]{9, 8}, 0, 11, 2));
+        // 8 may exist
+        assertFalse(MessageIndex.isComplete(new int[]{10, 9, 7}, 0, 11, 3));
+        // 7 may exist
+        assertFalse(MessageIndex.isComplete(new int[]{10, 9, 8}, 6, 11, 4));
+        assertFalse(MessageIndex.isComplete(new int[0], 6, 11, 4));
+
+        assertTrue(MessageIndex.isComplete(new int[]{10, 9}, 0, 11, 2));
+        assertTrue(MessageIndex.isComplete(new int[]{10, 9, 8, 7}, 6, 11, 10));
+        assertTrue(MessageIndex.isComplete(new int[]{3, 2, 1}, 0, 4, 10));
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.store;
+
+import org.junit.jupiter.api.Test;
+import telegram4j.tl.BaseChannelParticipant;
+import telegram4j.tl.BaseMessage;
+import telegram4j.tl.BaseUser;
+import telegram4j.tl.Channel;
+import telegram4j.tl.ChatPhotoEmpty;
+import telegram4j.tl.ImmutablePeerChannel;
+import telegram4j.tl.ImmutablePeerUser;
+import telegram4j.tl.InputPeerSelf;
+import telegram4j.tl.channels.BaseChannelParticipants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreLayoutImplTest {
+    static final BaseUser self = BaseUser.builder()
+            .id(1)
+            .self(true)
+            .accessHash(1L)
+            .username("self_user")
+            .build();
+
+    static BaseUser user(long id, String username) {
+        return BaseUser.builder()
+                .id(id)
+                .accessHash(id)
+                .username(username)
+                .build();
+    }
+
+    // zero weight bound evicts everything except the current user
+    static List<StoreLayoutImpl> evictingStores() {
+        var options = EntityCacheOptions.bounded(0, EntityCacheOptions.UNBOUNDED);
+        return List.of(new StoreLayoutImpl(Function.identity(), options),
+                new StoreLayoutImpl(Function.identity(), options.asSerialized()));
+    }
+
+    @Test
+    void userEvictionRemovesPeerAndUsername() {
+        for (var store : evictingStores()) {
+            var peer = ImmutablePeerUser.of(2);
+            store.onContacts(List.of(), List.of(self, user(2, "other"))).block();
+            store.usersCache.cleanUp();
+
+            assertFalse(store.users.containsKey(2L));
+            assertFalse(store.peers.containsKey(peer));
+            assertFalse(store.usernames.containsKey("other"));
+            assertNull(store.resolvePeer("other").block());
+            assertNull(store.resolvePeer(peer).block());
+        }
+    }
+
+    @Test
+    void selfUserIsNeverEvicted() {
+        for (var store : evictingStores()) {
+            var peer = ImmutablePeerUser.of(self.id());
+            store.onContacts(List.of(), List.of(self, user(2, "other"), user(3, "another"))).block();
+            store.usersCache.cleanUp();
+
+            assertTrue(store.users.containsKey(self.id()));
+            assertEquals(InputPeerSelf.instance(), store.resolvePeer(peer).block());
+            for (String username : List.of("me", "self", "self_user")) {
+                var resolved = store.resolvePeer(username).block();
+                assertNotNull(resolved, username);
+                assertEquals(peer, resolved.peer());
+            }
+            assertEquals(self.id(), store.getSelfId().block());
+        }
+    }
+
+    @Test
+    void channelEvictionRemovesPeerAndUsername() {
+        var channel = Channel.builder()
+                .id(10)
+                .accessHash(10L)
+                .title("channel")
+                .username("channel_name")
+                .photo(ChatPhotoEmpty.instance())
+                .date(0)
+                .build();
+
+        for (var store : evictingStores()) {
+            var peer = ImmutablePeerChannel.of(channel.id());
+            store.onContacts(List.of(channel), List.of()).block();
+            store.channelsCache.cleanUp();
+
+            assertFalse(store.channels.containsKey(channel.id()));
+            assertFalse(store.peers.containsKey(peer));
+            assertFalse(store.usernames.containsKey("channel_name"));
+            assertNull(store.resolvePeer("channel_name").block());
+        }
+    }
+
+    @Test
+    void renameRemovesOldUsername() {
+        var store = new StoreLayoutImpl(Function.identity());
+        var peer = ImmutablePeerUser.of(2);
+        store.onContacts(List.of(), List.of(user(2, "old_name"))).block();
+        assertEquals(peer, store.usernames.get("old_name"));
+
+        store.onContacts(List.of(), List.of(user(2, "New_Name"))).block();
+        assertFalse(store.usernames.containsKey("old_name"));
+        assertEquals(peer, store.usernames.get("new_name"));
+        assertNull(store.resolvePeer("old_name").block());
+        var resolved = store.resolvePeer("@new_name").block();
+        assertNotNull(resolved);
+        assertEquals(peer, resolved.peer());
+    }
+
+    static void saveMessages(StoreLayoutImpl store, ImmutablePeerUser peer, int count) {
+        for (int i = 1; i <= count; i++) {
+            store.onNewMessage(message(peer, i, "message " + i)).block();
+        }
+        store.messagesCache.cleanUp();
+    }
+
+    @Test
+    void messageCacheKeepsEvictionListenerOfFactory() {
+        var evicted = new AtomicInteger();
+        var peer = ImmutablePeerUser.of(2);
+        var store = new StoreLayoutImpl(c -> c.executor(Runnable::run)
+                .maximumSize(0)
+                .evictionListener((k, v, cause) -> evicted.incrementAndGet()));
+
+        saveMessages(store, peer, 3);
+        assertEquals(3, evicted.get());
+        assertEquals(0, store.messageIndex.range(peer, 0, 0, 10).length);
+    }
+
+    @Test
+    void staleIndexIsPrunedWhenFactorySetsBothListeners() {
+        var evicted = new AtomicInteger();
+        var removed = new AtomicInteger();
+        var peer = ImmutablePeerUser.of(2);
+        var store = new StoreLayoutImpl(c -> c.executor(Runnable::run)
+                .maximumSize(0)
+                .evictionListener((k, v, cause) -> evicted.incrementAndGet())
+                .removalListener((k, v, cause) -> removed.incrementAndGet()));
+
+        saveMessages(store, peer, 3);
+        assertEquals(3, evicted.get());
+        assertEquals(3, removed.get());
+        assertEquals(3, store.messageIndex.range(peer, 0, 0, 10).length);
+
+        assertNull(store.getMessageHistory(peer, 0, 0, 10).block());
+        assertEquals(0, store.messageIndex.range(peer, 0, 0, 10).length);
+    }
+
+    static long weightedSize(StoreLayoutImpl store) {
+        store.channelsCache.cleanUp();
+        return store.channelsCache.policy().eviction().orElseThrow()
+                .weightedSize().orElseThrow();
+    }
+
+    static BaseChannelParticipants participants(int from, int to) {
+        var list = IntStream.range(from, to)
+                .mapToObj(i -> BaseChannelParticipant.builder()
+                        .userId(i)
+                        .date(i)
+                        .build())
+                .collect(Collectors.toList());
+        return BaseChannelParticipants.builder()
+                .count(list.size())
+                .participants(list)
+                .chats(List.of())
+                .users(List.of())
+                .build();
+    }
+
+    @Test
+    void channelIsReweighedOnParticipantsChange() {
+        var channel = Channel.builder()
+                .id(10)
+                .accessHash(10L)
+                .title("channel")
+                .photo(ChatPhotoEmpty.instance())
+                .date(0)
+                .build();
+
+        var options = EntityCacheOptions.bounded(1L << 30, EntityCacheOptions.UNBOUNDED);
+        var stores = new ArrayList<StoreLayoutImpl>();
+        stores.add(new StoreLayoutImpl(Function.identity(), options));
+        stores.add(new StoreLayoutImpl(Function.identity(), options.asSerialized()));
+        for (var store : stores) {
+            store.onContacts(List.of(channel), List.of()).block();
+            long initial = weightedSize(store);
+
+            store.onChannelParticipants(channel.id(), participants(100, 200)).block();
+            long first = weightedSize(store);
+            assertTrue(first > initial);
+
+            // the second change modifies already initialized participants
+            store.onChannelParticipants(channel.id(), participants(200, 300)).block();
+            long second = weightedSize(store);
+            assertTrue(second > first);
+            assertEquals(200, store.channels.get(channel.id()).participants.size());
+        }
+    }
+
+    static BaseMessage message(ImmutablePeerUser peer, int id, String text) {
+        return BaseMessage.builder()
+                .id(id)
+                .peerId(peer)
+                .date(id)
+                .message(text)
+                .build();
+    }
+
+    @Test
+    void editReturnsPreviousMessage() {
+        var options = EntityCacheOptions.unbounded();
+        for (var store : List.of(new StoreLayoutImpl(Function.identity(), options),
+                new StoreLayoutImpl(Function.identity(), options.asSerialized()))) {
+            var peer = ImmutablePeerUser.of(2);
+            store.onNewMessage(message(peer, 1, "first")).block();
+
+            var old = store.onEditMessage(message(peer, 1, "second")).block();
+            assertInstanceOf(BaseMessage.class, old);
+            assertEquals("first", ((BaseMessage) old).message());
+        }
+    }
+}
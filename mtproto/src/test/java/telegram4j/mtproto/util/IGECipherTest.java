@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 Telegram4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package telegram4j.mtproto.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IGECipherTest {
+
+    static final int[] SIZES = {16, 32, 48, 1024,
+            BulkAES256IGECipher.CHUNK_SIZE - 16,
+            BulkAES256IGECipher.CHUNK_SIZE,
+            BulkAES256IGECipher.CHUNK_SIZE + 16,
+            1 << 17};
+
+    final Random random = new Random(0x1337);
+
+    @Test
+    void heapBuffers() {
+        verify(Unpooled::copiedBuffer);
+    }
+
+    @Test
+    void directBuffers() {
+        verify(b -> Unpooled.directBuffer(b.length).writeBytes(b));
+    }
+
+    @Test
+    void compositeBuffers() {
+        verify(b -> {
+            int half = b.length / 2;
+            return Unpooled.wrappedBuffer(
+                    Unpooled.directBuffer(half).writeBytes(b, 0, half),
+                    Unpooled.copiedBuffer(b, half, b.length - half));
+        });
+    }
+
+    @Test
+    void nonZeroReaderIndex() {
+        verify(b -> {
+            ByteBuf buf = Unpooled.buffer(b.length + 7);
+            buf.writeBytes(new byte[7]);
+            buf.writeBytes(b);
+            buf.skipBytes(7);
+            return buf;
+        });
+    }
+
+    @Test
+    void illegalDirection() {
+        var cipher = BulkAES256IGECipher.create();
+        cipher.init(true, Unpooled.wrappedBuffer(new byte[32]), Unpooled.wrappedBuffer(new byte[32]));
+        assertThrows(IllegalArgumentException.class, () -> cipher.decrypt(Unpooled.buffer(16).writeZero(16)));
+        assertThrows(IllegalArgumentException.class, () -> cipher.encrypt(Unpooled.buffer(15).writeZero(15)));
+    }
+
+    void verify(Function<byte[], ByteBuf> allocator) {
+        var bulk = IGECipher.create(IGECipher.Engine.BULK);
+        var def = IGECipher.create(IGECipher.Engine.DEFAULT);
+
+        for (int size : SIZES) {
+            byte[] key = new byte[32];
+            byte[] iv = new byte[32];
+            byte[] plain = new byte[size];
+            random.nextBytes(key);
+            random.nextBytes(iv);
+            random.nextBytes(plain);
+
+            def.init(true, Unpooled.copiedBuffer(key), Unpooled.copiedBuffer(iv));
+            ByteBuf expected = def.encrypt(Unpooled.copiedBuffer(plain));
+
+            bulk.init(true, Unpooled.copiedBuffer(key), Unpooled.copiedBuffer(iv));
+            ByteBuf actual = bulk.encrypt(allocator.apply(plain));
+            assertTrue(ByteBufUtil.equals(expected, actual), () -> "Encrypted data mismatch, size: " + size);
+
+            def.init(false, Unpooled.copiedBuffer(key), Unpooled.copiedBuffer(iv));
+            ByteBuf expectedPlain = def.decrypt(expected);
+
+            bulk.init(false, Unpooled.copiedBuffer(key), Unpooled.copiedBuffer(iv));
+            ByteBuf actualPlain = bulk.decrypt(actual);
+
+            assertArrayEquals(plain, ByteBufUtil.getBytes(expectedPlain), () -> "Default decryption mismatch, size: " + size);
+            assertArrayEquals(plain, ByteBufUtil.getBytes(actualPlain), () -> "Bulk decryption mismatch, size: " + size);
+
+            expectedPlain.release();
+            actualPlain.release();
+        }
+    }
+}